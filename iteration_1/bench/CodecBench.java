@@ -0,0 +1,347 @@
+/**
+*Class:             CodecBench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Micro benchmarks for the bytes on the wire: DATA, ACK, RRQ
+*					and OACK written and read with PacketCodec, the same done
+*					with the DatagramArtisan old callers still use, block numbers
+*					put in and read out of a header, and a request read into a
+*					TFTPRequest the way the server's listener reads it.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+//import external libraries
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import errorhelpers.PacketCodec;
+
+
+@SuppressWarnings("deprecation")
+final class CodecBench
+{
+	//declaring local class constants
+	private static final int BLOCK = 512;
+	private static final byte[] DATA_OP = {0, 3};
+	private static final byte[] ACK_OP = {0, 4};
+	private static final byte[] RRQ_OP = {0, 1};
+	private static final String FILE = "132KByte.txt";
+	private static final String MODE = "octet";
+
+
+	//not to be made
+	private CodecBench() {}
+
+
+	//options a client asking for big blocks and a window sends
+	private static Map<String,String> options()
+	{
+		Map<String,String> options = new LinkedHashMap<String,String>();
+		options.put(PacketCodec.BLKSIZE, "1428");
+		options.put(PacketCodec.WINDOWSIZE, "8");
+		return options;
+	}
+
+
+	static void cases(List<Microbench.Case> out)
+	{
+		final InetAddress loopback = InetAddress.getLoopbackAddress();
+		final Map<String,String> options = options();
+
+		//a full DATA packet, an ACK and an RRQ with options, as they arrive
+		final byte[] data = new byte[BLOCK + PacketCodec.HEADER];
+		for(int i = PacketCodec.HEADER; i < data.length; i++)
+		{
+			data[i] = (byte)i;
+		}
+		new PacketCodec().wrap(data, 0, 0).putDATA(1, BLOCK);
+		final byte[] ack = new byte[PacketCodec.HEADER];
+		new PacketCodec().wrap(ack, 0, 0).putACK(1);
+		final byte[] request = new byte[PacketCodec.requestLength(FILE, MODE, options)];
+		new PacketCodec().wrap(request, 0, 0).putRequest(PacketCodec.RRQ, FILE, MODE, options);
+		final DatagramPacket dataPacket = new DatagramPacket(data, data.length, loopback, 69);
+		final DatagramPacket ackPacket = new DatagramPacket(ack, ack.length, loopback, 69);
+		final DatagramPacket requestPacket = new DatagramPacket(request, request.length, loopback, 69);
+
+		out.add(new Microbench.Case("codec.putDATA")
+		{
+			final PacketCodec codec = new PacketCodec();
+			final byte[] buffer = data.clone();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += codec.wrap(buffer, 0, 0).putDATA(i & 0xFFFF, BLOCK);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.putACK")
+		{
+			final PacketCodec codec = new PacketCodec();
+			final byte[] buffer = new byte[PacketCodec.HEADER];
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += codec.wrap(buffer, 0, 0).putACK(i & 0xFFFF);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.readACK")
+		{
+			final PacketCodec codec = new PacketCodec();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					if(codec.wrap(ack, 0, ack.length).is(PacketCodec.ACK, 1))
+					{
+						r++;
+					}
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.readDATA")
+		{
+			final PacketCodec codec = new PacketCodec();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					codec.wrap(dataPacket);
+					r += codec.opcode() + codec.block() + codec.dataOffset() + codec.dataLength();
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.putRequest")
+		{
+			final PacketCodec codec = new PacketCodec();
+			final byte[] buffer = new byte[request.length];
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += codec.wrap(buffer, 0, 0).putRequest(PacketCodec.RRQ, FILE, MODE, options);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.putOACK")
+		{
+			final PacketCodec codec = new PacketCodec();
+			final byte[] buffer = new byte[PacketCodec.oackLength(options)];
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += codec.wrap(buffer, 0, 0).putOACK(options);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("codec.options")
+		{
+			final PacketCodec codec = new PacketCodec();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += codec.wrap(request, 0, request.length).options().size();
+				}
+				return r;
+			}
+		});
+
+		//what the listener does with each request it receives
+		out.add(new Microbench.Case("request.parse")
+		{
+			final PacketCodec codec = new PacketCodec();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					TFTPRequest parsed = TFTPRequest.parse(codec.wrap(requestPacket), requestPacket.getAddress(), requestPacket.getPort());
+					r += parsed.fileName.length() + parsed.options.size();
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("block.encode")
+		{
+			final PacketCodec codec = new PacketCodec();
+			final byte[] buffer = new byte[PacketCodec.HEADER];
+
+			@Override
+			long run(int ops)
+			{
+				codec.wrap(buffer, 0, 0).putACK(0);
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					codec.putBlock(i & 0xFFFF);
+					r += buffer[3];
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("block.decode")
+		{
+			final byte[] buffer = ack.clone();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					buffer[3] = (byte)i;
+					r += PacketCodec.block(buffer, buffer.length);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.produceDATA")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+			final byte[] block = new byte[BLOCK];
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.produceDATA(DATA_OP, i & 0xFFFF, block, loopback, 69).getLength();
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.produceACK")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.produceACK(ACK_OP, i & 0xFFFF, loopback, 69).getLength();
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.produceRWRQ")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.produceRWRQ(RRQ_OP, FILE, MODE, options, loopback, 69).getLength();
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.getBlockNum")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.getBlockNum(ackPacket);
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.getData")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.getData(dataPacket).length;
+				}
+				return r;
+			}
+		});
+
+		out.add(new Microbench.Case("artisan.getFileName")
+		{
+			final errorhelpers.DatagramArtisan artisan = new errorhelpers.DatagramArtisan();
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += artisan.getFileName(requestPacket).length() + artisan.getMode(requestPacket).length();
+				}
+				return r;
+			}
+		});
+	}
+}
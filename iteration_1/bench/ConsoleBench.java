@@ -0,0 +1,197 @@
+/**
+*Class:             ConsoleBench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Micro benchmarks for what verbose mode costs a transfer: a
+*					full DATA packet dumped by HexDump as hex and as text, whole
+*					and cut down to its header, printByteArray on a console (the
+*					same HexDump line ConsoleUI hands its LogRing, here on a
+*					HeadlessConsole so no window is needed), a line through the
+*					LogRing on its own, and a Log statement that is switched off.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+//import external libraries
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import errorhelpers.PacketCodec;
+import ui.HeadlessConsole;
+import ui.HexDump;
+import ui.Log;
+import ui.LogRing;
+
+
+final class ConsoleBench
+{
+	//declaring local class constants
+	private static final int PACKET = 512 + PacketCodec.HEADER;
+
+
+	//not to be made
+	private ConsoleBench() {}
+
+
+	//a stream that throws away what is written to it
+	private static PrintStream nowhere()
+	{
+		return new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b) {}
+
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		});
+	}
+
+
+	static void cases(List<Microbench.Case> out)
+	{
+		final byte[] packet = new byte[PACKET];
+		for(int i = 0; i < packet.length; i++)
+		{
+			packet[i] = (byte)(i * 31);
+		}
+
+		//a HexDump case runs with the given limit and puts the old one back after
+		abstract class DumpCase extends Microbench.Case
+		{
+			final int limit;
+			int before;
+
+			DumpCase(String name, int limit)
+			{
+				super(name);
+				this.limit = limit;
+			}
+
+			@Override
+			void setUp()
+			{
+				before = HexDump.getLimit();
+				HexDump.setLimit(limit);
+			}
+
+			@Override
+			void tearDown()
+			{
+				HexDump.setLimit(before);
+			}
+		}
+
+		out.add(new DumpCase("hexdump.hex", HexDump.ALL)
+		{
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += HexDump.hex("Cntn:    ", packet, 0, PACKET).length();
+				}
+				return r;
+			}
+		});
+
+		out.add(new DumpCase("hexdump.hex.header", HexDump.HEADER)
+		{
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += HexDump.hex("Cntn:    ", packet, 0, PACKET).length();
+				}
+				return r;
+			}
+		});
+
+		out.add(new DumpCase("hexdump.text", HexDump.ALL)
+		{
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					r += HexDump.text("Cntn:  ", packet, 0, PACKET).length();
+				}
+				return r;
+			}
+		});
+
+		//the console's writer thread keeps up or drops lines, either way the caller is not held up
+		out.add(new DumpCase("console.printByteArray", HexDump.ALL)
+		{
+			HeadlessConsole console;
+
+			@Override
+			void setUp()
+			{
+				super.setUp();
+				console = new HeadlessConsole("bench", nowhere(), HeadlessConsole.DEFAULT_CAPACITY, LogRing.Policy.DROP_NEWEST);
+			}
+
+			@Override
+			long run(int ops)
+			{
+				for(int i = 0; i < ops; i++)
+				{
+					console.printByteArray(packet, PACKET);
+				}
+				return console.getDropped();
+			}
+
+			@Override
+			void tearDown()
+			{
+				console.close();
+				super.tearDown();
+			}
+		});
+
+		out.add(new Microbench.Case("logring.put+take")
+		{
+			final LogRing ring = new LogRing(1024, LogRing.Policy.DROP_NEWEST);
+			final String line = "    Server: Sending packet";
+
+			@Override
+			long run(int ops)
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					ring.put(line);
+					r += ring.take().length();
+				}
+				return r;
+			}
+		});
+
+		//a per-packet line with verbose off, what every transfer pays for each packet
+		out.add(new Microbench.Case("log.debug.off")
+		{
+			final Log log = new Log(null, Log.Level.INFO);
+
+			@Override
+			long run(int ops)
+			{
+				for(int i = 0; i < ops; i++)
+				{
+					log.debug("Server: sending block ", i);
+				}
+				return log.isOn(Log.Level.DEBUG) ? 1 : 0;
+			}
+		});
+	}
+}
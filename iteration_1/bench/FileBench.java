@@ -0,0 +1,240 @@
+/**
+*Class:             FileBench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Micro benchmarks for the file side of a transfer. A file the
+*					size of 132KByte.txt is read by TFTPReader the old way
+*					(readAndSplit, then pop() an array per block), the way the
+*					transfers now do (pop straight into the packet) and through
+*					a BlockCache that already holds it. TFTPWriter writes the
+*					same file block by block, and writes single blocks into a
+*					file that stays open. One operation is one whole file, or
+*					one block for the .block cases.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+//import external libraries
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import errorhelpers.PacketCodec;
+
+
+final class FileBench
+{
+	//declaring local class constants
+	private static final int BLOCK = 512;
+	private static final int FILE_SIZE = 132 * 1024 + 17;		//not a multiple of BLOCK, so the last block is short
+
+
+	//not to be made
+	private FileBench() {}
+
+
+	//a directory of its own under the temp directory, removed with what is in it on exit
+	private static File scratch() throws IOException
+	{
+		final File dir = Files.createTempDirectory("tftp-bench").toFile();
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				File[] left = dir.listFiles();
+				if(left != null)
+				{
+					for(File f : left)
+					{
+						f.delete();
+					}
+				}
+				dir.delete();
+			}
+		});
+		return dir;
+	}
+
+
+	static void cases(List<Microbench.Case> out)
+	{
+		final byte[] contents = new byte[FILE_SIZE];
+		new Random(3303).nextBytes(contents);
+		final File[] dir = new File[1];
+		final File[] source = new File[1];
+
+		//the file to be read, made once for every case
+		abstract class FileCase extends Microbench.Case
+		{
+			FileCase(String name)
+			{
+				super(name);
+			}
+
+			@Override
+			void setUp() throws Exception
+			{
+				if(dir[0] == null)
+				{
+					dir[0] = scratch();
+					source[0] = new File(dir[0], "source.bin");
+					Files.write(source[0].toPath(), contents);
+				}
+			}
+		}
+
+		out.add(new FileCase("reader.readAndSplit")
+		{
+			final TFTPReader reader = new TFTPReader();
+
+			@Override
+			long run(int ops) throws IOException
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					reader.readAndSplit(source[0].getPath());
+					byte[] block;
+					while((block = reader.pop()) != null)
+					{
+						r += block.length;
+					}
+					reader.close();
+				}
+				return r;
+			}
+		});
+
+		out.add(new FileCase("reader.pop")
+		{
+			final TFTPReader reader = new TFTPReader();
+			final byte[] packet = new byte[BLOCK + PacketCodec.HEADER];
+
+			@Override
+			long run(int ops) throws IOException
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					reader.open(source[0].getPath());
+					int n;
+					while((n = reader.pop(packet, PacketCodec.HEADER)) >= 0)
+					{
+						r += n;
+					}
+					reader.close();
+				}
+				return r;
+			}
+		});
+
+		out.add(new FileCase("reader.pop.cached")
+		{
+			final BlockCache cache = new BlockCache(BlockCache.DEFAULT_BUDGET, BlockCache.Policy.LRU);
+			final TFTPReader reader = new TFTPReader(TFTPReader.DEFAULT_READ_AHEAD, BLOCK, cache);
+			final byte[] packet = new byte[BLOCK + PacketCodec.HEADER];
+
+			@Override
+			long run(int ops) throws IOException
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					reader.open(source[0].getPath());
+					int n;
+					while((n = reader.pop(packet, PacketCodec.HEADER)) >= 0)
+					{
+						r += n;
+					}
+					reader.close();
+				}
+				return r;
+			}
+		});
+
+		out.add(new FileCase("writer.write")
+		{
+			final TFTPWriter writer = new TFTPWriter();
+			File target;
+
+			@Override
+			void setUp() throws Exception
+			{
+				super.setUp();
+				target = new File(dir[0], "written.bin");
+			}
+
+			@Override
+			long run(int ops) throws IOException
+			{
+				long r = 0;
+				for(int i = 0; i < ops; i++)
+				{
+					target.delete();
+					writer.open(target.getPath(), BLOCK);
+					long block = 1;
+					for(int off = 0; off < FILE_SIZE; off += BLOCK)
+					{
+						int n = Math.min(BLOCK, FILE_SIZE - off);
+						writer.write(block++, contents, off, n);
+						r += n;
+					}
+					writer.close();
+				}
+				return r;
+			}
+
+			@Override
+			void tearDown()
+			{
+				writer.abort();
+				target.delete();
+			}
+		});
+
+		//one block written into a file kept open, over and over the same blocks of it
+		out.add(new FileCase("writer.write.block")
+		{
+			final TFTPWriter writer = new TFTPWriter();
+			final int blocks = FILE_SIZE / BLOCK;
+			File target;
+			long next = 0;
+
+			@Override
+			void setUp() throws Exception
+			{
+				super.setUp();
+				target = new File(dir[0], "block.bin");
+				target.delete();
+				writer.open(target.getPath(), BLOCK);
+			}
+
+			@Override
+			long run(int ops) throws IOException
+			{
+				for(int i = 0; i < ops; i++)
+				{
+					int b = (int)(next++ % blocks);
+					writer.write(b + 1, contents, b * BLOCK, BLOCK);
+				}
+				return next;
+			}
+
+			@Override
+			void tearDown()
+			{
+				writer.abort();
+				target.delete();
+			}
+		});
+	}
+}
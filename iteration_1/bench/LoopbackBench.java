@@ -0,0 +1,541 @@
+/**
+*Class:             LoopbackBench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Measures whole transfers end to end. A headless TFTPServer and
+*					a number of headless TFTPClients are started in this JVM and
+*					talk over the loopback interface. For every file size asked
+*					for, each client runs a number of RRQs and then of WRQs at the
+*					same time as the others, every file is checked against what
+*					was sent, and for each size and direction it reports:
+*						- throughput, file bytes moved over the wall clock time
+*						- request to first byte, from the RRQ/WRQ going out to the
+*						  first DATA (RRQ) or first ACK/OACK (WRQ) coming back
+*						- p50/p99/p999 of the time each transfer took to complete
+*					Results are printed as a table and, with --json FILE, written
+*					as JSON so runs can be kept and compared.
+*
+*					Usage: java -cp bin LoopbackBench [--OPTION VALUE]...
+*						--sizes 1,511,512,513,64k,1m	file sizes, k/m/g suffixes allowed
+*						--ops rrq,wrq					directions to run
+*						--clients 1						clients transferring at the same time
+*						--transfers 20					transfers per client, size and direction
+*						--warmup 2						of those, run first and not counted
+*						--engine thread					server engine: thread, virtual or nio
+*						--blksize 512					blksize each client asks for
+*						--windowsize 1					windowsize each client asks for
+*						--verify true					check every file byte for byte
+*						--json FILE						write the results to FILE
+*						--stats FILE					write the server's 'stats' snapshot to FILE
+*						--log FILE						server and client output (default: dropped)
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+//import external libraries
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.DatagramSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
+
+import errorhelpers.PacketCodec;
+import ui.HeadlessConsole;
+import ui.LogRing;
+
+
+public class LoopbackBench
+{
+	//declaring local class constants
+	private static final String MODE = "octet";
+	private static final long WRITE_SETTLE_MS = 2000;	//longest wait for the server to finish writing a WRQ's file
+	private static final int PATTERN = 1 << 20;			//bytes of random data files are made of, repeated
+	private static final LongBinaryOperator MIN = new LongBinaryOperator()
+	{
+		@Override
+		public long applyAsLong(long a, long b)
+		{
+			return Math.min(a, b);
+		}
+	};
+	private static final LongBinaryOperator MAX = new LongBinaryOperator()
+	{
+		@Override
+		public long applyAsLong(long a, long b)
+		{
+			return Math.max(a, b);
+		}
+	};
+
+	//declaring local instance variables
+	private final Map<String,String> settings = new LinkedHashMap<String,String>();
+	private File root;					//served by the server
+	private File[] homes;				//one per client, files are sent from and received into it
+	private TFTPClient[] clients;
+	private PrintStream output;
+	private final byte[] pattern = new byte[PATTERN];
+
+
+	//what one size in one direction did
+	private static final class Result
+	{
+		final String op;
+		final long size;
+		final int transfers;
+		final int failed;
+		final long wallNs;
+		final long[] completion;		//ns, sorted
+		final long[] firstByte;			//ns, sorted
+
+		Result(String op, long size, int transfers, int failed, long wallNs, long[] completion, long[] firstByte)
+		{
+			this.op = op;
+			this.size = size;
+			this.transfers = transfers;
+			this.failed = failed;
+			this.wallNs = wallNs;
+			this.completion = completion;
+			this.firstByte = firstByte;
+			Arrays.sort(completion);
+			Arrays.sort(firstByte);
+		}
+
+		//file bytes moved by the transfers that worked, per second
+		double throughput()
+		{
+			return wallNs == 0 ? 0 : (double)size * (transfers - failed) * 1e9 / wallNs;
+		}
+
+		//transfers finished per second
+		double rate()
+		{
+			return wallNs == 0 ? 0 : (transfers - failed) * 1e9 / wallNs;
+		}
+	}
+
+
+	public static void main(String[] args) throws Exception
+	{
+		System.setProperty("java.awt.headless", "true");
+		LoopbackBench bench = new LoopbackBench();
+		bench.settings.put("sizes", "1,511,512,513,64k,1m");
+		bench.settings.put("ops", "rrq,wrq");
+		bench.settings.put("clients", "1");
+		bench.settings.put("transfers", "20");
+		bench.settings.put("warmup", "2");
+		bench.settings.put("engine", "thread");
+		bench.settings.put("blksize", "512");
+		bench.settings.put("windowsize", "1");
+		bench.settings.put("verify", "true");
+		for(int i = 0; i < args.length; i++)
+		{
+			if(!args[i].startsWith("--") || i + 1 == args.length)
+			{
+				System.err.println("usage: LoopbackBench [--sizes LIST] [--ops rrq,wrq] [--clients N] [--transfers N] [--warmup N]"
+						+ " [--engine TYPE] [--blksize N] [--windowsize N] [--verify BOOL] [--json FILE] [--stats FILE] [--log FILE]");
+				System.exit(2);
+			}
+			bench.settings.put(args[i].substring(2), args[++i]);
+		}
+		int failed = bench.run();
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+
+	//run every size and direction, returns the transfers that failed
+	private int run() throws Exception
+	{
+		long[] sizes = parseSizes(settings.get("sizes"));
+		String[] ops = settings.get("ops").split(",");
+		int clientCount = Integer.parseInt(settings.get("clients"));
+		int transfers = Integer.parseInt(settings.get("transfers"));
+		int warmup = Integer.parseInt(settings.get("warmup"));
+		boolean verify = Boolean.parseBoolean(settings.get("verify"));
+		output = settings.containsKey("log") ? new PrintStream(new FileOutputStream(settings.get("log"), true), false) : nowhere();
+		new Random(3303).nextBytes(pattern);
+
+		//server on a free port, serving a directory of its own
+		root = Files.createTempDirectory("tftp-loopback").toFile();
+		DatagramSocket probe = new DatagramSocket(0);
+		int port = probe.getLocalPort();
+		probe.close();
+		final TFTPServer server = new TFTPServer(console("TFTP Server"), root, port);
+		server.command(new String[] {"engine", settings.get("engine")});
+		server.command(new String[] {"blksize", String.valueOf(Math.max(PacketCodec.DEFAULT_BLKSIZE, Integer.parseInt(settings.get("blksize"))))});
+		server.command(new String[] {"windowsize", String.valueOf(Math.max(64, Integer.parseInt(settings.get("windowsize"))))});
+		Thread listener = new Thread("Loopback server")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					server.receiveAndSendTFTP();
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		};
+		listener.setDaemon(true);
+		listener.start();
+
+		clients = new TFTPClient[clientCount];
+		homes = new File[clientCount];
+		for(int c = 0; c < clientCount; c++)
+		{
+			homes[c] = new File(root, ".client" + c);
+			homes[c].mkdir();
+			clients[c] = new TFTPClient(console("TFTP Client " + c), port, homes[c]);
+			clients[c].setRequestedBlockSize(Integer.parseInt(settings.get("blksize")));
+			clients[c].setRequestedWindowSize(Integer.parseInt(settings.get("windowsize")));
+		}
+
+		System.out.println("# " + settings.get("engine") + " engine, " + clientCount + " client(s), blksize " + settings.get("blksize")
+				+ ", windowsize " + settings.get("windowsize") + ", " + transfers + " transfers each (" + warmup + " warmup)");
+		System.out.println(String.format(Locale.ROOT, "%-4s %12s %6s %5s %11s %9s %10s %10s %10s %10s %10s",
+				"op", "size", "n", "fail", "MB/s", "xfer/s", "first p50", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+		List<Result> results = new ArrayList<Result>();
+		int failed = 0;
+		for(long size : sizes)
+		{
+			File source = new File(root, "src_" + size);
+			make(source, size);
+			for(String op : ops)
+			{
+				boolean read = op.trim().equalsIgnoreCase("rrq");
+				Result r = round(read, source, size, transfers, warmup, verify);
+				results.add(r);
+				failed += r.failed;
+				print(r);
+			}
+			source.delete();
+		}
+
+		if(settings.containsKey("json"))
+		{
+			write(settings.get("json"), results);
+			System.out.println("# results written to " + settings.get("json"));
+		}
+		if(settings.containsKey("stats"))
+		{
+			server.command(new String[] {"stats", settings.get("stats")});
+			System.out.println("# server stats written to " + settings.get("stats"));
+		}
+		server.command(new String[] {"close"});
+		delete(root);
+		output.flush();
+		return failed;
+	}
+
+
+	//every client runs transfers of source at the same time, the first warmup of each are not counted
+	private Result round(final boolean read, final File source, final long size, final int transfers, final int warmup, final boolean verify)
+			throws InterruptedException
+	{
+		final int n = clients.length;
+		final int counted = Math.max(0, transfers - warmup);
+		final long[] completion = new long[n * counted];
+		final long[] firstByte = new long[n * counted];
+		final AtomicLong failures = new AtomicLong();
+		final AtomicLong measureStart = new AtomicLong(Long.MAX_VALUE);
+		final AtomicLong measureEnd = new AtomicLong();
+		final CountDownLatch warm = new CountDownLatch(n);
+		final CountDownLatch done = new CountDownLatch(n);
+		for(int c = 0; c < n; c++)
+		{
+			final int client = c;
+			Thread t = new Thread("Loopback client " + c)
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for(int i = 0; i < transfers; i++)
+						{
+							//every client starts counting together, once all of them are warm
+							if(i == warmup)
+							{
+								warm.countDown();
+								warm.await();
+								long now = System.nanoTime();
+								measureStart.accumulateAndGet(now, MIN);
+							}
+							long[] timing = transfer(client, read, source, size, i, verify);
+							if(i >= warmup)
+							{
+								int slot = client * counted + (i - warmup);
+								if(timing == null)
+								{
+									failures.incrementAndGet();
+									completion[slot] = Long.MAX_VALUE;
+									firstByte[slot] = Long.MAX_VALUE;
+								}
+								else
+								{
+									completion[slot] = timing[0];
+									firstByte[slot] = timing[1];
+								}
+							}
+						}
+						if(transfers <= warmup)
+						{
+							warm.countDown();
+						}
+						measureEnd.accumulateAndGet(System.nanoTime(), MAX);
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		done.await();
+		long wall = counted == 0 ? 0 : measureEnd.get() - measureStart.get();
+		return new Result(read ? "RRQ" : "WRQ", size, n * counted, (int)failures.get(), wall, completion, firstByte);
+	}
+
+
+	//one transfer by client, returns {completion ns, first byte ns}, null if it failed or the file came out wrong
+	private long[] transfer(int client, boolean read, File source, long size, int seq, boolean verify) throws IOException, InterruptedException
+	{
+		TFTPClient c = clients[client];
+		File home = homes[client];
+		if(read)
+		{
+			File received = new File(home, "Received" + source.getName());
+			received.delete();
+			long start = System.nanoTime();
+			boolean ok = c.transfer(true, source.getName(), MODE);
+			long end = System.nanoTime();
+			ok = ok && check(received, size, verify, 0);
+			received.delete();
+			return ok ? new long[] {end - start, c.getFirstByteTime() - start} : null;
+		}
+
+		//the name a WRQ is sent under is also its name on the server, so each one gets its own
+		String name = "w" + client + "_" + seq + "_" + size;
+		File local = new File(home, name);
+		File written = new File(root, name);
+		if(!local.exists())
+		{
+			make(local, size);
+		}
+		long start = System.nanoTime();
+		boolean ok = c.transfer(false, name, MODE);
+		long end = System.nanoTime();
+		ok = ok && check(written, size, verify, WRITE_SETTLE_MS);
+		written.delete();
+		//the same bytes go out again next time, under the next name
+		File next = new File(home, "w" + client + "_" + (seq + 1) + "_" + size);
+		if(!local.renameTo(next))
+		{
+			local.delete();
+		}
+		return ok ? new long[] {end - start, c.getFirstByteTime() - start} : null;
+	}
+
+
+	//true once file is size bytes long (waiting up to settleMs for that) and, if verify, holds the pattern
+	private boolean check(File file, long size, boolean verify, long settleMs) throws IOException, InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + settleMs;
+		while(file.length() != size && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(1);
+		}
+		if(file.length() != size)
+		{
+			return false;
+		}
+		if(!verify)
+		{
+			return true;
+		}
+		byte[] buffer = new byte[PATTERN];
+		InputStream in = new BufferedInputStream(new FileInputStream(file), PATTERN);
+		try
+		{
+			long pos = 0;
+			int n;
+			while((n = in.read(buffer)) > 0)
+			{
+				for(int i = 0; i < n; i++, pos++)
+				{
+					if(buffer[i] != pattern[(int)(pos % PATTERN)])
+					{
+						return false;
+					}
+				}
+			}
+			return pos == size;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+
+	//a file of size bytes of the pattern, over and over
+	private void make(File file, long size) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			for(long left = size; left > 0; left -= PATTERN)
+			{
+				out.write(pattern, 0, (int)Math.min(PATTERN, left));
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+
+	private void print(Result r)
+	{
+		System.out.println(String.format(Locale.ROOT, "%-4s %12d %6d %5d %11.2f %9.1f %10.3f %10.3f %10.3f %10.3f %10.3f",
+				r.op, r.size, r.transfers, r.failed, r.throughput() / 1e6, r.rate(),
+				ms(percentile(r.firstByte, 0.50)), ms(percentile(r.completion, 0.50)), ms(percentile(r.completion, 0.99)),
+				ms(percentile(r.completion, 0.999)), ms(percentile(r.completion, 1.0))));
+	}
+
+
+	//the results, with the settings they were taken with, as JSON
+	private void write(String file, List<Result> results) throws IOException
+	{
+		StringBuilder out = new StringBuilder("{\"settings\":{");
+		boolean first = true;
+		for(Map.Entry<String,String> e : settings.entrySet())
+		{
+			out.append(first ? "" : ",").append(MetricsRegistry.quote(e.getKey())).append(':').append(MetricsRegistry.quote(e.getValue()));
+			first = false;
+		}
+		out.append("},\n\"results\":[\n");
+		for(int i = 0; i < results.size(); i++)
+		{
+			Result r = results.get(i);
+			out.append(String.format(Locale.ROOT,
+					"{\"op\":\"%s\",\"size\":%d,\"transfers\":%d,\"failed\":%d,\"wallMs\":%.3f,\"bytesPerSec\":%.1f,\"transfersPerSec\":%.2f",
+					r.op, r.size, r.transfers, r.failed, r.wallNs / 1e6, r.throughput(), r.rate()));
+			out.append(",\"firstByteMs\":").append(percentiles(r.firstByte));
+			out.append(",\"completionMs\":").append(percentiles(r.completion));
+			out.append(i + 1 < results.size() ? "},\n" : "}\n");
+		}
+		out.append("]}\n");
+		Files.write(new File(file).toPath(), out.toString().getBytes("UTF-8"));
+	}
+
+
+	private static String percentiles(long[] sorted)
+	{
+		return String.format(Locale.ROOT, "{\"p50\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f}",
+				ms(percentile(sorted, 0.50)), ms(percentile(sorted, 0.99)), ms(percentile(sorted, 0.999)), ms(percentile(sorted, 1.0)));
+	}
+
+
+	//nearest rank p percentile of sorted, -1 if empty; failed transfers sort last as Long.MAX_VALUE
+	private static long percentile(long[] sorted, double p)
+	{
+		if(sorted.length == 0)
+		{
+			return -1;
+		}
+		int rank = (int)Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+
+
+	//ns as ms, -1 for nothing measured or a failed transfer
+	private static double ms(long ns)
+	{
+		return ns < 0 || ns == Long.MAX_VALUE ? -1 : ns / 1e6;
+	}
+
+
+	//1, 511, 64k, 1m, 2g ...
+	private static long[] parseSizes(String list)
+	{
+		String[] parts = list.split(",");
+		long[] sizes = new long[parts.length];
+		for(int i = 0; i < parts.length; i++)
+		{
+			String s = parts[i].trim().toLowerCase(Locale.ROOT);
+			long unit = 1;
+			if(s.endsWith("k")) unit = 1L << 10;
+			else if(s.endsWith("m")) unit = 1L << 20;
+			else if(s.endsWith("g")) unit = 1L << 30;
+			sizes[i] = Long.parseLong(unit == 1 ? s : s.substring(0, s.length() - 1)) * unit;
+		}
+		return sizes;
+	}
+
+
+	//a console for the server or a client, writing to the log file or nowhere
+	private HeadlessConsole console(String name)
+	{
+		return new HeadlessConsole(name, output, HeadlessConsole.DEFAULT_CAPACITY, LogRing.Policy.DROP_NEWEST);
+	}
+
+
+	//a stream that throws away what is written to it
+	private static PrintStream nowhere()
+	{
+		return new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b) {}
+
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		});
+	}
+
+
+	//recursively, for the scratch directories
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,356 @@
+/**
+*Class:             Microbench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Runs the micro benchmarks in CodecBench, FileBench and
+*					ConsoleBench the way JMH would in average time mode: each
+*					case is set up, called in batches until the JIT has warmed
+*					it up, then timed over a number of fixed length iterations.
+*					For every case it reports the mean time per operation with
+*					its standard deviation over the iterations, the bytes the
+*					measuring thread allocated per operation and the garbage
+*					collections that ran while it was measured.
+*
+*					Results can be written as JSON (-json FILE) and a run can be
+*					held against an earlier one (-compare FILE), so a change can
+*					be measured against the baseline it replaces.
+*
+*					Usage: java -cp bin:bench-bin Microbench [-list] [-json FILE]
+*										[-compare FILE] [pattern ...]
+*					Only cases whose name contains one of the patterns (regular
+*					expressions) are run, all of them without a pattern.
+*
+*					-Dbench.warmup=5		warmup iterations
+*					-Dbench.iterations=10	measured iterations
+*					-Dbench.time=200		ms per iteration
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+//import external libraries
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+public class Microbench
+{
+	//one thing to be measured, run(ops) does it ops times
+	static abstract class Case
+	{
+		final String name;
+
+		Case(String name)
+		{
+			this.name = name;
+		}
+
+		//before the case is warmed up
+		void setUp() throws Exception {}
+
+		//do the operation ops times, return something that depends on what was done so it is not optimized away
+		abstract long run(int ops) throws Exception;
+
+		//after the case is measured
+		void tearDown() throws Exception {}
+	}
+
+
+	//what one case measured
+	static final class Result
+	{
+		final String name;
+		final double nsPerOp;		//mean over the iterations
+		final double sd;			//standard deviation over the iterations
+		final double min;
+		final double max;
+		final double bytesPerOp;	//-1 if the JVM cannot count allocation
+		final long gcs;
+		final long ops;
+
+		Result(String name, double[] ns, double bytesPerOp, long gcs, long ops)
+		{
+			this.name = name;
+			double sum = 0, lo = Double.MAX_VALUE, hi = 0;
+			for(double v : ns)
+			{
+				sum += v;
+				lo = Math.min(lo, v);
+				hi = Math.max(hi, v);
+			}
+			double mean = sum / ns.length;
+			double sq = 0;
+			for(double v : ns)
+			{
+				sq += (v - mean) * (v - mean);
+			}
+			this.nsPerOp = mean;
+			this.sd = ns.length > 1 ? Math.sqrt(sq / (ns.length - 1)) : 0;
+			this.min = lo;
+			this.max = hi;
+			this.bytesPerOp = bytesPerOp;
+			this.gcs = gcs;
+			this.ops = ops;
+		}
+
+		String toJson()
+		{
+			return String.format(Locale.ROOT,
+					"{\"name\":\"%s\",\"nsPerOp\":%.3f,\"sd\":%.3f,\"min\":%.3f,\"max\":%.3f,\"bytesPerOp\":%.1f,\"gcs\":%d,\"ops\":%d}",
+					name, nsPerOp, sd, min, max, bytesPerOp, gcs, ops);
+		}
+	}
+
+
+	//declaring local class constants
+	private static final int WARMUP = Integer.getInteger("bench.warmup", 5);
+	private static final int ITERATIONS = Math.max(1, Integer.getInteger("bench.iterations", 10));
+	private static final long ITERATION_NS = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("bench.time", 200));
+	private static final long BATCH_NS = TimeUnit.MILLISECONDS.toNanos(1);		//a batch runs at least this long
+	private static final Pattern JSON_CASE = Pattern.compile("\"name\":\"([^\"]*)\",\"nsPerOp\":([0-9.]+)");
+
+	//declaring local class variables
+	static volatile long sink;		//where results go so the JIT cannot drop the work
+	private static final com.sun.management.ThreadMXBean threads = allocationBean();
+
+
+	public static void main(String[] args) throws Exception
+	{
+		String json = null;
+		String compare = null;
+		boolean list = false;
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-json") && i + 1 < args.length)
+			{
+				json = args[++i];
+			}
+			else if(args[i].equals("-compare") && i + 1 < args.length)
+			{
+				compare = args[++i];
+			}
+			else if(args[i].equals("-list"))
+			{
+				list = true;
+			}
+			else
+			{
+				patterns.add(Pattern.compile(args[i]));
+			}
+		}
+
+		//every case there is, in the order they are run
+		List<Case> cases = new ArrayList<Case>();
+		CodecBench.cases(cases);
+		FileBench.cases(cases);
+		ConsoleBench.cases(cases);
+
+		List<Case> chosen = new ArrayList<Case>();
+		for(Case c : cases)
+		{
+			if(matches(c.name, patterns))
+			{
+				chosen.add(c);
+			}
+		}
+		if(list)
+		{
+			for(Case c : chosen)
+			{
+				System.out.println(c.name);
+			}
+			return;
+		}
+
+		Map<String,Double> baseline = compare == null ? null : readBaseline(compare);
+		System.out.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+				+ ", " + WARMUP + " warmup, " + ITERATIONS + " x " + TimeUnit.NANOSECONDS.toMillis(ITERATION_NS) + " ms"
+				+ (threads == null ? ", allocation not counted" : ""));
+		System.out.println(String.format(Locale.ROOT, "%-36s %12s %10s %12s %5s%s",
+				"case", "ns/op", "sd", "B/op", "gc", baseline == null ? "" : "      vs base"));
+		List<Result> results = new ArrayList<Result>();
+		for(Case c : chosen)
+		{
+			Result r = measure(c);
+			results.add(r);
+			print(System.out, r, baseline);
+		}
+
+		if(json != null)
+		{
+			StringBuilder out = new StringBuilder("[\n");
+			for(int i = 0; i < results.size(); i++)
+			{
+				out.append(results.get(i).toJson()).append(i + 1 < results.size() ? ",\n" : "\n");
+			}
+			out.append("]\n");
+			Files.write(Paths.get(json), out.toString().getBytes(StandardCharsets.UTF_8));
+			System.out.println("# results written to " + json);
+		}
+	}
+
+
+	//set up, warm up and measure c
+	static Result measure(Case c) throws Exception
+	{
+		c.setUp();
+		try
+		{
+			//as many ops in a batch as take BATCH_NS, so the clock is read rarely
+			int batch = 1;
+			while(true)
+			{
+				long start = System.nanoTime();
+				sink ^= c.run(batch);
+				if(System.nanoTime() - start >= BATCH_NS || batch >= (1 << 30))
+				{
+					break;
+				}
+				batch <<= 1;
+			}
+
+			for(int i = 0; i < WARMUP; i++)
+			{
+				iteration(c, batch, new long[1]);
+			}
+
+			double[] ns = new double[ITERATIONS];
+			long ops = 0;
+			long allocated = 0;
+			long gcs = gcCount();
+			for(int i = 0; i < ITERATIONS; i++)
+			{
+				long[] done = new long[1];
+				long before = allocatedBytes();
+				long time = iteration(c, batch, done);
+				allocated += allocatedBytes() - before;
+				ns[i] = (double)time / done[0];
+				ops += done[0];
+			}
+			gcs = gcCount() - gcs;
+			double bytesPerOp = threads == null ? -1 : (double)allocated / ops;
+			return new Result(c.name, ns, bytesPerOp, gcs, ops);
+		}
+		finally
+		{
+			c.tearDown();
+		}
+	}
+
+
+	//run batches of c for ITERATION_NS, done[0] is set to the ops run, returns the ns they took
+	private static long iteration(Case c, int batch, long[] done) throws Exception
+	{
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do
+		{
+			sink ^= c.run(batch);
+			ops += batch;
+			elapsed = System.nanoTime() - start;
+		}
+		while(elapsed < ITERATION_NS);
+		done[0] = ops;
+		return elapsed;
+	}
+
+
+	private static void print(PrintStream out, Result r, Map<String,Double> baseline)
+	{
+		String vs = "";
+		if(baseline != null)
+		{
+			Double before = baseline.get(r.name);
+			vs = before == null ? "          new" : String.format(Locale.ROOT, "%+12.1f%%", (r.nsPerOp - before) * 100 / before);
+		}
+		out.println(String.format(Locale.ROOT, "%-36s %12.1f %10.1f %12s %5d%s",
+				r.name, r.nsPerOp, r.sd, r.bytesPerOp < 0 ? "-" : String.format(Locale.ROOT, "%.1f", r.bytesPerOp), r.gcs, vs));
+	}
+
+
+	//ns/op by case name from a file -json wrote
+	private static Map<String,Double> readBaseline(String file) throws IOException
+	{
+		Map<String,Double> baseline = new HashMap<String,Double>();
+		Matcher m = JSON_CASE.matcher(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+		while(m.find())
+		{
+			baseline.put(m.group(1), Double.valueOf(m.group(2)));
+		}
+		return baseline;
+	}
+
+
+	private static boolean matches(String name, List<Pattern> patterns)
+	{
+		if(patterns.isEmpty())
+		{
+			return true;
+		}
+		for(Pattern p : patterns)
+		{
+			if(p.matcher(name).find())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	//collections so far, summed over every collector
+	private static long gcCount()
+	{
+		long n = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			n += Math.max(0, gc.getCollectionCount());
+		}
+		return n;
+	}
+
+
+	//bytes this thread has allocated so far, 0 if they are not counted
+	private static long allocatedBytes()
+	{
+		return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+
+	//the HotSpot bean that counts allocation per thread, null on a JVM without one
+	private static com.sun.management.ThreadMXBean allocationBean()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+		{
+			return null;
+		}
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean)bean;
+		if(!hotspot.isThreadAllocatedMemorySupported())
+		{
+			return null;
+		}
+		hotspot.setThreadAllocatedMemoryEnabled(true);
+		return hotspot;
+	}
+}
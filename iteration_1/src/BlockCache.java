@@ -0,0 +1,350 @@
+/**
+*Class:             BlockCache.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.1
+*
+*Purpose:           Blocks of files being read, shared by every RRQ the server
+*					is serving. When many clients ask for the same file (a
+*					boot image, say) it is read from disk once and every
+*					transfer after the first is served from memory. A block is
+*					known by the file it came from (its identity on disk, last
+*					modified time and size when the transfer opened it), the
+*					block size and its index, so a file that changes is simply
+*					read again and its old blocks age out. The cache holds at
+*					most a budget of bytes and makes room by dropping the least
+*					recently (LRU) or least frequently (LFU) used block.
+*
+*
+*Update Log:		v1.0.1
+*						- load(), readers missing the same blocks at once share one read
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class BlockCache
+{
+	//ways of choosing the block to drop when the cache is full
+	public static enum Policy { LRU, LFU };
+
+	//declaring local class constants
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;	//bytes of blocks held at most
+
+	//declaring local instance variables
+	private final LinkedHashMap<BlockKey,Entry> entries = new LinkedHashMap<BlockKey,Entry>(1024, 0.75f, true);	//least recently used first
+	private final TreeMap<Integer,LinkedHashSet<BlockKey>> byUses = new TreeMap<Integer,LinkedHashSet<BlockKey>>();	//LFU only, blocks by use count
+	private Policy policy;
+	private long budget;
+	private long used = 0;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final SingleFlight<BlockKey,byte[][]> loading = new SingleFlight<BlockKey,byte[][]>();	//reads under way, by first block
+
+
+	//generic constructor, a budget of 0 caches nothing
+	public BlockCache(long budget, Policy policy)
+	{
+		this.budget = Math.max(0, budget);
+		this.policy = policy;
+	}
+
+
+	//the file as it is on disk now
+	public static FileKey keyFor(File file) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		//inode (or the like) where the file system has one, otherwise where the file is
+		Object identity = attributes.fileKey();
+		if(identity == null)
+		{
+			identity = file.getCanonicalPath();
+		}
+		return new FileKey(identity, attributes.lastModifiedTime().toMillis(), attributes.size());
+	}
+
+
+	//block index (from 0) of file in blocks of blockSize, null if it is not cached
+	public byte[] get(FileKey file, int blockSize, long index)
+	{
+		BlockKey key = new BlockKey(file, blockSize, index);
+		synchronized(this)
+		{
+			Entry entry = entries.get(key);
+			if(entry == null)
+			{
+				misses.increment();
+				return null;
+			}
+			hits.increment();
+			if(policy == Policy.LFU)
+			{
+				unindex(key, entry.uses);
+				index(key, entry.uses + 1);
+			}
+			entry.uses++;
+			return entry.data;
+		}
+	}
+
+
+	//cache a block read from disk, data must not be changed after this
+	public void put(FileKey file, int blockSize, long index, byte[] data)
+	{
+		BlockKey key = new BlockKey(file, blockSize, index);
+		synchronized(this)
+		{
+			if(data.length > budget || entries.containsKey(key))
+			{
+				return;
+			}
+			used += data.length;
+			evict();
+			entries.put(key, new Entry(data));
+			if(policy == Policy.LFU)
+			{
+				index(key, 1);
+			}
+		}
+	}
+
+
+	//blocks from index on as read by loader, which is only run if no other reader is reading them right now
+	public byte[][] load(final FileKey file, final int blockSize, final long index, final Callable<byte[][]> loader) throws IOException
+	{
+		return loading.run(new BlockKey(file, blockSize, index), new Callable<byte[][]>()
+		{
+			@Override
+			public byte[][] call() throws Exception
+			{
+				byte[][] blocks = loader.call();
+				for(int i=0; i<blocks.length; i++)
+				{
+					put(file, blockSize, index + i, blocks[i]);
+				}
+				return blocks;
+			}
+		});
+	}
+
+
+	//drop blocks until what is held fits the budget
+	private void evict()
+	{
+		while(used > budget && !entries.isEmpty())
+		{
+			BlockKey victim;
+			if(policy == Policy.LFU)
+			{
+				Map.Entry<Integer,LinkedHashSet<BlockKey>> fewest = byUses.firstEntry();
+				victim = fewest.getValue().iterator().next();
+				unindex(victim, fewest.getKey());
+			}
+			else
+			{
+				victim = entries.keySet().iterator().next();
+			}
+			used -= entries.remove(victim).data.length;
+			evictions.increment();
+		}
+	}
+
+
+	//LFU book keeping, blocks used the same number of times are dropped oldest first
+	private void index(BlockKey key, int uses)
+	{
+		LinkedHashSet<BlockKey> keys = byUses.get(uses);
+		if(keys == null)
+		{
+			keys = new LinkedHashSet<BlockKey>();
+			byUses.put(uses, keys);
+		}
+		keys.add(key);
+	}
+	private void unindex(BlockKey key, int uses)
+	{
+		LinkedHashSet<BlockKey> keys = byUses.get(uses);
+		keys.remove(key);
+		if(keys.isEmpty())
+		{
+			byUses.remove(uses);
+		}
+	}
+
+
+	//change the budget, dropping blocks if it shrank
+	public synchronized void setBudget(long budget)
+	{
+		this.budget = Math.max(0, budget);
+		evict();
+	}
+
+
+	//change how blocks are chosen to be dropped, blocks keep their use counts
+	public synchronized void setPolicy(Policy policy)
+	{
+		this.policy = policy;
+		byUses.clear();
+		if(policy == Policy.LFU)
+		{
+			Iterator<Map.Entry<BlockKey,Entry>> it = entries.entrySet().iterator();
+			while(it.hasNext())
+			{
+				Map.Entry<BlockKey,Entry> entry = it.next();
+				index(entry.getKey(), entry.getValue().uses);
+			}
+		}
+	}
+
+
+	//drop every block, the counters are kept
+	public synchronized void clear()
+	{
+		entries.clear();
+		byUses.clear();
+		used = 0;
+	}
+
+
+	//generic accessors
+	public long getHits()
+	{
+		return hits.sum();
+	}
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+	public long getSharedLoads()
+	{
+		return loading.getShared();
+	}
+	public synchronized long getBudget()
+	{
+		return budget;
+	}
+	public synchronized long getUsed()
+	{
+		return used;
+	}
+	public synchronized int getBlocks()
+	{
+		return entries.size();
+	}
+	public synchronized Policy getPolicy()
+	{
+		return policy;
+	}
+
+
+	@Override
+	public synchronized String toString()
+	{
+		return policy + " " + entries.size() + " blocks, " + used + "/" + budget + " bytes, "
+				+ getHits() + " hits, " + getMisses() + " misses, " + getEvictions() + " evictions, " + getSharedLoads() + " shared reads";
+	}
+
+
+	//a file as it was when a transfer opened it
+	public static final class FileKey
+	{
+		private final Object identity;
+		private final long modified;
+		private final long size;
+
+		private FileKey(Object identity, long modified, long size)
+		{
+			this.identity = identity;
+			this.modified = modified;
+			this.size = size;
+		}
+
+		//bytes in the file when it was opened
+		public long size()
+		{
+			return size;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof FileKey))
+			{
+				return false;
+			}
+			FileKey other = (FileKey)o;
+			return modified == other.modified && size == other.size && identity.equals(other.identity);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (identity.hashCode() * 31 + (int)(modified ^ (modified >>> 32))) * 31 + (int)(size ^ (size >>> 32));
+		}
+	}
+
+
+	//one block of one file
+	private static final class BlockKey
+	{
+		private final FileKey file;
+		private final int blockSize;
+		private final long index;
+
+		private BlockKey(FileKey file, int blockSize, long index)
+		{
+			this.file = file;
+			this.blockSize = blockSize;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof BlockKey))
+			{
+				return false;
+			}
+			BlockKey other = (BlockKey)o;
+			return index == other.index && blockSize == other.blockSize && file.equals(other.file);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (file.hashCode() * 31 + blockSize) * 31 + (int)(index ^ (index >>> 32));
+		}
+	}
+
+
+	//a cached block and how often it has been used
+	private static final class Entry
+	{
+		private final byte[] data;
+		private int uses = 1;
+
+		private Entry(byte[] data)
+		{
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/**
+*Class:             BufferPool.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Packet buffers handed out and taken back, so a transfer in
+*					full swing sends and receives without making new arrays
+*					for every packet. Buffers come in power of two sizes from
+*					64 bytes to 64 KB (anything larger is simply allocated)
+*					and are either heap arrays, for DatagramSocket, or direct
+*					ByteBuffers, for channels. Each thread keeps a few of each
+*					size to itself so taking and giving back needs no locking,
+*					the rest are shared by every thread up to a bound.
+*
+*					A taken buffer may be larger than asked for, callers work
+*					with the length they asked for. A buffer must not be used
+*					after it is given back.
+*
+*					In debug mode (-Dtftp.bufferpool.debug=true for the shared
+*					pool) the pool remembers where each buffer was taken, reports
+*					buffers that were dropped without being given back once the
+*					GC finds them, and refuses a buffer given back twice.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class BufferPool
+{
+	//declaring local class constants
+	private static final int MIN_SHIFT = 6;				//smallest buffer, 64 bytes
+	private static final int MAX_SHIFT = 16;			//largest pooled buffer, 64 KB, holds any blksize
+	private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+	private static final int THREAD_CACHE = 4;			//buffers of each size a thread keeps to itself
+	private static final int SHARED_BYTES = 1 << 20;	//bytes of each size kept for all threads
+	private static final int SHARED_MAX = 256;			//buffers of each size kept for all threads
+
+	//the pool used by the server, the client and the error simulator
+	public static final BufferPool SHARED = new BufferPool(Boolean.getBoolean("tftp.bufferpool.debug"));
+
+	//declaring local instance variables
+	private final Arena<byte[]> heap = new Arena<byte[]>()
+	{
+		@Override
+		byte[] allocate(int size)
+		{
+			return new byte[size];
+		}
+		@Override
+		int capacity(byte[] buffer)
+		{
+			return buffer.length;
+		}
+	};
+	private final Arena<ByteBuffer> direct = new Arena<ByteBuffer>()
+	{
+		@Override
+		ByteBuffer allocate(int size)
+		{
+			return ByteBuffer.allocateDirect(size);
+		}
+		@Override
+		int capacity(ByteBuffer buffer)
+		{
+			return buffer.capacity();
+		}
+	};
+	private final boolean debug;
+	private final Set<Taken> outstanding = Collections.newSetFromMap(new ConcurrentHashMap<Taken,Boolean>());
+	private final ReferenceQueue<Object> dropped = new ReferenceQueue<Object>();
+	private final LongAdder leaks = new LongAdder();
+
+
+	//generic constructor
+	public BufferPool(boolean debug)
+	{
+		this.debug = debug;
+	}
+
+
+	//a heap buffer of at least size bytes
+	public byte[] take(int size)
+	{
+		return heap.take(size);
+	}
+
+
+	//give back a buffer from take(..)
+	public void give(byte[] buffer)
+	{
+		heap.give(buffer);
+	}
+
+
+	//a direct buffer of at least size bytes, positioned at 0 with its limit at size
+	public ByteBuffer takeDirect(int size)
+	{
+		ByteBuffer buffer = direct.take(size);
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+
+	//give back a buffer from takeDirect(..), not a slice or duplicate of it
+	public void give(ByteBuffer buffer)
+	{
+		direct.give(buffer);
+	}
+
+
+	//hand the calling thread's own buffers to the other threads, for threads about to end
+	public void flushThread()
+	{
+		heap.flush();
+		direct.flush();
+	}
+
+
+	//true if leaks and buffers given back twice are looked for
+	public boolean isDebug()
+	{
+		return debug;
+	}
+
+
+	//buffers made because none were free
+	public long getAllocated()
+	{
+		return heap.allocated.sum() + direct.allocated.sum();
+	}
+
+
+	//buffers handed out again instead of made
+	public long getReused()
+	{
+		return heap.reused.sum() + direct.reused.sum();
+	}
+
+
+	//debug mode, buffers found dropped without being given back
+	public long getLeaks()
+	{
+		reap();
+		return leaks.sum();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return getAllocated() + " buffers allocated, " + getReused() + " reused"
+				+ (debug ? ", " + outstanding.size() + " out, " + getLeaks() + " leaked" : "");
+	}
+
+
+	//size class for a buffer of size bytes, -1 if it is too large to pool
+	private static int sizeClass(int size)
+	{
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+		if(shift > MAX_SHIFT)
+		{
+			return -1;
+		}
+		return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+	}
+
+
+	//debug mode, remember who took buffer
+	private void taken(Object buffer)
+	{
+		reap();
+		outstanding.add(new Taken(buffer, dropped));
+	}
+
+
+	//debug mode, buffer is being given back, it must be out
+	private void given(Object buffer)
+	{
+		Iterator<Taken> it = outstanding.iterator();
+		while(it.hasNext())
+		{
+			Taken taken = it.next();
+			if(taken.get() == buffer)
+			{
+				it.remove();
+				taken.clear();
+				return;
+			}
+		}
+		throw new IllegalStateException("buffer given back twice, or not taken from this pool");
+	}
+
+
+	//debug mode, report buffers the GC found still out
+	private void reap()
+	{
+		Taken taken;
+		while((taken = (Taken)dropped.poll()) != null)
+		{
+			if(outstanding.remove(taken))
+			{
+				leaks.increment();
+				System.err.println("BufferPool: buffer dropped without being given back, taken at:");
+				taken.site.printStackTrace();
+			}
+		}
+	}
+
+
+	//free buffers of one kind, per size, per thread then shared
+	private abstract class Arena<T>
+	{
+		private final ArrayBlockingQueue<T>[] shared;
+		private final ThreadLocal<Magazine> local = new ThreadLocal<Magazine>()
+		{
+			@Override
+			protected Magazine initialValue()
+			{
+				return new Magazine();
+			}
+		};
+		final LongAdder allocated = new LongAdder();
+		final LongAdder reused = new LongAdder();
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Arena()
+		{
+			shared = new ArrayBlockingQueue[CLASSES];
+			for(int i=0; i<CLASSES; i++)
+			{
+				int size = 1 << (i + MIN_SHIFT);
+				shared[i] = new ArrayBlockingQueue<T>(Math.min(SHARED_MAX, Math.max(THREAD_CACHE, SHARED_BYTES / size)));
+			}
+		}
+
+		abstract T allocate(int size);
+		abstract int capacity(T buffer);
+
+		@SuppressWarnings("unchecked")
+		T take(int size)
+		{
+			int c = sizeClass(size);
+			T buffer = null;
+			if(c >= 0)
+			{
+				Magazine mine = local.get();
+				if(mine.counts[c] > 0)
+				{
+					buffer = (T)mine.buffers[c][--mine.counts[c]];
+					mine.buffers[c][mine.counts[c]] = null;
+				}
+				else
+				{
+					buffer = shared[c].poll();
+				}
+			}
+			if(buffer == null)
+			{
+				allocated.increment();
+				buffer = allocate(c < 0 ? size : 1 << (c + MIN_SHIFT));
+			}
+			else
+			{
+				reused.increment();
+			}
+			if(debug)
+			{
+				taken(buffer);
+			}
+			return buffer;
+		}
+
+		void give(T buffer)
+		{
+			int capacity = capacity(buffer);
+			int c = sizeClass(capacity);
+			if(debug)
+			{
+				given(buffer);
+			}
+			//only the exact sizes this pool makes are kept, anything else is left to the GC
+			if(c < 0 || capacity != 1 << (c + MIN_SHIFT))
+			{
+				return;
+			}
+			Magazine mine = local.get();
+			if(mine.counts[c] < THREAD_CACHE)
+			{
+				mine.buffers[c][mine.counts[c]++] = buffer;
+				return;
+			}
+			shared[c].offer(buffer);
+		}
+
+		@SuppressWarnings("unchecked")
+		void flush()
+		{
+			Magazine mine = local.get();
+			for(int c=0; c<CLASSES; c++)
+			{
+				while(mine.counts[c] > 0)
+				{
+					shared[c].offer((T)mine.buffers[c][--mine.counts[c]]);
+					mine.buffers[c][mine.counts[c]] = null;
+				}
+			}
+		}
+	}
+
+
+	//one thread's own free buffers, by size
+	private static final class Magazine
+	{
+		private final Object[][] buffers = new Object[CLASSES][THREAD_CACHE];
+		private final int[] counts = new int[CLASSES];
+	}
+
+
+	//debug mode, a buffer that is out and where it was taken
+	private static final class Taken extends WeakReference<Object>
+	{
+		private final Throwable site = new Throwable("taken by " + Thread.currentThread().getName());
+
+		private Taken(Object buffer, ReferenceQueue<Object> queue)
+		{
+			super(buffer, queue);
+		}
+	}
+}
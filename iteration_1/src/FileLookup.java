@@ -0,0 +1,87 @@
+/**
+*Class:             FileLookup.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Whether a file asked for in a RRQ can be served, and what
+*					it is on disk if so. When a burst of RRQs for the same file
+*					arrives at once (every client booting at the same time)
+*					the file is checked once and every transfer waiting on it
+*					shares the answer, instead of each of them hitting the disk.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.Callable;
+
+
+class FileLookup
+{
+	//outcomes, the errors are the TFTP error codes to answer with
+	static final int FOUND = 0;
+	static final int NOT_FOUND = 1;
+	static final int ACCESS_VIOLATION = 2;
+
+	//declaring local class constants
+	private static final SingleFlight<String,FileLookup> LOOKUPS = new SingleFlight<String,FileLookup>();
+
+	//declaring local instance variables
+	final int error;
+	final BlockCache.FileKey key;	//null unless FOUND
+
+
+	//generic constructor
+	private FileLookup(int error, BlockCache.FileKey key)
+	{
+		this.error = error;
+		this.key = key;
+	}
+
+
+	//check file, sharing the check with any other transfer checking it right now
+	static FileLookup find(final File file) throws IOException
+	{
+		return LOOKUPS.run(file.getAbsolutePath(), new Callable<FileLookup>()
+		{
+			@Override
+			public FileLookup call()
+			{
+				return check(file);
+			}
+		});
+	}
+
+
+	//the checks a RRQ has always made before opening the file
+	private static FileLookup check(File file)
+	{
+		if(!file.exists())
+		{
+			return new FileLookup(NOT_FOUND, null);
+		}
+		if(!file.canRead())
+		{
+			return new FileLookup(ACCESS_VIOLATION, null);
+		}
+		try
+		{
+			return new FileLookup(FOUND, BlockCache.keyFor(file));
+		}
+		catch (NoSuchFileException e)
+		{
+			return new FileLookup(NOT_FOUND, null);
+		}
+		catch (IOException e)
+		{
+			return new FileLookup(ACCESS_VIOLATION, null);
+		}
+	}
+}
@@ -0,0 +1,494 @@
+/**
+*Class:             ImpairmentProfile.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Statistical network impairment for the error simulator, in the
+*					manner of Linux netem. Where the InputStack's errors each hit one
+*					chosen packet once, a profile decides the fate of every packet
+*					it is asked about, separately for each direction (client to
+*					server, server to client):
+*						- random loss, a percentage of packets lost independently
+*						- burst loss, a Gilbert-Elliott model: a good and a bad state
+*						  with their own loss, and the chances of moving between them
+*						- delay, with jitter drawn from a uniform, normal or pareto
+*						  distribution (jitter is free to reorder packets, as in netem)
+*						- reordering, a percentage of packets held back a gap longer
+*						  than the rest so the ones after them overtake them
+*						- duplication, a percentage of packets sent twice
+*
+*					Every decision comes from a Random seeded from the profile's seed,
+*					the session it is used for and the direction, so a run with the same
+*					seed and the same traffic loses, delays and duplicates the same
+*					packets. Each session works through a copy of its own; copies made
+*					from one profile add to the same counters.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class ImpairmentProfile
+{
+	//declaring local class constants
+	public static final int UP = 0;				//client to server
+	public static final int DOWN = 1;			//server to client
+	public static final int UNIFORM = 0;		//jitter distributions
+	public static final int NORMAL = 1;
+	public static final int PARETO = 2;
+	public static final long DEFAULT_SEED = 3303;
+	public static final String PRESETS = "'loss1', 'loss5', 'loss10', 'burst', 'jitter' or 'wan'";
+	private static final String[] DIRECTIONS = {"up", "down"};
+	private static final String[] DISTRIBUTIONS = {"uniform", "normal", "pareto"};
+	private static final double PARETO_ALPHA = 3;			//shape of the pareto tail, mean of jitter/2
+	private static final long DEFAULT_REORDER_GAP = 10;		//ms a reordered packet is held back
+
+	//declaring local instance variables
+	private final Side[] sides = {new Side(), new Side()};
+	private final Counters[] counters;		//shared with every copy
+	private long seed = DEFAULT_SEED;
+
+
+	//what is done to packets going one way, and the state deciding it
+	private static final class Side
+	{
+		double loss = 0;			//chances are 0 to 1
+		double burstEnter = 0;		//good to bad, the burst model is used when this is above 0
+		double burstLeave = 0;		//bad to good
+		double burstLossBad = 1;
+		double burstLossGood = 0;
+		long delay = 0;				//ms
+		long jitter = 0;			//ms
+		int distribution = UNIFORM;
+		double reorder = 0;
+		long reorderGap = DEFAULT_REORDER_GAP;
+		double duplicate = 0;
+		Random random = null;		//set in copies made for a session
+		boolean bad = false;		//burst model state
+
+		Side copy()
+		{
+			Side copy = new Side();
+			copy.loss = loss;
+			copy.burstEnter = burstEnter;
+			copy.burstLeave = burstLeave;
+			copy.burstLossBad = burstLossBad;
+			copy.burstLossGood = burstLossGood;
+			copy.delay = delay;
+			copy.jitter = jitter;
+			copy.distribution = distribution;
+			copy.reorder = reorder;
+			copy.reorderGap = reorderGap;
+			copy.duplicate = duplicate;
+			return copy;
+		}
+
+		boolean isOff()
+		{
+			return loss == 0 && burstEnter == 0 && delay == 0 && jitter == 0 && reorder == 0 && duplicate == 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			if(isOff())
+			{
+				return "off";
+			}
+			List<String> parts = new ArrayList<String>();
+			if(burstEnter > 0)
+			{
+				parts.add("burst loss " + percent(burstEnter) + " in, " + percent(burstLeave) + " out, losing "
+						+ percent(burstLossBad) + " bad / " + percent(burstLossGood) + " good");
+			}
+			else if(loss > 0)
+			{
+				parts.add("loss " + percent(loss));
+			}
+			if(delay > 0 || jitter > 0)
+			{
+				parts.add("delay " + delay + " ms" + (jitter > 0 ? " jitter " + jitter + " ms " + DISTRIBUTIONS[distribution] : ""));
+			}
+			if(reorder > 0)
+			{
+				parts.add("reorder " + percent(reorder) + " by " + reorderGap + " ms");
+			}
+			if(duplicate > 0)
+			{
+				parts.add("duplicate " + percent(duplicate));
+			}
+			return String.join(", ", parts);
+		}
+	}
+
+
+	//what was done to packets going one way
+	private static final class Counters
+	{
+		final LongAdder packets = new LongAdder();
+		final LongAdder lost = new LongAdder();
+		final LongAdder delayed = new LongAdder();
+		final LongAdder reordered = new LongAdder();
+		final LongAdder duplicated = new LongAdder();
+
+		@Override
+		public String toString()
+		{
+			return packets.sum() + " packets, " + lost.sum() + " lost, " + delayed.sum() + " delayed, "
+					+ reordered.sum() + " reordered, " + duplicated.sum() + " duplicated";
+		}
+	}
+
+
+	//generic constructor, nothing impaired
+	public ImpairmentProfile()
+	{
+		counters = new Counters[]{new Counters(), new Counters()};
+	}
+
+
+	private ImpairmentProfile(Counters[] counters)
+	{
+		this.counters = counters;
+	}
+
+
+	//true if no packet is touched
+	public boolean isOff()
+	{
+		return sides[UP].isOff() && sides[DOWN].isOff();
+	}
+
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+
+	//the same settings with decisions of their own for one session, counted with this profile's
+	public ImpairmentProfile forSession(long session)
+	{
+		ImpairmentProfile copy = new ImpairmentProfile(counters);
+		copy.seed = seed;
+		for(int dir=UP; dir<=DOWN; dir++)
+		{
+			copy.sides[dir] = sides[dir].copy();
+			copy.sides[dir].random = new Random(mix(seed + session * 0x9E3779B97F4A7C15L + dir));
+		}
+		return copy;
+	}
+
+
+	//fate of the next packet going in direction: how many copies to send (0 if lost), delays[i] ms from now each
+	public int impair(int direction, long[] delays)
+	{
+		Side side = sides[direction];
+		Counters count = counters[direction];
+		count.packets.increment();
+		if(side.isOff())
+		{
+			delays[0] = 0;
+			return 1;
+		}
+		if(side.random == null)
+		{
+			side.random = new Random(mix(seed + direction));
+		}
+		Random random = side.random;
+
+		//the burst model moves between its states first, then loses with the state's chance
+		boolean lost;
+		if(side.burstEnter > 0)
+		{
+			side.bad = side.bad ? random.nextDouble() >= side.burstLeave : random.nextDouble() < side.burstEnter;
+			lost = random.nextDouble() < (side.bad ? side.burstLossBad : side.burstLossGood);
+		}
+		else
+		{
+			lost = side.loss > 0 && random.nextDouble() < side.loss;
+		}
+		if(lost)
+		{
+			count.lost.increment();
+			return 0;
+		}
+
+		long delay = side.delay;
+		if(side.jitter > 0)
+		{
+			delay = Math.max(0, delay + jitter(side, random));
+		}
+		if(side.reorder > 0 && random.nextDouble() < side.reorder)
+		{
+			delay += side.reorderGap;
+			count.reordered.increment();
+		}
+		if(delay > 0)
+		{
+			count.delayed.increment();
+		}
+		delays[0] = delay;
+		if(side.duplicate > 0 && random.nextDouble() < side.duplicate)
+		{
+			count.duplicated.increment();
+			delays[1] = delay;
+			return 2;
+		}
+		return 1;
+	}
+
+
+	//ms added to (or taken from) one packet's delay
+	private static long jitter(Side side, Random random)
+	{
+		switch(side.distribution)
+		{
+			case NORMAL:
+				return Math.round(random.nextGaussian() * side.jitter);
+			case PARETO:
+				return Math.round((Math.pow(1 - random.nextDouble(), -1 / PARETO_ALPHA) - 1) * side.jitter);
+			default:
+				return Math.round((random.nextDouble() * 2 - 1) * side.jitter);
+		}
+	}
+
+
+	//change the profile from the words of an 'impair' command, IllegalArgumentException says what is wrong with them
+	public void configure(String[] input)
+	{
+		if(input.length == 2 && input[1].equals("off"))
+		{
+			sides[UP] = new Side();
+			sides[DOWN] = new Side();
+			return;
+		}
+		if(input.length == 3 && input[1].equals("seed"))
+		{
+			seed = Long.parseLong(input[2]);
+			return;
+		}
+		if(input.length == 3 && input[1].equals("preset"))
+		{
+			preset(input[2]);
+			return;
+		}
+		if(input.length < 3)
+		{
+			throw new IllegalArgumentException("impair needs a direction ('up', 'down' or 'both') and a setting");
+		}
+
+		int first, last;
+		if(input[1].equals("up"))
+		{
+			first = last = UP;
+		}
+		else if(input[1].equals("down"))
+		{
+			first = last = DOWN;
+		}
+		else if(input[1].equals("both"))
+		{
+			first = UP;
+			last = DOWN;
+		}
+		else
+		{
+			throw new IllegalArgumentException("direction must be 'up', 'down' or 'both'");
+		}
+		for(int dir=first; dir<=last; dir++)
+		{
+			if(input.length == 3 && input[2].equals("off"))
+			{
+				sides[dir] = new Side();
+			}
+			else
+			{
+				configure(sides[dir], input);
+			}
+		}
+	}
+
+
+	//one direction's setting from 'impair DIR SETTING VALUES..'
+	private static void configure(Side side, String[] input)
+	{
+		String setting = input[2];
+		int values = input.length - 3;
+		if(setting.equals("loss") && values == 1)
+		{
+			side.loss = chance(input[3]);
+			side.burstEnter = 0;
+		}
+		else if(setting.equals("burst") && values >= 2 && values <= 4)
+		{
+			side.burstEnter = chance(input[3]);
+			side.burstLeave = chance(input[4]);
+			side.burstLossBad = values >= 3 ? chance(input[5]) : 1;
+			side.burstLossGood = values >= 4 ? chance(input[6]) : 0;
+		}
+		else if(setting.equals("delay") && values >= 1 && values <= 3)
+		{
+			side.delay = millis(input[3]);
+			side.jitter = values >= 2 ? millis(input[4]) : 0;
+			side.distribution = values >= 3 ? distribution(input[5]) : UNIFORM;
+		}
+		else if(setting.equals("reorder") && values >= 1 && values <= 2)
+		{
+			side.reorder = chance(input[3]);
+			side.reorderGap = values >= 2 ? millis(input[4]) : DEFAULT_REORDER_GAP;
+		}
+		else if(setting.equals("dup") && values == 1)
+		{
+			side.duplicate = chance(input[3]);
+		}
+		else
+		{
+			throw new IllegalArgumentException("setting must be 'loss P', 'burst P R [BAD [GOOD]]', 'delay MS [JITTER [DIST]]', 'reorder P [GAP]', 'dup P' or 'off'");
+		}
+	}
+
+
+	//both directions set to one of the PRESETS
+	private void preset(String name)
+	{
+		Side side = new Side();
+		if(name.equals("loss1"))
+		{
+			side.loss = 0.01;
+		}
+		else if(name.equals("loss5"))
+		{
+			side.loss = 0.05;
+		}
+		else if(name.equals("loss10"))
+		{
+			side.loss = 0.10;
+		}
+		//about 3% lost, in bursts of 3 or so
+		else if(name.equals("burst"))
+		{
+			side.burstEnter = 0.01;
+			side.burstLeave = 0.30;
+		}
+		else if(name.equals("jitter"))
+		{
+			side.delay = 20;
+			side.jitter = 10;
+			side.distribution = NORMAL;
+		}
+		else if(name.equals("wan"))
+		{
+			side.delay = 40;
+			side.jitter = 5;
+			side.distribution = NORMAL;
+			side.loss = 0.005;
+			side.reorder = 0.005;
+			side.duplicate = 0.001;
+		}
+		else
+		{
+			throw new IllegalArgumentException("preset must be " + PRESETS);
+		}
+		sides[UP] = side;
+		sides[DOWN] = side.copy();
+	}
+
+
+	//settings, then what has been done so far, a line each
+	public List<String> report()
+	{
+		List<String> lines = new ArrayList<String>();
+		lines.add("Impairment (seed " + seed + "):");
+		for(int dir=UP; dir<=DOWN; dir++)
+		{
+			lines.add("    " + DIRECTIONS[dir] + ": " + sides[dir]);
+		}
+		for(int dir=UP; dir<=DOWN; dir++)
+		{
+			lines.add("    " + DIRECTIONS[dir] + " so far: " + counters[dir]);
+		}
+		return lines;
+	}
+
+
+	//a percentage, '5' or '5%' or '0.5', as a chance from 0 to 1
+	private static double chance(String value)
+	{
+		if(value.endsWith("%"))
+		{
+			value = value.substring(0, value.length() - 1);
+		}
+		double percent;
+		try
+		{
+			percent = Double.parseDouble(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("not a percentage: " + value);
+		}
+		if(!(percent >= 0 && percent <= 100))
+		{
+			throw new IllegalArgumentException("percentage must be from 0 to 100: " + value);
+		}
+		return percent / 100;
+	}
+
+
+	private static long millis(String value)
+	{
+		long ms;
+		try
+		{
+			ms = Long.parseLong(value.endsWith("ms") ? value.substring(0, value.length() - 2) : value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("not a number of ms: " + value);
+		}
+		if(ms < 0)
+		{
+			throw new IllegalArgumentException("ms cannot be negative: " + value);
+		}
+		return ms;
+	}
+
+
+	private static int distribution(String value)
+	{
+		for(int i=0; i<DISTRIBUTIONS.length; i++)
+		{
+			if(DISTRIBUTIONS[i].equals(value))
+			{
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("distribution must be 'uniform', 'normal' or 'pareto'");
+	}
+
+
+	private static String percent(double chance)
+	{
+		String text = String.valueOf(Math.round(chance * 100000) / 1000.0);
+		return (text.endsWith(".0") ? text.substring(0, text.length() - 2) : text) + "%";
+	}
+
+
+	//spread the bits of a seed about, so neighbouring sessions do not start alike
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,377 @@
+/**
+*Class:             LinkShaper.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           A constrained link for the error simulator to forward through, one
+*					for each direction (client to server, server to client) and shared
+*					by every transfer going that way, the way a WAN link is:
+*						- a token bucket, the link's rate and the burst it lets through
+*						  at once
+*						- a bounded FIFO queue in front of it, packets arriving to a full
+*						  queue are dropped (tail drop)
+*						- propagation delay, added once a packet is through the bucket
+*
+*					Nothing is timed by the shaper itself. When a packet arrives it works
+*					out the virtual time the packet leaves the queue, from the packets
+*					still ahead of it and the tokens there will be then, and says how long
+*					from now it reaches the far end; the caller holds it on its TimerWheel
+*					until then. Times are kept in microseconds so small packets on a fast
+*					link are spaced properly even though the wheel ticks in milliseconds.
+*
+*					The engine forwarding packets owns the shaper's state; copies made
+*					from one shaper add to the same counters, which the console reads.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class LinkShaper
+{
+	//declaring local class constants
+	public static final int DEFAULT_QUEUE = 1000;			//packets, as netem's limit
+	public static final int DEFAULT_BURST = 65536;			//bytes, more than any one packet
+	private static final int MAX_QUEUE = 1 << 20;
+	private static final String[] DIRECTIONS = {"up", "down"};
+
+	//declaring local instance variables
+	private final Side[] sides = {new Side(), new Side()};
+	private final Counters[] counters;		//shared with every copy
+
+
+	//one direction's settings and the state of its queue and bucket
+	private static final class Side
+	{
+		long rate = 0;				//bits per second, 0 for no limit
+		long burst = DEFAULT_BURST;	//bytes
+		long delay = 0;				//propagation, ms
+		int queue = DEFAULT_QUEUE;	//packets
+
+		double tokens = -1;			//bytes in the bucket at tokenTime, -1 until the first packet
+		long tokenTime = 0;			//us
+		long lastDeparture = 0;		//us, when the last packet queued is through the bucket
+		long[] departures = null;	//us, packets still in the queue, oldest at head
+		int head = 0;
+		int depth = 0;
+
+		Side copy()
+		{
+			Side copy = new Side();
+			copy.rate = rate;
+			copy.burst = burst;
+			copy.delay = delay;
+			copy.queue = queue;
+			return copy;
+		}
+
+		boolean isOff()
+		{
+			return rate == 0 && delay == 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			if(isOff())
+			{
+				return "off";
+			}
+			return (rate > 0 ? "rate " + rate(rate) + " burst " + burst + " bytes, queue " + queue + " packets" : "rate unlimited")
+					+ ", delay " + delay + " ms";
+		}
+	}
+
+
+	//what the link has done in one direction
+	private static final class Counters
+	{
+		final LongAdder packets = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+		final LongAdder dropped = new LongAdder();
+		final LongAdder queued = new LongAdder();		//packets that had to wait for the bucket
+		final LongAdder waited = new LongAdder();		//us they waited in total
+		volatile int depth = 0;			//packets in the queue when the last one arrived
+		volatile int maxDepth = 0;
+
+		@Override
+		public String toString()
+		{
+			long q = queued.sum();
+			return packets.sum() + " packets, " + bytes.sum() + " bytes, " + dropped.sum() + " tail dropped, queue depth "
+					+ depth + " (max " + maxDepth + "), " + (q == 0 ? 0 : waited.sum() / q / 1000.0) + " ms average wait";
+		}
+	}
+
+
+	//generic constructor, no limit and no delay either way
+	public LinkShaper()
+	{
+		counters = new Counters[]{new Counters(), new Counters()};
+	}
+
+
+	private LinkShaper(Counters[] counters)
+	{
+		this.counters = counters;
+	}
+
+
+	//true if packets go straight through both ways
+	public boolean isOff()
+	{
+		return sides[ImpairmentProfile.UP].isOff() && sides[ImpairmentProfile.DOWN].isOff();
+	}
+
+
+	//the same settings with an empty queue and a full bucket, counted with this shaper's
+	public LinkShaper copy()
+	{
+		LinkShaper copy = new LinkShaper(counters);
+		for(int dir=ImpairmentProfile.UP; dir<=ImpairmentProfile.DOWN; dir++)
+		{
+			copy.sides[dir] = sides[dir].copy();
+		}
+		return copy;
+	}
+
+
+	//a packet of length bytes arrives at now (ms) going in direction: ms until it reaches the far end, -1 if the queue is full
+	public long depart(int direction, int length, long now)
+	{
+		Side side = sides[direction];
+		Counters count = counters[direction];
+		count.packets.increment();
+		count.bytes.add(length);
+		if(side.rate == 0)
+		{
+			return side.delay;
+		}
+		long arrival = now * 1000;
+
+		//packets through the bucket by now have left the queue
+		if(side.departures == null || side.departures.length != side.queue)
+		{
+			side.departures = new long[side.queue];
+			side.head = 0;
+			side.depth = 0;
+		}
+		while(side.depth > 0 && side.departures[side.head] <= arrival)
+		{
+			side.head = (side.head + 1) % side.departures.length;
+			side.depth--;
+		}
+		if(side.depth >= side.queue)
+		{
+			count.dropped.increment();
+			count.depth = side.depth;
+			return -1;
+		}
+
+		//it starts through the bucket once the packets ahead of it are, with the tokens gathered by then
+		double bytesPerUs = side.rate / 8e6;
+		long start = Math.max(arrival, side.lastDeparture);
+		if(side.tokens < 0)
+		{
+			side.tokens = side.burst;
+			side.tokenTime = start;
+		}
+		double tokens = Math.min(side.burst, side.tokens + (start - side.tokenTime) * bytesPerUs);
+		long departure = start;
+		if(tokens >= length)
+		{
+			tokens -= length;
+		}
+		else
+		{
+			departure += (long)Math.ceil((length - tokens) / bytesPerUs);
+			tokens = 0;
+		}
+		side.tokens = tokens;
+		side.tokenTime = departure;
+		side.lastDeparture = departure;
+
+		side.departures[(side.head + side.depth) % side.departures.length] = departure;
+		side.depth++;
+		count.depth = side.depth;
+		if(side.depth > count.maxDepth)
+		{
+			count.maxDepth = side.depth;
+		}
+		if(departure > arrival)
+		{
+			count.queued.increment();
+			count.waited.add(departure - arrival);
+		}
+		//to the nearest ms, the wheel's tick
+		return (departure - arrival + 500) / 1000 + side.delay;
+	}
+
+
+	//change the link from the words of a 'link' command, IllegalArgumentException says what is wrong with them
+	public void configure(String[] input)
+	{
+		if(input.length == 2 && input[1].equals("off"))
+		{
+			sides[ImpairmentProfile.UP] = new Side();
+			sides[ImpairmentProfile.DOWN] = new Side();
+			return;
+		}
+		if(input.length < 3)
+		{
+			throw new IllegalArgumentException("link needs a direction ('up', 'down' or 'both') and a setting");
+		}
+
+		int first, last;
+		if(input[1].equals("up"))
+		{
+			first = last = ImpairmentProfile.UP;
+		}
+		else if(input[1].equals("down"))
+		{
+			first = last = ImpairmentProfile.DOWN;
+		}
+		else if(input[1].equals("both"))
+		{
+			first = ImpairmentProfile.UP;
+			last = ImpairmentProfile.DOWN;
+		}
+		else
+		{
+			throw new IllegalArgumentException("direction must be 'up', 'down' or 'both'");
+		}
+
+		String setting = input[2];
+		int values = input.length - 3;
+		for(int dir=first; dir<=last; dir++)
+		{
+			Side side = sides[dir];
+			if(setting.equals("off") && values == 0)
+			{
+				sides[dir] = new Side();
+			}
+			else if(setting.equals("rate") && values >= 1 && values <= 2)
+			{
+				side.rate = parseRate(input[3]);
+				side.burst = values >= 2 ? number(input[4], 1, Integer.MAX_VALUE, "burst bytes") : DEFAULT_BURST;
+			}
+			else if(setting.equals("delay") && values == 1)
+			{
+				side.delay = number(input[3].endsWith("ms") ? input[3].substring(0, input[3].length() - 2) : input[3], 0, Integer.MAX_VALUE, "ms");
+			}
+			else if(setting.equals("queue") && values == 1)
+			{
+				side.queue = (int)number(input[3], 1, MAX_QUEUE, "packets");
+			}
+			else
+			{
+				throw new IllegalArgumentException("setting must be 'rate R [BURST]', 'delay MS', 'queue N' or 'off'");
+			}
+		}
+	}
+
+
+	//settings, then what has been done so far, a line each
+	public List<String> report()
+	{
+		List<String> lines = new ArrayList<String>();
+		lines.add("Link:");
+		for(int dir=ImpairmentProfile.UP; dir<=ImpairmentProfile.DOWN; dir++)
+		{
+			lines.add("    " + DIRECTIONS[dir] + ": " + sides[dir]);
+		}
+		for(int dir=ImpairmentProfile.UP; dir<=ImpairmentProfile.DOWN; dir++)
+		{
+			lines.add("    " + DIRECTIONS[dir] + " so far: " + counters[dir]);
+		}
+		return lines;
+	}
+
+
+	//bits per second from '2mbit', '512kbit', '1gbit' or a plain number
+	static long parseRate(String value)
+	{
+		String text = value.toLowerCase();
+		long unit = 1;
+		if(text.endsWith("bit"))
+		{
+			text = text.substring(0, text.length() - 3);
+		}
+		if(text.endsWith("k"))
+		{
+			unit = 1000;
+		}
+		else if(text.endsWith("m"))
+		{
+			unit = 1000000;
+		}
+		else if(text.endsWith("g"))
+		{
+			unit = 1000000000;
+		}
+		if(unit != 1)
+		{
+			text = text.substring(0, text.length() - 1);
+		}
+		double rate;
+		try
+		{
+			rate = Double.parseDouble(text) * unit;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("not a rate: " + value + ", try '10mbit' or '512kbit'");
+		}
+		if(!(rate >= 8 && rate <= 1e12))
+		{
+			throw new IllegalArgumentException("rate must be from 8bit to 1000gbit: " + value);
+		}
+		return (long)rate;
+	}
+
+
+	private static long number(String value, long min, long max, String what)
+	{
+		long n;
+		try
+		{
+			n = Long.parseLong(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("not a number of " + what + ": " + value);
+		}
+		if(n < min || n > max)
+		{
+			throw new IllegalArgumentException(what + " must be from " + min + " to " + max + ": " + value);
+		}
+		return n;
+	}
+
+
+	//bits per second the way they are written in
+	private static String rate(long bits)
+	{
+		if(bits >= 1000000000 && bits % 1000000000 == 0)
+		{
+			return bits / 1000000000 + "gbit";
+		}
+		if(bits >= 1000000 && bits % 1000000 == 0)
+		{
+			return bits / 1000000 + "mbit";
+		}
+		if(bits >= 1000 && bits % 1000 == 0)
+		{
+			return bits / 1000 + "kbit";
+		}
+		return bits + "bit";
+	}
+}
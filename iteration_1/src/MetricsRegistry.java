@@ -0,0 +1,375 @@
+/**
+*Class:             MetricsRegistry.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Server-wide counters, for the 'stats' command and for snapshots
+*					written to a file. The listener counts each request as it reads
+*					it (per second as well, for requests/s over the last minute) and
+*					every transfer's TransferStats are added in when it ends: bytes,
+*					blocks, retransmissions, duplicates, timeouts, round trips,
+*					errors sent and received by TFTP error code, and totals for each
+*					client address and each file, so the ones driving the load can
+*					be picked out. Transfers in progress come from the SessionRegistry.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+class MetricsRegistry
+{
+	//declaring local class constants
+	static final int ERROR_CODES = 9;			//TFTP error codes 0 to 8 (RFC 1350, RFC 2347)
+	private static final int RATE_SECONDS = 64;	//seconds of request counts kept, a power of two
+	private static final int RECENT = 32;		//finished transfers kept for the report
+	private static final int MAX_KEYS = 1024;	//clients or files counted one by one, the rest together
+	private static final String OTHERS = "(others)";
+
+	//declaring local instance variables
+	private final long startTime = System.currentTimeMillis();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder blocks = new LongAdder();
+	private final LongAdder retransmits = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder rttSamples = new LongAdder();
+	private final LongAdder rttTotal = new LongAdder();
+	private final AtomicLongArray errorsSent = new AtomicLongArray(ERROR_CODES);
+	private final AtomicLongArray errorsReceived = new AtomicLongArray(ERROR_CODES);
+	private final AtomicLongArray perSecond = new AtomicLongArray(RATE_SECONDS);	//requests in the second in stamp
+	private final AtomicLongArray stamp = new AtomicLongArray(RATE_SECONDS);
+	private final ConcurrentHashMap<String, Totals> clients = new ConcurrentHashMap<String, Totals>();
+	private final ConcurrentHashMap<String, Totals> files = new ConcurrentHashMap<String, Totals>();
+	private final ArrayDeque<TransferStats> recent = new ArrayDeque<TransferStats>();
+
+
+	//a request the listener read, null if it was not a well formed RRQ/WRQ. Called by the listener only
+	void request(TFTPRequest request)
+	{
+		requests.increment();
+		if(request == null)
+		{
+			rejected.increment();
+		}
+		else if(request.isRead())
+		{
+			reads.increment();
+		}
+		else
+		{
+			writes.increment();
+		}
+		long second = System.currentTimeMillis() / 1000;
+		int i = (int)(second & (RATE_SECONDS - 1));
+		if(stamp.get(i) != second)
+		{
+			perSecond.set(i, 0);
+			stamp.set(i, second);
+		}
+		perSecond.incrementAndGet(i);
+	}
+
+
+	//an error the listener sent itself, with no transfer to count it
+	void errorSent(int code)
+	{
+		count(errorsSent, code);
+	}
+
+
+	//add in a transfer that has ended
+	void finished(TransferStats stats)
+	{
+		stats.end();
+		(stats.isCompleted() ? completed : failed).increment();
+		(stats.read ? bytesSent : bytesReceived).add(stats.getBytes());
+		blocks.add(stats.getBlocks());
+		retransmits.add(stats.getRetransmits());
+		duplicates.add(stats.getDuplicates());
+		timeouts.add(stats.getTimeouts());
+		rttSamples.add(stats.getRttSamples());
+		rttTotal.add(stats.getRttTotal());
+		count(errorsSent, stats.getErrorSent());
+		count(errorsReceived, stats.getErrorReceived());
+		String address = stats.client.substring(0, Math.max(0, stats.client.lastIndexOf(':')));
+		totals(clients, address).add(stats);
+		totals(files, stats.file).add(stats);
+		synchronized(recent)
+		{
+			if(recent.size() == RECENT)
+			{
+				recent.removeFirst();
+			}
+			recent.addLast(stats);
+		}
+	}
+
+
+	//requests per second, averaged over the last seconds (at most RATE_SECONDS)
+	double requestRate(int seconds)
+	{
+		seconds = Math.max(1, Math.min(RATE_SECONDS - 1, seconds));
+		long now = System.currentTimeMillis() / 1000;
+		long n = 0;
+		for(long s = now - seconds + 1; s <= now; s++)
+		{
+			int i = (int)(s & (RATE_SECONDS - 1));
+			if(stamp.get(i) == s)
+			{
+				n += perSecond.get(i);
+			}
+		}
+		return n / (double)seconds;
+	}
+
+
+	//the report printed by the 'stats' command, a line each
+	List<String> report(List<SessionRegistry.Entry> active)
+	{
+		List<String> lines = new ArrayList<String>();
+		long rtts = rttSamples.sum();
+		lines.add("Up " + (System.currentTimeMillis() - startTime) / 1000 + " s");
+		lines.add("Requests: " + requests.sum() + " (RRQ " + reads.sum() + ", WRQ " + writes.sum() + ", rejected " + rejected.sum() + ")"
+				+ String.format(", %.1f/s last 10 s, %.1f/s last 60 s", requestRate(10), requestRate(60)));
+		lines.add("Transfers: " + active.size() + " active, " + completed.sum() + " completed, " + failed.sum() + " failed");
+		lines.add("Bytes: " + bytesSent.sum() + " sent, " + bytesReceived.sum() + " received, in " + blocks.sum() + " blocks");
+		lines.add("Resent " + retransmits.sum() + ", duplicates " + duplicates.sum() + ", timeouts " + timeouts.sum()
+				+ ", mean rtt " + (rtts == 0 ? "-" : (rttTotal.sum() / rtts) + " us over " + rtts + " samples"));
+		lines.add("Errors sent: " + errors(errorsSent));
+		lines.add("Errors received: " + errors(errorsReceived));
+		lines.add("Top clients by bytes: " + top(clients, 5));
+		lines.add("Top files by bytes: " + top(files, 5));
+		for(SessionRegistry.Entry entry : active)
+		{
+			lines.add("	active  " + entry.name + " || " + entry.executor + " || " + entry.stats);
+		}
+		for(TransferStats stats : recent())
+		{
+			lines.add("	" + (stats.isCompleted() ? "done    " : "failed  ") + stats.name + " || " + stats);
+		}
+		return lines;
+	}
+
+
+	//everything the report has, as one JSON object
+	String snapshot(List<SessionRegistry.Entry> active)
+	{
+		StringBuilder out = new StringBuilder(4096);
+		out.append("{\"time\":").append(System.currentTimeMillis())
+				.append(",\"uptimeMs\":").append(System.currentTimeMillis() - startTime)
+				.append(",\"requests\":{\"total\":").append(requests.sum())
+				.append(",\"rrq\":").append(reads.sum())
+				.append(",\"wrq\":").append(writes.sum())
+				.append(",\"rejected\":").append(rejected.sum())
+				.append(",\"perSecond10s\":").append(requestRate(10))
+				.append(",\"perSecond60s\":").append(requestRate(60)).append('}')
+				.append(",\"transfers\":{\"active\":").append(active.size())
+				.append(",\"completed\":").append(completed.sum())
+				.append(",\"failed\":").append(failed.sum()).append('}')
+				.append(",\"bytesSent\":").append(bytesSent.sum())
+				.append(",\"bytesReceived\":").append(bytesReceived.sum())
+				.append(",\"blocks\":").append(blocks.sum())
+				.append(",\"retransmits\":").append(retransmits.sum())
+				.append(",\"duplicates\":").append(duplicates.sum())
+				.append(",\"timeouts\":").append(timeouts.sum())
+				.append(",\"rttSamples\":").append(rttSamples.sum())
+				.append(",\"rttTotalUs\":").append(rttTotal.sum())
+				.append(",\"errorsSent\":");
+		json(out, errorsSent);
+		out.append(",\"errorsReceived\":");
+		json(out, errorsReceived);
+		out.append(",\"clients\":");
+		json(out, clients);
+		out.append(",\"files\":");
+		json(out, files);
+		out.append(",\"active\":[");
+		for(int i = 0; i < active.size(); i++)
+		{
+			out.append(i == 0 ? "" : ",");
+			active.get(i).stats.toJson(out);
+		}
+		out.append("],\"recent\":[");
+		List<TransferStats> finished = recent();
+		for(int i = 0; i < finished.size(); i++)
+		{
+			out.append(i == 0 ? "" : ",");
+			finished.get(i).toJson(out);
+		}
+		return out.append("]}").toString();
+	}
+
+
+	//s as a JSON string
+	static String quote(String s)
+	{
+		StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\')
+			{
+				out.append('\\').append(c);
+			}
+			else if(c < 0x20)
+			{
+				out.append(String.format("\\u%04x", (int)c));
+			}
+			else
+			{
+				out.append(c);
+			}
+		}
+		return out.append('"').toString();
+	}
+
+
+	//copy of the finished transfers kept, oldest first
+	private List<TransferStats> recent()
+	{
+		synchronized(recent)
+		{
+			return new ArrayList<TransferStats>(recent);
+		}
+	}
+
+
+	//add one to code's count, if it is a TFTP error code
+	private static void count(AtomicLongArray counts, int code)
+	{
+		if(code >= 0 && code < ERROR_CODES)
+		{
+			counts.incrementAndGet(code);
+		}
+	}
+
+
+	//totals for key, OTHERS once MAX_KEYS keys are counted
+	private static Totals totals(ConcurrentHashMap<String, Totals> map, String key)
+	{
+		Totals totals = map.get(key);
+		if(totals == null)
+		{
+			if(map.size() >= MAX_KEYS)
+			{
+				key = OTHERS;
+			}
+			Totals made = new Totals();
+			totals = map.putIfAbsent(key, made);
+			if(totals == null)
+			{
+				totals = made;
+			}
+		}
+		return totals;
+	}
+
+
+	//"code xN, ..." for every code counted
+	private static String errors(AtomicLongArray counts)
+	{
+		StringBuilder out = new StringBuilder();
+		for(int code = 0; code < ERROR_CODES; code++)
+		{
+			long n = counts.get(code);
+			if(n > 0)
+			{
+				out.append(out.length() == 0 ? "" : ", ").append(code).append(" x").append(n);
+			}
+		}
+		return out.length() == 0 ? "none" : out.toString();
+	}
+
+
+	//the n keys with the most bytes, as "key (bytes B, transfers)"
+	private static String top(ConcurrentHashMap<String, Totals> map, int n)
+	{
+		List<Map.Entry<String, Totals>> sorted = new ArrayList<Map.Entry<String, Totals>>(map.entrySet());
+		Collections.sort(sorted, new Comparator<Map.Entry<String, Totals>>()
+		{
+			@Override
+			public int compare(Map.Entry<String, Totals> a, Map.Entry<String, Totals> b)
+			{
+				return Long.compare(b.getValue().bytes.sum(), a.getValue().bytes.sum());
+			}
+		});
+		StringBuilder out = new StringBuilder();
+		for(int i = 0; i < Math.min(n, sorted.size()); i++)
+		{
+			Totals t = sorted.get(i).getValue();
+			out.append(i == 0 ? "" : ", ").append(sorted.get(i).getKey())
+					.append(" (").append(t.bytes.sum()).append(" B, ").append(t.transfers.sum()).append(")");
+		}
+		return out.length() == 0 ? "none" : out.toString();
+	}
+
+
+	//[n0, n1, ...] for each error code
+	private static void json(StringBuilder out, AtomicLongArray counts)
+	{
+		out.append('[');
+		for(int code = 0; code < counts.length(); code++)
+		{
+			out.append(code == 0 ? "" : ",").append(counts.get(code));
+		}
+		out.append(']');
+	}
+
+
+	//{"key":{"bytes":..,"transfers":..,"failed":..}, ...}
+	private static void json(StringBuilder out, ConcurrentHashMap<String, Totals> map)
+	{
+		out.append('{');
+		boolean first = true;
+		for(Map.Entry<String, Totals> entry : map.entrySet())
+		{
+			Totals t = entry.getValue();
+			out.append(first ? "" : ",").append(quote(entry.getKey()))
+					.append(":{\"bytes\":").append(t.bytes.sum())
+					.append(",\"transfers\":").append(t.transfers.sum())
+					.append(",\"failed\":").append(t.failed.sum()).append('}');
+			first = false;
+		}
+		out.append('}');
+	}
+
+
+	//what one client or file added up to
+	private static class Totals
+	{
+		final LongAdder bytes = new LongAdder();
+		final LongAdder transfers = new LongAdder();
+		final LongAdder failed = new LongAdder();
+
+		void add(TransferStats stats)
+		{
+			bytes.add(stats.getBytes());
+			transfers.increment();
+			if(!stats.isCompleted())
+			{
+				failed.increment();
+			}
+		}
+	}
+}
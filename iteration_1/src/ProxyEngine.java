@@ -0,0 +1,640 @@
+/**
+*Class:             ProxyEngine.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.4
+*
+*Purpose:           Error simulator engine for TFTPHost that forwards any number of
+*					transfers at once instead of one client/server pair. Every RRQ or
+*					WRQ received on the host's port opens a session with a
+*					DatagramChannel of its own (the TID the server sees as the
+*					client's, and the client as the server's), and all channels are
+*					served by one Selector on one thread, the way TFTPSelectorEngine
+*					serves the server's transfers.
+*
+*					Each session works through its own copy of the host's InputStack,
+*					taking the rule for each packet from it by the packet's type,
+*					block number and direction, as errorSimHandle() does. Nothing
+*					waits: a delayed packet, or the second copy of a duplicated one,
+*					is held in a pooled buffer until it is due on a TimerWheel and
+*					sent by the selector thread then, to the millisecond, while
+*					everything else keeps being forwarded. Packets that go straight
+*					through are sent from the buffer they were received into.
+*
+*					With an ImpairmentProfile set, every packet a session forwards is
+*					also put through a copy of the profile made for that session:
+*					lost, held for its delay, or sent twice as the profile decides.
+*					Before that, with a LinkShaper set, it queues for the emulated link
+*					its direction shares with every other session, and is held until
+*					it would reach the far end of it.
+*
+*
+*Update Log:		v1.0.4
+*						- the error for a packet taken from the session's InputStack index, any of them, not just the top
+*					v1.0.3
+*						- packets go through a LinkShaper (rate, queue, propagation delay) shared by all sessions
+*					v1.0.2
+*						- packets forwarded through each session's own copy of the ImpairmentProfile
+*					v1.0.1
+*						- held packets wait on a TimerWheel instead of a PriorityQueue
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import errorhelpers.PacketCodec;
+import errorhelpers.TrashFactory;
+import inputs.Input;
+import inputs.InputStack;
+import ui.Log;
+import ui.UIFramework;
+
+
+public class ProxyEngine extends Thread
+{
+	//declaring local class constants
+	private static final int RECEIVE_BUFFER_SIZE = PacketCodec.MAX_BLKSIZE + 5;	//larger than any packet, so oversize ones are passed on whole
+	private static final long IDLE_TIMEOUT = 30000;		//ms without a packet before a session is closed
+	private static final long SWEEP_INTERVAL = 1000;	//most ms between looks for idle sessions
+	private static final long DUPLICATE_GAP = 10;		//ms between a packet and its duplicate
+	private static final int MAX_READS_PER_KEY = 16;	//packets drained per channel per pass, keeps sessions fair
+
+	//declaring local instance variables
+	private final Selector selector;
+	private final DatagramChannel listen;
+	private final int serverPort;
+	private final UIFramework console;
+	private final Log log;
+	private volatile InputStack faults;		//copied for each new session, never changed once handed over
+	private volatile ImpairmentProfile impairment = null;	//the same, null if nothing is impaired
+	private volatile LinkShaper link = null;	//owned by the selector thread once handed over, null for none
+	private final long[] fates = new long[2];	//delays of the copies of one packet, from the impairment
+	private final ByteBuffer in = BufferPool.SHARED.takeDirect(RECEIVE_BUFFER_SIZE);
+	private final PacketCodec codec = new PacketCodec();
+	private final TimerWheel<Held> held = new TimerWheel<Held>();
+	private long nextSweep = 0;
+	private volatile boolean running = true;
+	private final Set<Session> sessions = Collections.newSetFromMap(new ConcurrentHashMap<Session,Boolean>());
+
+	//totals, written by the selector thread only
+	private volatile long sessionsOpened, forwarded, dropped, delayed, duplicated, altered, strays;
+	private volatile int waiting = 0;	//packets held, the wheel's size for other threads
+
+
+	//a packet waiting to be sent
+	private static final class Held
+	{
+		final ByteBuffer data;		//from the BufferPool, given back once sent
+		final Session via;
+		final SocketAddress to;
+
+		Held(ByteBuffer data, Session via, SocketAddress to)
+		{
+			this.data = data;
+			this.via = via;
+			this.to = to;
+		}
+	}
+
+
+	//one client and the server transfer it is talking to
+	private final class Session
+	{
+		final String name;
+		final DatagramChannel channel;
+		final InetSocketAddress client;
+		final InetSocketAddress serverListen;	//where the request went
+		InetSocketAddress server = null;		//the server's TID, from its first answer
+		final InputStack rules;
+		final ImpairmentProfile impairment;		//null if packets go straight through
+		final long opened = System.currentTimeMillis();
+		long lastActive = opened;
+		long packets = 0;
+		boolean closed = false;
+
+		Session(String name, DatagramChannel channel, InetSocketAddress client, InputStack rules, ImpairmentProfile impairment)
+		{
+			this.name = name;
+			this.channel = channel;
+			this.client = client;
+			this.serverListen = new InetSocketAddress(client.getAddress(), serverPort);
+			this.rules = rules;
+			this.impairment = impairment;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " client " + client.getAddress().getHostAddress() + ":" + client.getPort()
+					+ " server " + (server == null ? "-" : server.getPort()) + " via " + channel.socket().getLocalPort()
+					+ " || " + packets + " packets, " + rules.length() + " rules left, idle "
+					+ (System.currentTimeMillis() - lastActive) + " ms";
+		}
+	}
+
+
+	//generic constructor, requests are received on listenPort and passed to serverPort on the client's machine
+	public ProxyEngine(int listenPort, int serverPort, UIFramework console, Log log, InputStack faults) throws IOException
+	{
+		super("Proxy engine");
+		setDaemon(true);
+		this.serverPort = serverPort;
+		this.console = console;
+		this.log = log;
+		this.faults = faults;
+		selector = Selector.open();
+		listen = DatagramChannel.open();
+		listen.bind(new InetSocketAddress(listenPort));
+		listen.configureBlocking(false);
+		listen.register(selector, SelectionKey.OP_READ, null);
+	}
+
+
+	//rules new sessions start with, sessions already open keep theirs
+	public void setFaults(InputStack faults)
+	{
+		this.faults = faults;
+	}
+
+
+	//impairment new sessions start with, null or off for none, sessions already open keep theirs
+	public void setImpairment(ImpairmentProfile impairment)
+	{
+		this.impairment = impairment;
+	}
+
+
+	//link every session forwards through from now on, with an empty queue, null or off for none
+	public void setLink(LinkShaper link)
+	{
+		this.link = link;
+	}
+
+
+	//port requests are received on
+	public int getListenPort()
+	{
+		return listen.socket().getLocalPort();
+	}
+
+
+	//stop forwarding, open sessions are abandoned
+	public void shutdown()
+	{
+		running = false;
+		selector.wakeup();
+	}
+
+
+	//totals, then a line per open session
+	public List<String> report()
+	{
+		List<String> lines = new ArrayList<String>();
+		lines.add("Sessions: " + sessions.size() + " open, " + sessionsOpened + " opened || forwarded " + forwarded
+				+ ", dropped " + dropped + ", delayed " + delayed + ", duplicated " + duplicated
+				+ ", altered " + altered + ", unknown TID " + strays + " || held " + waiting);
+		for(Session session : sessions)
+		{
+			lines.add("    " + session);
+		}
+		ImpairmentProfile profile = impairment;
+		if(profile != null && !profile.isOff())
+		{
+			lines.addAll(profile.report());
+		}
+		LinkShaper shaper = link;
+		if(shaper != null && !shaper.isOff())
+		{
+			lines.addAll(shaper.report());
+		}
+		return lines;
+	}
+
+
+	@Override
+	public void run()
+	{
+		console.print("Proxy engine forwarding requests from port " + getListenPort() + " to port " + serverPort);
+		try
+		{
+			while(running)
+			{
+				long now = System.currentTimeMillis();
+				long wake = Math.min(nextSweep, held.nextDue());
+				if(wake <= now)
+				{
+					selector.selectNow();
+				}
+				else
+				{
+					selector.select(wake - now);
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					if(key.isValid() && key.isReadable())
+					{
+						if(key.attachment() == null)
+						{
+							accept();
+						}
+						else
+						{
+							read((Session)key.attachment());
+						}
+					}
+				}
+
+				now = System.currentTimeMillis();
+				release(now);
+				if(now >= nextSweep)
+				{
+					nextSweep = now + SWEEP_INTERVAL;
+					sweep(now);
+				}
+			}
+		}
+		catch (ClosedSelectorException e)
+		{
+			//shutting down
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			close();
+		}
+	}
+
+
+	//new requests on the host's port, each opens a session
+	private void accept() throws IOException
+	{
+		for(int i=0; i<MAX_READS_PER_KEY; i++)
+		{
+			in.clear();
+			InetSocketAddress from = (InetSocketAddress)listen.receive(in);
+			if(from == null)
+			{
+				return;
+			}
+			in.flip();
+			int opcode = in.remaining() >= 2 ? in.getShort(0) & 0xFFFF : -1;
+			if(opcode != PacketCodec.RRQ && opcode != PacketCodec.WRQ)
+			{
+				log.debug("Proxy: not a request, dropped, from ", from);
+				strays++;
+				continue;
+			}
+
+			//the session's own rules
+			InputStack rules = faults.copy();
+			DatagramChannel channel = DatagramChannel.open();
+			channel.bind(null);
+			channel.configureBlocking(false);
+			ImpairmentProfile profile = impairment;
+			sessionsOpened++;
+			Session session = new Session("Session " + sessionsOpened, channel, from, rules,
+					profile == null || profile.isOff() ? null : profile.forSession(sessionsOpened));
+			channel.register(selector, SelectionKey.OP_READ, session);
+			sessions.add(session);
+			log.info("Proxy: " + session.name + " opened for " + (opcode == PacketCodec.RRQ ? "RRQ" : "WRQ")
+					+ " from " + from + ", " + rules.length() + " rules");
+			forward(session, session.serverListen);
+		}
+	}
+
+
+	//packets from either end of one session
+	private void read(Session session)
+	{
+		try
+		{
+			for(int i=0; i<MAX_READS_PER_KEY && !session.closed; i++)
+			{
+				in.clear();
+				InetSocketAddress from = (InetSocketAddress)session.channel.receive(in);
+				if(from == null)
+				{
+					return;
+				}
+				in.flip();
+
+				SocketAddress to;
+				if(from.equals(session.client))
+				{
+					//before the server has answered, the client can only be repeating its request
+					to = session.server != null ? session.server : session.serverListen;
+				}
+				else if(from.equals(session.server))
+				{
+					to = session.client;
+				}
+				else if(session.server == null && from.getAddress().equals(session.serverListen.getAddress()))
+				{
+					session.server = from;
+					to = session.client;
+				}
+				else
+				{
+					log.debug("Proxy: packet from unknown TID dropped, ", from);
+					strays++;
+					continue;
+				}
+				forward(session, to);
+			}
+		}
+		catch (IOException e)
+		{
+			console.print("Proxy: " + session.name + " I/O failure: " + e.getMessage());
+			end(session);
+		}
+	}
+
+
+	//the packet in 'in' on its way to 'to', through the first of the session's rules if it is meant for it
+	private void forward(Session session, SocketAddress to) throws IOException
+	{
+		session.lastActive = System.currentTimeMillis();
+		session.packets++;
+		Input rule = null;
+		if(session.rules.length() != 0)
+		{
+			PacketCodec packet = wrap();
+			rule = session.rules.take(packet.opcode(), packet.block(), to.equals(session.client) ? Input.DIR_TO_CLIENT : Input.DIR_TO_SERVER);
+		}
+		if(rule == null)
+		{
+			pass(session, in, to);
+			return;
+		}
+		altered++;
+		log.info("Proxy: " + session.name + " " + rule.toFancyString());
+		switch(rule.getMode())
+		{
+			case Input.ERR_DELAY:
+				delayed++;
+				hold(session, to, in, session.lastActive + rule.getDelay()*1000L);
+				break;
+			case Input.ERR_DUPLICATE:
+				duplicated++;
+				hold(session, to, in, session.lastActive + DUPLICATE_GAP);
+				pass(session, in, to);
+				break;
+			case Input.ERR_LOSE:
+				dropped++;
+				break;
+			case Input.ERR_MODE:
+				rebuildRequest(rule.getNewMode());
+				pass(session, in, to);
+				break;
+			case Input.ERR_ADD_DATA:
+				addGarbage(rule.getExtraBytes());
+				pass(session, in, to);
+				break;
+			case Input.ERR_OPCODE:
+				changeOpcode(rule.getOpcode());
+				pass(session, in, to);
+				break;
+			case Input.ERR_TID:
+				pass(session, in, new InetSocketAddress(((InetSocketAddress)to).getAddress(), rule.getTID()));
+				break;
+			case Input.ERR_BLOCKNUM:
+				wrap().putBlock(rule.getAlteredBlockNum());
+				in.limit(Math.max(in.limit(), PacketCodec.HEADER));
+				pass(session, in, to);
+				break;
+			default:
+				pass(session, in, to);
+				break;
+		}
+	}
+
+
+	//the codec around the packet in 'in'
+	private PacketCodec wrap()
+	{
+		return codec.wrap(in);
+	}
+
+
+	//the request in 'in' again with mode in place of its own, filename and options kept
+	private void rebuildRequest(String mode)
+	{
+		PacketCodec request = wrap();
+		int opcode = request.opcode();
+		String fileName = request.fileName();
+		Map<String,String> options = request.options();
+		if(fileName == null)
+		{
+			fileName = "";
+		}
+		if(mode == null)
+		{
+			mode = "";
+		}
+		in.clear();
+		in.limit(codec.wrap(in).putRequest(opcode, fileName, mode, options));
+	}
+
+
+	//extra bytes of garbage after the packet in 'in', there is always room for them in the receive buffer
+	private void addGarbage(int extra)
+	{
+		int length = Math.max(in.limit(), PacketCodec.HEADER);
+		extra = Math.min(extra, in.capacity() - length);
+		byte[] trash = (new TrashFactory()).produce(extra);
+		for(int i = in.limit(); i < length; i++)
+		{
+			in.put(i, (byte)0);
+		}
+		in.limit(length + extra);
+		in.position(length);
+		in.put(trash);
+		in.position(0);
+	}
+
+
+	//the opcode of the packet in 'in' changed where it is, an ACK keeps just its header
+	private void changeOpcode(int opcode)
+	{
+		int old = in.remaining() >= 2 ? in.getShort(0) & 0xFFFF : -1;
+		if(old == PacketCodec.RRQ || old == PacketCodec.WRQ)
+		{
+			PacketCodec request = wrap();
+			String mode = request.mode();
+			String fileName = request.fileName();
+			Map<String,String> options = request.options();
+			in.clear();
+			in.limit(codec.wrap(in).putRequest(opcode & 0xFF, fileName == null ? "" : fileName, mode == null ? "" : mode, options));
+			return;
+		}
+		if(old == PacketCodec.ACK)
+		{
+			in.limit(Math.min(in.limit(), PacketCodec.HEADER));
+		}
+		in.put(0, (byte)((opcode >> 8) & 0xFF));
+		in.put(1, (byte)(opcode & 0xFF));
+	}
+
+
+	//a copy of data kept in a pooled buffer until due
+	private void hold(Session session, SocketAddress to, ByteBuffer data, long due)
+	{
+		ByteBuffer copy = BufferPool.SHARED.takeDirect(data.remaining());
+		copy.put(data.duplicate());
+		copy.flip();
+		held.schedule(new Held(copy, session, to), due);
+		waiting = held.size();
+	}
+
+
+	//send every held packet that is due
+	private void release(long now)
+	{
+		Held h;
+		while((h = held.poll(now)) != null)
+		{
+			waiting = held.size();
+			if(!h.via.closed)
+			{
+				try
+				{
+					send(h.via, h.data, h.to);
+				}
+				catch (IOException e)
+				{
+					console.print("Proxy: " + h.via.name + " could not send a held packet: " + e.getMessage());
+				}
+			}
+			BufferPool.SHARED.give(h.data);
+		}
+	}
+
+
+	//data on its way through the link and the session's impairment: lost, held until due, or sent now
+	private void pass(Session session, ByteBuffer data, SocketAddress to) throws IOException
+	{
+		int direction = to.equals(session.client) ? ImpairmentProfile.DOWN : ImpairmentProfile.UP;
+
+		//the link's queue first, a packet it has no room for goes no further
+		long wait = 0;
+		LinkShaper shaper = link;
+		if(shaper != null)
+		{
+			wait = shaper.depart(direction, data.remaining(), session.lastActive);
+			if(wait < 0)
+			{
+				return;
+			}
+		}
+		int copies = 1;
+		fates[0] = 0;
+		if(session.impairment != null)
+		{
+			copies = session.impairment.impair(direction, fates);
+		}
+		for(int i=0; i<copies; i++)
+		{
+			if(wait + fates[i] == 0)
+			{
+				send(session, data, to);
+			}
+			else
+			{
+				hold(session, to, data, session.lastActive + wait + fates[i]);
+			}
+		}
+	}
+
+
+	//data, from its position to its limit, out of the session's channel
+	private void send(Session session, ByteBuffer data, SocketAddress to) throws IOException
+	{
+		int position = data.position();
+		session.channel.send(data, to);
+		data.position(position);
+		forwarded++;
+		log.debug("Proxy: " + session.name + " passed ", data.remaining());
+	}
+
+
+	//close sessions nobody has sent anything on for a while
+	private void sweep(long now)
+	{
+		for(Session session : sessions)
+		{
+			if(now - session.lastActive > IDLE_TIMEOUT)
+			{
+				log.info("Proxy: " + session.name + " idle, closed after " + session.packets + " packets");
+				end(session);
+			}
+		}
+	}
+
+
+	private void end(Session session)
+	{
+		if(session.closed)
+		{
+			return;
+		}
+		session.closed = true;
+		sessions.remove(session);
+		SelectionKey key = session.channel.keyFor(selector);
+		if(key != null)
+		{
+			key.cancel();
+		}
+		try
+		{
+			session.channel.close();
+		}
+		catch (IOException e) {}
+	}
+
+
+	//channels closed and held buffers given back
+	private void close()
+	{
+		for(Session session : sessions)
+		{
+			end(session);
+		}
+		try
+		{
+			listen.close();
+			selector.close();
+		}
+		catch (IOException e) {}
+		for(Held h : held.clear())
+		{
+			BufferPool.SHARED.give(h.data);
+		}
+		waiting = 0;
+		BufferPool.SHARED.give(in);
+		console.print("Proxy engine stopped");
+	}
+}
@@ -0,0 +1,319 @@
+/**
+*Class:             ReadSession.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.1.8
+*
+*Purpose:           Serves a RRQ inside TFTPSelectorEngine by:
+*						-Sending DATA
+*						-Receiving ACK
+*					Mirrors TFTPReadThread, one state object per transfer.
+*					The file is memory mapped and each DATA is sent as a
+*					gathering write of a reused header plus a slice of the
+*					mapping, so the payload is never copied onto the heap.
+*
+*
+*Update Log:		v1.1.8
+*						- blocks, bytes, duplicate ACKs and completion counted in the session's TransferStats
+*					v1.1.7
+*						- prints to any UIFramework console
+*					v1.1.6
+*						- made from a TFTPRequest
+*					v1.1.5
+*						- DATA header written with PacketCodec
+*					v1.1.4
+*						- DATA header is a pooled direct buffer, given back when the session ends
+*					v1.1.3
+*						- DATA and OACK sends are timed for the retransmission timer
+*					v1.1.2
+*						- windowsize option (RFC 7440), up to windowSize DATA in flight
+*						- go back to the block after the client's last ACK on a gap or timeout
+*					v1.1.1
+*						- blksize option (RFC 2348), answered with an OACK
+*					v1.1.0
+*						- file is memory mapped instead of read through TFTPReader
+*						- DATA sent with a gathering write on the (now connected) channel
+*					v1.0.1
+*						- file is streamed from TFTPReader, closed when the session ends
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
+
+
+class ReadSession extends TransferSession
+{
+	//declaring local class constants
+	private static final long MAP_WINDOW = 64L * 1024 * 1024;	//bytes mapped at once, files can be larger than one mapping
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	//declaring local instance variables
+	private final File serverDump;
+	private final ByteBuffer header = BufferPool.SHARED.takeDirect(PacketCodec.HEADER);
+	private final ByteBuffer[] dataPacket = {header, null};
+	private FileChannel file;
+	private long fileSize;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private SendWindow sendWindow;
+	private long highestSent = 0;		//blocks up to here have gone out at least once
+
+
+	//generic constructor
+	ReadSession(DatagramChannel channel, TFTPRequest request, String name, UIFramework console, boolean verbose, File serverDump)
+	{
+		super(channel, request, name, console, verbose);
+		this.serverDump = serverDump;
+	}
+
+
+	@Override
+	void start() throws IOException
+	{
+		if(verbose)
+		{
+			console.print("Server: " + name + " RRQ parsed for:");
+			console.print("	Filename: " + fileName);
+			console.print("	Mode: " + mode);
+		}
+		if(!validMode())
+		{
+			sendError(4, "Invalid Mode", client);
+			finish();
+			return;
+		}
+
+		File path = new File(serverDump.getAbsolutePath() + "/" + fileName);
+		if(!path.exists())
+		{
+			sendError(1, "", client);
+			finish();
+			return;
+		}
+		if(!path.canRead())
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+		try
+		{
+			file = FileChannel.open(path.toPath(), StandardOpenOption.READ);
+			fileSize = file.size();
+		}
+		catch (NoSuchFileException e)
+		{
+			sendError(1, "", client);
+			finish();
+			return;
+		}
+		catch (AccessDeniedException e)
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+		catch (IOException e)
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+
+		//gathering writes need a connected channel, this also leaves other TIDs to the kernel
+		channel.connect(client);
+
+		//blksize/windowsize options: OACK first, DATA 1 once the client ACKs block 0
+		boolean negotiated = negotiateOptions();
+		sendWindow = new SendWindow(windowSize);
+		if(negotiated)
+		{
+			blockNum = 0;
+			send(oack());
+			rtt.sent(0, false);
+			return;
+		}
+		blockNum = 1;
+		fillWindow();
+	}
+
+
+	//the part of the file that goes in the n'th block (blockNum before it wraps)
+	private ByteBuffer block(long n) throws IOException
+	{
+		long offset = (n - 1) * blockSize;
+		if(offset >= fileSize)
+		{
+			//file was a multiple of the block size (or empty), finish with a 0 byte block
+			return EMPTY;
+		}
+		int length = (int)Math.min(blockSize, fileSize - offset);
+
+		//map the next stretch of the file if this block is outside the current one
+		if(window == null || offset < windowStart || offset + length > windowStart + window.capacity())
+		{
+			windowStart = offset;
+			window = file.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, fileSize - offset));
+		}
+
+		ByteBuffer slice = window.duplicate();
+		slice.position((int)(offset - windowStart));
+		slice.limit(slice.position() + length);
+		return slice.slice();
+	}
+
+
+	//send every block the window allows, starting from where it says
+	private void fillWindow() throws IOException
+	{
+		while(sendWindow.canSend() && !isDone())
+		{
+			sendBlock(sendWindow.next());
+			sendWindow.sent();
+		}
+	}
+
+
+	//build and send the DATA for block n
+	private void sendBlock(long n) throws IOException
+	{
+		ByteBuffer data;
+		try
+		{
+			data = block(n);
+		}
+		catch (IOException e)
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+		if(data.remaining() < blockSize)
+		{
+			sendWindow.lastBlock(n);
+		}
+
+		/*
+				2 bytes    2 bytes       n bytes
+				---------------------------------
+			 DATA  | 03    |   Block #  |    Data    |
+				---------------------------------
+		 */
+		header.clear();
+		codec.wrap(header).putDATA((int)n, 0);
+		header.limit(PacketCodec.HEADER);
+		if(n > highestSent)
+		{
+			stats.block(data.remaining());
+		}
+		dataPacket[1] = data;
+		send(dataPacket);
+		rtt.sent(n, n <= highestSent);
+		highestSent = Math.max(highestSent, n);
+	}
+
+
+	@Override
+	void finish()
+	{
+		if(file != null)
+		{
+			try
+			{
+				file.close();
+			}
+			catch (IOException e)
+			{
+				//mapping is released by the GC either way
+			}
+		}
+		window = null;
+		if(!isDone())
+		{
+			BufferPool.SHARED.give(header);
+		}
+		super.finish();
+	}
+
+
+	@Override
+	void received(byte[] data, int length, InetSocketAddress from) throws IOException
+	{
+		if(!fromClient(from))
+		{
+			finish();
+			return;
+		}
+		int check = ServerThread.checkPacket(data, length, PacketCodec.ACK, blockNum, PacketCodec.HEADER);
+		if(check != ServerThread.PACKET_EXPECTED && check != ServerThread.PACKET_DUPLICATE)
+		{
+			reject(check, data, length, from, "Length of the ACK is over 4.");
+			return;
+		}
+
+		//still waiting for the OACK to be acknowledged
+		if(blockNum == 0)
+		{
+			if(check == ServerThread.PACKET_DUPLICATE)
+			{
+				duplicate();
+				return;
+			}
+			blockNum = 1;
+			rtt.answered(0);
+			fillWindow();
+			return;
+		}
+
+		//the client ACKs the last block of a window, or the last one it got in order
+		int outcome = sendWindow.ack(PacketCodec.block(data, length));
+		if(outcome == SendWindow.ACK_IGNORED)
+		{
+			stats.duplicate();
+			if(verbose)
+			{
+				console.print("Server: " + name + " received duplicate.");
+			}
+			return;
+		}
+		rtt.answered(sendWindow.acked());
+		if(sendWindow.isComplete())
+		{
+			stats.completed();
+			console.print("Server: " + name + " Read Request has completed.");
+			finish();
+			return;
+		}
+		fillWindow();
+	}
+
+
+	//resend the OACK, or the window from the first block the client has not acknowledged
+	@Override
+	protected void retransmit() throws IOException
+	{
+		if(blockNum == 0)
+		{
+			super.retransmit();
+			rtt.sent(0, true);
+			return;
+		}
+		sendWindow.timedOut();
+		fillWindow();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+*Class:             ReceiveWindow.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Decides when the receiving side of a windowsize transfer
+*					(RFC 7440) sends an ACK. Only the last block of each window,
+*					or the last block of the file, is acknowledged. A block from
+*					ahead of the next one in order means one went missing, so the
+*					last block received in order is acknowledged once to send the
+*					sender back there. Blocks already received are only answered
+*					in lockstep (window of 1), as they always were; inside a window
+*					they may be a resend caused by a late ACK, and answering them
+*					would start the sender on yet another resend.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+class ReceiveWindow
+{
+	//declaring local instance variables
+	private final int size;
+	private int sinceAck = 0;			//blocks received in order since the last ACK
+	private boolean reacked = false;	//already answered an out of order block since that ACK
+
+
+	//generic constructor
+	ReceiveWindow(int size)
+	{
+		this.size = size;
+	}
+
+
+	//the next block arrived, true if it should be acknowledged now
+	boolean inOrder(boolean lastBlock)
+	{
+		sinceAck++;
+		if(lastBlock || sinceAck >= size)
+		{
+			sinceAck = 0;
+			reacked = false;
+			return true;
+		}
+		return false;
+	}
+
+
+	//block (16 bit) arrived while expected was wanted, true if the last block received in order should be acknowledged again
+	boolean outOfOrder(int block, long expected)
+	{
+		boolean ahead = ((block - (int)(expected & 0xFFFF)) & 0xFFFF) < 0x8000;
+		if(reacked || (!ahead && size > 1))
+		{
+			return false;
+		}
+		reacked = true;
+		sinceAck = 0;
+		return true;
+	}
+
+
+	//nothing arrived in time, the last ACK is being resent and the sender starts a new window
+	void timedOut()
+	{
+		sinceAck = 0;
+		reacked = false;
+	}
+}
@@ -0,0 +1,149 @@
+/**
+*Class:             RttEstimator.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.1.0
+*
+*Purpose:           Retransmission timer for one transfer, worked out from the
+*					round trip times it sees (Jacobson/Karels, as RFC 6298 gives
+*					it for TCP). Whoever sends a packet that expects an answer
+*					calls sent(..) and calls answered(..) when the answer comes
+*					back; one packet is timed at a time and, by Karn's rule,
+*					never one that has been resent. Every timeout doubles the
+*					timer up to MAX_RTO, and only a fresh sample brings it down
+*					again. Sequence numbers are the caller's own (blocks counted
+*					without wrapping), an answer to seq covers everything
+*					before it.
+*
+*
+*Update Log:		v1.1.0
+*						- resends, timeouts and round trip samples counted in a TransferStats if given one
+*					v1.0.0
+*						- null
+*/
+
+
+class RttEstimator
+{
+	//declaring local class constants
+	static final int INITIAL_RTO = 1000;	//ms, before the first sample
+	static final int MIN_RTO = 10;			//ms, so scheduling jitter on a LAN is not taken for loss
+	static final int MAX_RTO = 5000;		//ms, the old fixed TIMEOUT
+	static final int MAX_TIMEOUTS = 5;		//timeouts in a row at MAX_RTO before the peer is given up on
+	private static final long GRANULARITY = 1000;	//us, timers only fire to the ms
+
+	//declaring local instance variables
+	private long srtt = -1;			//us, smoothed round trip time, -1 until the first sample
+	private long rttvar;			//us, its mean deviation
+	private int rto = INITIAL_RTO;	//ms, before backing off
+	private int backoff = 0;		//timeouts since the last sample, each one doubles the timer
+	private int expired = 0;		//timeouts in a row at MAX_RTO
+	private long timedSeq = -1;		//packet being timed, -1 if none
+	private long timedAt;			//System.nanoTime() it went out
+	private TransferStats stats;	//counts resends, timeouts and samples, null if nothing is counted
+
+
+	//packet seq went out, resend if it has gone out before
+	void sent(long seq, boolean resend)
+	{
+		if(resend)
+		{
+			if(stats != null)
+			{
+				stats.retransmit();
+			}
+			//the answer could now be to either copy, or held up behind this one,
+			//so it says nothing about the round trip
+			timedSeq = -1;
+			return;
+		}
+		if(timedSeq < 0)
+		{
+			timedSeq = seq;
+			timedAt = System.nanoTime();
+		}
+	}
+
+
+	//the peer answered everything up to and including seq
+	void answered(long seq)
+	{
+		expired = 0;
+		if(timedSeq < 0 || seq < timedSeq)
+		{
+			return;
+		}
+		sample((System.nanoTime() - timedAt) / 1000);
+		timedSeq = -1;
+	}
+
+
+	//the timer ran out, true once the peer should be given up on
+	boolean timedOut()
+	{
+		timedSeq = -1;
+		if(stats != null)
+		{
+			stats.timeout();
+		}
+		if(timeout() >= MAX_RTO)
+		{
+			expired++;
+			return expired >= MAX_TIMEOUTS;
+		}
+		backoff++;
+		return false;
+	}
+
+
+	//ms to wait for an answer before resending
+	int timeout()
+	{
+		return (int)Math.min(MAX_RTO, (long)rto << Math.min(backoff, 16));
+	}
+
+
+	//true once the timer started at since (System.currentTimeMillis()) has run out
+	boolean expired(long since)
+	{
+		return System.currentTimeMillis() - since >= timeout();
+	}
+
+
+	//ms left on the timer started at since, at least 1 so it can be used as a socket timeout
+	int remaining(long since)
+	{
+		return (int)Math.max(1, since + timeout() - System.currentTimeMillis());
+	}
+
+
+	//count what happens to the timer in stats
+	void setStats(TransferStats stats)
+	{
+		this.stats = stats;
+	}
+
+
+	//fold a round trip of r us into the estimate
+	private void sample(long r)
+	{
+		if(stats != null)
+		{
+			stats.rtt(r);
+		}
+		if(srtt < 0)
+		{
+			srtt = r;
+			rttvar = r / 2;
+		}
+		else
+		{
+			rttvar = (3 * rttvar + Math.abs(srtt - r)) / 4;
+			srtt = (7 * srtt + r) / 8;
+		}
+		long us = srtt + Math.max(GRANULARITY, 4 * rttvar);
+		rto = (int)Math.max(MIN_RTO, Math.min(MAX_RTO, (us + 999) / 1000));
+		backoff = 0;
+	}
+}
@@ -0,0 +1,139 @@
+/**
+*Class:             SendWindow.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.1
+*
+*Purpose:           Book keeping for the sending side of a windowsize transfer
+*					(RFC 7440). Blocks are counted from 1 without wrapping at
+*					65535; acked is the last block the receiver has confirmed
+*					and next is the next block to go out. The sender sends while
+*					canSend(), then hands every ACK it gets to ack(..), which pulls
+*					next back to the first unacknowledged block when the
+*					receiver reports a gap. A window of 1 is the classic
+*					lockstep transfer, where a repeated ACK is never answered
+*					(only a timeout resends) so the sorcerer's apprentice
+*					problem cannot start.
+*
+*
+*Update Log:		v1.0.1
+*						- acked() for timing the round trip of a window
+*					v1.0.0
+*						- null
+*/
+
+
+class SendWindow
+{
+	//outcomes of an ACK
+	static final int ACK_IGNORED = 0;	//old or repeated, nothing to do
+	static final int ACK_MOVED = 1;		//the whole window so far is acknowledged, keep sending
+	static final int ACK_REWOUND = 2;	//receiver is missing blocks, next pulled back to resend them
+
+	//declaring local instance variables
+	private final int size;
+	private long acked = 0;
+	private long next = 1;
+	private long last = -1;			//the short block that ends the file, -1 until it has been read
+	private boolean rewound = false;	//already went back for the current value of acked
+
+
+	//generic constructor
+	SendWindow(int size)
+	{
+		this.size = size;
+	}
+
+
+	//true while next is inside the window and not past the end of the file
+	boolean canSend()
+	{
+		return next - acked <= size && (last < 0 || next <= last);
+	}
+
+
+	//block to send now
+	long next()
+	{
+		return next;
+	}
+
+
+	//next() went out
+	void sent()
+	{
+		next++;
+	}
+
+
+	//block is shorter than a full block, nothing comes after it
+	void lastBlock(long block)
+	{
+		last = block;
+	}
+
+
+	//last block the receiver has confirmed
+	long acked()
+	{
+		return acked;
+	}
+
+
+	//true once the last block has been acknowledged
+	boolean isComplete()
+	{
+		return last >= 0 && acked >= last;
+	}
+
+
+	//handle an ACK carrying the 16 bit block number block
+	int ack(int block)
+	{
+		long outstanding = next - 1 - acked;
+		int delta = (block - wire(acked)) & 0xFFFF;
+
+		//the receiver repeated its last ACK, whatever came after it went missing
+		if(delta == 0)
+		{
+			if(size > 1 && outstanding > 0 && !rewound)
+			{
+				rewound = true;
+				next = acked + 1;
+				return ACK_REWOUND;
+			}
+			return ACK_IGNORED;
+		}
+		//from before the last ACK, or for something never sent
+		if(delta > outstanding)
+		{
+			return ACK_IGNORED;
+		}
+
+		acked += delta;
+		rewound = false;
+		if(acked < next - 1)
+		{
+			//acknowledged part of the window, go back to the block after it
+			rewound = true;
+			next = acked + 1;
+			return ACK_REWOUND;
+		}
+		return ACK_MOVED;
+	}
+
+
+	//nothing came back in time, resend the window from the first unacknowledged block
+	void timedOut()
+	{
+		next = acked + 1;
+	}
+
+
+	//block number as it is written in a packet
+	static int wire(long block)
+	{
+		return (int)(block & 0xFFFF);
+	}
+}
@@ -0,0 +1,174 @@
+/**
+*Class:             ServerConfig.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.3
+*
+*Purpose:           Settings a transfer is served with (durability, largest
+*					block size and window offered). TFTPServer keeps one that
+*					its commands change, and hands every new transfer a copy so
+*					a change never affects transfers already in progress. The
+*					block cache is the exception, every copy shares the server's.
+*
+*
+*Update Log:		v1.0.3
+*						- option constants from PacketCodec
+*					v1.0.2
+*						- BlockCache shared by every RRQ, none unless the server sets one
+*					v1.0.1
+*						- largest window granted to a windowsize option (RFC 7440)
+*					v1.0.0
+*						- null
+*/
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import errorhelpers.PacketCodec;
+
+
+public class ServerConfig
+{
+	//declaring local class constants
+	public static final int DEFAULT_MAX_WINDOWSIZE = 64;	//blocks a sender keeps in flight (and in memory) at most
+
+	//declaring local instance variables
+	private TFTPWriter.Durability durability = TFTPWriter.Durability.NONE;
+	private int syncInterval = 0;
+	private int maxBlockSize = PacketCodec.MAX_BLKSIZE;
+	private int maxWindowSize = DEFAULT_MAX_WINDOWSIZE;
+	private BlockCache blockCache = null;
+
+
+	//generic constructor, defaults match the original server
+	public ServerConfig()
+	{
+	}
+
+
+	//copy constructor
+	public ServerConfig(ServerConfig other)
+	{
+		durability = other.durability;
+		syncInterval = other.syncInterval;
+		maxBlockSize = other.maxBlockSize;
+		maxWindowSize = other.maxWindowSize;
+		blockCache = other.blockCache;
+	}
+
+
+	//copy for a transfer that is about to start
+	public ServerConfig copy()
+	{
+		return new ServerConfig(this);
+	}
+
+
+	//block size to use for a request's blksize option, 0 if it has no usable one (RFC 2348)
+	public int negotiateBlockSize(Map<String,String> options)
+	{
+		if(options == null)
+		{
+			return 0;
+		}
+		int requested = PacketCodec.parseBlockSize(options.get(PacketCodec.BLKSIZE));
+		if(requested < 0)
+		{
+			return 0;
+		}
+		return Math.min(requested, maxBlockSize);
+	}
+
+
+	//window to use for a request's windowsize option, 0 if it has no usable one (RFC 7440)
+	public int negotiateWindowSize(Map<String,String> options)
+	{
+		if(options == null)
+		{
+			return 0;
+		}
+		int requested = PacketCodec.parseWindowSize(options.get(PacketCodec.WINDOWSIZE));
+		if(requested < 0)
+		{
+			return 0;
+		}
+		return Math.min(requested, maxWindowSize);
+	}
+
+
+	//the options an OACK carries for what was negotiated, empty if nothing was (no OACK is sent)
+	public static Map<String,String> oackOptions(int blockSize, int windowSize)
+	{
+		Map<String,String> options = new LinkedHashMap<String,String>();
+		if(blockSize > 0)
+		{
+			options.put(PacketCodec.BLKSIZE, String.valueOf(blockSize));
+		}
+		if(windowSize > 0)
+		{
+			options.put(PacketCodec.WINDOWSIZE, String.valueOf(windowSize));
+		}
+		return options;
+	}
+
+
+	//new reader for a RRQ, going through the block cache if there is one and it may hold anything
+	public TFTPReader newReader(int readAheadBlocks, int blockSize)
+	{
+		BlockCache cache = blockCache;
+		if(cache == null || cache.getBudget() == 0)
+		{
+			return new TFTPReader(readAheadBlocks, blockSize);
+		}
+		return new TFTPReader(readAheadBlocks, blockSize, cache);
+	}
+
+
+	//new writer for a WRQ with this config's durability
+	public TFTPWriter newWriter()
+	{
+		return new TFTPWriter(durability, syncInterval);
+	}
+
+
+	//generic accessors and mutators
+	public TFTPWriter.Durability getDurability()
+	{
+		return durability;
+	}
+	public int getSyncInterval()
+	{
+		return syncInterval;
+	}
+	public int getMaxBlockSize()
+	{
+		return maxBlockSize;
+	}
+	public void setMaxBlockSize(int maxBlockSize)
+	{
+		this.maxBlockSize = maxBlockSize;
+	}
+	public int getMaxWindowSize()
+	{
+		return maxWindowSize;
+	}
+	public void setMaxWindowSize(int maxWindowSize)
+	{
+		this.maxWindowSize = maxWindowSize;
+	}
+	public BlockCache getBlockCache()
+	{
+		return blockCache;
+	}
+	public void setBlockCache(BlockCache blockCache)
+	{
+		this.blockCache = blockCache;
+	}
+	public void setDurability(TFTPWriter.Durability durability, int syncInterval)
+	{
+		this.durability = durability;
+		this.syncInterval = syncInterval;
+	}
+}
@@ -3,24 +3,32 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Arrays;
 
+import errorhelpers.PacketCodec;
 import ui.ConsoleUI;
+import ui.Log;
+import ui.UIFramework;
 
 public abstract class ServerThread extends Thread{
 	
 	protected boolean stopRequested = false;
 	protected DatagramSocket sendReceiveSocket;
-	protected ConsoleUI console;
-	//INIT socket timeout variables
-	protected static final int TIMEOUT = 5; //Seconds
-	protected static final int MAX_TIMEOUTS = 5;
-	protected int timeouts = 0;
+	protected UIFramework console;
+	protected final Log log;	//what is printed to console, set by verbose
+	//INIT socket timeout variables, the timer adapts to the client's round trip time
+	protected RttEstimator rtt = new RttEstimator();
 	protected boolean retransmit = false;
 	protected int blockNum = 1;
+	protected int blockSize = 512;	//bytes of file per DATA, changed by a blksize option
+	protected int windowSize = 1;	//DATA sent before waiting for an ACK, changed by a windowsize option
+	protected ReceiveWindow receiveWindow = new ReceiveWindow(1);
 	protected boolean timeoutFlag = false;
 	protected DatagramPacket sendPacket;
 	protected DatagramPacket requestPacket;
+	protected TFTPRequest request;	//what the client asked for, read once by the listener
+	protected TransferStats stats = new TransferStats(getName(), null);	//what this transfer has done, for the server's stats
 	protected boolean retransmitDATA;
 	protected boolean retransmitACK;
 	protected long startTime;
@@ -30,12 +38,120 @@ public abstract class ServerThread extends Thread{
 	protected boolean errorFlag=false;
 	protected int clientTID; 
 	
-	public ServerThread(ThreadGroup group, String name, ConsoleUI console)
+	//outcomes of checking a received packet against the block being waited on
+	protected static final int PACKET_EXPECTED = 0;		//right opcode, right block number
+	protected static final int PACKET_DUPLICATE = 1;	//right opcode, some other block number
+	protected static final int PACKET_ERROR = 2;		//peer sent us an ERROR (05)
+	protected static final int PACKET_OVERSIZE = 3;		//longer than the expected packet type allows
+	protected static final int PACKET_BAD_OPCODE = 4;	//anything else
+	
+	//where this transfer is listed while it runs, null if it is not tracked
+	protected SessionRegistry registry;
+	protected int sessionId;
+	
+	//settings this transfer is served with, a copy of the server's when it started
+	protected ServerConfig config = new ServerConfig();
+	
+	//reads and writes this transfer's packets in place
+	protected final PacketCodec codec = new PacketCodec();
+	
+	//packet buffers taken from the BufferPool, given back when the transfer ends
+	private final ArrayList<byte[]> buffers = new ArrayList<byte[]>();
+	
+	public ServerThread(String name, UIFramework console)
 	{
-		super(group,name);
+		super(name);
 		this.console=console;
+		log = new Log(console, Log.level(false));
+	}
+	
+	/* verbose mode, prints each packet and its contents when on. */
+	protected void setVerbose(boolean verbose)
+	{
+		setLogLevel(Log.level(verbose));
+	}
+	
+	/* Print what level lets through, verbose text from DEBUG on. */
+	void setLogLevel(Log.Level level)
+	{
+		log.setLevel(level);
+		verbose = log.isOn(Log.Level.DEBUG);
+	}
+	
+	/* A window of its own for a transfer, for servers with a display. */
+	protected static UIFramework window(String title)
+	{
+		ConsoleUI window = new ConsoleUI(title);
+		window.run();
+		return window;
 	}
 	
+	/* Serve request, replies go to the client that sent it. */
+	protected void setRequest(TFTPRequest request)
+	{
+		this.request = request;
+		stats = new TransferStats(getName(), request);
+		rtt.setStats(stats);
+		clientTID = request.port;
+		//nothing has been received on this transfer yet, this just says where errors go
+		requestPacket = new DatagramPacket(new byte[0], 0, request.address, request.port);
+	}
+	
+	/* List this transfer in registry until serve() returns. */
+	void setSession(SessionRegistry registry, int sessionId)
+	{
+		this.registry = registry;
+		this.sessionId = sessionId;
+	}
+	
+	/* Serve this transfer with config instead of the defaults. */
+	void setConfig(ServerConfig config)
+	{
+		this.config = config;
+	}
+	
+	/* Runs the transfer. Final so the socket is always closed and the registry entry
+	 * dropped, whether this object was started as a platform thread or handed to a
+	 * virtual thread as a Runnable. */
+	@Override
+	public final void run()
+	{
+		try
+		{
+			serve();
+		}
+		finally
+		{
+			for(int i=0; i<buffers.size(); i++)
+			{
+				BufferPool.SHARED.give(buffers.get(i));
+			}
+			buffers.clear();
+			//a thread per transfer, its own cache of buffers would die with it
+			BufferPool.SHARED.flushThread();
+			//whichever way serve() returned, the transfer's port is given back
+			if(sendReceiveSocket != null && !sendReceiveSocket.isClosed())
+			{
+				sendReceiveSocket.close();
+			}
+			if(registry != null)
+			{
+				registry.deregister(sessionId);
+			}
+		}
+	}
+	
+	/* A packet buffer of at least size bytes, held until the transfer ends. */
+	protected byte[] buffer(int size)
+	{
+		byte[] buffer = BufferPool.SHARED.take(size);
+		buffers.add(buffer);
+		return buffer;
+	}
+	
+	/* The transfer itself, implemented by TFTPReadThread and TFTPWriteThread. */
+	protected abstract void serve();
+	
     public void RequestStop()
     {
     	stopRequested = true;
@@ -43,41 +159,29 @@ public abstract class ServerThread extends Thread{
     
     /* Closes sockets and before exit. */
 	public void exitGraceFully() {
-		if(sendReceiveSocket != null && sendReceiveSocket.isClosed())
+		if(sendReceiveSocket != null && !sendReceiveSocket.isClosed())
 		{
 			sendReceiveSocket.close();
 		}
-		console.print("Server: Closing thread.");
+		log.info("Server: Closing thread.");
 	} 
 	
-	protected void printReceivedPacket(DatagramPacket receivedPacket, boolean verbose){
-		console.print("Server: Received packet...");
-		if(verbose){
-			byte[] data = receivedPacket.getData();
-			int packetSize = receivedPacket.getLength();
+	/* One line per packet at DEBUG, its contents at TRACE, nothing is built below that. */
+	protected void printReceivedPacket(DatagramPacket receivedPacket){
+		log.packet("Server: Received packet...", receivedPacket);
+	}
 	
-			console.printIndent("Source: " + receivedPacket.getAddress());
-			console.printIndent("Port:      " + receivedPacket.getPort());
-			console.printIndent("Bytes:   " + packetSize);
-			console.printByteArray(data, packetSize);
-			console.printIndent("Cntn:  " + (new String(data,0,packetSize)));
+	protected void printRequest(){
+		log.info("Server: Received request...");
+		if(verbose){
+			console.printIndent("Source: " + request.address);
+			console.printIndent("Port:      " + request.port);
+			console.printIndent("Request: " + request);
 		}
 	}
 	
-	protected void printSendPacket(DatagramPacket sendPacket, boolean verbose){
-		console.print("Server: Sending packet...");
-		if(verbose)
-		{
-			byte[] data = sendPacket.getData();
-			int packetSize = sendPacket.getLength();
-
-			console.printIndent("Source: " + sendPacket.getAddress());
-			console.printIndent("Port:      " + sendPacket.getPort());
-			console.printIndent("Bytes:   " + packetSize);
-			console.printByteArray(data, packetSize);
-			console.printIndent("Cntn:  " + (new String(data,0,packetSize)));
-			
-		}
+	protected void printSendPacket(DatagramPacket sendPacket){
+		log.packet("Server: Sending packet...", sendPacket);
 	}
 	
     protected void printError(DatagramPacket packet,boolean verbose){
@@ -85,11 +189,11 @@ public abstract class ServerThread extends Thread{
     	console.print("From client: " + packet.getAddress());
     	console.print("From client port: " + packet.getPort());
 	    console.print("Length: " + packet.getLength());
-	    console.print("Error Code: " + new String(packet.getData(),
-				   2,2));
+	    codec.wrap(packet);
+	    stats.errorReceived(codec.errorCode());
+	    console.print("Error Code: " + codec.errorCode());
 	    console.print("ErrorMessage: " );
-	    console.print(new String(packet.getData(),
-				   4,packet.getLength()-1));
+	    console.print(codec.errorMessage());
     }
     /* Send Data packet with no data
     2 bytes    2 bytes       0 bytes
@@ -98,19 +202,15 @@ DATA  | 03    |   Block #  |    Data    |
     ---------------------------------
     */
     protected void sendNoData(DatagramPacket requestPacket,boolean verbose,int blockNumber,DatagramSocket sendReceiveSocket){
-    	byte[] data = new byte[4];
-    	data[0] = 0;
-    	data[1] = 3;
+    	byte[] data = new byte[PacketCodec.HEADER];
 		//Encode the block number into the response block 
-		data[3]=(byte)(blockNumber & 0xFF);
-		data[2]=(byte)((blockNumber >> 8)& 0xFF);
+    	codec.wrap(data, 0, 0).putDATA(blockNumber, 0);
     	
     	DatagramPacket sendPacket = new DatagramPacket(data, data.length,
 			     requestPacket.getAddress(), requestPacket.getPort());
 	/* Exit Gracefully if the stop is requested. */
 	   if(stopRequested){exitGraceFully();}
-       console.print("Server: Sending packet:");
-       printSendPacket(sendPacket, verbose);
+       printSendPacket(sendPacket);
 
       	try {
       		sendReceiveSocket.send(sendPacket);
@@ -127,6 +227,65 @@ DATA  | 03    |   Block #  |    Data    |
     }
     
     
+    /* Classify a received ACK or DATA against the block we expect next.
+     * Shared by the thread-per-transfer path and TFTPSelectorEngine so both
+     * validate packets the same way. */
+    static int checkPacket(byte[] data, int length, int opcode, int blockNum, int maxLength)
+    {
+    	int received = PacketCodec.opcode(data, length);
+    	if(received == PacketCodec.ERROR){
+    		return PACKET_ERROR;
+    	}
+    	if(length > maxLength){
+    		return PACKET_OVERSIZE;
+    	}
+    	//too short to carry a block number is as malformed as a wrong opcode
+    	if(received != opcode || length < PacketCodec.HEADER){
+    		return PACKET_BAD_OPCODE;
+    	}
+    	if(PacketCodec.block(data, length) == (blockNum & 0xFFFF)){
+    		return PACKET_EXPECTED;
+    	}
+    	return PACKET_DUPLICATE;
+    }
+    
+    /* Socket timeout for the next receive, whatever is left of the retransmission timer. */
+    protected void armTimeout() throws SocketException
+    {
+    	sendReceiveSocket.setSoTimeout(rtt.remaining(startTime));
+    }
+    
+    /* Human readable message for a TFTP error code. */
+    static String errorMessage(int errorCode, String errorInfo)
+    {
+    	switch(errorCode){
+	    	case 1:
+	    		return "File not found: " + errorInfo;
+	    	case 2: 
+	    		return "Access violation: " + errorInfo;
+	    	case 3: 
+	    		return "Disk full or allocation exceeded: " + errorInfo;
+	    	case 4:
+	    		return "Illegal TFTP operation: " + errorInfo;
+	    	case 5:
+	    		return "Unknown Transfer ID: " + errorInfo;
+	    	case 6: 
+	    		return "File already exists: " + errorInfo;
+	    	case 8:
+	    		return "Option negotiation failed: " + errorInfo;
+    	}
+    	return "Unknown Error.";
+    }
+    
+    /* Raw bytes of an ERROR packet. */
+    static byte[] errorData(int errorCode, String errorMsg)
+    {
+    	byte[] data = new byte[PacketCodec.errorLength(errorMsg)];
+    	new PacketCodec().wrap(data, 0, 0).putError(errorCode, errorMsg);
+    	return data;
+    }
+    
+    
     //Build an Error Packet with format :
     /*
     2 bytes  2 bytes        string    1 byte
@@ -135,57 +294,35 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
     ----------------------------------------
     */
     protected void buildError(int errorCode,DatagramPacket requestPacket, boolean verbose, String errorInfo){
-    	int errorSizeFactor = 5;
-    	
-    	String errorMsg = new String("Unknown Error.");
     	switch(errorCode){
 	    	case 1:
-	    		errorCode = 1;
 	    		console.print("Server: File not found, sending error packet");
-	    		errorMsg = "File not found: " + errorInfo;
 	    		break;
 	    	case 2: 
-	    		errorCode = 2;
 	    		console.print("Server: Access violation, sending error packet");
-	    		errorMsg = "Access violation: " + errorInfo;
 	    		break;
 	    	case 3: 
-	    		errorCode = 3;
 	    		console.print("Server: Disk full or allocation exceeded, sending error packet");
-	    		errorMsg = "Disk full or allocation exceeded: " + errorInfo;
 	    		break;
 	    	case 4:
-	    		errorCode = 4;
 	    		console.print("Illegal TFTP operation");
-	    		errorMsg = "Illegal TFTP operation: " + errorInfo;
 	    		break;
 	    	case 5:
-	    		errorCode = 5;
 	    		console.print("Unknown Transfer ID");
-	    		errorMsg = "Unknown Transfer ID: " + errorInfo;
 	    		break;
 	    	case 6: 
-	    		errorCode = 6;
 	    		console.print("Server: File already exists, sending error packet");
-	    		errorMsg = "File already exists: " + errorInfo;
 	    		break;
     	}
     	
-    	byte[] data = new byte[errorMsg.length() + errorSizeFactor];
-    	data[0] = 0;
-    	data[1] = 5;
-    	data[2] = 0;
-    	data[3] = (byte)errorCode;
-    	for(int c = 0; c<errorMsg.length();c++){
-    		data[4+c] = errorMsg.getBytes()[c];
-    	}
-    	data[data.length-1] = 0;
+    	byte[] data = errorData(errorCode, errorMessage(errorCode, errorInfo));
+    	stats.errorSent(errorCode);
     	
 	    DatagramPacket sendPacket = new DatagramPacket(data, data.length,
 				     requestPacket.getAddress(), requestPacket.getPort());
 		/* Exit Gracefully if the stop is requested. */
 		   if(stopRequested){exitGraceFully();}
-		   printSendPacket(sendPacket,verbose);
+		   printSendPacket(sendPacket);
 
 	       	try {
 	       		sendReceiveSocket.send(sendPacket);
@@ -206,32 +343,30 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
   	public boolean receiveACK()
   	{	
   		timeoutFlag=false;
-  		//Encode the block number into the response block 
-  		byte[] blockArray = new byte[2];
-  		blockArray[1]=(byte)(blockNum & 0xFF);
-  		blockArray[0]=(byte)((blockNum >> 8)& 0xFF);
-  		console.print("Server: Waiting to receive packet");
+  		log.debug("Server: Waiting to receive packet");
 
 
   		//receive ACK
   		try {
   			//receiveDATA();
+  			armTimeout();
+  			//the packet is reused, a shorter one received before must not cut this one short
+  			requestPacket.setLength(requestPacket.getData().length);
   			sendReceiveSocket.receive(requestPacket);
   			retransmit=false;
   		} catch(SocketTimeoutException e){
   			//Retransmit every timeout
-  			//Quite after 5 timeouts
+  			//Quit once the timer has backed off as far as it goes
   			timeoutFlag=true;
-  			if(System.currentTimeMillis() -startTime > TIMEOUT)
+  			if(rtt.expired(startTime))
   			{
-  				timeouts++;
-  				if(timeouts == MAX_TIMEOUTS){
+  				if(rtt.timedOut()){
   					exitGraceFully();
   					requestStop();
   					errorFlag=true;
   					return false;
   				}
-  				console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  				log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
   				retransmitDATA = true;
   				return true;
   			}
@@ -246,7 +381,7 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
   		if (verbose)
   		{
   			console.print("Client: Checking ACK...");
-  			printReceivedPacket(requestPacket, verbose);
+  			printReceivedPacket(requestPacket);
   		}
   		byte[] data = requestPacket.getData();
   		if(connectionEstablished){
@@ -258,80 +393,73 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 	  		}
   		}
   		//check ACK for validity
-		if(data.length > 4){
-			buildError(4,requestPacket, verbose,"Length of the ACK is over 4.");
-			errorFlag=true;
-			return false;
-		}
-  		if(data[0] == 0 && data[1] == 4){
-
-  			//Check if the blockNumber corresponds to the expected blockNumber
-  			if(blockArray[1] == data[3] && blockArray[0] == data[2]){
+  		switch(checkPacket(data, requestPacket.getLength(), PacketCodec.ACK, blockNum, PacketCodec.HEADER)){
+  			case PACKET_EXPECTED:
+  				rtt.answered(blockNum);
   				blockNum++;
-  				timeouts=0;
   				retransmitDATA=false;
-  			}
-  			else{
+  				return true;
+  			case PACKET_DUPLICATE:
+  				stats.duplicate();
   				if (verbose)
   		  		{
   		  			console.print("Received Duplicate.");
   		  		}
-  				if(System.currentTimeMillis() -startTime > TIMEOUT)
+  				//duplicates do not hold off the timeout
+  				if(rtt.expired(startTime))
   				{
-  					timeouts++;
-  					if(timeouts == MAX_TIMEOUTS){
+  					if(rtt.timedOut()){
   						exitGraceFully();
   						errorFlag=true;
   	  					return false;
   					}
   					retransmitDATA=true;
-  					console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  					log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
   					return true;
   				}
   				return false;
-  			}
-  		}
-  		else if(data[0] == 0 && data[1] == 5){
-  			printError(requestPacket, verbose);
-  			errorFlag=true;
-			return false;
-  		}
-  		else{
-  			buildError(5,requestPacket,verbose,"OpCode is invalid");
-  			errorFlag=true;
-			return false;
+  			case PACKET_ERROR:
+  				printError(requestPacket, verbose);
+  				errorFlag=true;
+  				return false;
+  			case PACKET_OVERSIZE:
+  				buildError(4,requestPacket, verbose,"Length of the ACK is over 4.");
+  				errorFlag=true;
+  				return false;
+  			default:
+  				buildError(5,requestPacket,verbose,"OpCode is invalid");
+  				errorFlag=true;
+  				return false;
   		}
-  		return true;
   	}
 
   //receive ACK
   	public boolean receiveDATA()
   	{	
   		timeoutFlag=false;
-  		//Encode the block number into the response block 
-  		byte[] blockArray = new byte[2];
-  		blockArray[1]=(byte)(blockNum & 0xFF);
-  		blockArray[0]=(byte)((blockNum >> 8)& 0xFF);
   		try {
   			//receiveDATA();
+  			armTimeout();
+  			//the packet is reused, a shorter one received before must not cut this one short
+  			requestPacket.setLength(requestPacket.getData().length);
   			sendReceiveSocket.receive(requestPacket);
   			retransmit=false;
   		} catch(SocketTimeoutException e){
   			//Retransmit every timeout
-  			//Quite after 5 timeouts
+  			//Quit once the timer has backed off as far as it goes
 
-  			if(System.currentTimeMillis() -startTime > TIMEOUT)
+  			if(rtt.expired(startTime))
   			{
-  				timeouts++;
   				timeoutFlag=true;
-  				if(timeouts == MAX_TIMEOUTS){
+  				if(rtt.timedOut()){
   					exitGraceFully();
   					requestStop();
   					errorFlag=true;
   					return false;
   				}
-  				console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  				log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
   				retransmitACK = true;
+  				receiveWindow.timedOut();
   				return true;
   			}
   			return false;
@@ -354,54 +482,116 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 				return false;
 	  		}
   		}
-		if(requestPacket.getLength() > 516){
-			buildError(4,requestPacket, verbose,"Length of the DATA packet is over 516.");
-			errorFlag=true;
-			return false;
-		}
 
   		//check if data
-  		if(data[0] == 0 && data[1] == 3){
-
-  			//Check if the blockNumber corresponds to the expected blockNumber
-  			if(blockArray[1] == data[3] && blockArray[0] == data[2]){
+  		switch(checkPacket(data, requestPacket.getLength(), PacketCodec.DATA, blockNum, blockSize+PacketCodec.HEADER)){
+  			case PACKET_EXPECTED:
+  				//DATA blockNum answers the ACK before it
+  				rtt.answered(blockNum-1);
   				blockNum++;
-  				timeouts=0;
   				retransmitACK=false;
-  			}
-  			else{
+  				return true;
+  			case PACKET_DUPLICATE:
+  				stats.duplicate();
   				if (verbose)
   		  		{
   		  			console.print("Received Duplicate Packet: ");
-  		  			printReceivedPacket(requestPacket, verbose);
+  		  			printReceivedPacket(requestPacket);
   		  		}
-  				if(System.currentTimeMillis() -startTime > TIMEOUT)
+  				//a gap or a resent block, ACK the last block we have once so the sender goes back to it
+  				if(receiveWindow.outOfOrder(PacketCodec.block(data, requestPacket.getLength()), blockNum))
   				{
-  					timeouts++;
-  					if(timeouts == MAX_TIMEOUTS){
-  						//close();
+  					retransmitACK=true;
+  					return true;
+  				}
+  				//repeated blocks do not hold off the timeout
+  				if(rtt.expired(startTime))
+  				{
+  					if(rtt.timedOut()){
+  						exitGraceFully();
+  						requestStop();
   						errorFlag=true;
-  	  					return false;
+  						return false;
   					}
-  					console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  					log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  					receiveWindow.timedOut();
   					retransmitACK=true;
   					return true;
   				}
   				return false;
+  			case PACKET_ERROR:
+  				printError(requestPacket, verbose);
+  				errorFlag=true;
+  				return false;
+  			case PACKET_OVERSIZE:
+  				buildError(4,requestPacket, verbose,"Length of the DATA packet is over " + (blockSize+4) + ".");
+  				errorFlag=true;
+  				return false;
+  			default:
+  				buildError(5,requestPacket,verbose,"OpCode is invalid");
+  				errorFlag=true;
+  				return false;
+  		}
+  	}
+  	/* Wait for an ACK while a window of DATA is out. Returns its block number, or -1
+  	 * if there is nothing to act on: timeoutFlag is set when the window should be
+  	 * resent and errorFlag when the transfer is over. */
+  	protected int receiveWindowACK()
+  	{
+  		timeoutFlag=false;
+  		try {
+  			armTimeout();
+  			//the packet is reused, a shorter one received before must not cut this one short
+  			requestPacket.setLength(requestPacket.getData().length);
+  			sendReceiveSocket.receive(requestPacket);
+  		} catch(SocketTimeoutException e){
+  			if(!rtt.expired(startTime)){
+  				return -1;
+  			}
+  			if(rtt.timedOut()){
+  				requestStop();
+  				errorFlag=true;
+  				return -1;
   			}
+  			log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+  			timeoutFlag=true;
+  			return -1;
+  		} catch (IOException e) {
+  			e.printStackTrace();
+  			return -1;
   		}
-  		else if(data[0] == 0 && data[1] == 5){
-  			printError(requestPacket, verbose);
-  			errorFlag=true;
-			return false;
+  		if (verbose)
+  		{
+  			console.print("Server: Checking ACK...");
+  			printReceivedPacket(requestPacket);
   		}
-  		else{
-  			buildError(5,requestPacket,verbose,"OpCode is invalid");
+  		byte[] data = requestPacket.getData();
+  		if(requestPacket.getPort() != clientTID){
+  			buildError(5,requestPacket,verbose,"Unexpected TID");
+  			console.print("Unexpected TID");
   			errorFlag=true;
-			return false;
+  			return -1;
+  		}
+  		//any block number is fine here, the window decides what it means
+  		switch(checkPacket(data, requestPacket.getLength(), PacketCodec.ACK, 0, PacketCodec.HEADER)){
+  			case PACKET_EXPECTED:
+  			case PACKET_DUPLICATE:
+  				return PacketCodec.block(data, requestPacket.getLength());
+  			case PACKET_ERROR:
+  				printError(requestPacket, verbose);
+  				errorFlag=true;
+  				return -1;
+  			case PACKET_OVERSIZE:
+  				buildError(4,requestPacket, verbose,"Length of the ACK is over 4.");
+  				errorFlag=true;
+  				return -1;
+  			default:
+  				buildError(5,requestPacket,verbose,"OpCode is invalid");
+  				errorFlag=true;
+  				return -1;
   		}
-  		return true;
   	}
+  	
   	protected void requestStop()
   	{
   		stopRequested=true;
@@ -0,0 +1,118 @@
+/**
+*Class:             SessionRegistry.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.1.0
+*
+*Purpose:           Server-wide list of transfers in progress. Replaces enumerating a
+*					ThreadGroup, which only sees platform threads: virtual threads are
+*					not enumerable and selector sessions are not threads at all. Each
+*					transfer registers when it is handed off and deregisters when it ends.
+*
+*
+*Update Log:		v1.1.0
+*						- each entry carries the transfer's TransferStats, added in to the
+*						  MetricsRegistry when the transfer deregisters
+*					v1.0.0
+*						- null
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class SessionRegistry
+{
+	//declaring local instance variables
+	private final ConcurrentHashMap<Integer, Entry> sessions = new ConcurrentHashMap<Integer, Entry>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final MetricsRegistry metrics;
+
+
+	//generic constructor, with counters of its own
+	public SessionRegistry()
+	{
+		this(new MetricsRegistry());
+	}
+
+
+	//constructor, finished transfers are added in to metrics
+	public SessionRegistry(MetricsRegistry metrics)
+	{
+		this.metrics = metrics;
+	}
+
+
+	//add a transfer counting into stats, returns the id to deregister it with
+	public int register(String name, String request, String executor, TransferStats stats)
+	{
+		int id = nextId.incrementAndGet();
+		sessions.put(id, new Entry(id, name, request, executor, stats));
+		return id;
+	}
+
+
+	//remove a finished transfer
+	public void deregister(int id)
+	{
+		Entry entry = sessions.remove(id);
+		if(entry != null)
+		{
+			metrics.finished(entry.stats);
+		}
+	}
+
+
+	//server-wide counters finished transfers are added in to
+	public MetricsRegistry metrics()
+	{
+		return metrics;
+	}
+
+
+	//number of transfers in progress
+	public int size()
+	{
+		return sessions.size();
+	}
+
+
+	//copy of every transfer in progress
+	public List<Entry> snapshot()
+	{
+		return new ArrayList<Entry>(sessions.values());
+	}
+
+
+	//one transfer in progress
+	public static class Entry
+	{
+		public final int id;
+		public final String name;
+		public final String request;
+		public final String executor;
+		public final long startTime;
+		final TransferStats stats;
+
+		Entry(int id, String name, String request, String executor, TransferStats stats)
+		{
+			this.stats = stats;
+			this.id = id;
+			this.name = name;
+			this.request = request;
+			this.executor = executor;
+			this.startTime = System.currentTimeMillis();
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " || " + request + " || " + executor + " || " + (System.currentTimeMillis() - startTime) + " ms"
+					+ " || " + stats.getBytes() + " B, " + stats.getBlocks() + " blocks";
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+*Class:             SingleFlight.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Runs a load once for everyone who asks for the same key at
+*					the same time. The first caller runs it, callers that arrive
+*					while it runs wait and get the same result (or the same
+*					exception). Nothing is kept once the load is done, so a
+*					caller that comes later loads again; keeping results is up
+*					to whoever uses this (see BlockCache).
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+
+class SingleFlight<K,V>
+{
+	//declaring local instance variables
+	private final ConcurrentHashMap<K,FutureTask<V>> inFlight = new ConcurrentHashMap<K,FutureTask<V>>();
+	private final LongAdder shared = new LongAdder();
+
+
+	//result of loader for key, run here unless another caller is already running it
+	V run(K key, Callable<V> loader) throws IOException
+	{
+		FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> running = inFlight.putIfAbsent(key, task);
+		if(running == null)
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				inFlight.remove(key, task);
+			}
+			running = task;
+		}
+		else
+		{
+			shared.increment();
+		}
+
+		try
+		{
+			return running.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for " + key);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+			{
+				throw (IOException)cause;
+			}
+			if(cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			if(cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+
+	//callers that got another caller's result instead of loading themselves
+	long getShared()
+	{
+		return shared.sum();
+	}
+}
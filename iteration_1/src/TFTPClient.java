@@ -3,7 +3,7 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    25/11/2016                                              
-*Version:           2.1.0                                                      
+*Version:           2.1.8                                                      
 *                                                                                   
 *Purpose:           Generates a datagram following the format of [0,R/W,STR1,0,STR2,0], 
 					in which R/W signifies read (1) or write (2), STR1 is a filename,
@@ -15,7 +15,33 @@
 					packet. Each datagram can be 512B max
 * 
 * 
-*Update Log:		v2.1.0
+*Update Log:		v2.1.8
+*						- headless constructor (any UIFramework, server port, local directory), no window
+*						  or dialogs, no longer a JFrame so it can be made where there is no display
+*						- transfer(..) runs a RRQ/WRQ like a typed command and says whether it completed,
+*						  getFirstByteTime() when the first DATA (RRQ) or answer (WRQ) came back
+*					v2.1.7
+*						- per-packet lines printed through a Log, only built when verbose/loglevel lets them through
+*						- 'loglevel L' command
+*					v2.1.6
+*						- verbose packet dumps built with HexDump, cut short by the 'dump N' command
+*					v2.1.5
+*						- packets read and written in place with PacketCodec instead of DatagramArtisan
+*					v2.1.4
+*						- packets received into one pooled buffer, WRQ DATA built in pooled buffers
+*						  per window slot and ACKs in one reused packet
+*					v2.1.3
+*						- retransmission timer follows the server's round trip time (RttEstimator)
+*						- RRQ/WRQ resent on a timeout instead of giving up on the first one
+*					v2.1.2
+*						- windowsize option (RFC 7440): 'windowsize N' command
+*						- WRQ keeps up to a window of DATA in flight, goes back on a gap or timeout
+*						- RRQ only ACKs the last block of each window, re-ACKs on a gap
+*					v2.1.1
+*						- WRQ reads the file block by block as it sends (TFTPReader.open(..))
+*						- RRQ keeps "Received"+file open for the whole transfer (TFTPWriter.open(..))
+*						- blksize option (RFC 2348): 'blksize N' command, OACK handling
+*					v2.1.0
 *						- Fixed error code 5 handling (malformed packet)
 *						- Fixed code error message printing
 *						- Fixed error packet parsing
@@ -102,12 +128,12 @@ import java.util.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import errorhelpers.DatagramArtisan;
+import errorhelpers.PacketCodec;
 //import packages
 import ui.* ;
 
 
-public class TFTPClient extends JFrame
+public class TFTPClient
 {
 	//declaring local instance variables
 	private DatagramPacket sentPacket;
@@ -122,34 +148,48 @@ public class TFTPClient extends JFrame
 	private static JTextArea fileChooserFrame;
 	private File file;
 	private JFileChooser fileChooser;
-	private ConsoleUI console;
+	private UIFramework console;
+	private ConsoleUI window;	//the client's window, null when running headless
+	private File directory = null;	//where files are read from and received into, null for the working directory
+	private Log log;			//what is printed to console, set by verbose and loglevel
 	private int blockNum;
 	private boolean duplicateACK = false;
 	private boolean duplicateDATA = false;
 	private boolean retransmitACK = false;
 	private boolean retransmitDATA = false;
-	private DatagramArtisan datagramArtisan = new DatagramArtisan();
+	private final PacketCodec codec = new PacketCodec();
 	
 	//Error handling vars
 	private int serverTID;
 	private boolean establishedConnection = false;
 	
-	//INIT socket timeout variables
-	protected static final int TIMEOUT = 5; //Seconds
-	protected static final int MAX_TIMEOUTS = 5;
-	protected int timeouts = 0;
+	//INIT socket timeout variables, a fresh timer for every transfer
+	private RttEstimator rtt = new RttEstimator();
+	
+	//packet buffers, reused for every packet of a transfer
+	private byte[] receiveBuffer = null;	//from the BufferPool, given back when the transfer is over
+	private final byte[] ackData = new byte[4];
+	private DatagramPacket ackPacket = null;
 	
 	//declaring local class constants
 	private static final int IN_PORT_HOST = 23;
 	private static final int IN_PORT_SERVER = 69;
 	private static final int MAX_SIZE = 512;
-	private static final int DATA_OFFSET = 4;
-	private static final byte[] OPCODE_RRQ =  {0,1}; 
-	private static final byte[] OPCODE_WRQ =  {0,2};
-	private static final byte[] OPCODE_DATA = {0,3};
-	private static final byte[] OPCODE_ACK = {0,4};
+	private static final int DATA_OFFSET = PacketCodec.HEADER;
+	
+	//block size option (RFC 2348)
+	private int requestedBlockSize = PacketCodec.DEFAULT_BLKSIZE;	//asked for in each RRQ/WRQ
+	private int blockSize = PacketCodec.DEFAULT_BLKSIZE;			//in use for the current transfer
+	private int requestedWindowSize = PacketCodec.DEFAULT_WINDOWSIZE;	//asked for in each RRQ/WRQ
+	private int windowSize = PacketCodec.DEFAULT_WINDOWSIZE;			//in use for the current transfer
+	private ReceiveWindow receiveWindow = new ReceiveWindow(1);
+	private boolean awaitingOACK = false;
+	private boolean oackReceived = false;
+	private boolean oackAccepted = false;
 	
 	private long startTime;
+	private long firstByteTime = 0;			//System.nanoTime() of the last transfer's first DATA (RRQ) or answer (WRQ), 0 if none
+	private boolean transferCompleted = false;	//the last transfer moved the whole file
 	private boolean timeoutFlag = false;
 	private boolean errorFlag = false;
 	
@@ -170,7 +210,7 @@ public class TFTPClient extends JFrame
 			System.exit(1);
 		}
 		try {
-			generalSocket.setSoTimeout(TIMEOUT*1000);
+			generalSocket.setSoTimeout(rtt.timeout());
 		} catch (SocketException e) {
 			console.print("Couldn't set timeout.");
 		}
@@ -184,9 +224,35 @@ public class TFTPClient extends JFrame
 		writer = new TFTPWriter();
 		
 		//make and run the UI
-		console = new ConsoleUI("TFTPClient.java");
-		console.run();
-		console.colorScheme("dark");
+		window = new ConsoleUI("TFTPClient.java");
+		window.run();
+		window.colorScheme("dark");
+		console = window;
+		log = new Log(console, Log.level(verbose));
+	}
+	
+	
+	//headless constructor, no windows or dialogs: everything is printed to console,
+	//requests go to serverPort and files are read from and received into directory
+	public TFTPClient(UIFramework console, int serverPort, File directory)
+	{
+		this.console = console;
+		this.directory = directory;
+		try
+		{
+			generalSocket = new DatagramSocket();
+			generalSocket.setSoTimeout(rtt.timeout());
+		}
+		catch (SocketException se)
+		{
+			se.printStackTrace();
+			System.exit(1);
+		}
+		verbose = false;
+		outPort = serverPort;
+		reader = new TFTPReader();
+		writer = new TFTPWriter();
+		log = new Log(console, Log.level(verbose));
 	}
 	
 	
@@ -201,10 +267,50 @@ public class TFTPClient extends JFrame
 	}
 	
 	
+	//block size to ask for in each RRQ/WRQ (blksize option)
+	public void setRequestedBlockSize(int size)
+	{
+		requestedBlockSize = size;
+	}
+	
+	
+	//window size to ask for in each RRQ/WRQ (windowsize option)
+	public void setRequestedWindowSize(int window)
+	{
+		requestedWindowSize = window;
+	}
+	
+	
+	//System.nanoTime() when the last transfer's first DATA (RRQ) or first ACK/OACK (WRQ) arrived, 0 if none did
+	public long getFirstByteTime()
+	{
+		return firstByteTime;
+	}
+	
+	
+	//a RRQ (read true) or WRQ for file in mode, run the way a typed command is, true if the whole file was moved
+	public boolean transfer(boolean read, String file, String mode)
+	{
+		transferCompleted = false;
+		firstByteTime = 0;
+		if(read)
+		{
+			sendRRQ(file, mode);
+		}
+		else
+		{
+			sendWRQ(file, mode);
+		}
+		cleanup();
+		return transferCompleted;
+	}
+	
+	
 	//enable/disable verbose mode
 	public void verboseMode(boolean v)
 	{
 		verbose = v;
+		log.setVerbose(v);
 		console.print("Verbose mode set " + verbose);
 	}
 	
@@ -244,33 +350,14 @@ public class TFTPClient extends JFrame
 	//type: DATA
 	private void generateDATAMaster(int blockNum, byte[] data)
 	{
-		//prep for block num
-		byte[] blockNumArr = new byte[2];
-		blockNumArr[1]=(byte)(blockNum & 0xFF);
-		blockNumArr[0]=(byte)((blockNum >> 8)& 0xFF);
-	    
 		if(verbose)    
 		{
 			console.print("Client: Prepping DATA packet #" + blockNum);
 		}
 		
 		//construct array to hold data
-		//byte[] data = reader.pop();
-		byte[] toSend = new byte[data.length + 4];
-		
-		//construct array
-		for(int i=0; i<2; i++)
-		{
-			toSend[i] = OPCODE_DATA[i];
-		}
-		for(int i = 2; i < 4; i++)
-		{
-			toSend[i] = blockNumArr[i-2] ;
-		}
-		for(int i = 0; i < data.length; i++)
-		{
-			toSend[i+4] = data[i] ;
-		}
+		byte[] toSend = new byte[data.length + DATA_OFFSET];
+		codec.wrap(toSend, 0, 0).putDATA(blockNum, data, 0, data.length);
 		
 		//generate and save datagram packet
 		try
@@ -289,6 +376,30 @@ public class TFTPClient extends JFrame
 	}
 	
 	
+	//fill in the header of a DATA already holding dataLength bytes of the file after it, save as sentPacket
+	private void generateDATA(int blockNum, DatagramPacket packet, int dataLength)
+	{
+		int length = codec.wrap(packet.getData(), 0, 0).putDATA(blockNum, dataLength);
+		
+		if(verbose)    
+		{
+			console.print("Client: Prepping DATA packet #" + blockNum);
+		}
+		try
+		{
+			packet.setLength(length);
+			packet.setAddress(InetAddress.getLocalHost());
+			packet.setPort(outPort);
+			sentPacket = packet;
+		}
+		catch(UnknownHostException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	
 	//generate DatagramPacket, save as sentPacket
 	//type: DATA
 	private void generate0Data(int blockNum)
@@ -299,26 +410,27 @@ public class TFTPClient extends JFrame
 	
 	//generate DatagramPacket, save as sentPacket
 	//type: DATA
-	private void generateData(int blockNum)
+	private void generateData(int blockNum) throws IOException
 	{
 		generateDATAMaster(blockNum, reader.pop());
 	}
 	
 	
 	//generate ACK
-	private void generateACK(byte[] ACKNum)
+	private void generateACK(int block)
 	{
-		byte[] ack = new byte[4];
-		ack[0] = OPCODE_ACK[0];
-		ack[1] = OPCODE_ACK[1];
-		//add block num
-		ack[2] = ACKNum[0];
-		ack[3] = ACKNum[1];
+		codec.wrap(ackData, 0, 0).putACK(block);
 		
-		//generate and save datagram packet
+		//generate and save datagram packet, the same one every time
 		try
 		{
-			sentPacket = new DatagramPacket(ack, ack.length, InetAddress.getLocalHost(), outPort);
+			if(ackPacket == null)
+			{
+				ackPacket = new DatagramPacket(ackData, ackData.length);
+			}
+			ackPacket.setAddress(InetAddress.getLocalHost());
+			ackPacket.setPort(outPort);
+			sentPacket = ackPacket;
 			if(verbose)
 			{
 				console.print("Client: ACK successfully created");
@@ -333,44 +445,80 @@ public class TFTPClient extends JFrame
 	}
 	
 	
+	//check the server's OACK and take its block size and window, errors the server if they are not ones we can use
+	//an option left out of the OACK was declined, so the default is kept for it
+	private boolean acceptOACK()
+	{
+		Map<String,String> options = codec.wrap(receivedPacket).options();
+		if(options == null)
+		{
+			buildError(8, receivedPacket, verbose, "bad OACK");
+			return false;
+		}
+		int size = PacketCodec.DEFAULT_BLKSIZE;
+		if(options.containsKey(PacketCodec.BLKSIZE))
+		{
+			size = PacketCodec.parseBlockSize(options.get(PacketCodec.BLKSIZE));
+			if(size < 0 || size > requestedBlockSize)
+			{
+				buildError(8, receivedPacket, verbose, "bad blksize");
+				return false;
+			}
+		}
+		int window = PacketCodec.DEFAULT_WINDOWSIZE;
+		if(options.containsKey(PacketCodec.WINDOWSIZE))
+		{
+			window = PacketCodec.parseWindowSize(options.get(PacketCodec.WINDOWSIZE));
+			if(window < 0 || window > requestedWindowSize)
+			{
+				buildError(8, receivedPacket, verbose, "bad windowsize");
+				return false;
+			}
+		}
+		blockSize = size;
+		windowSize = window;
+		receiveWindow = new ReceiveWindow(windowSize);
+		awaitingOACK = false;
+		oackAccepted = true;
+		if(verbose)
+		{
+			console.print("Client: OACK received, block size " + blockSize + ", window " + windowSize);
+		}
+		return true;
+	}
+	
+	
 	//generate DatagramPacket, save as sentPacket
 	//type: RRW or WRQ
-	private void generateRWRQ(String fileName, String mode, byte[] RWval)
+	private void generateRWRQ(String fileName, String mode, int opcode)
 	{
 		//generate the data to be sent in datagram packet
 		if(verbose)
 		{
 			console.print("Client: Prepping packet containing '" + fileName + "'...");
 		}	
-		//convert various strings to Byte arrays
-		byte[] fileNameBA = fileName.getBytes();
-		byte[] modeBA = mode.getBytes();
-			
-		//compute length of data being sent (metadata include) and create byte array
-		byte[] data = new byte[fileNameBA.length + modeBA.length + 4];
-		int i = 2;
-			
-		//add first 2 bytes of opcode
-		for(int c=0; c<2; c++)
-		{
-			data[c] = RWval[c] ;
-		}
-		//add text
-		for(int c=0; c<fileNameBA.length; c++, i++)
+		
+		//ask for a block size and window if not the classic ones, the transfer uses 512 and
+		//lockstep until an OACK says otherwise
+		blockSize = PacketCodec.DEFAULT_BLKSIZE;
+		windowSize = PacketCodec.DEFAULT_WINDOWSIZE;
+		receiveWindow = new ReceiveWindow(windowSize);
+		Map<String,String> options = new LinkedHashMap<String,String>();
+		if(requestedBlockSize != PacketCodec.DEFAULT_BLKSIZE)
 		{
-			data[i] = fileNameBA[c];
+			options.put(PacketCodec.BLKSIZE, Integer.toString(requestedBlockSize));
 		}
-		//add pesky 0x00
-		data[i] = 0x00;
-		i++;
-		//add mode
-		for(int c=0; c<modeBA.length; c++, i++)
+		if(requestedWindowSize != PacketCodec.DEFAULT_WINDOWSIZE)
 		{
-			data[i] = modeBA[c];
+			options.put(PacketCodec.WINDOWSIZE, Integer.toString(requestedWindowSize));
 		}
-		//add end metadata
-		data[i] = 0x00;
-			
+		awaitingOACK = !options.isEmpty();
+		oackReceived = false;
+		oackAccepted = false;
+		
+		//opcode, filename, mode and options, each ended by a 0
+		byte[] data = new byte[PacketCodec.requestLength(fileName, mode, options)];
+		codec.wrap(data, 0, 0).putRequest(opcode, fileName, mode, options);
 		
 		//generate and save datagram packet
 		try
@@ -398,10 +546,39 @@ public class TFTPClient extends JFrame
 		int oldPort = outPort; 
 		int lastDATAPacketLength = 0;
 		
-		//read and split file
+		//prep RRQ/RRW to send
+		generateRWRQ(file, mode, PacketCodec.WRQ);
+		//send RRQ/RRW
+		sendPacket();
+		rtt.sent(0, false);
+		//wait for ACK 0 (or the OACK), the WRQ is resent until one comes back
+		while(blockNum == 0)
+		{
+			if(!receiveACK() && errorFlag)
+			{
+				console.print("ERROR: No 0 ACK received");
+				return;
+			}
+			if(retransmitDATA)
+			{
+				console.print("Client: Retransmitting request");
+				sendPacket();
+				rtt.sent(0, true);
+				retransmitDATA = false;
+				timeoutFlag = false;
+			}
+		}
+		firstByteTime = System.nanoTime();
+		//change port to wherever ACK came from 
+		outPort = receivedPacket.getPort();
+		serverTID = receivedPacket.getPort();
+		establishedConnection = true;
+		
+		//read the file in blocks of the size agreed on
 		try
 		{
-			reader.readAndSplit(file);
+			reader = new TFTPReader(TFTPReader.DEFAULT_READ_AHEAD, blockSize);
+			reader.open(local(file));
 			
 		}
 		catch (IOException e)
@@ -409,57 +586,99 @@ public class TFTPClient extends JFrame
 			e.printStackTrace();
 			System.exit(1);
 		}
-		
-		//prep RRQ/RRW to send
-		generateRWRQ(file, mode, OPCODE_WRQ);
-		//send RRQ/RRW
-		sendPacket();
-		//wait for ACK
-		if(!receiveACK())
+		//send DATA a window at a time, blocks are read from the file as they are needed and
+		//kept until acknowledged so they can be resent after a gap or a timeout
+		SendWindow window = new SendWindow(windowSize);
+		DatagramPacket[] inFlight = new DatagramPacket[windowSize];
+		for(int i=0; i<windowSize; i++)
 		{
-			console.print("ERROR: No 0 ACK received");
-			return;
+			inFlight[i] = new DatagramPacket(BufferPool.SHARED.take(blockSize + DATA_OFFSET), blockSize + DATA_OFFSET);
 		}
-		//change port to wherever ACK came from 
-		outPort = receivedPacket.getPort();
-		serverTID = receivedPacket.getPort();
-		establishedConnection = true;
-		//send DATA
-		while ( (!(reader.isEmpty())  || lastDATAPacketLength == MAX_SIZE+4) || retransmitDATA)
+		long built = 0;
+		try
 		{
-			if(retransmitDATA)
+		while (!window.isComplete())
+		{
+			while (window.canSend())
 			{
-				System.out.println("Retransmitting");
-				sendPacket();//resend
-				retransmitDATA = false;
-			}
-			else if(!duplicateACK){ 
-				
-				//send DATA
-				if(reader.isEmpty())
+				long next = window.next();
+				int slot = (int)(next % windowSize);
+				boolean resend = next <= built;
+				if(!resend)
 				{
-					generate0Data(blockNum);
+					//the block is read straight into the slot's packet
+					int length = reader.pop(inFlight[slot].getData(), DATA_OFFSET);
+					//a file that is a multiple of the block size ends with a DATA with no data
+					if(length < 0)
+					{
+						length = 0;
+					}
+					if(length < blockSize)
+					{
+						window.lastBlock(next);
+					}
+					generateDATA(SendWindow.wire(next), inFlight[slot], length);
+					built = next;
 				}
 				else
 				{
-					generateData(blockNum);
+					console.print("Client: Retransmitting block " + next);
+					sentPacket = inFlight[slot];
 				}
-				lastDATAPacketLength = sentPacket.getLength();
 				sendPacket();
-				//blockNum++;
+				rtt.sent(next, resend);
+				window.sent();
+			}
 			
+			//wait for ACK, the server ACKs the last block of a window or the last one it got in order
+			int ack = receiveWindowACK();
+			if(errorFlag){reader.close();outPort = oldPort;return;}
+			if(timeoutFlag)
+			{
+				timeoutFlag = false;
+				window.timedOut();
+				continue;
+			}
+			if(ack >= 0 && window.ack(ack) != SendWindow.ACK_IGNORED)
+			{
+				rtt.answered(window.acked());
+			}
+			//repeated ACKs do not hold off the timeout
+			else if(rtt.expired(startTime))
+			{
+				if(rtt.timedOut())
+				{
+					close();
+					reader.close();
+					outPort = oldPort;
+					return;
+				}
+				console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+				window.timedOut();
+			}
+		}
+		}
+		catch (IOException e)
+		{
+			console.print("ERROR: could not read " + file + ": " + e.getMessage());
+			reader.close();
+			outPort = oldPort;
+			blockNum = 0;
+			return;
+		}
+		finally
+		{
+			for(int i=0; i<windowSize; i++)
+			{
+				BufferPool.SHARED.give(inFlight[i].getData());
 			}
-			duplicateACK=false;
-			timeoutFlag = false;
-			//wait for ACK
-			while(!receiveACK()){if(errorFlag){return;}}
 		}
 		
 		//reset port
 		outPort = oldPort;
 		blockNum = 0;
 		console.print("----------------------WRQ COMPLETE----------------------");
-		console.printCompletion();
+		completed();
 	}
 	
 	
@@ -468,11 +687,7 @@ public class TFTPClient extends JFrame
 	{
 		startTime=System.currentTimeMillis();
 		//print packet info IF in verbose
-		console.print("Client: Sending packet...");
-		if(verbose)
-		{
-			printDatagram(sentPacket);
-		}
+		log.packet("Client: Sending packet...", sentPacket);
 		//send packet
 		try
 		{
@@ -483,9 +698,64 @@ public class TFTPClient extends JFrame
 			e.printStackTrace();
 			System.exit(1);
 		}
-		console.print("Client: Packet Sent");
+		log.debug("Client: Packet Sent");
+	}
+	
+	//receive an ACK while a window of DATA is out, returns its block number or -1 if there is nothing to act on
+	//timeoutFlag is left set when the window should be resent, errorFlag when the transfer is over
+	private int receiveWindowACK()
+	{
+		timeoutFlag = false;
+		receivePacket("ACK");
+		if(errorFlag)
+		{
+			return -1;
+		}
+		if(timeoutFlag)
+		{
+			if(!rtt.expired(startTime))
+			{
+				timeoutFlag = false;
+				return -1;
+			}
+			if(rtt.timedOut()){
+				close();
+				errorFlag=true;
+				return -1;
+			}
+			console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+			return -1;
+		}
+		if (verbose)
+		{
+			console.print("Client: Checking ACK...");
+		}
+		byte[] data = receivedPacket.getData();
+		if(receivedPacket.getPort() != serverTID){
+			buildError(5,receivedPacket,verbose,"Unexpected TID");
+			return -1;
+		}
+		//server did not get DATA 1 yet, same as a repeated ACK 0
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.OACK && oackAccepted)
+		{
+			console.print("Received duplicate OACK");
+			return 0;
+		}
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.ACK)
+		{
+			if(receivedPacket.getLength() > 4){
+				buildError(4,receivedPacket, verbose,"Length of the ACK is over 4.");
+				errorFlag=true;
+				return -1;
+			}
+			return ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+		}
+		buildError(5,receivedPacket,verbose,"OpCode is invalid");
+		errorFlag=true;
+		return -1;
 	}
 	
+	
 	//receive ACK
 	public boolean receiveDATA()
 	{	
@@ -502,10 +772,9 @@ public class TFTPClient extends JFrame
 		}
 		if(timeoutFlag)
 		{
-			if(System.currentTimeMillis() -startTime > TIMEOUT)
+			if(rtt.expired(startTime))
 			{
-				timeouts++;
-				if(timeouts == MAX_TIMEOUTS){
+				if(rtt.timedOut()){
 					close();
 					errorFlag=true;
 					return false;
@@ -514,6 +783,7 @@ public class TFTPClient extends JFrame
 				retransmitACK=true;
 				return true;
 			}
+			timeoutFlag=false;
 			return false;
 		}
 		//analyze ACK for format
@@ -530,30 +800,41 @@ public class TFTPClient extends JFrame
 	  		}
   		}
 
+		//OACK in place of DATA 1, only if we asked for an option
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.OACK){
+			if(awaitingOACK){
+				if(!acceptOACK()){
+					errorFlag=true;
+					return false;
+				}
+				oackReceived = true;
+				rtt.answered(0);
+				return true;
+			}
+			//our ACK 0 was lost, answer it again
+			if(oackAccepted && blockNum == 1){
+				duplicateDATA = true;
+				console.print("Received duplicate OACK");
+				return true;
+			}
+		}
+		awaitingOACK = false;
+
 		//check if data
-		if(data[0] == 0 && data[1] == 3){
-			if(receivedPacket.getLength() > 516){
-				buildError(4,receivedPacket, verbose,"Length of the DATA packet is over 516.");
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.DATA){
+			if(receivedPacket.getLength() > blockSize+4){
+				buildError(4,receivedPacket, verbose,"Length of the DATA packet is over " + (blockSize+4) + ".");
 			}
 			//Check if the blockNumber corresponds to the expected blockNumber
 			if(blockArray[1] == data[3] && blockArray[0] == data[2]){
+				//DATA blockNum answers the ACK (or RRQ) before it
+				rtt.answered(blockNum-1);
 				blockNum++;
-				timeouts=0;
 			}
 			else{
+				//sendRRQ() decides whether this is worth another ACK
 				duplicateDATA = true;
 				console.print("Received duplicate DATA");
-				if(System.currentTimeMillis() -startTime > TIMEOUT)
-				{
-					timeouts++;
-					if(timeouts == MAX_TIMEOUTS){
-						close();
-						errorFlag=true;
-						return false;
-					}
-					retransmitACK=true;
-					console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
-				}
 			}
 			return true;
 		}
@@ -584,10 +865,9 @@ public class TFTPClient extends JFrame
 		}
 		if(timeoutFlag)
 		{
-			if(System.currentTimeMillis() -startTime > TIMEOUT)
+			if(rtt.expired(startTime))
 			{
-				timeouts++;
-				if(timeouts == MAX_TIMEOUTS){
+				if(rtt.timedOut()){
 					close();
 					errorFlag=true;
 					return false;
@@ -596,6 +876,7 @@ public class TFTPClient extends JFrame
 				console.print("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
 				return true;
 			}
+			timeoutFlag=false;
 			return false;
 		}
 		//analyze ACK for format
@@ -610,8 +891,32 @@ public class TFTPClient extends JFrame
 	  			return false;
 	  		}
   		}
+		//OACK in place of ACK 0, only if we asked for an option
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.OACK)
+		{
+			if(awaitingOACK)
+			{
+				if(!acceptOACK())
+				{
+					errorFlag=true;
+					return false;
+				}
+				rtt.answered(0);
+				blockNum++;
+				return true;
+			}
+			//server did not get DATA 1 yet, same as a duplicate ACK 0
+			if(oackAccepted && blockNum == 1)
+			{
+				duplicateACK = true;
+				console.print("Received duplicate OACK");
+				return true;
+			}
+		}
+		awaitingOACK = false;
+		
 		//check ACK for validity
-		if(data[0] == 0 && data[1] == 4)
+		if(codec.wrap(receivedPacket).opcode() == PacketCodec.ACK)
 		{
 
 			if(receivedPacket.getLength() > 4){
@@ -619,16 +924,16 @@ public class TFTPClient extends JFrame
 			}
 			//Check if the blockNumber corresponds to the expected blockNumber
 			if(blockArray[1] == data[3] && blockArray[0] == data[2]){
+				rtt.answered(blockNum);
 				blockNum++;
-				timeouts=0;
 			}
 			else{
 				duplicateACK = true;
 				console.print("Received duplicate ACK");
-				if(System.currentTimeMillis() -startTime > TIMEOUT)
+				//duplicates do not hold off the timeout
+				if(rtt.expired(startTime))
 				{
-					timeouts++;
-					if(timeouts == MAX_TIMEOUTS){
+					if(rtt.timedOut()){
 						close();
 						errorFlag=true;
 						return false;
@@ -652,23 +957,42 @@ public class TFTPClient extends JFrame
 		int oldPort = outPort;
 		boolean receivedData1 = false;
 		//send read request
-		generateRWRQ(file, mode, OPCODE_RRQ);
+		generateRWRQ(file, mode, PacketCodec.RRQ);
 		sendPacket();
+		rtt.sent(0, false);
+		long acknowledged = -1;		//last block ACKed, the same ACK again is a resend
 		
 		//receive loop for data
 		byte[] rawData;
-		byte[] procData;
 		boolean loop = true;
-		
 		while(loop)
 		{
-			byte[] blockNumByte = new byte[2];
-			blockNumByte[1]=(byte)(blockNum & 0xFF);
-			blockNumByte[0]=(byte)((blockNum >> 8)& 0xFF);
 			//receive data
-			while(!receiveDATA()){if(errorFlag){return;}}
-			if(retransmitACK && !receivedData1){console.print("Never Received first data. Please try again");return;}
-			if(!retransmitACK && !duplicateDATA){
+			while(!receiveDATA()){
+				if(errorFlag){
+					if(timeoutFlag && !receivedData1){console.print("Never Received first data. Please try again");}
+					writer.abort();
+					return;
+				}
+			}
+			//nothing came back yet, the request itself went missing
+			if(retransmitACK && !receivedData1){
+				console.print("Client: Retransmitting request");
+				sendPacket();
+				rtt.sent(0, true);
+				retransmitACK = false;
+				timeoutFlag = false;
+				continue;
+			}
+			//server took our options, ACK block 0 and wait for DATA 1
+			boolean ackNow = true;
+			if(oackReceived){
+				oackReceived = false;
+				serverTID = receivedPacket.getPort();
+				establishedConnection = true;
+				outPort = receivedPacket.getPort();
+			}
+			else if(!retransmitACK && !duplicateDATA){
 				if(!receivedData1){
 					serverTID = receivedPacket.getPort();
 					establishedConnection = true;
@@ -676,21 +1000,23 @@ public class TFTPClient extends JFrame
 
 				outPort = receivedPacket.getPort();
 
-				//Process data
-				rawData = new byte[receivedPacket.getLength()] ;
+				//Process data, written straight out of the packet
 				rawData = receivedPacket.getData();
-				procData = new byte[receivedPacket.getLength() - DATA_OFFSET];
-
-				int reLen = receivedPacket.getLength();
-				for(int i=0; i<reLen-DATA_OFFSET; i++)
-				{
-					procData[i] = rawData[i+DATA_OFFSET];
-				}
 
-				//save data
+				//save data, the file is opened on the first DATA and stays open until the last
 				try
 				{
-					writer.write(procData,"Received"+file);
+					if(!writer.isOpen())
+					{
+						firstByteTime = System.nanoTime();
+						writer.open(local("Received"+file), blockSize);
+					}
+					//receiveDATA() has already moved blockNum on to the next block
+					writer.write(blockNum-1, rawData, DATA_OFFSET, receivedPacket.getLength() - DATA_OFFSET);
+					if (receivedPacket.getLength() < blockSize+4)
+					{
+						writer.close();
+					}
 				}
 				catch(FileNotFoundException e)
 				{
@@ -704,18 +1030,45 @@ public class TFTPClient extends JFrame
 				}
 
 				//check to see if this is final packet
-				if (receivedPacket.getLength() < MAX_SIZE+4)	
+				if (receivedPacket.getLength() < blockSize+4)	
 				{
 					loop = false;
 				}
-
-				//get block num
-				blockNumByte[0] = rawData[2];
-				blockNumByte[1] = rawData[3];
-				generateACK(blockNumByte);
+				
+				//inside a window only its last block (or the file's) is acknowledged
+				ackNow = receiveWindow.inOrder(!loop);
+				if(!ackNow){
+					//the server is still sending, the timeout runs from the latest block
+					startTime = System.currentTimeMillis();
+				}
+			}
+			else if(!retransmitACK){
+				//a gap or a resent block, ACK the last block we have once so the server goes back to it
+				rawData = receivedPacket.getData();
+				ackNow = receiveWindow.outOfOrder(((rawData[2] & 0xFF) << 8) | (rawData[3] & 0xFF), blockNum);
+				//repeated blocks do not hold off the timeout
+				if(!ackNow && rtt.expired(startTime))
+				{
+					if(rtt.timedOut()){
+						close();
+						writer.abort();
+						return;
+					}
+					receiveWindow.timedOut();
+					ackNow = true;
+				}
+			}
+			else{
+				receiveWindow.timedOut();
+			}
+			
+			//send out ACK for the last block received in order and prep for more data
+			if(ackNow){
+				generateACK(blockNum-1);
+				sendPacket();
+				rtt.sent(blockNum-1, blockNum-1 == acknowledged);
+				acknowledged = blockNum-1;
 			}
-			//send out ACK and prep for more data
-			sendPacket();
 			receivedData1 = true;
 			retransmitACK = false;
 			duplicateDATA = false;
@@ -723,7 +1076,7 @@ public class TFTPClient extends JFrame
 		}
 		
 		console.print("----------------------RRQ COMPLETE----------------------");
-		console.printCompletion();
+		completed();
 		outPort = oldPort;
 	}
 	
@@ -731,9 +1084,18 @@ public class TFTPClient extends JFrame
 	//receive and echo received packet
 	public void receivePacket(String type)
 	{	
-		//prep for response
-		byte[] response = new byte[MAX_SIZE+4];
-		receivedPacket = new DatagramPacket(response, response.length);
+		//prep for response, in the same pooled buffer every time unless the block size grew
+		if(receiveBuffer == null || receiveBuffer.length < blockSize+5)
+		{
+			if(receiveBuffer != null)
+			{
+				BufferPool.SHARED.give(receiveBuffer);
+			}
+			receiveBuffer = BufferPool.SHARED.take(blockSize+5);
+			receivedPacket = new DatagramPacket(receiveBuffer, blockSize+5);
+		}
+		receivedPacket.setData(receiveBuffer, 0, blockSize+5);
+		byte[] response;
 		
 		//wait for response
 		if (verbose)
@@ -742,11 +1104,13 @@ public class TFTPClient extends JFrame
 		}
 		try
 		{
+			//wait no longer than what is left of the retransmission timer
+			generalSocket.setSoTimeout(rtt.remaining(startTime));
 			generalSocket.receive(receivedPacket);			
 		}
 		catch(IOException e)
 		{
-			console.print("Timed out on receive");
+			log.info("Timed out on receive");
 			timeoutFlag=true;
 		}
 		if (verbose && !timeoutFlag)
@@ -765,8 +1129,15 @@ public class TFTPClient extends JFrame
 				errorFlag = true;
 				//extract error message for response
 				int errorType = (response[2] << 8)&0xFF | response[3]&0xFF;
-				String errorMsg = datagramArtisan.getErrorMsg(receivedPacket);
-				console.printError(errorType, errorMsg);
+				String errorMsg = codec.wrap(receivedPacket).errorMessage();
+				if(window != null)
+				{
+					window.printError(errorType, errorMsg);
+				}
+				else
+				{
+					console.printError("TFTP Error Type: " + errorType + " - " + errorMsg);
+				}
 				
 			}
 		}
@@ -776,6 +1147,10 @@ public class TFTPClient extends JFrame
 	//print datagram contents
 	private void printDatagram(DatagramPacket datagram)
 	{
+		if(!log.isOn(Log.Level.TRACE))
+		{
+			return;
+		}
 		byte[] data = datagram.getData();
 		int packetSize = datagram.getLength();
 
@@ -783,7 +1158,7 @@ public class TFTPClient extends JFrame
 		console.printIndent("Port:      " + datagram.getPort());
 		console.printIndent("Bytes:   " + packetSize);
 		console.printByteArray(data, packetSize);
-		console.printIndent("Cntn:  " + (new String(data,0,packetSize)));
+		console.printIndent(HexDump.text("Cntn:  ", data, 0, packetSize));
 	}
 	
 	
@@ -795,7 +1170,6 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
     ----------------------------------------
     */
     protected void buildError(int errorCode,DatagramPacket receivePacket, boolean verbose, String errorInfo){
-    	int errorSizeFactor = 5;
 
     	
     	String errorMsg = new String("Unknown Error.");
@@ -830,17 +1204,14 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 	    		console.print("Server: File already exists, sending error packet");
 	    		errorMsg = "File already exists: " + errorInfo;
 	    		break;
+	    	case 8:
+	    		console.print("Option negotiation failed, sending error packet");
+	    		errorMsg = "Option negotiation failed: " + errorInfo;
+	    		break;
     	}
     	
-    	byte[] data = new byte[errorMsg.length() + errorSizeFactor];
-    	data[0] = 0;
-    	data[1] = 5;
-    	data[2] = 0;
-    	data[3] = (byte)errorCode;
-    	for(int c = 0; c<errorMsg.length();c++){
-    		data[4+c] = errorMsg.getBytes()[c];
-    	}
-    	data[data.length-1] = 0;
+    	byte[] data = new byte[PacketCodec.errorLength(errorMsg)];
+    	codec.wrap(data, 0, 0).putError(errorCode, errorMsg);
     	
     	sentPacket = new DatagramPacket(data, data.length,
 	    		receivePacket.getAddress(), receivePacket.getPort());
@@ -868,9 +1239,13 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 		console.print("'clear'                                  - clear screen");
 		console.print("'close'                                 - exit client, close ports, be graceful");
 		console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+		console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 		console.print("'testmode BOOL'             - if set true, sends to Host. If set false, sends to Server directly");
 		console.print("'test'                                    - runs a test for the console");
 		console.print("'mode NEWMODE'           - set the default mode to NEWMODE");
+		console.print("'blksize N'                       - ask the server for N byte blocks (default 512)");
+		console.print("'windowsize N'              - ask the server for N blocks per ACK (default 1)");
+		console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
 		console.println();
 		console.print("'push MODE'                    - push a file to the server in mode MODE (ex, NETASCII)");
 		console.print("'push'                                - push a file to the server in default mode");
@@ -908,9 +1283,13 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 						console.print("'clear'                                  - clear screen");
 						console.print("'close'                                 - exit client, close ports, be graceful");
 						console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+						console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 						console.print("'testmode BOOL'             - if set true, sends to Host. If set false, sends to Server directly");
 						console.print("'test'                                    - runs a test for the console");
 						console.print("'mode NEWMODE'           - set the default mode to NEWMODE");
+						console.print("'blksize N'                       - ask the server for N byte blocks (default 512)");
+						console.print("'windowsize N'              - ask the server for N blocks per ACK (default 1)");
+						console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
 						console.println();
 						console.print("'push MODE'                    - push a file to the server in mode MODE (ex, ASCII)");
 						console.print("'push'                                - push a file to the server in default mode");
@@ -938,7 +1317,10 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 					//run simple console test
 					else if (input[0].equals("test"))
 					{
-						console.testAll();
+						if(window != null)
+						{
+							window.testAll();
+						}
 					}
 					//push a file (WRQ) to server in default mode
 					else if (input[0].equals("push"))
@@ -1003,6 +1385,34 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 							console.print("! Unknown Input !");
 						}
 					}
+					//set block size to ask for
+					else if (input[0].equals("blksize"))
+					{
+						int size = PacketCodec.parseBlockSize(input[1]);
+						if(size < 0)
+						{
+							console.printOperandError("blksize must be between " + PacketCodec.MIN_BLKSIZE + " and " + PacketCodec.MAX_BLKSIZE);
+						}
+						else
+						{
+							requestedBlockSize = size;
+							console.print("block size set to: " + requestedBlockSize);
+						}
+					}
+					//set window size to ask for
+					else if (input[0].equals("windowsize"))
+					{
+						int window = PacketCodec.parseWindowSize(input[1]);
+						if(window < 0)
+						{
+							console.printOperandError("windowsize must be between " + PacketCodec.MIN_WINDOWSIZE + " and " + PacketCodec.MAX_WINDOWSIZE);
+						}
+						else
+						{
+							requestedWindowSize = window;
+							console.print("window size set to: " + requestedWindowSize);
+						}
+					}
 					//set standard mode
 					else if (input[0].equals("mode"))
 					{
@@ -1049,6 +1459,33 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 							sendRRQ(input[1], standardMode);
 						}
 					}
+					//how much is printed, finer than verbose
+					else if (input[0].equals("loglevel"))
+					{
+						Log.Level level = Log.parseLevel(input[1]);
+						if (level == null)
+						{
+							console.printOperandError("loglevel must be 'error', 'info', 'debug' or 'trace'");
+						}
+						else
+						{
+							log.setLevel(level);
+							verbose = log.isOn(Log.Level.DEBUG);
+							console.print("Log level set to: " + level + ", verbose mode " + verbose);
+						}
+					}
+					//how much of each packet verbose mode dumps
+					else if (input[0].equals("dump"))
+					{
+						if (HexDump.setLimit(input[1]))
+						{
+							console.print("Packet dump set to: " + HexDump.describeLimit());
+						}
+						else
+						{
+							console.printOperandError("dump must be 'all', 'header' or a number of bytes");
+						}
+					}
 					//alter color scheme
 					else if (input[0].equals("color") || input[0].equals("colour"))
 					{
@@ -1094,6 +1531,24 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 		}
 	}
 	
+	//the transfer moved the whole file
+	private void completed()
+	{
+		transferCompleted = true;
+		if(window != null)
+		{
+			window.printCompletion();
+		}
+	}
+	
+	
+	//name as a file in the client's directory
+	private String local(String name)
+	{
+		return directory == null ? name : new File(directory, name).getPath();
+	}
+	
+	
 	private void cleanup()
 	{
 		duplicateACK = false;
@@ -1101,7 +1556,12 @@ ERROR | 05    |  ErrorCode |   ErrMsg   |   0  |
 		retransmitACK = false;
 		retransmitDATA = false;
 		establishedConnection = false;
-		timeouts = 0;
+		rtt = new RttEstimator();
+		if(receiveBuffer != null)
+		{
+			BufferPool.SHARED.give(receiveBuffer);
+			receiveBuffer = null;
+		}
 
 		timeoutFlag = false;
 		errorFlag = false;
@@ -4,7 +4,7 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    25/11/2016                                              
-*Version:           2.1.1                                                      
+*Version:           2.2.1                                                      
 *                                                                                    
 *Purpose:           Receives packet from Client, sends packet to Server and waits
 *					for Server response. Sends Server response back to Client. Repeats
@@ -14,7 +14,39 @@
 *					all 3 verb inputs. However, in order to check that user noun input is valid, they are in separate if statements.
 * 
 * 
-*Update Log:        v2.1.1
+*Update Log:        v2.2.1
+*						- the error for a packet is taken from the InputStack's index by type, block and direction,
+*						  not only when it is the top of the stack
+*						- '*' for any packet type or block number, 'direction D' for errors entered after it
+*					v2.2.0
+*						- 'link' commands: rate (token bucket), bounded queue with tail drop and propagation
+*						  delay per direction from a LinkShaper, applied by both engines
+*					v2.1.9
+*						- 'impair' commands: random and burst loss, delay with jitter, reordering and
+*						  duplication per direction from a seeded ImpairmentProfile, applied by both engines
+*					v2.1.8
+*						- delayed packets and the second copy of duplicated ones wait on a TimerWheel,
+*						  errorSimHandle() keeps forwarding and sends them when due, to the millisecond
+*						- delay no longer split into blocking 5 ms receives over a 10000 entry array
+*					v2.1.7
+*						- 'engine nio': 'run' starts a ProxyEngine that forwards any number of transfers
+*						  at once on one selector, each with its own copy of the errors to simulate
+*						- 'sessions' lists what the proxy engine is forwarding
+*					v2.1.6
+*						- per-packet lines printed through a Log, only built when verbose/loglevel lets them through
+*						- 'loglevel L' command
+*					v2.1.5
+*						- verbose packet dumps built with HexDump, cut short by the 'dump N' command
+*					v2.1.4
+*						- opcode and block changes made in place with PacketCodec, requests and
+*						  padded DATA rebuilt with it instead of DatagramArtisan
+*					v2.1.3
+*						- packets received into pooled buffers reused round robin instead of
+*						  a new 64 KB array for every packet
+*					v2.1.2
+*						- forwards packets up to the largest blksize (65464+4 bytes)
+*						- keeps RRQ/WRQ options when it rebuilds a request
+*					v2.1.1
 *						- removed unnecessary accessors/mutators
 *					v2.1.0
 *						- added new inputs for error types
@@ -35,11 +67,14 @@
 //imports
 import java.io.*;
 import java.net.*;
+import java.util.Map;
 
 import javax.swing.JFileChooser;
 import javax.swing.JTextArea;
 
 import ui.ConsoleUI;
+import ui.HexDump;
+import ui.Log;
 import inputs.*;
 import errorhelpers.*;
 
@@ -74,8 +109,21 @@ public class TFTPHost
 	private int serverPort;
 	private boolean verbose;
 	private ConsoleUI console;
+	private Log log;			//what is printed to console, set by verbose and loglevel
 	private InputStack inputStack = new InputStack();
-	private DatagramArtisan dataArt=new DatagramArtisan();
+	private Input rule = null;					//the error being simulated on receivedPacket
+	private int ruleDirection = Input.DIR_ANY;	//direction errors entered from now on are for
+	private final PacketCodec codec = new PacketCodec();
+	private final DatagramPacket[] receiveRing = new DatagramPacket[RECEIVE_RING];	//pooled, reused round robin
+	private int receiveSlot = 0;
+	private final TimerWheel<DatagramPacket> held = new TimerWheel<DatagramPacket>();	//pooled copies waiting to be sent
+	private boolean nioEngine = false;		//'run' starts a ProxyEngine instead of errorSimHandle()
+	private ProxyEngine proxy = null;		//forwarding, once started
+	private ImpairmentProfile impairment = new ImpairmentProfile();	//set by 'impair' commands
+	private ImpairmentProfile impaired = null;	//errorSimHandle()'s copy, null if nothing is impaired
+	private final long[] fates = new long[2];	//delays of the copies of one packet, from the impairment
+	private LinkShaper link = new LinkShaper();		//set by 'link' commands
+	private LinkShaper shaping = null;			//errorSimHandle()'s copy, null if the link is off
 	
 	    
 	//sarah var
@@ -84,10 +132,10 @@ public class TFTPHost
 	//declaring local class constants
 	private static final int CLIENT_RECEIVE_PORT = 23;
 	private static final int SERVER_RECEIVE_PORT = 69;
-	private static final int MAX_SIZE = 512+4;
+	private static final int MAX_SIZE = PacketCodec.MAX_BLKSIZE+4;	//largest DATA a blksize option allows
 	private static final boolean LIT = true ; 	
-	private static final int CLIENT_SERVER_TIMEOUT = 5;
-	private static final int MAX_DELAY_SEGMENTS = 10000;
+	private static final long DUPLICATE_GAP = 10;		//ms between a packet and its duplicate
+	private static final int RECEIVE_RING = 4;		//packets that may still be needed: the last one, the one being passed, a stored ACK and the answer to a duplicate
 
 
 
@@ -116,36 +164,32 @@ public class TFTPHost
 		console = new ConsoleUI("Error Simulator");
 		console.run();
 		console.colorScheme("dark");
+		log = new Log(console, Log.level(verbose));
 	}
 	
 	
-	//print datagram contents
-	private void printDatagram(DatagramPacket datagram)
+	//next packet of the ring to receive into, its buffer is taken from the pool the first time round
+	private DatagramPacket nextReceivePacket()
 	{
-		byte[] data = datagram.getData();
-		int packetSize = datagram.getLength();
-
-		console.printIndent("Source: " + datagram.getAddress());
-		console.printIndent("Port:      " + datagram.getPort());
-		console.printIndent("Bytes:   " + packetSize);
-		console.printByteArray(data, packetSize);
-		console.printIndent("Cntn:  " + (new String(data,0,packetSize)));
+		receiveSlot = (receiveSlot + 1) % RECEIVE_RING;
+		if(receiveRing[receiveSlot] == null)
+		{
+			receiveRing[receiveSlot] = new DatagramPacket(BufferPool.SHARED.take(MAX_SIZE), MAX_SIZE);
+		}
+		DatagramPacket packet = receiveRing[receiveSlot];
+		packet.setData(packet.getData(), 0, MAX_SIZE);
+		return packet;
 	}
 	
 	
-	
 	//receive packet on inPort
 	public void receiveDatagram(DatagramSocket inputSocket)
 	{
-		//construct an empty datagram packet for receiving purposes
-		byte[] arrayholder = new byte[MAX_SIZE];
-		receivedPacket = new DatagramPacket(arrayholder, arrayholder.length);
+		//reuse the oldest packet for receiving purposes
+		receivedPacket = nextReceivePacket();
 		lastReceivedPacket=receivedPacket;
 		//wait for incoming data
-		if(verbose)
-		{
-			console.print("Waiting for data...");
-		}
+		log.debug("Waiting for data...");
 		try
 		{
 			inputSocket.receive(receivedPacket);
@@ -161,9 +205,8 @@ public class TFTPHost
 	
 	public DatagramPacket receive(DatagramSocket inputSocket, int timeOut) throws IOException
 	{
-		//construct an empty datagram packet for receiving purposes
-		byte[] arrayholder = new byte[MAX_SIZE];
-		DatagramPacket incommingPacket = new DatagramPacket(arrayholder, arrayholder.length);
+		//reuse the oldest packet for receiving purposes
+		DatagramPacket incommingPacket = nextReceivePacket();
 		
 		//set delay
 		try
@@ -176,56 +219,75 @@ public class TFTPHost
 		}
 		
 		//wait for incoming data
-		console.print("Waiting for data...");
+		log.debug("Waiting for data...");
 		inputSocket.receive(incommingPacket);
 		receivedPacket=incommingPacket;
 		
 		//deconstruct packet and print contents
-		console.print("Packet successfully received");
-		if (verbose)
-		{
-			printDatagram(incommingPacket);
-		}
+		log.packet("Packet successfully received", incommingPacket);
 		
 		return incommingPacket;
 
 	}
 	
-	public void tryReceive(DatagramSocket inputSocket,int timeOut) throws IOException
+	//receive on inputSocket until the next held packet is due, false if it came due first
+	private boolean receiveUntilDue(DatagramSocket inputSocket)
 	{
-		byte[] arrayholder = new byte[MAX_SIZE];
-		DatagramPacket incommingPacket = new DatagramPacket(arrayholder, arrayholder.length);
-		
-		//set delay
-		try
+		long wait = held.timeout(System.currentTimeMillis());
+		if(wait == 0)
 		{
-			inputSocket.setSoTimeout(timeOut);
+			return false;
 		}
-		catch (SocketException ioe)
+		DatagramPacket incommingPacket = nextReceivePacket();
+		
+		//wait for incoming data, for good if nothing is held
+		log.debug("Waiting for data...");
+		try
 		{
-			console.printError("Cannot set socket timeout");
+			inputSocket.setSoTimeout(wait < 0 ? 0 : (int)Math.min(wait, Integer.MAX_VALUE));
+			inputSocket.receive(incommingPacket);
 		}
-		
-		//wait for incoming data
-		console.print("Waiting for data...");
-		inputSocket.receive(incommingPacket);
-		
-		
-		//deconstruct packet and print contents
-		console.print("Packet successfully received");
-		if (verbose)
+		catch (SocketTimeoutException ste)
 		{
-			printDatagram(incommingPacket);
+			return false;
 		}
-		
-		//rest delay
-		try
+		catch (IOException e)
 		{
-			inputSocket.setSoTimeout(0);
+			console.printError("Incoming socket failed: " + e.getMessage());
+			return false;
 		}
-		catch (SocketException ioe)
+		receivedPacket = incommingPacket;
+		lastReceivedPacket = incommingPacket;
+		return true;
+	}
+	
+	
+	//a copy of receivedPacket for outPort, sent by releaseHeld(..) once due
+	private void hold(int outPort, long due)
+	{
+		int length = receivedPacket.getLength();
+		byte[] data = BufferPool.SHARED.take(length);
+		System.arraycopy(receivedPacket.getData(), receivedPacket.getOffset(), data, 0, length);
+		held.schedule(new DatagramPacket(data, length, receivedPacket.getAddress(), outPort), due);
+	}
+	
+	
+	//send every held packet that is due
+	private void releaseHeld(DatagramSocket socket)
+	{
+		DatagramPacket packet;
+		while((packet = held.poll(System.currentTimeMillis())) != null)
 		{
-			console.printError("Cannot set socket timeout");
+			log.packet("Sending held packet...", packet);
+			try
+			{
+				socket.send(packet);
+			}
+			catch (IOException e)
+			{
+				console.printError("Could not send held packet: " + e.getMessage());
+			}
+			BufferPool.SHARED.give(packet.getData());
 		}
 	}
 	
@@ -235,18 +297,11 @@ public class TFTPHost
 	public void sendDatagram(int outPort, DatagramSocket socket)
 	{
 		//prep packet to send
-		if(verbose)
-		{	
-			console.print("Sending packet...");
-		}
 		sentPacket = receivedPacket;
 		sentPacket.setPort(outPort );
 		
 		//print contents
-		if(verbose)
-		{
-			printDatagram(sentPacket);
-		}
+		log.packet("Sending packet...", sentPacket);
 		//send packet
 		try
 		{
@@ -257,28 +312,44 @@ public class TFTPHost
 			e.printStackTrace();
 			System.exit(1);
 		}
-		console.print("Packet successfully sent");
+		log.debug("Packet successfully sent");
 		
 	}
 	
+	//the RRQ/WRQ in receivedPacket again with opcode and mode, filename and options kept
+	private DatagramPacket rebuildRequest(int opcode, String mode, InetAddress address, int port)
+	{
+		codec.wrap(receivedPacket);
+		String fileName = codec.fileName();
+		Map<String,String> options = codec.options();
+		//a request too broken to have them is passed on with them empty
+		if(fileName == null)
+		{
+			fileName = "";
+		}
+		if(mode == null)
+		{
+			mode = "";
+		}
+		byte[] data = new byte[PacketCodec.requestLength(fileName, mode, options)];
+		int length = codec.wrap(data, 0, 0).putRequest(opcode, fileName, mode, options);
+		return new DatagramPacket(data, length, address, port);
+	}
+	
+	
 	public void changeMode(int outPort, DatagramSocket socket)//netsci ascii
 	{
-		console.print("Change mode selected, changing mode to"+ inputStack.peek().getNewMode());
+		console.print("Change mode selected, changing mode to"+ rule.getNewMode());
 		
 		InetAddress localAddress=null;
 		
-		byte newOP[] = new byte[2];
-	
-		newOP[1] = (byte)(receivedPacket.getData()[1] & 0xFF);
-		newOP[0] = (byte)((receivedPacket.getData()[0] >> 8)& 0xFF);
-		
 		try
 		{
 			localAddress = InetAddress.getLocalHost();
 		}
 		catch(Exception e) {}
 		
-		receivedPacket=dataArt.produceRWRQ(newOP,dataArt.getFileName(receivedPacket),inputStack.peek().getNewMode(), localAddress, outPort);
+		receivedPacket=rebuildRequest(codec.wrap(receivedPacket).opcode(), rule.getNewMode(), localAddress, outPort);
 		
 		sendDatagram(outPort,socket);
 		needSend=false;
@@ -289,32 +360,19 @@ public class TFTPHost
 	//tack on garbage to the outgoing packet
 	public void addData(int outPort, DatagramSocket socket)
 	{
-		console.print("Adding " + inputStack.peek().getExtraBytes() + " Bytes of garbage to datagram...");
-		//generate trash and prep DatagramArtisan
-		byte[] trash = (new TrashFactory()).produce(inputStack.peek().getExtraBytes());
-		DatagramArtisan da = new DatagramArtisan();
-		
-		//extract parameters from receivedPacket
-		byte[] opCode = da.getOpCode(receivedPacket);
-		int blockNum = da.getBlockNum(receivedPacket);
-		byte[] data = da.getData(receivedPacket);
-		InetAddress address = receivedPacket.getAddress();
-		int packetPort = receivedPacket.getPort();
-		
-		//tack on garbage in dataWithTrash[]
-		byte[] dataWithTrash = new byte[data.length+trash.length];
-		int i=0;
-		for (; i<data.length; i++)
-		{
-			dataWithTrash[i] = data[i];
-		}
-		for (int c=0; i<dataWithTrash.length; i++,c++)
-		{
-			dataWithTrash[i] = trash[c];
-		}
+		console.print("Adding " + rule.getExtraBytes() + " Bytes of garbage to datagram...");
+		//generate trash
+		byte[] trash = (new TrashFactory()).produce(rule.getExtraBytes());
+		
+		//the packet as it was, header and all, with the garbage after it
+		codec.wrap(receivedPacket);
+		int length = Math.max(codec.length(), PacketCodec.HEADER);
+		byte[] dataWithTrash = new byte[length+trash.length];
+		System.arraycopy(receivedPacket.getData(), receivedPacket.getOffset(), dataWithTrash, 0, codec.length());
+		System.arraycopy(trash, 0, dataWithTrash, length, trash.length);
 
 		//generate datagram and send datagram
-		receivedPacket = da.produceDATA(opCode, blockNum, dataWithTrash, address, packetPort);
+		receivedPacket = new DatagramPacket(dataWithTrash, dataWithTrash.length, receivedPacket.getAddress(), receivedPacket.getPort());
 		sendDatagram(outPort,socket);
 		
 		needSend=false;
@@ -323,7 +381,7 @@ public class TFTPHost
 	
 	public void changeType(int outPort, DatagramSocket socket)//change OP
 	{
-		console.print("Changeing Type to" +inputStack.peek().getOpcode());
+		console.print("Changeing Type to" +rule.getOpcode());
 		
 		InetAddress localAddress=null;
 		
@@ -333,28 +391,25 @@ public class TFTPHost
 		}
 		catch(Exception e) {}
 		
-		byte newOP[] = new byte[2];
-		
-		newOP[1] = (byte)(inputStack.peek().getOpcode());
-		newOP[0] = (byte)(0);
-		
+		int newOP = rule.getOpcode() & 0xFF;
+		int opcode = codec.wrap(receivedPacket).opcode();
 		
-		if(receivedPacket.getData()[1]==1 ||receivedPacket.getData()[1]==2)
+		if(opcode==PacketCodec.RRQ || opcode==PacketCodec.WRQ)
 		{
-			receivedPacket=dataArt.produceRWRQ(newOP,dataArt.getFileName(receivedPacket),dataArt.getMode(receivedPacket), localAddress, outPort);
+			receivedPacket=rebuildRequest(newOP, codec.mode(), localAddress, outPort);
 			console.print("change read/write rrq");
 		}
 		
-		else if (receivedPacket.getData()[1]==3)
+		else if (opcode==PacketCodec.DATA || opcode==PacketCodec.ACK)
 		{
-			console.print("change data");
-			receivedPacket=dataArt.produceDATA(newOP, dataArt.getBlockNum(receivedPacket), dataArt.getData(receivedPacket), localAddress,outPort);
-		}
-		
-		else if (receivedPacket.getData()[1]==4)
-		{
-			console.print("change ack");
-			receivedPacket=dataArt.produceACK(newOP, dataArt.getBlockNum(receivedPacket), localAddress,outPort);
+			console.print(opcode==PacketCodec.DATA ? "change data" : "change ack");
+			//the opcode is changed where it is, an ACK keeps just its header as it always has
+			if(opcode==PacketCodec.ACK)
+			{
+				receivedPacket.setLength(PacketCodec.HEADER);
+			}
+			codec.putOpcode(newOP);
+			receivedPacket.setAddress(localAddress);
 		}
 		
 		else 
@@ -370,40 +425,32 @@ public class TFTPHost
 	
 	public void changePort(int outPort, DatagramSocket socket)
 	{
-		console.print("Sending Data to"+ inputStack.peek().getTID());
-		sendDatagram(inputStack.peek().getTID(),socket);
+		console.print("Sending Data to"+ rule.getTID());
+		sendDatagram(rule.getTID(),socket);
 		needSend=false;
 	}
 	
 	public void changeBlock(int outPort, DatagramSocket socket)
 	{
-		console.print("Change Block slected, changing block number to "+inputStack.peek().getAlteredBlockNum());
+		console.print("Change Block slected, changing block number to "+rule.getAlteredBlockNum());
 		
 		InetAddress localAddress=null;
 		
-		byte newOP[] = new byte[2];
-		
-		newOP[1] = (byte)(receivedPacket.getData()[1] & 0xFF);
-		newOP[0] = (byte)((receivedPacket.getData()[0] >> 8)& 0xFF);
-		
 		try
 		{
 			localAddress = InetAddress.getLocalHost();
 		}
 		catch(Exception e) {}
 		
-		int newBlock = (inputStack.peek().getAlteredBlockNum());
+		int newBlock = (rule.getAlteredBlockNum());
 		
 		
-		if(receivedPacket.getData()[1]==3)
-		{
-			
-			receivedPacket=dataArt.produceDATA(newOP, newBlock, dataArt.getData(receivedPacket), localAddress,outPort);
-		}
-		
-		else if (receivedPacket.getData()[1]==4)
+		int opcode = codec.wrap(receivedPacket).opcode();
+		if(opcode==PacketCodec.DATA || opcode==PacketCodec.ACK)
 		{
-			receivedPacket=dataArt.produceACK(newOP, newBlock, localAddress,outPort);
+			//the block number is changed where it is, data and all stay put
+			codec.putBlock(newBlock);
+			receivedPacket.setAddress(localAddress);
 		}
 		
 		else 
@@ -500,127 +547,71 @@ public class TFTPHost
 		}
 	}
 	
-	public void delayPack(int delay, int clientPort,DatagramSocket  genSocket)
+	//receivedPacket to outPort through the link and the impairment profile: lost, held until due, or sent now
+	private void impairedSend(int outPort, DatagramSocket socket)
 	{
-		int[] delayArray = new int[MAX_DELAY_SEGMENTS];
-		if(verbose)
+		if(impaired == null && shaping == null)
 		{
-			console.print("IN DELAY PACKET "+delay);
+			sendDatagram(outPort, socket);
+			return;
 		}
-		for(int k = 0; delay != 0; k++){
-			if(delay < CLIENT_SERVER_TIMEOUT){
-				delayArray[k] = delay;
-				delay = 0;
-			}
-			else	{
-				delayArray[k] = CLIENT_SERVER_TIMEOUT;
-				delay = delay - CLIENT_SERVER_TIMEOUT;
+		int direction = outPort == clientPort ? ImpairmentProfile.DOWN : ImpairmentProfile.UP;
+		long now = System.currentTimeMillis();
+		
+		//the link's queue first, a packet it has no room for goes no further
+		long wait = 0;
+		if(shaping != null)
+		{
+			wait = shaping.depart(direction, receivedPacket.getLength(), now);
+			if(wait < 0)
+			{
+				log.debug("Link: queue full, packet dropped");
+				return;
 			}
 		}
-		
-		for(int i = 0; i < delayArray.length; i++ )
+		int copies = 1;
+		fates[0] = 0;
+		if(impaired != null)
+		{
+			copies = impaired.impair(direction, fates);
+		}
+		if(copies == 0)
 		{
-			if(delayArray[i]>0)
+			log.debug("Impairment: packet lost");
+		}
+		for(int i=0; i<copies; i++)
+		{
+			if(wait + fates[i] == 0)
 			{
-			
-				try
-					{
-						if(verbose)
-						{
-							console.print("Delaying packet unless other received"+ delayArray[i]);
-						}
-						tryReceive(genSocket, delayArray[i]);//receive something random	
-						
-						if(receivedPacket.getPort()==clientPort)
-						{
-							sendDatagram(serverPort, genSocket);
-							needSend=false;
-						}
-						
-						else if(receivedPacket.getPort()==serverPort)
-						{
-							sendDatagram(clientPort, genSocket);
-							needSend=false;
-						}
-					}
-					catch (SocketException see)
-					{
-						console.printError("SOTIMEOUT SET RETURN ERRROR: Add coherent comments");
-						return;
-					}
-					catch (IOException ioe)//timeout, did not receive data, should delay packet
-					{
-						if(delayArray[i+1]==0)
-						{
-							if(verbose)
-							{
-								console.print("Delay Reached, Data sent");
-							}
-							sendDatagram(clientPort, genSocket);
-							needSend=false;
-						}
-					}
-				}
+				sendDatagram(outPort, socket);
 			}
-		
+			else
+			{
+				hold(outPort, now + wait + fates[i]);
+			}
+		}
+	}
+	
+	//the packet goes out delay ms from now, everything else keeps being forwarded meanwhile
+	public void delayPack(int delay, int clientPort,DatagramSocket  genSocket)
+	{
 		if(verbose)
 		{
-			console.print("End of delay pack logic");
+			console.print("Holding packet for " + delay + " ms");
 		}
-		return;
+		hold(clientPort, System.currentTimeMillis() + delay);
+		needSend=false;
 	}
 	
+	//the packet goes out now and again a moment later
 	public void duplicatePack( int cPort,DatagramSocket  genSocket)
 	{
-		DatagramPacket storedAck = null;
-		
-		//send datagram to clientPort
-		
 		sendDatagram(cPort, genSocket);
+		hold(cPort, System.currentTimeMillis() + DUPLICATE_GAP);
 		needSend=false;
-		//wait for ACK
-		try
-		{
-			storedAck = receive(genSocket, 0);
-		}
-		catch(IOException timeout)
-		{
-			console.printError("HOST TIMEOUT WAITING FOR CLIENT TO TRANSMIT");
-			return;
-		}
-		
-		//send duplicate
 		if (verbose)
 		{
-			console.print("Sending duplicate to client...");
-		}
-		
-		receivedPacket=lastReceivedPacket;
-		if(receivedPacket.getPort()==clientPort)
-		{
-			sendDatagram(serverPort, genSocket);
-		}
-		
-		else if(receivedPacket.getPort()==serverPort)
-		{
-			sendDatagram(clientPort, genSocket);
-		}
-		needSend=false;
-		//wait for (lack of) responsee
-		try
-		{
-			receive(genSocket, 50);
-			sendDatagram(cPort, genSocket);
-			needSend=false;
-			return;
-		}
-		catch (IOException ioe)
-		{
-			if (verbose)
-			{
-				console.print("No response from client with duplicate!");
-			}
-			lastReceivedPacket = storedAck; 
+			console.print("Duplicate to follow in " + DUPLICATE_GAP + " ms");
 		}
 	}
 	
@@ -636,72 +627,26 @@ public class TFTPHost
 	
 	public void maybeSend(int clientPort,DatagramSocket genSocket,DatagramPacket receivedPacket)
 	{    
-		if(inputStack.peek()!=null)	
+		//the error for this packet, by its type, block number and which way it is going
+		rule = null;
+		if(inputStack.length() != 0)
 		{
+			codec.wrap(receivedPacket);
+			rule = inputStack.take(codec.opcode(), codec.block(), clientPort == this.clientPort ? Input.DIR_TO_CLIENT : Input.DIR_TO_SERVER);
+		}
+		
+		if(rule != null)
+		{
+			//proper packet type and block num, mess with this one right here
 			if(verbose)
 			{
-				console.print("looking for proper block");
-			}
-			byte byteBlockNum[]=new byte[2];
-			int bNum=inputStack.peek().getBlockNum();
-			int mode=inputStack.peek().getMode();
-			int delay=(inputStack.peek().getDelay())*1000;
-			int packType=inputStack.peek().getPacketType();
-			byte bytePackType[] = new byte[2];
-			
-			bytePackType[1] = (byte)(packType & 0xFF);
-			bytePackType[0] = (byte)((packType >> 8)& 0xFF);
-			
-			byteBlockNum[1] = (byte)(bNum & 0xFF);
-			byteBlockNum[0] = (byte)((bNum >> 8)& 0xFF);
-			
-			/*
-			console.print("bytePackType[0]: "+ bytePackType[0]);
-			console.print("bytePackType[1]: "+bytePackType[1]);
-			
-			console.print("receivedPacket.getData()[0]: "+ receivedPacket.getData()[0]);
-			console.print("receivedPacket.getData()[1]: "+receivedPacket.getData()[1]);
-			*/
-			
-			if(bytePackType[1]==receivedPacket.getData()[1] && bytePackType[0] == receivedPacket.getData()[0] && byteBlockNum[1]==receivedPacket.getData()[3] && byteBlockNum[0]==receivedPacket.getData()[2])
-			{
-				//proper packet type and block num, mess with this one right here
-				if(verbose)
-				{
-					console.print("Block Match");
-				}
-				passIt(mode, delay,clientPort, genSocket);
-				//sendDatagram(clientPort, genSocket);
-				inputStack.pop();
- 
-			}
-			/* Can't check block numbers for requests when mode changing.*/
-			else if((bytePackType[1]==receivedPacket.getData()[1] && bytePackType[0] == receivedPacket.getData()[0]) &&  bytePackType[0] == 0 && (bytePackType[1] == 1  || (bytePackType[1] == 2)))
-			{
-				//proper packet type and block num, mess with this one right here
-				if(verbose)
-				{
-					console.print("Request Match");
-				}
-				passIt(mode, delay,clientPort, genSocket);
-				//sendDatagram(clientPort, genSocket);
-				inputStack.pop();
- 
-			}
-			else
-			{
-				if(verbose)
-				{
-					console.print("Not Proper block, sending normally");
-				}
-				sendDatagram(clientPort, genSocket);
-				
+				console.print("Match: " + rule.toFancyString());
 			}
+			passIt(rule.getMode(), rule.getDelay()*1000, clientPort, genSocket);
 		}
-	
 		else
 		{
-			sendDatagram(clientPort, genSocket);
+			impairedSend(clientPort, genSocket);
 		}
 	}
 	
@@ -736,13 +681,22 @@ public class TFTPHost
 		
 		//save port 
 		clientPort = receivedPacket.getPort();
+		
+		//this transfer's own copy of the impairment, decided from the profile's seed
+		impaired = impairment.isOff() ? null : impairment.forSession(0);
+		shaping = link.isOff() ? null : link.copy();
 	
 		while (true)
 		{
 					
 			if(!needSend)
 			{
-				receiveDatagram(genSocket);
+				//held packets go out when due, nothing waits on them
+				if(!receiveUntilDue(genSocket))
+				{
+					releaseHeld(genSocket);
+					continue;
+				}
 				if(serverPort==0)
 				{
 					serverPort=receivedPacket.getPort();
@@ -783,6 +737,117 @@ public class TFTPHost
 		
 	}
 	
+	//forward with a ProxyEngine on the host's port, the console stays free for commands
+	private void startProxy()
+	{
+		if(proxy != null)
+		{
+			console.print("Proxy engine already running, 'sessions' to see it");
+			return;
+		}
+		//the engine's channel takes over the port
+		inSocket.close();
+		try
+		{
+			proxy = new ProxyEngine(CLIENT_RECEIVE_PORT, SERVER_RECEIVE_PORT, console, log, inputStack.copy());
+			proxy.setImpairment(impairment.forSession(0));
+			proxy.setLink(link.isOff() ? null : link.copy());
+			proxy.start();
+		}
+		catch (IOException e)
+		{
+			console.printError("Could not start proxy engine: " + e.getMessage());
+			proxy = null;
+			reopenInSocket();
+		}
+	}
+	
+	
+	//stop the ProxyEngine, the port goes back to errorSimHandle()
+	private void stopProxy()
+	{
+		proxy.shutdown();
+		try
+		{
+			proxy.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		proxy = null;
+		reopenInSocket();
+	}
+	
+	
+	//'impair ...' changes the impairment profile, the profile is printed after
+	private void impairCommand(String[] input)
+	{
+		if(input.length > 1)
+		{
+			try
+			{
+				impairment.configure(input);
+			}
+			catch (IllegalArgumentException e)
+			{
+				console.printOperandError(e.getMessage());
+				return;
+			}
+			//sessions the proxy engine opens from now on are impaired as the profile is now
+			if(proxy != null)
+			{
+				proxy.setImpairment(impairment.forSession(0));
+			}
+		}
+		for(String line : impairment.report())
+		{
+			console.print(line);
+		}
+	}
+	
+	
+	//'link ...' changes the emulated link, the link is printed after
+	private void linkCommand(String[] input)
+	{
+		if(input.length > 1)
+		{
+			try
+			{
+				link.configure(input);
+			}
+			catch (IllegalArgumentException e)
+			{
+				console.printOperandError(e.getMessage());
+				return;
+			}
+			//the proxy engine starts again on an empty link as it is now
+			if(proxy != null)
+			{
+				proxy.setLink(link.isOff() ? null : link.copy());
+			}
+		}
+		for(String line : link.report())
+		{
+			console.print(line);
+		}
+	}
+	
+	
+	private void reopenInSocket()
+	{
+		try
+		{
+			inSocket = new DatagramSocket(CLIENT_RECEIVE_PORT);
+		}
+		catch (SocketException se)
+		{
+			se.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	
 	public void mainPassingLoop()
 	{
 		//declaring local variables
@@ -798,10 +863,22 @@ public class TFTPHost
 		console.print("'clear'                                  - clear screen");
 		console.print("'close'                                 - exit client, close ports, be graceful");
 		console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+		console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 		console.print("'test'                                    - runs a test for the console");
 		console.print("'errors'                               - display a summary of all errors to be simulated");
 		console.print("'reset'                                 - reset the errors to be simulated");
 		console.print("'run'                                   - finalize the number of errors to simulate & start host");
+		console.print("'engine TYPE'                 - 'classic' (default) forwards one transfer, 'nio' any number at once");
+		console.print("'sessions'                          - list the transfers the nio engine is forwarding");
+		console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
+		console.print("'impair'                              - show the impairment profile and what it has done so far");
+		console.print("'impair preset NAME'      - impair both directions as 'loss1', 'loss5', 'loss10', 'burst', 'jitter' or 'wan'");
+		console.print("'impair DIR SETTING'       - DIR 'up', 'down' or 'both': 'loss P', 'burst P R [BAD [GOOD]]', 'delay MS [JITTER [DIST]]',");
+		console.print("                                            'reorder P [GAP]', 'dup P' or 'off' (P in %, DIST 'uniform', 'normal' or 'pareto')");
+		console.print("'impair seed N'                 - seed the impairment's random decisions, 'impair off' to stop impairing");
+		console.print("'link'                                  - show the emulated link and its queue depth and drops so far");
+		console.print("'link DIR SETTING'         - DIR 'up', 'down' or 'both': 'rate R [BURST]' (R as '10mbit', BURST in bytes),");
+		console.print("                                            'queue N' (packets, tail drop), 'delay MS' (propagation) or 'off'");
 		console.println();
 		console.print("'delay PT BN DL'             - set a delay for packet type PT, block number BN for DL sec");
 		console.print("'dup PT BN '                      - duplicate packety type PT, block number BN");
@@ -811,6 +888,8 @@ public class TFTPHost
 		console.print("'opcode PT BN OP'         - change packet type PT, number BN's opcode to OP");				
 		console.print("'tid PT BN TID'                 - change packet PT block number BN's destination port to TID");
 		console.print("'blocknum PT BN B2'     - change packet PT, block number BN's block number to B2");	
+		console.print("'direction D'                   - errors entered after this are for packets going to D: 'server', 'client' or 'any'");
+		console.print("                                            PT or BN may be '*' for any packet type or block number");
 		/*
 		console.println();
 		console.print("'0 PT BN DL'                    - set a delay for packet type PT, block number BN for DL blocks");
@@ -831,6 +910,7 @@ public class TFTPHost
 		//TODO DELETE THIS
 		//==================================================
 		this.verbose = true;
+		log.setVerbose(verbose);
 		console.print("Verbose mode set " + verbose);
 		//==================================================
 		
@@ -840,6 +920,18 @@ public class TFTPHost
 			//get PARSED user input
 			input = console.getParsedInput(true);
 			
+			//impairment and link commands take any number of words
+			if(input.length > 0 && input[0].equals("impair"))
+			{
+				impairCommand(input);
+				continue;
+			}
+			if(input.length > 0 && input[0].equals("link"))
+			{
+				linkCommand(input);
+				continue;
+			}
+			
 			//process input based on param number
 			switch(input.length)
 			{
@@ -852,10 +944,22 @@ public class TFTPHost
 						console.print("'clear'                                  - clear screen");
 						console.print("'close'                                 - exit client, close ports, be graceful");
 						console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+						console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 						console.print("'test'                                    - runs a test for the console");
 						console.print("'errors'                               - display a summary of all errors to be simulated");
 						console.print("'reset'                                 - reset the errors to be simulated");
 						console.print("'run'                                   - finalize the number of errors to simulate & start host");
+						console.print("'engine TYPE'                 - 'classic' (default) forwards one transfer, 'nio' any number at once");
+						console.print("'sessions'                          - list the transfers the nio engine is forwarding");
+						console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
+						console.print("'impair'                              - show the impairment profile and what it has done so far");
+						console.print("'impair preset NAME'      - impair both directions as 'loss1', 'loss5', 'loss10', 'burst', 'jitter' or 'wan'");
+						console.print("'impair DIR SETTING'       - DIR 'up', 'down' or 'both': 'loss P', 'burst P R [BAD [GOOD]]', 'delay MS [JITTER [DIST]]',");
+						console.print("                                            'reorder P [GAP]', 'dup P' or 'off' (P in %, DIST 'uniform', 'normal' or 'pareto')");
+						console.print("'impair seed N'                 - seed the impairment's random decisions, 'impair off' to stop impairing");
+						console.print("'link'                                  - show the emulated link and its queue depth and drops so far");
+						console.print("'link DIR SETTING'         - DIR 'up', 'down' or 'both': 'rate R [BURST]' (R as '10mbit', BURST in bytes),");
+						console.print("                                            'queue N' (packets, tail drop), 'delay MS' (propagation) or 'off'");
 						console.println();
 						console.print("'delay PT BN DL'             - set a delay for packet type PT, block number BN for DL sec");
 						console.print("'dup PT BN '                      - duplicate packety type PT, block number BN");
@@ -869,6 +973,8 @@ public class TFTPHost
 						console.print("'opcode PT BN OP'         - change packet type PT, number BN's opcode to OP");				
 						console.print("'tid PT BN TID'                 - change packet PT block number BN's destination port to TID");
 						console.print("'blocknum PT BN B2'     - change packet PT, block number BN's block number to B2");			
+						console.print("'direction D'                   - errors entered after this are for packets going to D: 'server', 'client' or 'any'");
+						console.print("                                            PT or BN may be '*' for any packet type or block number");
 						/*
 						console.println();
 						console.print("'0 PT BN DL'                    - set a delay for packet type PT, block number BN for DL blocks");
@@ -891,7 +997,29 @@ public class TFTPHost
 					//run the console
 					else if (input[0].equals("run"))
 					{
-						errorSimHandle();
+						if(nioEngine)
+						{
+							startProxy();
+						}
+						else
+						{
+							errorSimHandle();
+						}
+					}
+					//what the proxy engine is forwarding
+					else if (input[0].equals("sessions"))
+					{
+						if(proxy == null)
+						{
+							console.print("Proxy engine not running, 'engine nio' then 'run' to start it");
+						}
+						else
+						{
+							for(String line : proxy.report())
+							{
+								console.print(line);
+							}
+						}
 					}
 					//clear console
 					else if (input[0].equals("clear"))
@@ -911,6 +1039,10 @@ public class TFTPHost
 					{
 						console.print("Closing with grace....");
 						runFlag = false;
+						if(proxy != null)
+						{
+							stopProxy();
+						}
 						//this.close();
 						System.exit(0);
 					}
@@ -933,17 +1065,91 @@ public class TFTPHost
 						if (input[1].equals("true"))
 						{
 							verbose = true;
+							log.setVerbose(verbose);
 							console.print("Verbose set true");
 						}
 						else if (input[1].equals("false"))
 						{
 							verbose = false;
+							log.setVerbose(verbose);
 						}
 						else
 						{
 							console.print("! Unknown Input !");
 						}
 					}
+					//how much is printed, finer than verbose
+					else if (input[0].equals("loglevel"))
+					{
+						Log.Level level = Log.parseLevel(input[1]);
+						if (level == null)
+						{
+							console.printOperandError("loglevel must be 'error', 'info', 'debug' or 'trace'");
+						}
+						else
+						{
+							log.setLevel(level);
+							verbose = log.isOn(Log.Level.DEBUG);
+							console.print("Log level set to: " + level + ", verbose mode " + verbose);
+						}
+					}
+					//how transfers are forwarded
+					else if (input[0].equals("engine"))
+					{
+						if (input[1].equals("nio"))
+						{
+							nioEngine = true;
+							console.print("Engine set to: nio, 'run' forwards any number of transfers at once");
+						}
+						else if (input[1].equals("classic"))
+						{
+							if(proxy != null)
+							{
+								stopProxy();
+							}
+							nioEngine = false;
+							console.print("Engine set to: classic");
+						}
+						else
+						{
+							console.printOperandError("engine must be 'classic' or 'nio'");
+						}
+					}
+					//which way the errors entered from now on are for
+					else if (input[0].equals("direction"))
+					{
+						if (input[1].equals("server") || input[1].equals("up"))
+						{
+							ruleDirection = Input.DIR_TO_SERVER;
+							console.print("Errors entered from now on are for packets going to the server");
+						}
+						else if (input[1].equals("client") || input[1].equals("down"))
+						{
+							ruleDirection = Input.DIR_TO_CLIENT;
+							console.print("Errors entered from now on are for packets going to the client");
+						}
+						else if (input[1].equals("any") || input[1].equals("both"))
+						{
+							ruleDirection = Input.DIR_ANY;
+							console.print("Errors entered from now on are for packets going either way");
+						}
+						else
+						{
+							console.printOperandError("direction must be 'server', 'client' or 'any'");
+						}
+					}
+					//how much of each packet verbose mode dumps
+					else if (input[0].equals("dump"))
+					{
+						if (HexDump.setLimit(input[1]))
+						{
+							console.print("Packet dump set to: " + HexDump.describeLimit());
+						}
+						else
+						{
+							console.printOperandError("dump must be 'all', 'header' or a number of bytes");
+						}
+					}
 					//alter color scheme
 					else if (input[0].equals("color") || input[0].equals("colour"))
 					{
@@ -979,12 +1185,12 @@ public class TFTPHost
 							}
 							else
 							{
-								packetType = Integer.parseInt(input[1]);
+								packetType = PTStringToInt(input[1]);
 							}
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							
 							//add to inputStack
-							inputStack.push(1, packetType, blockNum, 0, null);
+							inputStack.push(1, packetType, blockNum, 0, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1007,12 +1213,12 @@ public class TFTPHost
 							}
 							else
 							{
-								packetType = Integer.parseInt(input[1]);
+								packetType = PTStringToInt(input[1]);
 							}
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							
 							//add to inputStack
-							inputStack.push(2, packetType, blockNum, 0, null);
+							inputStack.push(2, packetType, blockNum, 0, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1025,11 +1231,11 @@ public class TFTPHost
 						//confirm verb1 is correct (either RRQ or WRQ)
 						if(input[1].equals("rrq") || input[1].equals("" + this.PACKET_RRQ))
 						{
-							inputStack.push(ERR_MODE, PACKET_RRQ, 0, 0, input[2]);
+							inputStack.push(ERR_MODE, PACKET_RRQ, 0, 0, input[2], ruleDirection);
 						}
 						else if (input[1].equals("wrq") || input[1].equals("" + this.PACKET_WRQ))
 						{
-							inputStack.push(ERR_MODE, PACKET_WRQ, 0, 0, input[2]);
+							inputStack.push(ERR_MODE, PACKET_WRQ, 0, 0, input[2], ruleDirection);
 						}
 						else
 						{
@@ -1050,10 +1256,10 @@ public class TFTPHost
 						try
 						{
 							packetType = PTStringToInt(input[1]);
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							extraInt = Integer.parseInt(input[3]);
 							//add to inputStack
-							inputStack.push(0, packetType, blockNum, extraInt, null);
+							inputStack.push(0, packetType, blockNum, extraInt, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1068,10 +1274,10 @@ public class TFTPHost
 							try
 							{
 								//convert strings to ints
-								blockNum = Integer.parseInt(input[2]);
+								blockNum = parseBlock(input[2]);
 								extraInt = Integer.parseInt(input[3]);
 							
-								inputStack.push(ERR_ADD_DATA, PACKET_DATA, blockNum, extraInt, null);
+								inputStack.push(ERR_ADD_DATA, PACKET_DATA, blockNum, extraInt, null, ruleDirection);
 							}
 							catch (NumberFormatException nfe)
 							{
@@ -1090,10 +1296,10 @@ public class TFTPHost
 						try
 						{
 							packetType = PTStringToInt(input[1]);
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							extraInt = Integer.parseInt(input[3]);
 							//add to inputStack
-							inputStack.push(ERR_OPCODE, packetType, blockNum, extraInt, null);
+							inputStack.push(ERR_OPCODE, packetType, blockNum, extraInt, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1106,10 +1312,10 @@ public class TFTPHost
 						try
 						{
 							packetType = PTStringToInt(input[1]);
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							extraInt = Integer.parseInt(input[3]);
 							//add to inputStack
-							inputStack.push(ERR_TID, packetType, blockNum, extraInt, null);
+							inputStack.push(ERR_TID, packetType, blockNum, extraInt, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1122,10 +1328,10 @@ public class TFTPHost
 						try
 						{
 							packetType = PTStringToInt(input[1]);
-							blockNum = Integer.parseInt(input[2]);
+							blockNum = parseBlock(input[2]);
 							extraInt = Integer.parseInt(input[3]);
 							//add to inputStack
-							inputStack.push(ERR_BLOCKNUM, packetType, blockNum, extraInt, null);
+							inputStack.push(ERR_BLOCKNUM, packetType, blockNum, extraInt, null, ruleDirection);
 						}
 						catch (NumberFormatException nfe)
 						{
@@ -1143,7 +1349,29 @@ public class TFTPHost
 					console.print("! Unknown Input !");
 					break;
 			}
+			
+			//sessions the proxy engine opens from now on get the errors as they are now
+			if(proxy != null)
+			{
+				proxy.setFaults(inputStack.copy());
+			}
+		}
+	}
+	
+	
+	//block number entered, 0 to 65535 or '*' for any
+	private int parseBlock(String input) throws NumberFormatException
+	{
+		if (input.equals("*"))
+		{
+			return Input.ANY;
 		}
+		int blockNum = Integer.parseInt(input);
+		if (blockNum < 0 || blockNum > 65535)
+		{
+			throw new NumberFormatException("block number out of range: " + input);
+		}
+		return blockNum;
 	}
 	
 	
@@ -1170,6 +1398,10 @@ public class TFTPHost
 		{
 			return this.PACKET_ERR;
 		}
+		else if (input.equals("*"))
+		{
+			return Input.ANY;
+		}
 		else
 		{;
 			return Integer.parseInt(input);
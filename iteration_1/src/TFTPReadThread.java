@@ -3,7 +3,7 @@
  *Project:           TFTP Project - Group 4
  *Author:            Nathaniel Charlebois                                            
  *Date of Update:    29/09/2016                                              
- *Version:           1.1.4                                                      
+ *Version:           1.2.7                                                      
  *                                                                                    
  *Purpose:           Handles the RRQs by:
  *						-Sending DATA
@@ -32,9 +32,37 @@
  *                 	v1.1.4
  *                 		-Added timeout/re-transmission protocol
  *                 		-
+ *                 	v1.1.5
+ *                 		-Transfer body moved to serve(), ServerThread.run() deregisters it
+ *                 		-No ThreadGroup, transfers are tracked by the server's SessionRegistry
+ *                 	v1.1.6
+ *                 		-File is streamed from TFTPReader block by block instead of loaded up front
+ *                 	v1.1.7
+ *                 		-blksize option (RFC 2348), answered with an OACK
+ *                 	v1.1.8
+ *                 		-windowsize option (RFC 7440), up to windowSize DATA in flight
+ *                 		-go back to the block after the client's last ACK on a gap or timeout
+ *                 	v1.1.9
+ *                 		-retransmission timer follows the client's round trip time (RttEstimator)
+ *                 	v1.2.0
+ *                 		-blocks come through the server's BlockCache when it has one
+ *                 	v1.2.1
+ *                 		-file checks shared with RRQs for the same file arriving at the same time (FileLookup)
+ *                 	v1.2.2
+ *                 		-DATA built in pooled buffers, one per window slot, read straight from TFTPReader
+ *                 		-ACKs received into a buffer that can hold more than 4 bytes, so oversize ones are caught
+ *                 	v1.2.3
+ *                 		-request read and OACK/DATA headers written in place with PacketCodec
+ *                 	v1.2.4
+ *                 		-serves a TFTPRequest the listener already read, the request is not parsed again
+ *                 	v1.2.5
+ *                 		-given console may be any UIFramework, a headless server passes one with no window
+ *                 	v1.2.6
+ *                 		-per-packet lines printed through a Log, at DEBUG, built only when printed
+ *                 	v1.2.7
+ *                 		-blocks, bytes, duplicate ACKs and completion counted in the transfer's TransferStats
  *  
  */
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -49,27 +77,24 @@ import java.util.*;
 
 import javax.swing.JTextArea;
 
-import ui.ConsoleUI;
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
 
 class TFTPReadThread  extends ServerThread
 {
 	//INIT general variables
-	boolean sendZeroDataPacket = false;
 	boolean duplicateACK = false;
 	private String threadNumber;
-	public final byte[] response = {0, 3, 0, 0};
 	private boolean terminate = false;
 	private File serverDump;
 
 
-	public TFTPReadThread(ThreadGroup group, DatagramPacket requestPacketInfo, String thread, Boolean verboseMode,File path) {
-		super(group,thread,new ConsoleUI("Read Thread "+thread));
-		console.run();
-		requestPacket = requestPacketInfo;
+	public TFTPReadThread(TFTPRequest requestInfo, String thread, Boolean verboseMode,File path) {
+		super(thread,window("Read Thread "+thread));
+		setRequest(requestInfo);
 		threadNumber  = thread;
-		verbose = verboseMode; 
+		setVerbose(verboseMode);
 		serverDump = path;
-		clientTID = requestPacketInfo.getPort();
 		try {
 			sendReceiveSocket = new DatagramSocket();
 		} catch (SocketException e) {
@@ -77,20 +102,19 @@ class TFTPReadThread  extends ServerThread
 			e.printStackTrace();
 		}
 		try {
-			sendReceiveSocket.setSoTimeout(TIMEOUT*1000);
+			sendReceiveSocket.setSoTimeout(rtt.timeout());
 		} catch (SocketException e) {
 			//Handle Timeout Exception
 			e.printStackTrace();
 		}
 	}
 
-	public TFTPReadThread(ThreadGroup group,ConsoleUI transcript, DatagramPacket requestPacketInfo, String thread, Boolean verboseMode,File path) {
-		super(group,thread,transcript);
-		requestPacket = requestPacketInfo;
+	public TFTPReadThread(UIFramework transcript, TFTPRequest requestInfo, String thread, Boolean verboseMode,File path) {
+		super(thread,transcript);
+		setRequest(requestInfo);
 		threadNumber  = thread;
-		verbose = verboseMode; 
+		setVerbose(verboseMode);
 		serverDump = path;
-		clientTID = requestPacketInfo.getPort();
 		try {
 			sendReceiveSocket = new DatagramSocket();
 		} catch (SocketException e) {
@@ -98,7 +122,7 @@ class TFTPReadThread  extends ServerThread
 			e.printStackTrace();
 		}
 		try {
-			sendReceiveSocket.setSoTimeout(TIMEOUT*1000);
+			sendReceiveSocket.setSoTimeout(rtt.timeout());
 		} catch (SocketException e) {
 			//Handle Timeout Exception
 			e.printStackTrace();
@@ -106,75 +130,60 @@ class TFTPReadThread  extends ServerThread
 	}
 
 
-	public void run() {
+	protected void serve() {
 
 		connectionEstablished = true;
 		
-		printReceivedPacket(requestPacket, verbose);
+		printRequest();
 
 		/* Exit Gracefully if the stop is requested. */
 		if(isInterrupted()){exitGraceFully();return;}
-		//Parsing Data for filename
-		ByteArrayOutputStream filename = new ByteArrayOutputStream();
-		ByteArrayOutputStream mode = new ByteArrayOutputStream();
-		boolean change = false; 
-		for(int i = 2; i<requestPacket.getData().length;i++){
-			if(isInterrupted()){exitGraceFully();return;}
-			if(requestPacket.getData()[i]>=32){
-				if(change == false){
-					filename.write(requestPacket.getData()[i]);
-				}
-				else{
-					mode.write(requestPacket.getData()[i]);
-				}
-			}
-			if(requestPacket.getData()[i]!=0){
-				if(requestPacket.getData()[i+1] == 0){
-					change = true;//switch to parse mode
-					i++;
-				}
-			}
-		}
+		//filename, mode and options were read by the listener
+		String filename = request.fileName;
 
 
 		/* Exit Gracefully if the stop is requested. */
 		if(isInterrupted()){exitGraceFully();return;}
 		if(verbose){
 			console.print("Request parsed for:");
-			console.print("	Filename: " + new String(filename.toByteArray(),0,filename.toByteArray().length));
-			console.print("	Mode: " + new String(mode.toByteArray(),0,mode.toByteArray().length) + "\n");
+			console.print("	Filename: " + filename);
+			console.print("	Mode: " + request.mode + "\n");
 		}
 		
-	   String modeString = new String(mode.toByteArray(), 
-			   	0,mode.toByteArray().length);
 	   //Check for Valid MODE
-	   if((modeString.equalsIgnoreCase("netascii"))){
-
-	   }
-	   else if((modeString.equalsIgnoreCase("octet"))){
-
-	   } else {
+	   if(!request.validMode()) {
 		   buildError(4,requestPacket,verbose,"Invalid Mode");
 		   exitGraceFully();
     	   return; 
 	   }
 
 		String absolutePath = serverDump.getAbsolutePath();
-		File file = new File(absolutePath + "/" +filename.toString());
-		if(!file.exists())
-		{
-			buildError(1,requestPacket,verbose,"");
+		File file = new File(absolutePath + "/" +filename);
+		FileLookup found;
+		try {
+			found = FileLookup.find(file);
+		} catch (IOException e) {
+			buildError(2,requestPacket,verbose,"");
 			return;
 		}
-
-		if(!file.canRead())
+		if(found.error != FileLookup.FOUND)
 		{
-			buildError(2,requestPacket,verbose,"");
+			buildError(found.error,requestPacket,verbose,"");
 			return;
 		}
-		TFTPReader reader = new TFTPReader();
+		//blksize and windowsize options (RFC 2348, RFC 7440), answered with an OACK before DATA 1
+		Map<String,String> options = request.options;
+		int negotiated = config.negotiateBlockSize(options);
+		int window = config.negotiateWindowSize(options);
+		if(negotiated > 0){
+			blockSize = negotiated;
+		}
+		if(window > 0){
+			windowSize = window;
+		}
+		TFTPReader reader = config.newReader(Math.max(TFTPReader.DEFAULT_READ_AHEAD, windowSize), blockSize);
 		try {
-			reader.readAndSplit(file.toString());
+			reader.open(file.toString(), found.key);
 
 		} catch (FileNotFoundException e1) {
 			if(file.exists())
@@ -189,68 +198,88 @@ class TFTPReadThread  extends ServerThread
 			//e.printStackTrace();
 			return;
 		}
-		byte[] rawData = new byte[4];
+		//room for one byte more than an ACK, so one that is too long shows
+		byte[] rawData = buffer(5);
 		int port = requestPacket.getPort();
 		InetAddress address = requestPacket.getAddress();
 		requestPacket = new DatagramPacket(rawData, rawData.length);
 		requestPacket.setPort(port);
 		requestPacket.setAddress(address);
-		while(!stopRequested()){
-
-			if(!retransmitDATA){
-				//Encode the block number into the response block 
-				response[3]=(byte)(blockNum & 0xFF);
-				response[2]=(byte)((blockNum >> 8)& 0xFF);
-
-
-				//Building datagram		
-
-
-				byte[] data = reader.pop();
-				//Check if the server needs to send a data Packet with 0 bytes
-				if(data!=null){
-					if(data.length==512 && reader.peek()==null){
-						sendZeroDataPacket = true;
+		
+		//OACK goes out as block 0, resent until the client ACKs it
+		Map<String,String> oack = ServerConfig.oackOptions(negotiated, window);
+		if(!oack.isEmpty()){
+			byte[] oackData = buffer(PacketCodec.oackLength(oack));
+			sendPacket = new DatagramPacket(oackData, codec.wrap(oackData, 0, 0).putOACK(oack), address, port);
+			blockNum = 0;
+			retransmitDATA = true;
+			boolean resend = false;
+			while(blockNum == 0){
+				if(retransmitDATA){
+					printSendPacket(sendPacket);
+					try {
+						sendReceiveSocket.send(sendPacket);
+					} catch (IOException e) {
+						e.printStackTrace();
+						System.exit(1);
 					}
+					rtt.sent(0, resend);
+					startTime = System.currentTimeMillis();
+					retransmitDATA = false;
+					resend = true;
 				}
-
-				/* If there's no more data to be read exit. */
-				if(data == null){
-					if(sendZeroDataPacket == true){
-						sendNoData(requestPacket,verbose, blockNum,sendReceiveSocket);
-						//Waiting to receive final ACK
-						byte[] finalACK = new byte[4];
-						DatagramPacket finalACKPacket = new DatagramPacket(finalACK, finalACK.length);
-						try {
-							sendReceiveSocket.receive(finalACKPacket);
-						} catch (IOException e) {
-							e.printStackTrace();
-							System.exit(1);
-						} 
-
-						printReceivedPacket(finalACKPacket, verbose);
-					}
-					console.print("Read Request has completed.");
-					exitGraceFully();
-					return;
-				}	
-				//Builds the datagram in format
-				/*
-						2 bytes    2 bytes       n bytes 
-						---------------------------------
-					 DATA  | 03    |   Block #  |    Data    |
-						---------------------------------
-				 */
-
-				byte dataPrime[] = Arrays.copyOf(response, response.length + data.length); 
-				System.arraycopy(data, 0, dataPrime, response.length, data.length);
-
-				/* Exit Gracefully if the stop is requested. */
-				if(stopRequested()){continue;}
-				sendPacket = new DatagramPacket(dataPrime, dataPrime.length,
-						requestPacket.getAddress(), requestPacket.getPort());
+				while(!receiveACK()){if(errorFlag){reader.close();exitGraceFully();return;}}
 			}
-				printSendPacket(sendPacket, verbose);
+		}
+		
+		//up to windowSize DATA go out before waiting for an ACK, the ones not yet
+		//acknowledged are kept so they can be resent after a gap or a timeout
+		SendWindow sendWindow = new SendWindow(windowSize);
+		DatagramPacket[] inFlight = new DatagramPacket[windowSize];
+		for(int i=0; i<windowSize; i++){
+			inFlight[i] = new DatagramPacket(buffer(blockSize+4), blockSize+4, address, port);
+		}
+		long built = 0;
+		while(!sendWindow.isComplete()){
+			
+			/* Exit Gracefully if the stop is requested. */
+			if(stopRequested()){reader.close();exitGraceFully();return;}
+			
+			while(sendWindow.canSend()){
+				long next = sendWindow.next();
+				int slot = (int)(next % windowSize);
+				boolean resend = next <= built;
+				if(!resend){
+					//next block is read from the file now, not up front, straight into the slot's packet
+					byte[] dataPrime = inFlight[slot].getData();
+					int length;
+					try {
+						length = reader.pop(dataPrime, PacketCodec.HEADER);
+					} catch (IOException e) {
+						reader.close();
+						buildError(2,requestPacket,verbose,"");
+						return;
+					}
+					//a file that is a multiple of the block size ends with a DATA with no data
+					if(length < 0){
+						length = 0;
+					}
+					if(length < blockSize){
+						sendWindow.lastBlock(next);
+					}
+					//Builds the datagram in format
+					/*
+							2 bytes    2 bytes       n bytes 
+							---------------------------------
+						 DATA  | 03    |   Block #  |    Data    |
+							---------------------------------
+					 */
+					inFlight[slot].setLength(codec.wrap(dataPrime, 0, 0).putDATA((int)next, length));
+					built = next;
+					stats.block(length);
+				}
+				sendPacket = inFlight[slot];
+				printSendPacket(sendPacket);
 
 				// Send the datagram packet to the client via a new socket.
 				try {
@@ -259,20 +288,44 @@ class TFTPReadThread  extends ServerThread
 					e.printStackTrace();
 					System.exit(1); 
 				}
+				sendWindow.sent();
+				rtt.sent(next, resend);
 				startTime = System.currentTimeMillis();
-				/* Exit Gracefully if the stop is requested. */
-				if(stopRequested()){continue;}
 				if(verbose){
-					console.print("Server: packet sent using port " + sendReceiveSocket.getLocalPort()+"/n");
+					console.print("Server: packet sent using port " + sendReceiveSocket.getLocalPort()+"\n");
 				}
-
-			
-			while(!receiveACK()){if(errorFlag){exitGraceFully();return;}}
-			printReceivedPacket(requestPacket, verbose);
+			}
 			
-
+			//the client ACKs the last block of a window, or the last one it got in order
+			int ack = receiveWindowACK();
+			if(errorFlag){reader.close();exitGraceFully();return;}
+			if(timeoutFlag){
+				sendWindow.timedOut();
+				continue;
+			}
+			if(ack < 0){
+				continue;
+			}
+			int outcome = sendWindow.ack(ack);
+			if(outcome != SendWindow.ACK_IGNORED){
+				rtt.answered(sendWindow.acked());
+			}
+			else{
+				stats.duplicate();
+				//repeated ACKs do not hold off the timeout
+				if(rtt.expired(startTime)){
+					if(rtt.timedOut()){reader.close();exitGraceFully();return;}
+					log.info("TIMEOUT EXCEEDED: SETTING RETRANSMIT TRUE");
+					sendWindow.timedOut();
+				}
+			}
+			if(outcome == SendWindow.ACK_REWOUND && verbose){
+				console.print("Server: resending from block " + sendWindow.next());
+			}
 		}
-		console.print("Server: thread closing.");
+		reader.close();
+		stats.completed();
+		log.info("Read Request has completed.");
 		exitGraceFully();
 	}
 
@@ -3,15 +3,34 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    26/09/2016                                              
-*Version:           1.0.0                                                      
+*Version:           1.1.4                                                      
 *                                                                                    
 *Purpose:           Read a file, parse into 512 byte sections
-*					and return a list of byte arrays
+*					and hand them out one at a time. Blocks are read
+*					lazily in bulk, with a bounded read-ahead, so a
+*					transfer only ever holds a few blocks in memory
 *					(Note currently file must be in the directory
 *					1 above src)
 * 
 * 
-*Update Log:    	v1.0.0
+*Update Log:    	v1.1.4
+*                       - pop(dest, off) copies the next block straight into a
+*                         packet buffer, without a cache blocks are no longer
+*                         copied into arrays of their own
+*                   v1.1.3
+*                       - a block missing from the cache is read once even
+*                         when several readers want it at the same time
+*                       - open(file, key) for callers that already looked the file up
+*                   v1.1.2
+*                       - optional BlockCache, blocks another transfer has
+*                         read are not read from disk again
+*                   v1.1.1
+*                       - block size can be set per reader (blksize option)
+*                   v1.1.0
+*                       - streams the file instead of loading it all in
+*                         readAndSplit(), pop/peek/isEmpty read ahead on demand
+*                       - open() added, readAndSplit() kept for old callers
+*                   v1.0.0
 *                       - null
 */
 
@@ -19,105 +38,279 @@
 //imports
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 
 public class TFTPReader 
 {
 	//declaring local instance variables
-	LinkedList<byte[]> dataChain;
+	private final ArrayDeque<byte[]> readAhead;
+	private final byte[] chunk;
+	private final int blockSize;
+	private FileInputStream input = null;
+	private boolean endOfFile = true;
+	private final BlockCache cache;			//shared with other readers, null to read everything from disk
+	private BlockCache.FileKey fileKey;		//the open file as the cache knows it
+	private long nextBlock = 0;				//index of the block pop() hands out next
+	private int chunkPos = 0;				//without a cache, the part of chunk not handed out yet
+	private int chunkEnd = 0;
 	
 	//declaring local class constants
 	private static final int MAX_SIZE = 512;
+	public static final int DEFAULT_READ_AHEAD = 8;
 	
 	
 	//constructor
 	public TFTPReader()
 	{
-		dataChain = new LinkedList<byte[]>();
+		this(DEFAULT_READ_AHEAD);
+	}
+	
+	
+	//constructor, holds at most readAheadBlocks blocks at once
+	public TFTPReader(int readAheadBlocks)
+	{
+		this(readAheadBlocks, MAX_SIZE);
+	}
+	
+	
+	//constructor, for blocks of blockSize bytes (blksize option)
+	public TFTPReader(int readAheadBlocks, int blockSize)
+	{
+		this(readAheadBlocks, blockSize, null);
+	}
+	
+	
+	//constructor, blocks are looked up in (and added to) cache before the file is read
+	public TFTPReader(int readAheadBlocks, int blockSize, BlockCache cache)
+	{
+		this.blockSize = blockSize;
+		this.cache = cache;
+		readAhead = new ArrayDeque<byte[]>(Math.max(1, readAheadBlocks));
+		chunk = new byte[Math.max(1, readAheadBlocks) * blockSize];
 	}
 
 	
-	/* reads file passed to it, returns a linked list of byte[]
-	 * splits file into arrays (0B to MAX_Size in length) 
-	 * (last array will ALWAYS be less than MAX_SIZE in length)
+	/* opens file passed to it and reads the first blocks
+	 * splits file into arrays (0B to MAX_Size in length) as they are popped
+	 * (last array will ALWAYS be less than MAX_SIZE in length, unless
+	 * the file is a multiple of MAX_SIZE)
 	 */	
-	public void readAndSplit(String file) throws FileNotFoundException, IOException  
+	public void open(String file) throws FileNotFoundException, IOException  
+	{
+		open(file, null);
+	}
+	
+	
+	//open() for a file already looked up, key is what the cache knows it by (null to look it up here)
+	public void open(String file, BlockCache.FileKey key) throws FileNotFoundException, IOException  
 	{
-		//declaring local variables
-		byte[] arr = new byte[MAX_SIZE];
-		int b = 0;
-		int i = 0;
+		//drop whatever was open before
+		close();
+		readAhead.clear();
+		chunkPos = 0;
+		chunkEnd = 0;
 		
-		//clear dataChain
-		dataChain.clear();
+		input = new FileInputStream(file);
+		endOfFile = false;
+		nextBlock = 0;
+		if (cache != null)
+		{
+			fileKey = key != null ? key : BlockCache.keyFor(new File(file));
+		}
 		
-		//load buffer with data
-		BufferedInputStream input = new BufferedInputStream(new FileInputStream(file));
+		//have the first block ready, read errors show up here like they used to
+		next();
+	}
+	
 	
-		//run until buffer is empty
-		while( (b=input.read()) != -1)
+	//old name for open(), the file is no longer read in all at once
+	public void readAndSplit(String file) throws FileNotFoundException, IOException  
+	{
+		open(file);
+	}
+	
+	
+	//make sure the next block is waiting, from the cache if it has it
+	private void next() throws IOException
+	{
+		if (!readAhead.isEmpty() || chunkPos < chunkEnd)
+		{
+			return;
+		}
+		if (cache != null && !endOfFile)
 		{
-			arr[i] = (byte)b;
-			i++;
-			
-			//check if current arr is full
-			if (i >= MAX_SIZE)
+			if (nextBlock * blockSize >= fileKey.size())
+			{
+				return;
+			}
+			byte[] block = cache.get(fileKey, blockSize, nextBlock);
+			if (block != null)
 			{
-				//reset 512B max arr construction, add full
-				//arr data to linked list to be returned
-				i=0;
-				dataChain.add(arr.clone());
+				readAhead.add(block);
+				return;
 			}
+			//blocks before this one may have come from the cache, the stream is not necessarily here
+			input.getChannel().position(nextBlock * blockSize);
+		}
+		fill();
+	}
+	
+	
+	//queue the next chunk of the file, readers missing the same blocks wait for one of them to read it
+	private void fill() throws IOException
+	{
+		if (endOfFile)
+		{
+			return;
 		}
 		
-		//more than 0 bytes left in arr
-		if (i > 0)
+		//without a cache blocks are handed out of the chunk itself
+		if (cache == null)
 		{
-			byte[] tempArr = new byte[i];
-			for(int a=0; a<i; a++)
+			chunkEnd = read();
+			chunkPos = 0;
+			return;
+		}
+		
+		byte[][] blocks = cache.load(fileKey, blockSize, nextBlock, new Callable<byte[][]>()
+		{
+			@Override
+			public byte[][] call() throws IOException
 			{
-				tempArr[a] = arr[a];
+				return split(read());
 			}
-			dataChain.add(tempArr);
+		});
+		for (int i = 0; i < blocks.length; i++)
+		{
+			readAhead.add(blocks[i]);
 		}
-		
-		//close buffer
-		input.close();
 	}
 	
 	
-	//passes the next [512max] array of bytes
-	public byte[] pop()
+	//read the next chunk of the file with one bulk read, returns the bytes in it
+	private int read() throws IOException
+	{
+		//fill the chunk, a short read before end of file just means read again
+		int n = 0;
+		int r;
+		while (n < chunk.length && (r = input.read(chunk, n, chunk.length - n)) != -1)
+		{
+			n += r;
+		}
+		if (n < chunk.length)
+		{
+			close();
+		}
+		return n;
+	}
+	
+	
+	//the first n bytes of the chunk as blocks of their own
+	private byte[][] split(int n)
+	{
+		byte[][] blocks = new byte[(n + blockSize - 1) / blockSize][];
+		for (int i = 0; i < blocks.length; i++)
+		{
+			int off = i * blockSize;
+			blocks[i] = Arrays.copyOfRange(chunk, off, Math.min(off + blockSize, n));
+		}
+		return blocks;
+	}
+	
+	
+	//passes the next [blockSize max] array of bytes, null once the file is done
+	public byte[] pop() throws IOException
+	{
+		next();
+		byte[] block;
+		if (chunkPos < chunkEnd)
+		{
+			int length = Math.min(blockSize, chunkEnd - chunkPos);
+			block = Arrays.copyOfRange(chunk, chunkPos, chunkPos + length);
+			chunkPos += length;
+		}
+		else
+		{
+			block = readAhead.poll();
+		}
+		if (block != null)
+		{
+			nextBlock++;
+		}
+		return block;
+	}
+	
+	
+	//copies the next block into dest from off, returns its length, -1 once the file is done
+	public int pop(byte[] dest, int off) throws IOException
 	{
-		if (dataChain.peek() != null)
+		next();
+		int length;
+		if (chunkPos < chunkEnd)
 		{
-			return dataChain.pop();
+			length = Math.min(blockSize, chunkEnd - chunkPos);
+			System.arraycopy(chunk, chunkPos, dest, off, length);
+			chunkPos += length;
 		}
 		else
 		{
-			return null;
+			byte[] block = readAhead.poll();
+			if (block == null)
+			{
+				return -1;
+			}
+			length = block.length;
+			System.arraycopy(block, 0, dest, off, length);
 		}
+		nextBlock++;
+		return length;
 	}
 	
 	
 	//looks at next array of bytes
-	public byte[] peek()
+	public byte[] peek() throws IOException
 	{
-		return dataChain.peek();
+		next();
+		if (chunkPos < chunkEnd)
+		{
+			return Arrays.copyOfRange(chunk, chunkPos, Math.min(chunkPos + blockSize, chunkEnd));
+		}
+		return readAhead.peek();
 	}
 	
 	
-	//returns true if empty
-	public boolean isEmpty()
+	//returns true if empty, without copying out the next block as peek() does
+	public boolean isEmpty() throws IOException
 	{
-		return dataChain.isEmpty();
+		next();
+		return chunkPos >= chunkEnd && readAhead.isEmpty();
 	}
 	
 	
-	//returns how many byte arrays have been read
+	//returns how many byte arrays are read ahead and waiting to be popped
 	public int arrNum()
 	{
-		return dataChain.size();
+		return readAhead.size() + (chunkEnd - chunkPos + blockSize - 1) / blockSize;
+	}
+	
+	
+	//stop reading, safe to call more than once
+	public void close()
+	{
+		endOfFile = true;
+		if (input != null)
+		{
+			try
+			{
+				input.close();
+			}
+			catch (IOException e)
+			{
+				//nothing left to read from it either way
+			}
+			input = null;
+		}
 	}
 	
 	/*
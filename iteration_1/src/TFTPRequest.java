@@ -0,0 +1,91 @@
+/**
+*Class:             TFTPRequest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           A RRQ or WRQ as the listener read it: opcode, filename, mode,
+*					options and who sent it. The listener reads the packet once,
+*					straight out of its receive buffer, and hands this to the
+*					transfer that serves it, so the request's bytes are neither
+*					copied nor parsed again. Nothing in it changes after it is made.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+
+import errorhelpers.PacketCodec;
+
+
+final class TFTPRequest
+{
+	//declaring local instance variables
+	final int opcode;					//PacketCodec.RRQ or PacketCodec.WRQ
+	final String fileName;
+	final String mode;
+	final Map<String,String> options;	//RFC 2347 options, names in lower case, not to be changed
+	final InetAddress address;			//the client
+	final int port;						//the client's TID
+
+
+	//generic constructor
+	private TFTPRequest(int opcode, String fileName, String mode, Map<String,String> options, InetAddress address, int port)
+	{
+		this.opcode = opcode;
+		this.fileName = fileName;
+		this.mode = mode;
+		this.options = options;
+		this.address = address;
+		this.port = port;
+	}
+
+
+	//the request codec is wrapped around, sent from address:port, null if it is not a well formed RRQ/WRQ
+	static TFTPRequest parse(PacketCodec codec, InetAddress address, int port)
+	{
+		if(!codec.isWellFormedRequest())
+		{
+			return null;
+		}
+		Map<String,String> options = codec.options();
+		options = options.isEmpty() ? Collections.<String,String>emptyMap() : Collections.unmodifiableMap(options);
+		return new TFTPRequest(codec.opcode(), codec.fileName(), codec.mode(), options, address, port);
+	}
+
+
+	//true for a RRQ, false for a WRQ
+	boolean isRead()
+	{
+		return opcode == PacketCodec.RRQ;
+	}
+
+
+	//true if the request was made in a mode the server serves
+	boolean validMode()
+	{
+		return mode.equalsIgnoreCase("netascii") || mode.equalsIgnoreCase("octet");
+	}
+
+
+	//the client as a socket address, for channels
+	InetSocketAddress client()
+	{
+		return new InetSocketAddress(address, port);
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return (isRead() ? "RRQ" : "WRQ") + " '" + fileName + "' " + mode
+				+ (options.isEmpty() ? "" : " " + options) + " from " + address + ":" + port;
+	}
+}
@@ -0,0 +1,291 @@
+/**
+*Class:             TFTPSelectorEngine.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.8
+*
+*Purpose:           Alternative to spawning a TFTPReadThread/TFTPWriteThread per request.
+*					Every transfer gets its own DatagramChannel (its own TID, same as a
+*					ServerThread's socket) but all channels are multiplexed over a small,
+*					fixed number of Selectors, one per worker thread. Each transfer is a
+*					TransferSession state object that the owning worker drives whenever
+*					its channel is readable or its retransmit timer expires.
+*
+*
+*Update Log:		v1.0.8
+*						- sessions registered with their TransferStats
+*					v1.0.7
+*						- prints to any UIFramework console, windowed or headless
+*					v1.0.6
+*						- submit(..) takes the TFTPRequest the listener read
+*					v1.0.5
+*						- option constants from PacketCodec
+*					v1.0.4
+*						- workers wake for the earliest retransmission deadline, not a fixed sweep
+*					v1.0.3
+*						- receive buffer sized for the largest blksize
+*					v1.0.2
+*						- sessions get a copy of the server's ServerConfig
+*					v1.0.1
+*						- sessions are listed in the server's SessionRegistry
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
+
+
+public class TFTPSelectorEngine
+{
+	//declaring local class constants
+	private static final int RECEIVE_BUFFER_SIZE = PacketCodec.MAX_BLKSIZE + 5;	//larger than any packet we accept, so oversize is detectable
+	private static final long SWEEP_INTERVAL = 100;			//most ms between retransmit timer sweeps
+	private static final int MAX_READS_PER_KEY = 16;		//packets drained per channel per pass, keeps workers fair
+
+	//declaring local instance variables
+	private final Worker[] workers;
+	private final UIFramework console;
+	private final SessionRegistry registry;
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private int nextWorker = 0;
+
+
+	//generic constructor, one selector per worker, sessions are listed in registry
+	public TFTPSelectorEngine(int selectors, UIFramework console, SessionRegistry registry) throws IOException
+	{
+		this.console = console;
+		this.registry = registry;
+		workers = new Worker[Math.max(1, selectors)];
+		for(int i=0; i<workers.length; i++)
+		{
+			workers[i] = new Worker("Selector " + i);
+			workers[i].start();
+		}
+	}
+
+
+	//hand a validated RRQ/WRQ off to the engine
+	public void submit(TFTPRequest request, String name, String description, boolean verbose, File serverDump, ServerConfig config) throws IOException
+	{
+		DatagramChannel channel = DatagramChannel.open();
+		channel.bind(null);
+		channel.configureBlocking(false);
+
+		TransferSession session;
+		if(request.isRead())
+		{
+			session = new ReadSession(channel, request, name, console, verbose, serverDump);
+		}
+		else
+		{
+			session = new WriteSession(channel, request, name, console, verbose, serverDump);
+		}
+
+		Worker worker;
+		synchronized(this)
+		{
+			worker = workers[nextWorker];
+			nextWorker = (nextWorker + 1) % workers.length;
+		}
+		session.config = config;
+		session.sessionId = registry.register(name, description, "nio", session.stats);
+		activeSessions.incrementAndGet();
+		worker.pending.add(session);
+		worker.selector.wakeup();
+	}
+
+
+	//number of transfers currently in progress
+	public int activeSessions()
+	{
+		return activeSessions.get();
+	}
+
+
+	//stop all workers, in flight transfers are abandoned
+	public void shutdown()
+	{
+		for(int i=0; i<workers.length; i++)
+		{
+			workers[i].running = false;
+			workers[i].selector.wakeup();
+		}
+	}
+
+
+	//one selector and the sessions registered with it
+	private class Worker extends Thread
+	{
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<TransferSession> pending = new ConcurrentLinkedQueue<TransferSession>();
+		private final ByteBuffer in = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+		private volatile boolean running = true;
+		private long nextSweep = 0;		//earliest retransmission deadline, or the next routine sweep
+
+		Worker(String name) throws IOException
+		{
+			super(name);
+			setDaemon(true);
+			selector = Selector.open();
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while(running)
+				{
+					selector.select(Math.max(1, nextSweep - System.currentTimeMillis()));
+					registerPending();
+
+					//service readable channels
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while(keys.hasNext())
+					{
+						SelectionKey key = keys.next();
+						keys.remove();
+						if(key.isValid() && key.isReadable())
+						{
+							read(key);
+						}
+					}
+
+					//retransmit timers
+					long now = System.currentTimeMillis();
+					if(now >= nextSweep)
+					{
+						nextSweep = now + SWEEP_INTERVAL;
+						sweep(now);
+					}
+				}
+			}
+			catch (ClosedSelectorException e)
+			{
+				//shutting down
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			finally
+			{
+				if(selector.isOpen())
+				{
+					for(SelectionKey key : selector.keys())
+					{
+						((TransferSession)key.attachment()).finish();
+					}
+				}
+				try
+				{
+					selector.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+
+		//register and start sessions handed to this worker
+		private void registerPending()
+		{
+			TransferSession session;
+			while((session = pending.poll()) != null)
+			{
+				try
+				{
+					session.channel.register(selector, SelectionKey.OP_READ, session);
+					session.start();
+				}
+				catch (IOException e)
+				{
+					console.print("Server: " + session.name + " could not start: " + e.getMessage());
+					session.finish();
+				}
+				retire(session);
+				schedule(session);
+			}
+		}
+
+		//drain packets waiting on one session's channel
+		private void read(SelectionKey key)
+		{
+			TransferSession session = (TransferSession)key.attachment();
+			try
+			{
+				for(int i=0; i<MAX_READS_PER_KEY && !session.isDone(); i++)
+				{
+					in.clear();
+					InetSocketAddress from = (InetSocketAddress)session.channel.receive(in);
+					if(from == null)
+					{
+						break;
+					}
+					session.received(in.array(), in.position(), from);
+				}
+			}
+			catch (IOException e)
+			{
+				console.print("Server: " + session.name + " I/O failure: " + e.getMessage());
+				session.finish();
+			}
+			retire(session);
+			schedule(session);
+		}
+
+		//fire retransmit timers that have expired
+		private void sweep(long now)
+		{
+			for(SelectionKey key : selector.keys())
+			{
+				TransferSession session = (TransferSession)key.attachment();
+				try
+				{
+					session.checkTimeout(now);
+				}
+				catch (IOException e)
+				{
+					session.finish();
+				}
+				retire(session);
+				schedule(session);
+			}
+		}
+
+		//wake up in time for the session's retransmission timer, it may have just been restarted
+		private void schedule(TransferSession session)
+		{
+			nextSweep = Math.min(nextSweep, session.deadline());
+		}
+
+		//forget about finished sessions
+		private void retire(TransferSession session)
+		{
+			if(session.isDone() && !session.retired)
+			{
+				session.retired = true;
+				SelectionKey key = session.channel.keyFor(selector);
+				if(key != null)
+				{
+					key.cancel();
+				}
+				registry.deregister(session.sessionId);
+				activeSessions.decrementAndGet();
+			}
+		}
+	}
+}
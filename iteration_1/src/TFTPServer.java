@@ -8,6 +8,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*; 
 import java.net.*;
+import java.nio.file.Files;
 import java.util.*;
 
 import javax.swing.BorderFactory;
@@ -18,7 +19,13 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import errorhelpers.PacketCodec;
 import ui.ConsoleUI;
+import ui.HexDump;
+import ui.HeadlessConsole;
+import ui.Log;
+import ui.LogRing;
+import ui.UIFramework;
 
 public class TFTPServer implements ActionListener
 {
@@ -34,13 +41,36 @@ public class TFTPServer implements ActionListener
 	private DatagramSocket receiveSocket, sendSocket;
 	private static boolean verbose = false;
 	private static Scanner scan= new Scanner(System.in);
-	private ConsoleUI console;
+	private UIFramework console;
+	private ConsoleUI window;		//the server's window, null when running headless
+	private Log log;				//what is printed to console, set by verbose and loglevel
     private JTextArea fileChooserFrame;
 	private File file;
 	private JFileChooser fileChooser;
     private String path= "DEFAULT_TEST_WRITE";
     
     private boolean runFlag  = true;
+    
+    //ways a transfer can be run
+    private static final int ENGINE_THREAD = 0;		//platform thread and console window per transfer (server console if headless)
+    private static final int ENGINE_VIRTUAL = 1;	//virtual thread per transfer, output to this console
+    private static final int ENGINE_NIO = 2;		//TFTPSelectorEngine session per transfer
+    private volatile int engine = ENGINE_THREAD;
+    
+    //settings new transfers are served with
+    private final ServerConfig config = new ServerConfig();
+    
+    //blocks of files being read, shared by every RRQ
+    private final BlockCache blockCache = new BlockCache(BlockCache.DEFAULT_BUDGET, BlockCache.Policy.LRU);
+    
+    //counters for the 'stats' command, finished transfers are added in by the session registry
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    
+    //every transfer in progress, whichever engine is running it
+    private final SessionRegistry sessions = new SessionRegistry(metrics);
+    
+    //serves transfers on shared selectors instead of a thread each, opened the first time it is chosen
+    private TFTPSelectorEngine selectorEngine = null;
 
 	/**
 	 * JTextArea for the thread executing main().
@@ -56,15 +86,49 @@ public class TFTPServer implements ActionListener
 	public TFTPServer(String title)
 	{
 		//make and run the UI
-		console = new ConsoleUI(title, this);
-		console.run();
-		console.colorScheme("dark");
+		window = new ConsoleUI(title, this);
+		window.run();
+		window.colorScheme("dark");
+		console = window;
+		log = new Log(console, Log.level(verbose));
+		openSockets(69);
+		while(file == null)
+		{
+			fileChooserFrame = new JTextArea(5,40);
+			fileChooser = new JFileChooser();
+			fileChooser.setCurrentDirectory(new File(System.getProperty("user.home")));
+			FileNameExtensionFilter filter = new FileNameExtensionFilter("Directories","*");
+			fileChooser.setFileFilter(filter);
+			fileChooser.setDialogTitle("Choose a directory to dump to on the server");
+			fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+			int result = fileChooser.showOpenDialog(fileChooser);
+			if (result == JFileChooser.APPROVE_OPTION) {//file is found
+				file = fileChooser.getSelectedFile();//get file name
+			}
+		}
+	}
+	
+	/**
+	 * Headless server, no windows or dialogs: everything is printed to console,
+	 * files are served from root and requests are received on port.
+	 */
+	public TFTPServer(UIFramework console, File root, int port)
+	{
+		this.console = console;
+		log = new Log(console, Log.level(verbose));
+		file = root;
+		openSockets(port);
+	}
+	
+	private void openSockets(int port)
+	{
+		config.setBlockCache(blockCache);
 		
 		try {
-			// Construct a datagram socket and bind it to port 69
-			// on the local host machine. This socket will be used to
-			// receive UDP Datagram packets.
-			receiveSocket = new DatagramSocket(69);
+			// Construct a datagram socket and bind it to port
+			// on the local host machine (69 unless told otherwise).
+			// This socket will be used to receive UDP Datagram packets.
+			receiveSocket = new DatagramSocket(port);
 			receiveSocket.setSoTimeout(5000);
 		} catch (SocketException se) {
 			console.print("SOCKET BIND ERROR");
@@ -78,20 +142,6 @@ public class TFTPServer implements ActionListener
 			se.printStackTrace();
 			System.exit(1);
 		}
-		while(file == null)
-		{
-			fileChooserFrame = new JTextArea(5,40);
-			fileChooser = new JFileChooser();
-			fileChooser.setCurrentDirectory(new File(System.getProperty("user.home")));
-			FileNameExtensionFilter filter = new FileNameExtensionFilter("Directories","*");
-			fileChooser.setFileFilter(filter);
-			fileChooser.setDialogTitle("Choose a directory to dump to on the server");
-			fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-			int result = fileChooser.showOpenDialog(fileChooser);
-			if (result == JFileChooser.APPROVE_OPTION) {//file is found
-				file = fileChooser.getSelectedFile();//get file name
-			}
-		}
 	}
 	
 
@@ -99,13 +149,13 @@ public class TFTPServer implements ActionListener
 	{
 		byte[] data,
 		response = new byte[4];
+		TFTPRequest request;
 
 		Request req; // READ, WRITE or ERROR
 		ArrayList currentThreads;
-		String filename, mode;
-		int len, j=0, k=0;
+		int len;
+		PacketCodec codec = new PacketCodec();
 		int threadNum = 0;
-		ThreadGroup initializedThreads = new ThreadGroup("ServerThread");
 		
 		//print starting text
 		console.print("TFTPServer running");
@@ -115,32 +165,51 @@ public class TFTPServer implements ActionListener
 		console.print("'clear'                                  - clear screen");
 		console.print("'close'                                 - exit client, close ports, be graceful");
 		console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+		console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 		console.print("'test'                                    - runs a test for the console");
 		console.print("'cd'                                      - set the directory you want server read/write from");
+		console.print("'cd DIR'                             - serve from DIR, no dialog (the only cd when headless)");
 		console.print("'path'                                  - print the path the server will use");
+		console.print("'engine TYPE'                 - serve transfers with 'thread' (default), 'virtual' threads or 'nio' selectors");
+		console.print("'sessions'                          - list the transfers in progress");
+		console.print("'stats'                                 - requests/s, transfers, bytes, resends, errors by code, top clients and files");
+		console.print("'stats FILE'                       - write the same as a JSON snapshot to FILE");
+		console.print("'durability MODE'            - WRQ fsync policy: 'none' (default), 'close' or every N blocks");
+		console.print("'blksize N'                         - largest block size a client may ask for (default 65464)");
+		console.print("'windowsize N'                  - largest window a client may ask for (default 64)");
+		console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
+		console.print("'cache'                               - show the RRQ block cache and its hit/miss/eviction counts");
+		console.print("'cachesize N'                    - megabytes the block cache may hold (default 64, 0 turns it off)");
+		console.print("'cachepolicy P'                - block to drop when the cache is full: 'lru' (default) or 'lfu'");
+		console.print("'logoverflow P'                - lines printed faster than shown: 'drop' (default) the new or 'overwrite' the oldest");
 		console.print("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
 		console.println();
 		
 		//TODO DELETE THIS
 		//==================================================
-		this.verbose = true;
+		if(window != null)
+		{
+			this.verbose = true;
+		}
+		log.setVerbose(verbose);
 		console.print("Verbose mode set " + verbose);
 		//==================================================
 		
+		// Requests up to 516 bytes long are received into one pooled buffer and
+		// read where they are, each transfer is handed the TFTPRequest read from it
+		byte[] listenBuffer = BufferPool.SHARED.take(516);
+		DatagramPacket listenPacket = new DatagramPacket(listenBuffer, 516);
+
 		//main input loop
 		while(runFlag) 
 		{	
 			// loop forever
-			// Construct a DatagramPacket for receiving packets up
-			// to 100 bytes long (the length of the byte array).
+			listenPacket.setLength(516);
 
-			data = new byte[100];
-			receivePacket = new DatagramPacket(data, data.length);
-
-			console.print("Server: Listening for requests...");
+			log.debug("Server: Listening for requests...");
 			// Block until a datagram packet is received from receiveSocket.
 			try {
-				receiveSocket.receive(receivePacket);
+				receiveSocket.receive(listenPacket);
 			}
 			catch(SocketTimeoutException e)
 			{
@@ -150,85 +219,66 @@ public class TFTPServer implements ActionListener
 				e.printStackTrace();
 				System.exit(1);
 			}
+			data = listenBuffer;
+			receivePacket = listenPacket;
 
 			// Process the received datagram.
-			console.print("Server: Packet received:");
-			console.print("From host: " + receivePacket.getAddress());
-			console.print("Host port: " + receivePacket.getPort());
 			len = receivePacket.getLength();
-			console.print("Length: " + len);
-
-			int packetSize = receivePacket.getLength();
-
-			console.printByteArray(data, packetSize);
-			console.printIndent("Cntn:  " + (new String(data,0,packetSize)));
-
-			// Form a String from the byte array.
-			String received = new String(data,0,len);
-			console.print(received);
-			
-			
+			log.packet("Server: Packet received:", receivePacket);
 
 			// If it's a read, send back DATA (03) block 1
 			// If it's a write, send back ACK (04) block 0
 			// Otherwise, ignore it
-			if (data[0]!=0) req = Request.ERROR; // bad
-			else if (data[1]==1) req = Request.READ; // could be read
-			else if (data[1]==2) req = Request.WRITE; // could be write
-			else req = Request.ERROR; // bad
-
-			if (req!=Request.ERROR) { // check for filename
-				// search for next all 0 byte
-				for(j=2;j<len;j++) {
-					if (data[j] == 0) break;
-				}
-				if (j==len) req=Request.ERROR; // didn't find a 0 byte
-				if (j==2) req=Request.ERROR; // filename is 0 bytes long
-				// otherwise, extract filename
-				filename = new String(data,2,j-2);
-			}
-
-			if(req!=Request.ERROR) { // check for mode
-				// search for next all 0 byte
-				for(k=j+1;k<len;k++) { 
-					if (data[k] == 0) break;
-				}
-				if (k==len) req=Request.ERROR; // didn't find a 0 byte
-				if (k==j+1) req=Request.ERROR; // mode is 0 bytes long
-				mode = new String(data,j,k-j-1);
-			}
-
-			if(k!=len-1) req=Request.ERROR; // other stuff at end of packet        
+			// a filename and a mode, each ended by a 0, then only well formed options (RFC 2347)
+			// read once here, the transfer is handed what was read and never parses it again
+			request = TFTPRequest.parse(codec.wrap(receivePacket), receivePacket.getAddress(), receivePacket.getPort());
+			metrics.request(request);
+			if (request == null) req = Request.ERROR; // bad
+			else if (request.isRead()) req = Request.READ;
+			else req = Request.WRITE;
 
 			// Create a response.
-			if (req==Request.READ) { // for Read it's 0301
+			if (req!=Request.ERROR && engine == ENGINE_NIO) { // hand off to the selector engine
+				threadNum++;
+				console.print("Server: Handing request to selector engine");
+				try {
+					selectorEngine.submit(request, "Transfer "+threadNum, describe(request), verbose, file, config.copy());
+				} catch (IOException e) {
+					console.print("Server: Could not open transfer channel: " + e.getMessage());
+				}
+				response = (req==Request.READ) ? readResp : writeResp;
+			} else if (req==Request.READ) { // for Read it's 0301
 				console.print("Server: Generating Read Thread");
 				threadNum++;
-				Thread readRequest =  new TFTPReadThread(initializedThreads, receivePacket, "Thread "+threadNum, verbose,file);
-				readRequest.start();
+				ServerThread readRequest;
+				if (engine == ENGINE_VIRTUAL || window == null) {
+					readRequest = new TFTPReadThread(console, request, "Thread "+threadNum, verbose,file);
+				} else {
+					readRequest = new TFTPReadThread(request, "Thread "+threadNum, verbose,file);
+				}
+				startTransfer(readRequest, describe(request));
 				response = readResp;
 			} else if (req==Request.WRITE) { // for Write it's 0400
 				console.print("Server: Generating Write Thread");
 				threadNum++;
-				Thread writeRequest =  new TFTPWriteThread(initializedThreads, receivePacket,"Thread "+threadNum, verbose,file);
-				writeRequest.start();
+				ServerThread writeRequest;
+				if (engine == ENGINE_VIRTUAL || window == null) {
+					writeRequest = new TFTPWriteThread(console, request,"Thread "+threadNum, verbose,file);
+				} else {
+					writeRequest = new TFTPWriteThread(request,"Thread "+threadNum, verbose,file);
+				}
+				startTransfer(writeRequest, describe(request));
 				response = writeResp; 
 			} else { // it was invalid, send 
 				console.print("Server: Illegal Request");
 	    		int errorCode = 4;
 	    		console.print("Illegal TFTP operation");
 	    		String errorMsg = "Illegal TFTP operation.";
-	    		byte[] dataError = new byte[errorMsg.length() + 5];
-	        	data[0] = 0;
-	        	data[1] = 5;
-	        	data[2] = 0;
-	        	data[3] = (byte)errorCode;
-	        	for(int c = 0; c<errorMsg.length();c++){
-	        		data[4+c] = errorMsg.getBytes()[c];
-	        	}
-	        	data[data.length-1] = 0;
+	    		byte[] dataError = new byte[PacketCodec.errorLength(errorMsg)];
+	    		metrics.errorSent(errorCode);
+	    		codec.wrap(dataError, 0, 0).putError(errorCode, errorMsg);
 	        	
-	    	    DatagramPacket sendPacket = new DatagramPacket(data, data.length,
+	    	    DatagramPacket sendPacket = new DatagramPacket(dataError, dataError.length,
 	    				     receivePacket.getAddress(), receivePacket.getPort());
 	    	    console.print("Sending: Illegal TFTP operation Error Packet");
 
@@ -241,28 +291,320 @@ public class TFTPServer implements ActionListener
 				
 			} 
 		}
+		BufferPool.SHARED.give(listenBuffer);
+		if(selectorEngine != null)
+		{
+			selectorEngine.shutdown();
+		}
 		console.print("Server Shut Down..");
 	} 
 
-	Thread[] getServerThreads( final ThreadGroup group ) {
-		if ( group == null )
-			throw new NullPointerException( "Null thread group" );
-		int nAlloc = group.activeCount( );
-		int n = 0;
-		Thread[] threads;
-		do {
-			nAlloc *= 2;
-			threads = new Thread[ nAlloc ];
-			n = group.enumerate( threads );
-		} while ( n == nAlloc );
-		return java.util.Arrays.copyOf( threads, n );
+	//list the transfer, then run it on the thread type the current engine calls for
+	private void startTransfer(ServerThread transfer, String request)
+	{
+		transfer.setConfig(config.copy());
+		transfer.setLogLevel(log.getLevel());
+		if (engine == ENGINE_VIRTUAL) {
+			transfer.setSession(sessions, sessions.register(transfer.getName(), request, "virtual", transfer.stats));
+			TransferLauncher.startVirtual(transfer, transfer.getName());
+		} else {
+			transfer.setSession(sessions, sessions.register(transfer.getName(), request, "thread", transfer.stats));
+			transfer.start();
+		}
+	}
+	
+	//short description of a request for the session list
+	private static String describe(TFTPRequest request)
+	{
+		return (request.isRead() ? "RRQ " : "WRQ ") + request.fileName;
 	}
 
-	public static void main( String args[] ) throws Exception
+	List<SessionRegistry.Entry> getServerSessions() {
+		return sessions.snapshot();
+	}
+
+	//switch between thread-per-transfer and the selector engine, transfers in flight finish where they started
+	private void setEngine(String type)
+	{
+		if(type.equals("nio"))
+		{
+			if(selectorEngine == null)
+			{
+				try
+				{
+					selectorEngine = new TFTPSelectorEngine(Runtime.getRuntime().availableProcessors(), console, sessions);
+				}
+				catch (IOException e)
+				{
+					console.printOperandError("could not open selectors: " + e.getMessage());
+					return;
+				}
+			}
+			engine = ENGINE_NIO;
+			console.print("Engine set to: nio");
+		}
+		else if(type.equals("virtual"))
+		{
+			engine = ENGINE_VIRTUAL;
+			console.print("Engine set to: virtual");
+			if(!TransferLauncher.virtualThreadsSupported())
+			{
+				console.print("This JVM has no virtual threads, using small-stack platform threads instead");
+			}
+		}
+		else if(type.equals("thread"))
+		{
+			engine = ENGINE_THREAD;
+			console.print("Engine set to: thread");
+		}
+		else
+		{
+			console.printOperandError("engine must be 'thread', 'virtual' or 'nio'");
+		}
+	}
+
+	//largest block size granted to a blksize option, 512 keeps the classic size
+	private void setMaxBlockSize(String size)
+	{
+		int blocks = PacketCodec.parseBlockSize(size);
+		if(blocks < PacketCodec.DEFAULT_BLKSIZE)
+		{
+			console.printOperandError("blksize must be between 512 and " + PacketCodec.MAX_BLKSIZE);
+			return;
+		}
+		config.setMaxBlockSize(blocks);
+		console.print("Largest block size set to: " + blocks);
+	}
+
+	//largest window granted to a windowsize option, 1 keeps transfers in lockstep
+	private void setMaxWindowSize(String size)
+	{
+		int window = PacketCodec.parseWindowSize(size);
+		if(window < 0)
+		{
+			console.printOperandError("windowsize must be between " + PacketCodec.MIN_WINDOWSIZE + " and " + PacketCodec.MAX_WINDOWSIZE);
+			return;
+		}
+		config.setMaxWindowSize(window);
+		console.print("Largest window set to: " + window);
+	}
+
+	//megabytes of blocks the cache may hold, 0 stops caching and drops what it has
+	private void setCacheSize(String size)
+	{
+		long megabytes;
+		try
+		{
+			megabytes = Long.parseLong(size);
+		}
+		catch (NumberFormatException e)
+		{
+			megabytes = -1;
+		}
+		if(megabytes < 0 || megabytes > Integer.MAX_VALUE)
+		{
+			console.printOperandError("cachesize must be a number of megabytes");
+			return;
+		}
+		blockCache.setBudget(megabytes * 1024 * 1024);
+		console.print("Block cache size set to: " + megabytes + " MB");
+	}
+
+	//lru | lfu
+	private void setCachePolicy(String policy)
+	{
+		if(policy.equals("lru"))
+		{
+			blockCache.setPolicy(BlockCache.Policy.LRU);
+		}
+		else if(policy.equals("lfu"))
+		{
+			blockCache.setPolicy(BlockCache.Policy.LFU);
+		}
+		else
+		{
+			console.printOperandError("cachepolicy must be 'lru' or 'lfu'");
+			return;
+		}
+		console.print("Block cache policy set to: " + policy);
+	}
+
+	//write a JSON snapshot of the counters to path
+	private void exportStats(String path)
+	{
+		String snapshot = metrics.snapshot(getServerSessions());
+		try
+		{
+			Files.write(new File(path).toPath(), snapshot.getBytes("UTF-8"));
+		}
+		catch (IOException e)
+		{
+			console.printOperandError("could not write " + path + ": " + e.getMessage());
+			return;
+		}
+		console.print("Stats written to: " + path);
+	}
+
+	//error | info | debug | trace, verbose is on from debug
+	private void setLogLevel(String name)
 	{
+		Log.Level level = Log.parseLevel(name);
+		if(level == null)
+		{
+			console.printOperandError("loglevel must be 'error', 'info', 'debug' or 'trace'");
+			return;
+		}
+		log.setLevel(level);
+		verbose = log.isOn(Log.Level.DEBUG);
+		console.print("Log level set to: " + level + ", verbose mode " + verbose);
+	}
+
+	//drop | overwrite
+	private void setLogOverflow(String policy)
+	{
+		if(policy.equals("drop"))
+		{
+			console.setOverflowPolicy(LogRing.Policy.DROP_NEWEST);
+		}
+		else if(policy.equals("overwrite"))
+		{
+			console.setOverflowPolicy(LogRing.Policy.OVERWRITE_OLDEST);
+		}
+		else
+		{
+			console.printOperandError("logoverflow must be 'drop' or 'overwrite'");
+			return;
+		}
+		console.print("Console overflow policy set to: " + policy + " (" + console.getDropped() + " line(s) lost so far)");
+	}
 
-		TFTPServer c = new TFTPServer("TFTP Server");
+	//none | close | N, where N syncs every N blocks
+	private void setDurability(String policy)
+	{
+		if(policy.equals("none"))
+		{
+			config.setDurability(TFTPWriter.Durability.NONE, 0);
+		}
+		else if(policy.equals("close"))
+		{
+			config.setDurability(TFTPWriter.Durability.FSYNC_ON_CLOSE, 0);
+		}
+		else
+		{
+			int blocks;
+			try
+			{
+				blocks = Integer.parseInt(policy);
+			}
+			catch (NumberFormatException e)
+			{
+				blocks = 0;
+			}
+			if(blocks < 1)
+			{
+				console.printOperandError("durability must be 'none', 'close' or a number of blocks");
+				return;
+			}
+			config.setDurability(TFTPWriter.Durability.FSYNC_EVERY_N, blocks);
+		}
+		console.print("Durability set to: " + policy);
+	}
+
+	/*
+	 * With no arguments the server opens its window and asks for a directory.
+	 * --headless runs it with no windows or dialogs at all:
+	 *     --headless [--root DIR] [--port N] [--log FILE] [--COMMAND VALUE]...
+	 * where root defaults to the working directory, port to 69, output goes to
+	 * standard out unless a log file is given, and any other option is a
+	 * two word console command run before the first request (--engine nio,
+	 * --blksize 1428, --cachesize 256, ...). Commands are read from standard
+	 * input while it runs.
+	 */
+	public static void main( String args[] ) throws Exception
+	{
+		if(args.length == 0 || !args[0].equals("--headless"))
+		{
+			TFTPServer c = new TFTPServer("TFTP Server");
+			c.receiveAndSendTFTP();
+			return;
+		}
+		
+		//never let a stray AWT call look for a display
+		System.setProperty("java.awt.headless", "true");
+		File root = new File(System.getProperty("user.dir"));
+		int port = 69;
+		PrintStream log = System.out;
+		List<String[]> commands = new ArrayList<String[]>();
+		for(int i=1; i<args.length; i++)
+		{
+			if(!args[i].startsWith("--") || i+1 == args.length)
+			{
+				System.err.println("usage: TFTPServer --headless [--root DIR] [--port N] [--log FILE] [--COMMAND VALUE]...");
+				System.exit(2);
+			}
+			String name = args[i].substring(2);
+			String value = args[++i];
+			if(name.equals("root"))
+			{
+				root = new File(value);
+			}
+			else if(name.equals("port"))
+			{
+				port = Integer.parseInt(value);
+			}
+			else if(name.equals("log"))
+			{
+				log = new PrintStream(new FileOutputStream(value, true), false);
+			}
+			else
+			{
+				commands.add(new String[] {name, value});
+			}
+		}
+		if(!root.isDirectory())
+		{
+			System.err.println("not a directory: " + root);
+			System.exit(2);
+		}
+		
+		final HeadlessConsole console = new HeadlessConsole("TFTP Server", log, HeadlessConsole.DEFAULT_CAPACITY, LogRing.DEFAULT_POLICY);
+		final TFTPServer c = new TFTPServer(console, root, port);
+		for(String[] command : commands)
+		{
+			c.command(command);
+		}
+		
+		//commands typed on standard input, the same as into the window
+		Thread commandReader = new Thread("Command reader")
+		{
+			@Override
+			public void run()
+			{
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+				try
+				{
+					String line;
+					while((line = in.readLine()) != null)
+					{
+						if(!line.trim().isEmpty())
+						{
+							console.submit(line);
+							c.command(console.getParsedInput(false));
+						}
+					}
+				}
+				catch (IOException e)
+				{
+					//no more commands, the server keeps running
+				}
+			}
+		};
+		commandReader.setDaemon(true);
+		commandReader.start();
+		
 		c.receiveAndSendTFTP();
+		console.close();
+		System.exit(0);
 	}
 
 
@@ -271,9 +613,14 @@ public class TFTPServer implements ActionListener
 	public void actionPerformed(ActionEvent e) 
 	{
 		//get input. Do not wait (in case ISR called prematurely we dont want to cause server lag)
-		console.actionPerformed(e);
-		String[] input = console.getParsedInput(false);
-		
+		window.actionPerformed(e);
+		command(console.getParsedInput(false));
+	}
+	
+	
+	//run a command, typed into the window, on standard input, given on the command line or by LoopbackBench
+	synchronized void command(String[] input)
+	{
 		//process input, handle inputs based on param number
 		if(input != null)
 		{
@@ -288,8 +635,22 @@ public class TFTPServer implements ActionListener
 						console.print("'clear'                                  - clear screen");
 						console.print("'close'                                 - exit client, close ports, be graceful");
 						console.print("'verbose BOOL'                - toggle verbose mode as true or false");
+						console.print("'loglevel L'                     - print 'error', 'info', 'debug' (a line per packet) or 'trace' (packet contents)");
 						console.print("'cd'                                      - set the directory you want server read/write from");
+						console.print("'cd DIR'                             - serve from DIR, no dialog (the only cd when headless)");
 						console.print("'path'                                    - print the path the server will use");
+						console.print("'engine TYPE'                 - serve transfers with 'thread' (default), 'virtual' threads or 'nio' selectors");
+						console.print("'sessions'                          - list the transfers in progress");
+						console.print("'stats'                                 - requests/s, transfers, bytes, resends, errors by code, top clients and files");
+						console.print("'stats FILE'                       - write the same as a JSON snapshot to FILE");
+						console.print("'durability MODE'            - WRQ fsync policy: 'none' (default), 'close' or every N blocks");
+						console.print("'blksize N'                         - largest block size a client may ask for (default 65464)");
+						console.print("'windowsize N'                  - largest window a client may ask for (default 64)");
+						console.print("'dump N'                           - verbose packet dumps show the first N bytes, 'header' or 'all' (default)");
+						console.print("'cache'                               - show the RRQ block cache and its hit/miss/eviction counts");
+						console.print("'cachesize N'                    - megabytes the block cache may hold (default 64, 0 turns it off)");
+						console.print("'cachepolicy P'                - block to drop when the cache is full: 'lru' (default) or 'lfu'");
+						console.print("'logoverflow P'                - lines printed faster than shown: 'drop' (default) the new or 'overwrite' the oldest");
 						console.print("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
 						console.println();
 					}
@@ -304,6 +665,10 @@ public class TFTPServer implements ActionListener
 						console.print("Path set to: " + file.toString());
 					}
 					//change active directory
+					else if (input[0].equals("cd") && window == null)
+					{
+						console.printOperandError("cd needs a directory when there is no window");
+					}
 					else if (input[0].equals("cd"))
 					{
 						//get new path
@@ -324,6 +689,29 @@ public class TFTPServer implements ActionListener
 						}
 					}
 					}
+					//list transfers in progress
+					else if (input[0].equals("sessions"))
+					{
+						List<SessionRegistry.Entry> active = getServerSessions();
+						console.print(active.size() + " transfer(s) in progress");
+						for(SessionRegistry.Entry entry : active)
+						{
+							console.print("	" + entry);
+						}
+					}
+					//server-wide counters and what each transfer has done
+					else if (input[0].equals("stats"))
+					{
+						for(String line : metrics.report(getServerSessions()))
+						{
+							console.print(line);
+						}
+					}
+					//block cache contents and counters
+					else if (input[0].equals("cache"))
+					{
+						console.print("Block cache: " + blockCache);
+					}
 					//close
 					else if(input[0].equals("close"))
 					{
@@ -347,11 +735,13 @@ public class TFTPServer implements ActionListener
 						if(input[1].equals("true"))
 						{
 							this.verbose = true;
+							log.setVerbose(verbose);
 							console.print("Verbose mode set " + verbose);
 						}
 						else if (input[1].equals("false"))
 						{
 							this.verbose = false;
+							log.setVerbose(verbose);
 							console.print("Verbose mode set " + verbose);
 						}
 						else
@@ -359,6 +749,77 @@ public class TFTPServer implements ActionListener
 							console.print("! Unknown Input !");
 						}
 					}
+					//choose how transfers are served
+					else if (input[0].equals("engine"))
+					{
+						setEngine(input[1]);
+					}
+					//largest block size a blksize option is granted
+					else if (input[0].equals("blksize"))
+					{
+						setMaxBlockSize(input[1]);
+					}
+					//largest window a windowsize option is granted
+					else if (input[0].equals("windowsize"))
+					{
+						setMaxWindowSize(input[1]);
+					}
+					//how much the block cache may hold
+					else if (input[0].equals("cachesize"))
+					{
+						setCacheSize(input[1]);
+					}
+					//how the block cache makes room
+					else if (input[0].equals("cachepolicy"))
+					{
+						setCachePolicy(input[1]);
+					}
+					//write the counters out as a JSON snapshot
+					else if (input[0].equals("stats"))
+					{
+						exportStats(input[1]);
+					}
+					//what the console does with lines it cannot keep up with
+					else if (input[0].equals("logoverflow"))
+					{
+						setLogOverflow(input[1]);
+					}
+					//choose how hard WRQs push data to disk
+					else if (input[0].equals("durability"))
+					{
+						setDurability(input[1]);
+					}
+					//serve from a directory given by name, no dialog
+					else if (input[0].equals("cd"))
+					{
+						File dir = new File(input[1]);
+						if(dir.isDirectory())
+						{
+							file = dir;
+							console.print("Path set to: " + file.toString());
+						}
+						else
+						{
+							console.printOperandError("not a directory: " + input[1]);
+						}
+					}
+					//how much is printed, finer than verbose
+					else if (input[0].equals("loglevel"))
+					{
+						setLogLevel(input[1]);
+					}
+					//how much of each packet verbose mode dumps
+					else if (input[0].equals("dump"))
+					{
+						if (HexDump.setLimit(input[1]))
+						{
+							console.print("Packet dump set to: " + HexDump.describeLimit());
+						}
+						else
+						{
+							console.printOperandError("dump must be 'all', 'header' or a number of bytes");
+						}
+					}
 					//alter color scheme
 					else if (input[0].equals("color") || input[0].equals("colour"))
 					{
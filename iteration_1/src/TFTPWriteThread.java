@@ -3,7 +3,7 @@
 *Project:           TFTP Project - Group 4
 *Author:            Nathaniel Charlebois                                            
 *Date of Update:    29/09/2016                                              
-*Version:           1.0.0                                                      
+*Version:           1.2.4                                                      
 *                                                                                    
 *Purpose:           Handles the WRQs by:
 *						-Receiving the WRQ
@@ -29,9 +29,32 @@
 *                 		-Corrected Error handling
 *                		-Fixed many a bug
 *                		-Refactored printing code 
+*                 	v1.1.4
+*                 		-Transfer body moved to serve(), ServerThread.run() deregisters it
+*                 		-No ThreadGroup, transfers are tracked by the server's SessionRegistry
+*                 	v1.1.5
+*                 		-One TFTPWriter keeps the file open for the whole transfer
+*                 	v1.1.6
+*                 		-blksize option (RFC 2348), answered with an OACK
+*                 	v1.1.7
+*                 		-windowsize option (RFC 7440), only a window's last block is ACKed
+*                 		-a block out of order re-ACKs the last block received in order
+*                 	v1.1.8
+*                 		-retransmission timer follows the client's round trip time (RttEstimator)
+*                 	v1.1.9
+*                 		-every DATA is received into the same pooled buffer and packet
+*                 	v1.2.0
+*                 		-request, OACK and ACKs read and written in place with PacketCodec
+*                 	v1.2.1
+*                 		-serves a TFTPRequest the listener already read, the request is not parsed again
+*                 	v1.2.2
+*                 		-given console may be any UIFramework, a headless server passes one with no window
+*                 	v1.2.3
+*                 		-per-packet lines printed through a Log, at DEBUG, built only when printed
+*                 	v1.2.4
+*                 		-blocks, bytes and completion counted in the transfer's TransferStats
 */
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -40,13 +63,16 @@ import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
+import java.util.Map;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
 
 import javax.swing.JFileChooser;
 import javax.swing.JTextArea;
 
-import ui.ConsoleUI;
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
 
 class TFTPWriteThread extends ServerThread
 {
@@ -61,15 +87,12 @@ class TFTPWriteThread extends ServerThread
     
     //declaring local class constants
     private static final int ABSOLUTE_PACKET_BUFFER_SIZE = 1000;
-    private static final int DATA_PACKET_MAX_SIZE = 516;
     
-    public TFTPWriteThread(ThreadGroup group, DatagramPacket requestPacketInfo,String thread, Boolean verboseMode,File file) {
-    	super(group,thread,new ConsoleUI("Write Thread "+thread));
-    	console.run();
-    	requestPacket = requestPacketInfo;  
+    public TFTPWriteThread(TFTPRequest requestInfo,String thread, Boolean verboseMode,File file) {
+    	super(thread,window("Write Thread "+thread));
+    	setRequest(requestInfo);
         threadNumber = thread;
-        verbose = verboseMode;
-        clientTID = requestPacketInfo.getPort();
+        setVerbose(verboseMode);
         this.file = file; 
         try {
 			sendReceiveSocket = new DatagramSocket();
@@ -79,7 +102,7 @@ class TFTPWriteThread extends ServerThread
 			console.print(e.getMessage());
 		}
 		try {
-			sendReceiveSocket.setSoTimeout(TIMEOUT*1000);
+			sendReceiveSocket.setSoTimeout(rtt.timeout());
 		} catch (SocketException e) {
 			//Handle Timeout Exception
 			e.printStackTrace();
@@ -87,12 +110,11 @@ class TFTPWriteThread extends ServerThread
         
     }
 
-    public TFTPWriteThread(ThreadGroup group,ConsoleUI transcript, DatagramPacket requestPacketInfo,String thread, Boolean verboseMode,File file) {
-    	super(group,thread,transcript);
-    	requestPacket = requestPacketInfo;  
+    public TFTPWriteThread(UIFramework transcript, TFTPRequest requestInfo,String thread, Boolean verboseMode,File file) {
+    	super(thread,transcript);
+    	setRequest(requestInfo);
         threadNumber = thread;
-        verbose = verboseMode;
-        clientTID = requestPacketInfo.getPort();
+        setVerbose(verboseMode);
         this.file = file; 
         try {
 			sendReceiveSocket = new DatagramSocket();
@@ -102,7 +124,7 @@ class TFTPWriteThread extends ServerThread
 			console.print(e.getMessage());
 		}
 		try {
-			sendReceiveSocket.setSoTimeout(TIMEOUT*1000);
+			sendReceiveSocket.setSoTimeout(rtt.timeout());
 		} catch (SocketException e) {
 			//Handle Timeout Exception
 			e.printStackTrace();
@@ -110,58 +132,66 @@ class TFTPWriteThread extends ServerThread
         
     }
 
-    public void run() {
+    protected void serve() {
     	
     	
 		   
     		connectionEstablished = true;
-		   //Parsing Data for filename and mode 
-		   ByteArrayOutputStream filename = new ByteArrayOutputStream();
-		   ByteArrayOutputStream mode = new ByteArrayOutputStream();
-		   boolean change = false; 
-		   for(int i = 2; i<requestPacket.getData().length;i++){
-			   if(requestPacket.getData()[i]>=32){
-				   if(change == false){
-					   filename.write(requestPacket.getData()[i]);
-				   }
-				   else{
-					   mode.write(requestPacket.getData()[i]);
-				   }
-			   }
-			   if(requestPacket.getData()[i]!=0){
-				   if(requestPacket.getData()[i+1] == 0){
-					   change = true;
-					   i++;
-				   }
-				}
-		   }
-		   String modeString = new String(mode.toByteArray(), 
-				   	0,mode.toByteArray().length);
+		   //filename, mode and options were read by the listener
+		   String filename = request.fileName;
 		   
 		   //Check for Valid MODE
-		   if(!modeString.equalsIgnoreCase("netascii") && !modeString.equalsIgnoreCase("octet")) {
+		   if(!request.validMode()) {
 			   buildError(4,requestPacket,verbose,"Invalid Mode");
 			   exitGraceFully();
 	    	   return; 
 		   }
 		   
-		   printReceivedPacket(requestPacket, verbose);
+		   printRequest();
 		    /* Exit Gracefully if the stop is requested. */
 	       if(stopRequested){exitGraceFully();return;}  
 	       if(verbose){
 	    	   console.print("Request parsed for:");
-	    	   console.print("	Filename: " + new String(filename.toByteArray(),
-				   0,filename.toByteArray().length));
-	    	   console.print("	Mode: " + new String(mode.toByteArray(),
-				   0,mode.toByteArray().length) + "\n");
+	    	   console.print("	Filename: " + filename);
+	    	   console.print("	Mode: " + request.mode + "\n");
 			}
 	       
 	       //Write file to directory
-	       File fileName = new File(file.getAbsolutePath()+"/"+filename.toString());
+	       File fileName = new File(file.getAbsolutePath()+"/"+filename);
 		   if(fileName.exists()) { 
 		    	   buildError(6,requestPacket,verbose,"");
 		    	   return;
 			}
+		   
+		   //blksize and windowsize options (RFC 2348, RFC 7440), answered with an OACK instead of ACK 0
+		   Map<String,String> options = request.options;
+		   int negotiated = config.negotiateBlockSize(options);
+		   int window = config.negotiateWindowSize(options);
+		   if(negotiated > 0){
+			   blockSize = negotiated;
+		   }
+		   if(window > 0){
+			   windowSize = window;
+		   }
+		   receiveWindow = new ReceiveWindow(windowSize);
+		   
+		   //one writer holds the file open for the whole transfer
+		   TFTPWriter writer = config.newWriter();
+		   try {
+			   writer.open(fileName.getAbsolutePath(), blockSize);
+		   } catch (FileAlreadyExistsException e) {
+			   buildError(6,requestPacket,verbose,"");
+			   return;
+		   } catch (SecurityException e) {
+			   buildError(2,requestPacket,verbose,"");
+			   return;
+		   } catch (NoSuchFileException e) {
+			   buildError(file.exists() ? 2 : 1,requestPacket,verbose,"");
+			   return;
+		   } catch (IOException e) {
+			   buildError(2,requestPacket,verbose,"");
+			   return;
+		   }
 	
 	       
 		   //Build and send the first ACK reply in format:
@@ -172,10 +202,21 @@ class TFTPWriteThread extends ServerThread
 		  --------------------
 		    */
 	       //NEVER RESENDS ACK 0
-		   sendPacket = new DatagramPacket(response, response.length,
-				   requestPacket.getAddress(), requestPacket.getPort());
+		   //(an OACK is resent until DATA 1 arrives)
+		   byte[] oack = null;
+		   int oackLength = 0;
+		   Map<String,String> oackOptions = ServerConfig.oackOptions(negotiated, window);
+		   if(!oackOptions.isEmpty()){
+			   oack = buffer(PacketCodec.oackLength(oackOptions));
+			   oackLength = codec.wrap(oack, 0, 0).putOACK(oackOptions);
+			   sendPacket = new DatagramPacket(oack, oackLength,
+					   requestPacket.getAddress(), requestPacket.getPort());
+		   } else {
+			   sendPacket = new DatagramPacket(response, response.length,
+					   requestPacket.getAddress(), requestPacket.getPort());
+		   }
 
-		   printSendPacket(sendPacket,verbose);
+		   printSendPacket(sendPacket);
 		   
 	       try {
 	    	   sendReceiveSocket.send(sendPacket);
@@ -183,6 +224,7 @@ class TFTPWriteThread extends ServerThread
 	    	   e.printStackTrace();
 	    	   System.exit(1);
 	       }
+	       rtt.sent(0, false);
 	       startTime = System.currentTimeMillis();
 	       /* Exit Gracefully if the stop is requested. */
 	       if(stopRequested){exitGraceFully();return;}
@@ -190,6 +232,9 @@ class TFTPWriteThread extends ServerThread
 	    	   console.print("Server: packet sent using port " + sendReceiveSocket.getLocalPort()+"\n");
 	       }
 
+	       //one buffer and packet for every DATA, big enough to spot one over the block size
+	       byte[] rawData = buffer(Math.max(ABSOLUTE_PACKET_BUFFER_SIZE, blockSize+5));
+	       requestPacket = new DatagramPacket(rawData, rawData.length);
 	       while(!stopRequested){
 	    	   //Wait for next DATA datagram in format:
 		       /*
@@ -198,89 +243,69 @@ class TFTPWriteThread extends ServerThread
 		   DATA  | 03    |   Block #  |    Data    |
 			  ---------------------------------
 			*/
-	    	   //set up empty packet to receive into
-			   byte[] rawData = new byte[ABSOLUTE_PACKET_BUFFER_SIZE];
-			   requestPacket = new DatagramPacket(rawData, rawData.length);
-			   
 			    /* Exit Gracefully if the stop is requested. */
 			   if(stopRequested){continue;}
 			   
-		       console.print("Server: Waiting for packet.");
+		       log.debug("Server: Waiting for packet.");
 		       // Block until a datagram packet is received from receiveSocket.
-		       while(!receiveDATA()){if(errorFlag){exitGraceFully();return;}}
+		       while(!receiveDATA()){if(errorFlag){writer.abort();exitGraceFully();return;}}
 
 		       if(!retransmitACK){
 		       
-		    	   printReceivedPacket(requestPacket,verbose);
-			       byte[] data = new byte[requestPacket.getLength()-4];
+		    	   printReceivedPacket(requestPacket);
+			       int dataLength = requestPacket.getLength()-4;
 	
-			       //Parse data from DATA packet
-			       for(int i = 4; i < requestPacket.getLength();i++){
-			    	   data[i-4] = requestPacket.getData()[i];
-			       }
-			       
-			       
-			       TFTPWriter writer = new TFTPWriter();
-
-			       /*
-			       if(!fileName.canWrite())
-			       {
-			    	   buildError(2,requestPacket,verbose);
-			    	   return;
-			       }
-			       */
-					
+			       //write the DATA straight from the packet, receiveDATA() has already moved
+			       //blockNum on so this is block blockNum-1. The last block is only
+			       //acknowledged once the file is closed
 			       try {
-						writer.write(data,file.getAbsolutePath()+"/"+filename.toString());
-					} catch (SecurityException e1) {
-						buildError(2,requestPacket,verbose,"");
-						e1.printStackTrace();
-						exitGraceFully();
-						return;
-					} 
-			       catch(FileNotFoundException e2)
-			       {
-			    	   if(file.exists())
-			    	   {
-			    		   buildError(2,requestPacket,verbose,"");
-				    	   return;
-			    	   }
-			    	   buildError(1,requestPacket,verbose,"");
-			    	   exitGraceFully();
-			    	   return;
-			       }
+						writer.write(blockNum-1, requestPacket.getData(), 4, dataLength);
+						stats.block(dataLength);
+						if(dataLength<blockSize){
+							writer.close();
+							stats.completed();
+						}
+					}
 			       catch(IOException e2){
+			    	   	writer.abort();
 						buildError(3,requestPacket,verbose,"");
 						exitGraceFully();
 						return;
 					}
 	
-			       if(data.length<512){
+			       if(dataLength<blockSize){
 			    	   if(verbose){
 			    	   console.print("Server: Final Data Block Received.");
 			    	   console.print("Server: Sending last ACK");
 			    	   }
 			    	    requestStop();
 			       }
-	
-			       //Sending the ACK for previous DATA packet in format:
-			       /*
-				  2 bytes    2 bytes
-				  -------------------
-			   ACK   | 04    |   Block #  |
-				  --------------------
-				*/
-	
-				   response[2]=requestPacket.getData()[2];
-				   response[3]=requestPacket.getData()[3];
-	
+			       
+			       //inside a window only its last block (or the file's) is acknowledged
+			       if(!receiveWindow.inOrder(dataLength<blockSize)){
+			    	   //the client is still sending, the timeout runs from the latest block
+			    	   startTime = System.currentTimeMillis();
+			    	   continue;
+			       }
 		       }
+		       
+		       //Sending the ACK for the last DATA received in order in format:
+		       /*
+			  2 bytes    2 bytes
+			  -------------------
+		   ACK   | 04    |   Block #  |
+			  --------------------
+			*/
+		       codec.wrap(response, 0, 0).putACK(blockNum-1);
 				   
-		       sendPacket.setData(response);
-		       sendPacket.setLength(response.length);
+		       if(oack != null && blockNum == 1){
+		    	   sendPacket.setData(oack, 0, oackLength);
+		       } else {
+		    	   sendPacket.setData(response);
+		       }
 		       
 		       /* Exit Gracefully if the stop is requested. */
-		       printSendPacket(sendPacket,verbose);
+		       printSendPacket(sendPacket);
 
 		       try {
 		    	   sendReceiveSocket.send(sendPacket);
@@ -288,6 +313,9 @@ class TFTPWriteThread extends ServerThread
 		    	   e.printStackTrace();
 		    	   System.exit(1);
 		       }
+		       //a timeout or a gap repeats the ACK before, which is not timed
+		       rtt.sent(blockNum-1, retransmitACK);
+		       startTime = System.currentTimeMillis();
 		       /* Exit Gracefully if the stop is requested. */
 		       if(stopRequested){continue;}
 		       if(verbose){
@@ -295,7 +323,7 @@ class TFTPWriteThread extends ServerThread
 		       }
 
 	    }
-	    console.print("Server: thread closing.");
+	    log.info("Server: thread closing.");
 	    exitGraceFully();
     }
     
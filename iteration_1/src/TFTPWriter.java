@@ -1,16 +1,22 @@
 /*
 *Class:             TFTPWriter.java
 *Project:           TFTP Project - Group 4
-*Author:            Jason Van Kerkhoven                                             
-*Date of Update:    29/09/2016                                              
-*Version:           1.0.0                                                      
-*                                                                                    
+*Author:            Jason Van Kerkhoven
+*Date of Update:    18/10/2026
+*Version:           1.1.0
+*
 *Purpose:           Blindly regurgitate arrays of bytes into a designated
-*					file for storage. Will not overwrite a file unless specified to
-*					(ie set offset to 0).
-* 
-* 
-*Update Log:    	
+*					file for storage. One writer is used for a whole transfer:
+*					the file is opened once, each block is written at its own
+*					position (block size * block index) and the file is closed
+*					when the transfer ends. Will not overwrite an existing file.
+*
+*
+*Update Log:
+*					v1.1.0
+*						-file kept open for the whole transfer (open/write/close)
+*						-blocks written at their position instead of appended
+*						-durability policy: none, fsync on close, fsync every N blocks
 *					v1.0.1
 *						-changed Buffer to file output stream to make it work
 *						-always set fileoutputstream bool to true, otherwise writes over file
@@ -21,47 +27,118 @@
 
 //import stuff
 import java.io.*;
-import java.nio.file.AccessDeniedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
 
-import javax.swing.JFileChooser;
-import javax.swing.JTextArea;
 
 
-
-public class TFTPWriter 
+public class TFTPWriter
 {
-	private File file;
-	
-	public void write(byte[] data, String path) throws  AccessDeniedException,SecurityException,IOException 
+	//how hard to try to get blocks onto the disk before the transfer is acknowledged
+	public static enum Durability { NONE, FSYNC_ON_CLOSE, FSYNC_EVERY_N };
+
+	//declaring local class constants
+	private static final int DEFAULT_BLOCK_SIZE = 512;
+
+	//declaring local instance variables
+	private final Durability durability;
+	private final int syncInterval;
+	private FileChannel output = null;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	private int unsynced = 0;
+
+
+	//constructor, leaves flushing to the OS
+	public TFTPWriter()
+	{
+		this(Durability.NONE, 0);
+	}
+
+
+	//constructor, syncInterval is the number of blocks between fsyncs for FSYNC_EVERY_N
+	public TFTPWriter(Durability durability, int syncInterval)
+	{
+		this.durability = durability;
+		this.syncInterval = Math.max(1, syncInterval);
+	}
+
+
+	//create the file at path, FileAlreadyExistsException if it is already there
+	public void open(String path) throws FileAlreadyExistsException, SecurityException, IOException
 	{
-		
-		
-		file = new File(path);
-		
-		//prep to write to file
-		FileOutputStream output = new FileOutputStream(file,true);//set to false if dont always want to write to end of file
-		//write data to file starting at offset
-		
-		output.write(data);
-		//output.write(data);
-		//offset = offset + data.length;
-		
-		//close file
-		output.close();
+		open(path, DEFAULT_BLOCK_SIZE);
 	}
-	
-	/*
-	//test pls ignore
-	public static void main( String args[] ) throws Exception
+
+
+	//create the file at path for blocks of blockSize bytes
+	public void open(String path, int blockSize) throws FileAlreadyExistsException, SecurityException, IOException
 	{
-		byte[] a,b,c;
-		a = new byte[50];
-		b = new byte[255];
-		c = new byte[21];
-		
-		
+		close();
+		this.blockSize = blockSize;
+		unsynced = 0;
+		output = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
 	}
-	*/
 
+
+	//write length bytes of data as block number block (counting from 1, not wrapped)
+	public void write(long block, byte[] data, int offset, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+		long position = (block - 1) * blockSize;
+		while (buffer.hasRemaining())
+		{
+			position += output.write(buffer, position);
+		}
+
+		if (durability == Durability.FSYNC_EVERY_N && ++unsynced >= syncInterval)
+		{
+			output.force(false);
+			unsynced = 0;
+		}
+	}
+
+
+	//true between open(..) and close()
+	public boolean isOpen()
+	{
+		return output != null;
+	}
+
+
+	//finish the file, safe to call more than once
+	public void close() throws IOException
+	{
+		if (output == null)
+		{
+			return;
+		}
+		try
+		{
+			if (durability != Durability.NONE)
+			{
+				output.force(true);
+			}
+		}
+		finally
+		{
+			output.close();
+			output = null;
+		}
+	}
+
+
+	//close without caring whether it worked, for transfers that are being abandoned
+	public void abort()
+	{
+		try
+		{
+			close();
+		}
+		catch (IOException e)
+		{
+			//the transfer already failed
+		}
+	}
 }
@@ -0,0 +1,264 @@
+/**
+*Class:             TimerWheel.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Hashed timing wheel holding things that are due at a given
+*					time, to the millisecond. The wheel is a ring of slots, one
+*					per tick; something due at tick t goes in slot t mod the
+*					number of slots, so scheduling is constant time however many
+*					things are waiting and however far off they are due. The
+*					owner polls it with the time now and gets back, one at a
+*					time, everything whose tick has come, earliest tick first and
+*					in the order scheduled within a tick. nextDue() tells the
+*					owner how long it may sleep (a select or receive timeout).
+*
+*					Used by the error simulator to hold delayed and duplicated
+*					packets while it keeps forwarding everything else. Not thread
+*					safe, the thread that polls it is the one that schedules.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class TimerWheel<T>
+{
+	//declaring local class constants
+	public static final int DEFAULT_SLOTS = 1024;		//one revolution is about a second at 1 ms ticks
+	private static final int MAX_SPARE = 64;			//entries kept for reuse
+
+	//declaring local instance variables
+	private final Entry<T>[] heads;
+	private final Entry<T>[] tails;
+	private final int mask;
+	private long cursor = 0;			//no tick before it holds anything
+	private int size = 0;
+	private long earliest = Long.MAX_VALUE;	//earliest tick held, valid while earliestKnown
+	private boolean earliestKnown = true;
+	private Entry<T> spare = null;		//entries to reuse, linked through next
+	private int spares = 0;
+
+
+	//one scheduled thing
+	private static final class Entry<T>
+	{
+		long tick;
+		T item;
+		Entry<T> next;
+	}
+
+
+	//generic constructor, 1 ms ticks
+	public TimerWheel()
+	{
+		this(DEFAULT_SLOTS);
+	}
+
+
+	//slots is rounded up to a power of two
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TimerWheel(int slots)
+	{
+		int n = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+		heads = (Entry<T>[])new Entry[n];
+		tails = (Entry<T>[])new Entry[n];
+		mask = n - 1;
+	}
+
+
+	//number of things waiting
+	public int size()
+	{
+		return size;
+	}
+
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+
+	//item is handed back by poll(..) once now reaches due (ms), anything already due comes back on the next poll, earliest first
+	public void schedule(T item, long due)
+	{
+		long tick = Math.max(due, 0);
+		cursor = size == 0 ? tick : Math.min(cursor, tick);
+
+		Entry<T> entry = spare;
+		if(entry != null)
+		{
+			spare = entry.next;
+			spares--;
+			entry.next = null;
+		}
+		else
+		{
+			entry = new Entry<T>();
+		}
+		entry.tick = tick;
+		entry.item = item;
+
+		int slot = (int)(tick & mask);
+		if(tails[slot] == null)
+		{
+			heads[slot] = entry;
+		}
+		else
+		{
+			tails[slot].next = entry;
+		}
+		tails[slot] = entry;
+		size++;
+		if(earliestKnown)
+		{
+			earliest = Math.min(earliest, tick);
+		}
+	}
+
+
+	//time (ms) the next thing is due, Long.MAX_VALUE if nothing is waiting
+	public long nextDue()
+	{
+		if(size == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+		if(!earliestKnown)
+		{
+			earliest = findEarliest();
+			earliestKnown = true;
+		}
+		return earliest;
+	}
+
+
+	//ms from now until the next thing is due, 0 if something is due already, -1 if nothing is waiting
+	public long timeout(long now)
+	{
+		if(size == 0)
+		{
+			return -1;
+		}
+		return Math.max(0, nextDue() - now);
+	}
+
+
+	//one thing due by now, null once there are none
+	public T poll(long now)
+	{
+		long tick = nextDue();
+		if(tick > now)
+		{
+			return null;
+		}
+		//nothing is held before the earliest tick, so the empty slots up to it are skipped rather than walked
+		cursor = tick;
+		int slot = (int)(tick & mask);
+		Entry<T> prev = null;
+		for(Entry<T> entry = heads[slot]; entry != null; prev = entry, entry = entry.next)
+		{
+			if(entry.tick == tick)
+			{
+				return remove(slot, prev, entry);
+			}
+		}
+		return null;
+	}
+
+
+	//take everything out, whenever it was due, in no particular order
+	public List<T> clear()
+	{
+		List<T> items = new ArrayList<T>(size);
+		for(int slot=0; slot<heads.length; slot++)
+		{
+			for(Entry<T> entry = heads[slot]; entry != null; entry = entry.next)
+			{
+				items.add(entry.item);
+			}
+			heads[slot] = null;
+			tails[slot] = null;
+		}
+		size = 0;
+		earliest = Long.MAX_VALUE;
+		earliestKnown = true;
+		return items;
+	}
+
+
+	private T remove(int slot, Entry<T> prev, Entry<T> entry)
+	{
+		if(prev == null)
+		{
+			heads[slot] = entry.next;
+		}
+		else
+		{
+			prev.next = entry.next;
+		}
+		if(tails[slot] == entry)
+		{
+			tails[slot] = prev;
+		}
+		size--;
+		if(size == 0)
+		{
+			earliest = Long.MAX_VALUE;
+			earliestKnown = true;
+		}
+		else if(entry.tick == earliest)
+		{
+			//another may share the tick, looked for when next asked
+			earliestKnown = false;
+		}
+
+		T item = entry.item;
+		entry.item = null;
+		if(spares < MAX_SPARE)
+		{
+			entry.next = spare;
+			spare = entry;
+			spares++;
+		}
+		else
+		{
+			entry.next = null;
+		}
+		return item;
+	}
+
+
+	//earliest tick held, the slots of one revolution from the cursor first, then everything
+	private long findEarliest()
+	{
+		for(int i=0; i<heads.length; i++)
+		{
+			long tick = cursor + i;
+			for(Entry<T> entry = heads[(int)(tick & mask)]; entry != null; entry = entry.next)
+			{
+				if(entry.tick == tick)
+				{
+					return tick;
+				}
+			}
+		}
+		long min = Long.MAX_VALUE;
+		for(int slot=0; slot<heads.length; slot++)
+		{
+			for(Entry<T> entry = heads[slot]; entry != null; entry = entry.next)
+			{
+				min = Math.min(min, entry.tick);
+			}
+		}
+		return min;
+	}
+}
@@ -0,0 +1,80 @@
+/**
+*Class:             TransferLauncher.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Starts a transfer's blocking code (ServerThread.run()) on a virtual thread.
+*					The project is built for Java 8, so Thread.ofVirtual() is looked up
+*					reflectively. On a JVM without virtual threads the task runs on a
+*					platform thread with a small stack instead, which still lets far more
+*					transfers run than the default -Xss allows.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+import java.lang.reflect.Method;
+
+
+public class TransferLauncher
+{
+	//declaring local class constants
+	private static final long FALLBACK_STACK_SIZE = 256 * 1024;	//bytes, transfers never recurse deeply
+
+	//Thread.ofVirtual() and Thread.Builder's name(..)/start(..), null if the JVM has none
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_START;
+
+	static
+	{
+		Method ofVirtual = null, name = null, start = null;
+		try
+		{
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class);
+			start = builder.getMethod("start", Runnable.class);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_START = start;
+	}
+
+
+	//true if this JVM can start virtual threads
+	public static boolean virtualThreadsSupported()
+	{
+		return OF_VIRTUAL != null;
+	}
+
+
+	//run task on a new virtual thread, or a small-stack platform thread if there are none
+	public static Thread startVirtual(Runnable task, String name)
+	{
+		if(OF_VIRTUAL != null)
+		{
+			try
+			{
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+				return (Thread)BUILDER_START.invoke(builder, task);
+			}
+			catch (ReflectiveOperationException e)
+			{
+				//fall through to a platform thread
+			}
+		}
+		Thread thread = new Thread(null, task, name, FALLBACK_STACK_SIZE);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,288 @@
+/**
+*Class:             TransferSession.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.8
+*
+*Purpose:           State of a single RRQ or WRQ being served by TFTPSelectorEngine.
+*					Holds everything a ServerThread would keep on its stack, but is driven
+*					by the selector that owns its channel instead of by a dedicated thread.
+*					Packets are validated with ServerThread.checkPacket(..) so a transfer
+*					behaves the same whichever engine serves it.
+*
+*
+*Update Log:		v1.0.8
+*						- counts into a TransferStats: duplicates, errors, and through its RttEstimator resends, timeouts, round trips
+*					v1.0.7
+*						- prints to any UIFramework console, windowed or headless
+*					v1.0.6
+*						- made from the TFTPRequest the listener read, not the request's packet
+*					v1.0.5
+*						- request read and OACK written with PacketCodec
+*					v1.0.4
+*						- retransmission timer follows the client's round trip time (RttEstimator)
+*						- deadline() so the selector wakes when the next timer runs out
+*					v1.0.3
+*						- windowsize option (RFC 7440) negotiated with blksize, both in one OACK
+*					v1.0.2
+*						- blksize option (RFC 2348) negotiation and OACK
+*					v1.0.1
+*						- send(ByteBuffer[]) for gathering writes of header + payload
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
+
+
+abstract class TransferSession
+{
+	//declaring local instance variables
+	protected final DatagramChannel channel;
+	protected final InetSocketAddress client;
+	protected final int clientTID;
+	protected final String name;
+	protected final UIFramework console;
+	protected final boolean verbose;
+	protected final String fileName;
+	protected final String mode;
+	protected final Map<String,String> options;	//RFC 2347 options in the request
+	protected int blockNum;
+	protected int blockSize = 512;		//bytes of file per DATA, changed by a blksize option
+	protected int windowSize = 1;		//DATA sent before waiting for an ACK, changed by a windowsize option
+	private Map<String,String> oackOptions;	//what was negotiated, empty if the request asked for nothing
+	protected final PacketCodec codec = new PacketCodec();	//reads and writes this session's packets in place
+	protected final RttEstimator rtt = new RttEstimator();
+	final TransferStats stats;			//what this session has done, for the server's stats
+	protected long startTime;
+	protected ByteBuffer lastSent;
+	protected ByteBuffer[] lastGathered;		//set instead of lastSent for header + payload sends
+	private boolean done = false;
+	boolean retired = false;	//set by the owning selector once the session is dropped
+	int sessionId;				//SessionRegistry id, assigned on submit
+	ServerConfig config = new ServerConfig();	//replaced with the server's copy on submit
+
+
+	//generic constructor
+	protected TransferSession(DatagramChannel channel, TFTPRequest request, String name, UIFramework console, boolean verbose)
+	{
+		this.channel = channel;
+		this.client = request.client();
+		this.clientTID = request.port;
+		this.name = name;
+		this.console = console;
+		this.verbose = verbose;
+		this.fileName = request.fileName;
+		this.mode = request.mode;
+		this.options = request.options;
+		this.stats = new TransferStats(name, request);
+		rtt.setStats(stats);
+	}
+
+
+	//send the first packet of the transfer (DATA 1 or ACK 0)
+	abstract void start() throws IOException;
+
+
+	//handle a packet that arrived on this session's channel
+	abstract void received(byte[] data, int length, InetSocketAddress from) throws IOException;
+
+
+	//take up the request's blksize and windowsize options, true if an OACK should answer it
+	protected boolean negotiateOptions()
+	{
+		int negotiated = config.negotiateBlockSize(options);
+		int window = config.negotiateWindowSize(options);
+		if(negotiated > 0)
+		{
+			blockSize = negotiated;
+		}
+		if(window > 0)
+		{
+			windowSize = window;
+		}
+		oackOptions = ServerConfig.oackOptions(negotiated, window);
+		return !oackOptions.isEmpty();
+	}
+
+
+	//the OACK for what negotiateOptions() took up
+	protected ByteBuffer oack()
+	{
+		byte[] oack = new byte[PacketCodec.oackLength(oackOptions)];
+		codec.wrap(oack, 0, 0).putOACK(oackOptions);
+		return ByteBuffer.wrap(oack);
+	}
+
+
+	//true if the request was made in a mode the server serves
+	protected boolean validMode()
+	{
+		return mode != null && (mode.equalsIgnoreCase("netascii") || mode.equalsIgnoreCase("octet"));
+	}
+
+
+	//true once the transfer has finished, successfully or not
+	boolean isDone()
+	{
+		return done;
+	}
+
+
+	//when the retransmission timer runs out (System.currentTimeMillis()), Long.MAX_VALUE if there is nothing to resend
+	long deadline()
+	{
+		if(done || (lastSent == null && lastGathered == null))
+		{
+			return Long.MAX_VALUE;
+		}
+		return startTime + rtt.timeout();
+	}
+
+
+	//called by the selector when no packet arrived within the socket timeout
+	void checkTimeout(long now) throws IOException
+	{
+		if(now < deadline())
+		{
+			return;
+		}
+		if(rtt.timedOut())
+		{
+			console.print("Server: " + name + " timed out, closing transfer.");
+			finish();
+			return;
+		}
+		if(verbose)
+		{
+			console.print("Server: " + name + " TIMEOUT EXCEEDED: RETRANSMITTING");
+		}
+		retransmit();
+	}
+
+
+	//a packet matched the previous block, resend if we have waited long enough
+	protected void duplicate() throws IOException
+	{
+		stats.duplicate();
+		if(verbose)
+		{
+			console.print("Server: " + name + " received duplicate.");
+		}
+		if(rtt.expired(startTime))
+		{
+			if(rtt.timedOut())
+			{
+				finish();
+				return;
+			}
+			retransmit();
+		}
+	}
+
+
+	//the peer sent something that is not the expected block
+	protected void reject(int check, byte[] data, int length, InetSocketAddress from, String oversizeInfo) throws IOException
+	{
+		switch(check)
+		{
+			case ServerThread.PACKET_ERROR:
+				stats.errorReceived(codec.wrap(data, 0, length).errorCode());
+				console.print("Server: " + name + " error packet received: " + new String(data, 4, Math.max(0, length-5)));
+				break;
+			case ServerThread.PACKET_OVERSIZE:
+				sendError(4, oversizeInfo, from);
+				break;
+			default:
+				sendError(5, "OpCode is invalid", from);
+				break;
+		}
+		finish();
+	}
+
+
+	//true if the packet came from the client this session belongs to, errors the stranger otherwise
+	protected boolean fromClient(InetSocketAddress from) throws IOException
+	{
+		if(from.getPort() != clientTID)
+		{
+			sendError(5, "Unexpected TID", from);
+			console.print("Server: " + name + " Unexpected TID");
+			return false;
+		}
+		return true;
+	}
+
+
+	//send a packet to the client and remember it for retransmission
+	protected void send(ByteBuffer packet) throws IOException
+	{
+		lastSent = packet;
+		lastGathered = null;
+		packet.rewind();
+		channel.send(packet, client);
+		startTime = System.currentTimeMillis();
+	}
+
+
+	//send one packet made of several buffers, the channel must be connected to the client
+	protected void send(ByteBuffer[] packet) throws IOException
+	{
+		lastSent = null;
+		lastGathered = packet;
+		for(int i=0; i<packet.length; i++)
+		{
+			packet[i].rewind();
+		}
+		channel.write(packet);
+		startTime = System.currentTimeMillis();
+	}
+
+
+	//resend whatever was last sent
+	protected void retransmit() throws IOException
+	{
+		if(lastGathered != null)
+		{
+			send(lastGathered);
+		}
+		else
+		{
+			send(lastSent);
+		}
+	}
+
+
+	//send an ERROR packet, to the client unless told otherwise
+	protected void sendError(int errorCode, String errorInfo, InetSocketAddress to) throws IOException
+	{
+		String errorMsg = ServerThread.errorMessage(errorCode, errorInfo);
+		stats.errorSent(errorCode);
+		console.print("Server: " + name + " sending error packet: " + errorMsg);
+		channel.send(ByteBuffer.wrap(ServerThread.errorData(errorCode, errorMsg)), to);
+	}
+
+
+	//close the session, the owning selector drops it on its next pass
+	void finish()
+	{
+		done = true;
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/**
+*Class:             TransferStats.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           What one transfer has done so far: blocks and bytes of file moved,
+*					blocks resent, duplicates received, timeouts, round trip samples,
+*					the error it sent or was sent, and how long it ran. Only the
+*					transfer's own thread (or selector) writes to it, so counting is
+*					a plain add to a volatile field; anyone may read it while the
+*					transfer runs. Handed to the MetricsRegistry when it ends.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+
+
+final class TransferStats
+{
+	//declaring local instance variables
+	final String name;
+	final String file;			//file read or written, "?" if not known
+	final String client;		//address:port of the client
+	final boolean read;			//true for a RRQ (bytes sent), false for a WRQ (bytes received)
+	final long startTime;		//System.currentTimeMillis()
+	private volatile long endTime = 0;
+	private volatile long bytes;
+	private volatile long blocks;
+	private volatile long retransmits;
+	private volatile long duplicates;
+	private volatile long timeouts;
+	private volatile long rttSamples;
+	private volatile long rttTotal;		//us
+	private volatile long rttMin = Long.MAX_VALUE;	//us
+	private volatile long rttMax;		//us
+	private volatile int errorSent = -1;		//TFTP error code, -1 if none
+	private volatile int errorReceived = -1;	//TFTP error code, -1 if none
+	private volatile boolean completed = false;
+
+
+	//generic constructor, request may be null
+	TransferStats(String name, TFTPRequest request)
+	{
+		this.name = name;
+		this.file = request == null ? "?" : request.fileName;
+		this.client = request == null ? "?" : request.address.getHostAddress() + ":" + request.port;
+		this.read = request == null || request.isRead();
+		this.startTime = System.currentTimeMillis();
+	}
+
+
+	//a new block of length bytes of file went out (RRQ) or was written (WRQ), not counting resends
+	void block(int length)
+	{
+		blocks++;
+		bytes += length;
+	}
+
+
+	//a packet went out again
+	void retransmit()
+	{
+		retransmits++;
+	}
+
+
+	//the peer repeated itself, or answered something already answered
+	void duplicate()
+	{
+		duplicates++;
+	}
+
+
+	//the retransmission timer ran out
+	void timeout()
+	{
+		timeouts++;
+	}
+
+
+	//a round trip of us microseconds
+	void rtt(long us)
+	{
+		rttSamples++;
+		rttTotal += us;
+		if(us < rttMin)
+		{
+			rttMin = us;
+		}
+		if(us > rttMax)
+		{
+			rttMax = us;
+		}
+	}
+
+
+	void errorSent(int code)
+	{
+		errorSent = code;
+	}
+
+
+	void errorReceived(int code)
+	{
+		errorReceived = code;
+	}
+
+
+	//the whole file was moved
+	void completed()
+	{
+		completed = true;
+	}
+
+
+	//the transfer is over, called once by the registry
+	void end()
+	{
+		if(endTime == 0)
+		{
+			endTime = System.currentTimeMillis();
+		}
+	}
+
+
+	long getBytes()			{ return bytes; }
+	long getBlocks()		{ return blocks; }
+	long getRetransmits()	{ return retransmits; }
+	long getDuplicates()	{ return duplicates; }
+	long getTimeouts()		{ return timeouts; }
+	long getRttSamples()	{ return rttSamples; }
+	long getRttTotal()		{ return rttTotal; }
+	int getErrorSent()		{ return errorSent; }
+	int getErrorReceived()	{ return errorReceived; }
+	boolean isCompleted()	{ return completed; }
+	boolean isEnded()		{ return endTime != 0; }
+
+
+	//ms from start to end, or to now while it runs
+	long duration()
+	{
+		long end = endTime;
+		return (end == 0 ? System.currentTimeMillis() : end) - startTime;
+	}
+
+
+	//mean round trip in us, -1 without samples
+	long rttMean()
+	{
+		long n = rttSamples;
+		return n == 0 ? -1 : rttTotal / n;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		long n = rttSamples;
+		return (read ? "RRQ " : "WRQ ") + file + " " + client
+				+ " || " + bytes + " B in " + blocks + " blocks, " + duration() + " ms"
+				+ " || resent " + retransmits + ", dup " + duplicates + ", timeouts " + timeouts
+				+ " || rtt " + (n == 0 ? "-" : (rttMin + "/" + (rttTotal / n) + "/" + rttMax + " us"))
+				+ (errorSent >= 0 ? " || sent error " + errorSent : "")
+				+ (errorReceived >= 0 ? " || got error " + errorReceived : "");
+	}
+
+
+	//this transfer as a JSON object
+	void toJson(StringBuilder out)
+	{
+		out.append("{\"name\":").append(MetricsRegistry.quote(name))
+				.append(",\"type\":\"").append(read ? "RRQ" : "WRQ").append('"')
+				.append(",\"file\":").append(MetricsRegistry.quote(file))
+				.append(",\"client\":").append(MetricsRegistry.quote(client))
+				.append(",\"start\":").append(startTime)
+				.append(",\"durationMs\":").append(duration())
+				.append(",\"ended\":").append(isEnded())
+				.append(",\"completed\":").append(completed)
+				.append(",\"bytes\":").append(bytes)
+				.append(",\"blocks\":").append(blocks)
+				.append(",\"retransmits\":").append(retransmits)
+				.append(",\"duplicates\":").append(duplicates)
+				.append(",\"timeouts\":").append(timeouts)
+				.append(",\"rttSamples\":").append(rttSamples)
+				.append(",\"rttMeanUs\":").append(rttMean())
+				.append(",\"rttMinUs\":").append(rttSamples == 0 ? -1 : rttMin)
+				.append(",\"rttMaxUs\":").append(rttSamples == 0 ? -1 : rttMax)
+				.append(",\"errorSent\":").append(errorSent)
+				.append(",\"errorReceived\":").append(errorReceived)
+				.append('}');
+	}
+}
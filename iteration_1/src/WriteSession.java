@@ -0,0 +1,257 @@
+/**
+*Class:             WriteSession.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.8
+*
+*Purpose:           Serves a WRQ inside TFTPSelectorEngine by:
+*						-Sending the special 0 ACK
+*						-Receiving the next DATA
+*						-Sending an ACK
+*					Mirrors TFTPWriteThread, one state object per transfer.
+*
+*
+*Update Log:		v1.0.8
+*						- blocks, bytes, duplicates and completion counted in the session's TransferStats
+*					v1.0.7
+*						- prints to any UIFramework console
+*					v1.0.6
+*						- made from a TFTPRequest
+*					v1.0.5
+*						- ACKs written with PacketCodec
+*					v1.0.4
+*						- ACK sends are timed for the retransmission timer
+*					v1.0.3
+*						- windowsize option (RFC 7440), only a window's last block is ACKed
+*						- a block out of order re-ACKs the last block received in order
+*					v1.0.2
+*						- blksize option (RFC 2348), answered with an OACK
+*					v1.0.1
+*						- one TFTPWriter per transfer, blocks written at their position
+*					v1.0.0
+*						- null
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+
+import errorhelpers.PacketCodec;
+import ui.UIFramework;
+
+
+class WriteSession extends TransferSession
+{
+	//declaring local class constants
+
+	//declaring local instance variables
+	private final File serverDump;
+	private final ByteBuffer ack = ByteBuffer.allocate(PacketCodec.HEADER);
+	private File file;
+	private TFTPWriter writer;
+	private ByteBuffer oack;			//answers the WRQ instead of ACK 0 when options were taken up
+	private ReceiveWindow receiveWindow;
+	private long acknowledged = -1;		//last block ACKed, the same ACK again is a resend
+
+
+	//generic constructor
+	WriteSession(DatagramChannel channel, TFTPRequest request, String name, UIFramework console, boolean verbose, File serverDump)
+	{
+		super(channel, request, name, console, verbose);
+		this.serverDump = serverDump;
+	}
+
+
+	@Override
+	void start() throws IOException
+	{
+		if(!validMode())
+		{
+			sendError(4, "Invalid Mode", client);
+			finish();
+			return;
+		}
+		if(verbose)
+		{
+			console.print("Server: " + name + " WRQ parsed for:");
+			console.print("	Filename: " + fileName);
+			console.print("	Mode: " + mode);
+		}
+
+		file = new File(serverDump.getAbsolutePath() + "/" + fileName);
+		if(file.exists())
+		{
+			sendError(6, "", client);
+			finish();
+			return;
+		}
+
+		//blksize/windowsize options, answered with an OACK instead of ACK 0
+		boolean negotiated = negotiateOptions();
+		receiveWindow = new ReceiveWindow(windowSize);
+
+		//one writer holds the file open for the whole transfer
+		writer = config.newWriter();
+		try
+		{
+			writer.open(file.getAbsolutePath(), blockSize);
+		}
+		catch (FileAlreadyExistsException e)
+		{
+			sendError(6, "", client);
+			finish();
+			return;
+		}
+		catch (SecurityException e)
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+		catch (NoSuchFileException e)
+		{
+			sendError(serverDump.exists() ? 2 : 1, "", client);
+			finish();
+			return;
+		}
+		catch (IOException e)
+		{
+			sendError(2, "", client);
+			finish();
+			return;
+		}
+
+		blockNum = 1;
+		if(negotiated)
+		{
+			oack = oack();
+		}
+		acknowledge();
+	}
+
+
+	//ACK the last block received in order, the OACK stands in for ACK 0
+	private void acknowledge() throws IOException
+	{
+		if(blockNum == 1 && oack != null)
+		{
+			send(oack);
+		}
+		else
+		{
+			sendACK(blockNum - 1);
+		}
+		rtt.sent(blockNum - 1, blockNum - 1 == acknowledged);
+		acknowledged = blockNum - 1;
+	}
+
+
+	/*
+	  2 bytes    2 bytes
+	  -------------------
+   ACK   | 04    |   Block #  |
+	  --------------------
+	 */
+	private void sendACK(int block) throws IOException
+	{
+		ack.clear();
+		ack.limit(codec.wrap(ack).putACK(block));
+		send(ack);
+	}
+
+
+	@Override
+	void received(byte[] data, int length, InetSocketAddress from) throws IOException
+	{
+		if(!fromClient(from))
+		{
+			finish();
+			return;
+		}
+		int check = ServerThread.checkPacket(data, length, PacketCodec.DATA, blockNum, blockSize+PacketCodec.HEADER);
+		if(check == ServerThread.PACKET_DUPLICATE)
+		{
+			stats.duplicate();
+			if(verbose)
+			{
+				console.print("Server: " + name + " received duplicate.");
+			}
+			//a gap or a resent block, ACK the last block we have once so the client goes back to it
+			if(receiveWindow.outOfOrder(PacketCodec.block(data, length), blockNum))
+			{
+				acknowledge();
+			}
+			return;
+		}
+		if(check != ServerThread.PACKET_EXPECTED)
+		{
+			reject(check, data, length, from, "Length of the DATA packet is over " + (blockSize+4) + ".");
+			return;
+		}
+
+		//write the block out, the last one is only acknowledged once the file is closed
+		boolean lastBlock = length - 4 < blockSize;
+		try
+		{
+			writer.write(blockNum, data, 4, length - 4);
+			stats.block(length - 4);
+			if(lastBlock)
+			{
+				writer.close();
+				stats.completed();
+			}
+		}
+		catch (IOException e)
+		{
+			sendError(3, "", client);
+			finish();
+			return;
+		}
+
+		//DATA blockNum answers the ACK before it
+		rtt.answered(blockNum - 1);
+		blockNum++;
+
+		//inside a window only its last block (or the file's) is acknowledged
+		if(receiveWindow.inOrder(lastBlock))
+		{
+			acknowledge();
+		}
+		else
+		{
+			//the client is still sending, the timeout runs from the latest block
+			startTime = System.currentTimeMillis();
+		}
+		if(lastBlock)
+		{
+			console.print("Server: " + name + " Final Data Block Received.");
+			finish();
+		}
+	}
+
+
+	//nothing arrived in time, ACK the last block received in order again
+	@Override
+	protected void retransmit() throws IOException
+	{
+		receiveWindow.timedOut();
+		acknowledge();
+	}
+
+
+	@Override
+	void finish()
+	{
+		if(writer != null)
+		{
+			writer.abort();
+		}
+		super.finish();
+	}
+}
@@ -3,14 +3,23 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    25/11/2016                                              
-*Version:           1.2.0                                                      
+*Version:           1.4.0                                                      
 *                                                                                   
 *Purpose:           Homemade, artisan crafted datagrams.
 *					Just like mom used to make and her mother before her.
 *					Also can dissect and return specific parts in a packet.
 * 
 * 
-*Update Log:		v1.2.0
+*Update Log:		v1.4.0
+*						- packets are read and written by PacketCodec, kept for old callers
+*						  and the tests below; new code uses PacketCodec directly
+*					v1.3.1
+*						- windowsize option constants and parseWindowSize (RFC 7440)
+*					v1.3.0
+*						- RFC 2347/2348 options: getOptions, produceOACK, blksize constants
+*						- produceRWRQ can append options
+*						- getMode reads forward from the filename so options do not end up in it
+*					v1.2.0
 *						- parsing for error message in error packet added
 *					v1.1.0
 *						- the artisan has expanded his talents, he now can provide detailed
@@ -26,11 +35,33 @@ package errorhelpers;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Map;
 
 
+//allocates a new packet for everything it makes, use PacketCodec instead
+@Deprecated
 public class DatagramArtisan
 {		
+	//block size option (RFC 2348)
+	public static final String BLKSIZE = PacketCodec.BLKSIZE;
+	public static final int DEFAULT_BLKSIZE = PacketCodec.DEFAULT_BLKSIZE;
+	public static final int MIN_BLKSIZE = PacketCodec.MIN_BLKSIZE;
+	public static final int MAX_BLKSIZE = PacketCodec.MAX_BLKSIZE;
+	
+	//window size option (RFC 7440)
+	public static final String WINDOWSIZE = PacketCodec.WINDOWSIZE;
+	public static final int DEFAULT_WINDOWSIZE = PacketCodec.DEFAULT_WINDOWSIZE;
+	public static final int MIN_WINDOWSIZE = PacketCodec.MIN_WINDOWSIZE;
+	public static final int MAX_WINDOWSIZE = PacketCodec.MAX_WINDOWSIZE;
+	
+	//option acknowledgement opcode (RFC 2347)
+	public static final byte OACK = PacketCodec.OACK;
+	
+	//declaring local instance variables
+	private final PacketCodec codec = new PacketCodec();
+	
+	
 	//generic constructor
 	public DatagramArtisan() {}
 	
@@ -38,19 +69,9 @@ public class DatagramArtisan
 	//produce an ACK
 	public DatagramPacket produceACK(byte[] opCode, int blockNum, InetAddress address, int outPort)
 	{
-		//ack skellington + local variables
-		byte[] ack = new byte[4];
-		byte[] blockNumArr = new byte[2];
-		
-		//add opcode to ACK
-		ack[0] = opCode[0];
-		ack[1] = opCode[1];
-		
-		//add block nums to ACK
-		ack[2] = (byte)((blockNum >> 8)& 0xFF);
-		ack[3] = (byte)(blockNum & 0xFF);
-		
-		//generate and save datagram packet
+		byte[] ack = new byte[PacketCodec.HEADER];
+		codec.wrap(ack, 0, 0).putACK(blockNum);
+		codec.putOpcode(opcode(opCode));
 		return new DatagramPacket(ack, ack.length, address, outPort);
 	}
 	
@@ -58,69 +79,34 @@ public class DatagramArtisan
 	//produce a DATA
 	public DatagramPacket produceDATA(byte[] opCode, int blockNum, byte[] data, InetAddress address,int outPort)
 	{
-		//prep for block num
-		byte[] blockNumArr = new byte[2];
-		blockNumArr[1]=(byte)(blockNum & 0xFF);
-		blockNumArr[0]=(byte)((blockNum >> 8)& 0xFF);
-
-		//construct array to hold data
-		byte[] toSend = new byte[data.length + 4];
-		
-		//add opcode
-		for(int i=0; i<2; i++)
-		{
-			toSend[i] = opCode[i];
-		}
-		//add blocknum
-		for(int i = 2; i < 4; i++)
-		{
-			toSend[i] = blockNumArr[i-2] ;
-		}
-		//add data
-		for(int i = 0; i < data.length; i++)
-		{
-			toSend[i+4] = data[i] ;
-		}
-		
-		//generate and return
-		return (new DatagramPacket(toSend, toSend.length, address, outPort));
+		byte[] toSend = new byte[data.length + PacketCodec.HEADER];
+		codec.wrap(toSend, 0, 0).putDATA(blockNum, data, 0, data.length);
+		codec.putOpcode(opcode(opCode));
+		return new DatagramPacket(toSend, toSend.length, address, outPort);
 	}
 	
 	
 	//produce a RRQ
 	public DatagramPacket produceRWRQ(byte[] opCode, String fileName, String mode, InetAddress address, int outPort)
 	{
-		//generate the data to be sent in datagram packet
-		//convert various strings to Byte arrays
-		byte[] fileNameBA = fileName.getBytes();
-		byte[] modeBA = mode.getBytes();
-		
-		//compute length of data being sent (metadata include) and create byte array
-		byte[] data = new byte[fileNameBA.length + modeBA.length + 4];
-		int i = 2;
-			
-		//add first 2 bytes of opcode
-		for(int c=0; c<2; c++)
-		{
-			data[c] = opCode[c] ;
-		}
-		//add text
-		for(int c=0; c<fileNameBA.length; c++, i++)
-		{
-			data[i] = fileNameBA[c];
-		}
-		//add pesky 0x00
-		data[i] = 0x00;
-		i++;
-		//add mode
-		for(int c=0; c<modeBA.length; c++, i++)
-		{
-			data[i] = modeBA[c];
-		}
-		//add end metadata
-		data[i] = 0x00;
-			
-		//generate and save datagram packet
+		return produceRWRQ(opCode, fileName, mode, null, address, outPort);
+	}
+	
+	
+	//produce a RRQ/WRQ with options (name -> value) after the mode, null for none
+	public DatagramPacket produceRWRQ(byte[] opCode, String fileName, String mode, Map<String,String> options, InetAddress address, int outPort)
+	{
+		byte[] data = new byte[PacketCodec.requestLength(fileName, mode, options)];
+		codec.wrap(data, 0, 0).putRequest(opcode(opCode), fileName, mode, options);
+		return new DatagramPacket(data, data.length, address, outPort);
+	}
+	
+	
+	//produce an OACK
+	public DatagramPacket produceOACK(Map<String,String> options, InetAddress address, int outPort)
+	{
+		byte[] data = new byte[PacketCodec.oackLength(options)];
+		codec.wrap(data, 0, 0).putOACK(options);
 		return new DatagramPacket(data, data.length, address, outPort);
 	}
 	
@@ -145,30 +131,7 @@ public class DatagramArtisan
 	//returns null if not a valid packet type
 	public String getFileName(DatagramPacket datagram)
 	{
-		byte[] rawData = datagram.getData();
-		String fileName = "";
-		
-		//valid RRQ/WRQ, extract mode
-		if(datagram.getData()[1] == 1 || datagram.getData()[1] == 2)
-		{
-			/*
-			 * step backwards through RRQ/WRQ until you hit null
-			 *     2B       Str     1B   Str   1B
-			 *  ----------------------------------
-			 * | OPCODE | FILENAME | 0 | MODE | 0 |
-			 *  ----------------------------------
-			 */
-			for(int i=2; rawData[i] != 0x00; i++)
-			{
-				fileName = fileName + (char)rawData[i];
-			}
-			return fileName;
-		}
-		//invalid, no mode in packet, return null
-		else
-		{
-			return null;
-		}
+		return codec.wrap(datagram).fileName();
 	}
 	
 	
@@ -176,68 +139,58 @@ public class DatagramArtisan
 	//returns null if not a valid packet type
 	public String getMode(DatagramPacket datagram)
 	{
-		byte[] rawData = datagram.getData();
-		String mode = "";
-		
-		//valid RRQ/WRQ, extract mode
-		if(datagram.getData()[1] == 1 || datagram.getData()[1] == 2)
-		{
-			/*
-			 * step backwards through RRQ/WRQ until you hit null
-			 *     2B       Str     1B   Str   1B
-			 *  ----------------------------------
-			 * | OPCODE | FILENAME | 0 | MODE | 0 |
-			 *  ----------------------------------
-			 */
-			for(int i=datagram.getLength()-2; rawData[i] != 0x00; i--)
-			{
-				mode = (char)rawData[i] + mode;
-			}
-			return mode;
-		}
-		//invalid, no mode in packet, return null
-		else
-		{
-			return null;
-		}
+		return codec.wrap(datagram).mode();
+	}
+	
+	
+	//return the options in a RRQ/WRQ (after the mode) or an OACK, names in lower case
+	//returns an empty map if there are none, null if they are malformed
+	public Map<String,String> getOptions(DatagramPacket datagram)
+	{
+		return codec.wrap(datagram).options();
+	}
+	
+	
+	//the block size asked for in a blksize option, -1 if missing or out of range
+	public static int parseBlockSize(String value)
+	{
+		return PacketCodec.parseBlockSize(value);
+	}
+	
+	
+	//the window asked for in a windowsize option, -1 if missing or out of range
+	public static int parseWindowSize(String value)
+	{
+		return PacketCodec.parseWindowSize(value);
 	}
 	
 	
 	//return block number for ACK or DATA
 	public int getBlockNum(DatagramPacket datagram)
 	{
-		byte[] rawData = datagram.getData();
-		int blockNum = ( (rawData[2] << 8)&0xFF | rawData[3]&0xFF );
-				
-		return blockNum;
+		return codec.wrap(datagram).block();
 	}
 	
 	
 	//return the data in a DATA packet
 	public byte[] getData(DatagramPacket datagram)
 	{
-		byte[] rawData = datagram.getData();
-		byte[] data = new byte[datagram.getLength()-4];
-		
-		for(int i=4; i<datagram.getLength(); i++)
-		{
-			data[i-4] = rawData[i];
-		}
-		
-		return data;
+		codec.wrap(datagram);
+		return Arrays.copyOfRange(datagram.getData(), codec.dataOffset(), codec.dataOffset() + codec.dataLength());
 	}
 	
 	
 	//return the error message in a ERR packet
 	public String getErrorMsg(DatagramPacket datagram)
 	{
-		String msg = "";
-		byte[] data = getData(datagram);
-		for(int i=0; i<data.length-1; i++)
-		{
-			msg = msg + (char)(data[i]);
-		}
-		return msg;
+		return codec.wrap(datagram).errorMessage();
+	}
+	
+	
+	//the 2 byte opcode as a number
+	private static int opcode(byte[] opCode)
+	{
+		return ((opCode[0] & 0xFF) << 8) | (opCode[1] & 0xFF);
 	}
 	
 	
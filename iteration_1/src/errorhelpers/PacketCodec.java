@@ -0,0 +1,585 @@
+/**
+*Class:             PacketCodec.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Reads and writes TFTP packets in place. A codec is a view
+*					over a region of a byte[] (a DatagramPacket's buffer) or a
+*					ByteBuffer, heap or direct; wrap it over a packet, read its
+*					fields or write a new packet over it, and wrap it over the
+*					next one. Nothing is copied into or out of the region, and
+*					no objects are made for DATA, ACK and ERROR headers, so the
+*					same codec can serve every packet of a transfer. Filenames,
+*					modes, option maps and error messages are only turned into
+*					Strings when asked for.
+*
+*					Text is one byte per char (ISO 8859-1), which covers the
+*					netascii and octet modes and every option RFC 2347 defines.
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+package errorhelpers;
+
+
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class PacketCodec
+{
+	//opcodes
+	public static final int RRQ = 1;
+	public static final int WRQ = 2;
+	public static final int DATA = 3;
+	public static final int ACK = 4;
+	public static final int ERROR = 5;
+	public static final int OACK = 6;		//option acknowledgement (RFC 2347)
+
+	//opcode and block number (or error code) in front of every DATA, ACK and ERROR
+	public static final int HEADER = 4;
+
+	//block size option (RFC 2348)
+	public static final String BLKSIZE = "blksize";
+	public static final int DEFAULT_BLKSIZE = 512;
+	public static final int MIN_BLKSIZE = 8;
+	public static final int MAX_BLKSIZE = 65464;
+
+	//window size option (RFC 7440)
+	public static final String WINDOWSIZE = "windowsize";
+	public static final int DEFAULT_WINDOWSIZE = 1;
+	public static final int MIN_WINDOWSIZE = 1;
+	public static final int MAX_WINDOWSIZE = 65535;
+
+	//declaring local instance variables
+	private byte[] array;			//the packet's bytes, null when wrapping a direct buffer
+	private ByteBuffer buffer;		//the packet's bytes, null when wrapping an array
+	private int offset;				//where the packet starts in array or buffer
+	private int length;				//bytes in the packet
+	private int capacity;			//bytes a packet written here may take up
+
+
+	//generic constructor, wrap(..) before use
+	public PacketCodec() {}
+
+
+	//view length bytes of array from offset as a packet, the rest of array may be written to
+	public PacketCodec wrap(byte[] array, int offset, int length)
+	{
+		this.array = array;
+		this.buffer = null;
+		this.offset = offset;
+		this.length = length;
+		this.capacity = array.length - offset;
+		return this;
+	}
+
+
+	//view what a DatagramPacket received (or is to send) as a packet
+	public PacketCodec wrap(DatagramPacket packet)
+	{
+		return wrap(packet.getData(), packet.getOffset(), packet.getLength());
+	}
+
+
+	//view a buffer's position to limit as a packet, up to its capacity may be written to
+	public PacketCodec wrap(ByteBuffer buffer)
+	{
+		if(buffer.hasArray())
+		{
+			wrap(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			capacity = buffer.capacity() - buffer.position();
+			return this;
+		}
+		this.array = null;
+		this.buffer = buffer;
+		this.offset = buffer.position();
+		this.length = buffer.remaining();
+		this.capacity = buffer.capacity() - offset;
+		return this;
+	}
+
+
+	//bytes in the packet, set by wrap(..) or by whatever was last written
+	public int length()
+	{
+		return length;
+	}
+
+
+	//the opcode, -1 if the packet is too short to have one
+	public int opcode()
+	{
+		return length < 2 ? -1 : (at(0) << 8) | at(1);
+	}
+
+
+	//block number of a DATA or ACK (error code of an ERROR), -1 if the packet is too short
+	public int block()
+	{
+		return length < HEADER ? -1 : (at(2) << 8) | at(3);
+	}
+
+
+	//true if this is opcode for block
+	public boolean is(int opcode, int block)
+	{
+		return opcode() == opcode && block() == (block & 0xFFFF);
+	}
+
+
+	//error code of an ERROR
+	public int errorCode()
+	{
+		return block();
+	}
+
+
+	//message of an ERROR, up to its 0 or the end of the packet
+	public String errorMessage()
+	{
+		int end = field(HEADER);
+		return text(HEADER, end < 0 ? length : end);
+	}
+
+
+	//where the data of a DATA starts in the wrapped array (or buffer)
+	public int dataOffset()
+	{
+		return offset + HEADER;
+	}
+
+
+	//bytes of data in a DATA
+	public int dataLength()
+	{
+		return Math.max(0, length - HEADER);
+	}
+
+
+	//true for a RRQ or WRQ
+	public boolean isRequest()
+	{
+		int opcode = opcode();
+		return opcode == RRQ || opcode == WRQ;
+	}
+
+
+	//true for a RRQ/WRQ with a filename and a mode, each ended by a 0, and only well formed options after
+	public boolean isWellFormedRequest()
+	{
+		if(!isRequest())
+		{
+			return false;
+		}
+		int nameEnd = field(2);
+		if(nameEnd <= 2)
+		{
+			return false;
+		}
+		int modeEnd = field(nameEnd + 1);
+		return modeEnd > nameEnd + 1 && optionsAt(modeEnd + 1, null);
+	}
+
+
+	//filename of a RRQ/WRQ, null if this is not one or the filename is not ended
+	public String fileName()
+	{
+		if(!isRequest())
+		{
+			return null;
+		}
+		int end = field(2);
+		return end < 0 ? null : text(2, end);
+	}
+
+
+	//mode of a RRQ/WRQ, up to its 0 or the end of the packet, null if this is not one
+	public String mode()
+	{
+		int start = modeStart();
+		if(start < 0)
+		{
+			return null;
+		}
+		int end = field(start);
+		return text(start, end < 0 ? length : end);
+	}
+
+
+	//true if the mode of a RRQ/WRQ is mode, ignoring case, without making a String of it
+	public boolean modeIs(String mode)
+	{
+		int start = modeStart();
+		if(start < 0)
+		{
+			return false;
+		}
+		int end = field(start);
+		if(end < 0 || end - start != mode.length())
+		{
+			return false;
+		}
+		for(int i=0; i<mode.length(); i++)
+		{
+			if(Character.toLowerCase((char)at(start + i)) != Character.toLowerCase(mode.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	//options of a RRQ/WRQ (after the mode) or an OACK, names in lower case
+	//an empty map if there are none, null if they are malformed
+	public Map<String,String> options()
+	{
+		Map<String,String> options = new LinkedHashMap<String,String>();
+		int start = optionsStart();
+		if(start >= 0 && !optionsAt(start, options))
+		{
+			return null;
+		}
+		return options;
+	}
+
+
+	//ACK block over the wrapped region, returns the packet's length
+	public int putACK(int block)
+	{
+		return putHeader(ACK, block);
+	}
+
+
+	//DATA block whose dataLength bytes are already in place at dataOffset(), returns the packet's length
+	public int putDATA(int block, int dataLength)
+	{
+		need(HEADER + dataLength);
+		putHeader(DATA, block);
+		length = HEADER + dataLength;
+		return length;
+	}
+
+
+	//DATA block carrying n bytes of data from from, returns the packet's length
+	public int putDATA(int block, byte[] data, int from, int n)
+	{
+		need(HEADER + n);
+		if(array != null)
+		{
+			System.arraycopy(data, from, array, offset + HEADER, n);
+		}
+		else
+		{
+			for(int i=0; i<n; i++)
+			{
+				buffer.put(offset + HEADER + i, data[from + i]);
+			}
+		}
+		return putDATA(block, n);
+	}
+
+
+	//ERROR with code and message, returns the packet's length
+	public int putError(int code, String message)
+	{
+		need(errorLength(message));
+		putHeader(ERROR, code);
+		length = putText(HEADER, message);
+		return length;
+	}
+
+
+	//RRQ or WRQ for fileName in mode, with options (name -> value) after it, null for none
+	public int putRequest(int opcode, String fileName, String mode, Map<String,String> options)
+	{
+		need(requestLength(fileName, mode, options));
+		putOpcode(opcode);
+		int i = putText(2, fileName);
+		i = putText(i, mode);
+		length = putOptions(i, options);
+		return length;
+	}
+
+
+	//OACK for options, returns the packet's length
+	/*
+	 *     2B      Str    1B   Str   1B
+	 *  -----------------------------------
+	 * |  06  |  OPT1  | 0 | VALUE1 | 0 | ...
+	 *  -----------------------------------
+	 */
+	public int putOACK(Map<String,String> options)
+	{
+		need(oackLength(options));
+		putOpcode(OACK);
+		length = putOptions(2, options);
+		return length;
+	}
+
+
+	//change the opcode of the packet in place
+	public void putOpcode(int opcode)
+	{
+		need(2);
+		put(0, opcode >> 8);
+		put(1, opcode);
+		length = Math.max(length, 2);
+	}
+
+
+	//change the block number (or error code) of the packet in place
+	public void putBlock(int block)
+	{
+		need(HEADER);
+		put(2, block >> 8);
+		put(3, block);
+		length = Math.max(length, HEADER);
+	}
+
+
+	//bytes a RRQ/WRQ takes up
+	public static int requestLength(String fileName, String mode, Map<String,String> options)
+	{
+		return 2 + fileName.length() + 1 + mode.length() + 1 + optionsLength(options);
+	}
+
+
+	//bytes an OACK takes up
+	public static int oackLength(Map<String,String> options)
+	{
+		return 2 + optionsLength(options);
+	}
+
+
+	//bytes an ERROR takes up
+	public static int errorLength(String message)
+	{
+		return HEADER + message.length() + 1;
+	}
+
+
+	//opcode of the packet in data, for callers holding just the array
+	public static int opcode(byte[] data, int length)
+	{
+		return length < 2 ? -1 : ((data[0] & 0xFF) << 8) | (data[1] & 0xFF);
+	}
+
+
+	//block number of the packet in data, for callers holding just the array
+	public static int block(byte[] data, int length)
+	{
+		return length < HEADER ? -1 : ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+	}
+
+
+	//the block size asked for in a blksize option, -1 if missing or out of range
+	public static int parseBlockSize(String value)
+	{
+		return parseOption(value, MIN_BLKSIZE, MAX_BLKSIZE);
+	}
+
+
+	//the window asked for in a windowsize option, -1 if missing or out of range
+	public static int parseWindowSize(String value)
+	{
+		return parseOption(value, MIN_WINDOWSIZE, MAX_WINDOWSIZE);
+	}
+
+
+	//a numeric option value between min and max, -1 if missing or out of range
+	private static int parseOption(String value, int min, int max)
+	{
+		if(value == null)
+		{
+			return -1;
+		}
+		try
+		{
+			int size = Integer.parseInt(value.trim());
+			return (size < min || size > max) ? -1 : size;
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+
+	//bytes the name 0 value 0 pairs of options take up
+	private static int optionsLength(Map<String,String> options)
+	{
+		int n = 0;
+		if(options != null)
+		{
+			for(Map.Entry<String,String> option : options.entrySet())
+			{
+				n += option.getKey().length() + 1 + option.getValue().length() + 1;
+			}
+		}
+		return n;
+	}
+
+
+	//where the mode of a RRQ/WRQ starts, -1 if this is not one or the filename is not ended
+	private int modeStart()
+	{
+		if(!isRequest())
+		{
+			return -1;
+		}
+		int nameEnd = field(2);
+		return nameEnd < 0 ? -1 : nameEnd + 1;
+	}
+
+
+	//where the options start in a RRQ/WRQ or OACK, -1 if the packet has none
+	private int optionsStart()
+	{
+		int opcode = opcode();
+		if(opcode == OACK)
+		{
+			return 2;
+		}
+		int start = modeStart();
+		if(start < 0)
+		{
+			return -1;
+		}
+		int end = field(start);
+		return end < 0 ? length : end + 1;
+	}
+
+
+	//check the name 0 value 0 pairs from i to the end, adding them to options unless it is null
+	private boolean optionsAt(int i, Map<String,String> options)
+	{
+		while(i < length)
+		{
+			int nameEnd = field(i);
+			if(nameEnd <= i)
+			{
+				return false;
+			}
+			int valueEnd = field(nameEnd + 1);
+			if(valueEnd < 0)
+			{
+				return false;
+			}
+			if(options != null)
+			{
+				options.put(text(i, nameEnd).toLowerCase(), text(nameEnd + 1, valueEnd));
+			}
+			i = valueEnd + 1;
+		}
+		return true;
+	}
+
+
+	//index of the 0 ending the field starting at start, -1 if the packet ends first
+	private int field(int start)
+	{
+		for(int i=start; i<length; i++)
+		{
+			if(at(i) == 0)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	//the bytes from, to as a String
+	private String text(int from, int to)
+	{
+		if(array != null)
+		{
+			return new String(array, offset + from, to - from, StandardCharsets.ISO_8859_1);
+		}
+		char[] chars = new char[to - from];
+		for(int i=0; i<chars.length; i++)
+		{
+			chars[i] = (char)at(from + i);
+		}
+		return new String(chars);
+	}
+
+
+	//opcode and block number (or error code), the packet is just these 4 bytes until more is written
+	private int putHeader(int opcode, int block)
+	{
+		need(HEADER);
+		put(0, opcode >> 8);
+		put(1, opcode);
+		put(2, block >> 8);
+		put(3, block);
+		length = HEADER;
+		return length;
+	}
+
+
+	//s and a 0 from i, returns the index after the 0
+	private int putText(int i, String s)
+	{
+		for(int c=0; c<s.length(); c++)
+		{
+			put(i++, s.charAt(c));
+		}
+		put(i++, 0);
+		return i;
+	}
+
+
+	//name 0 value 0 for each option from i, returns the index after the last
+	private int putOptions(int i, Map<String,String> options)
+	{
+		if(options != null)
+		{
+			for(Map.Entry<String,String> option : options.entrySet())
+			{
+				i = putText(i, option.getKey());
+				i = putText(i, option.getValue());
+			}
+		}
+		return i;
+	}
+
+
+	//byte i of the packet, unsigned
+	private int at(int i)
+	{
+		return (array != null ? array[offset + i] : buffer.get(offset + i)) & 0xFF;
+	}
+
+
+	//set byte i of the packet to the low 8 bits of value
+	private void put(int i, int value)
+	{
+		if(array != null)
+		{
+			array[offset + i] = (byte)value;
+		}
+		else
+		{
+			buffer.put(offset + i, (byte)value);
+		}
+	}
+
+
+	//fail before writing a packet of bytes that does not fit
+	private void need(int bytes)
+	{
+		if(bytes > capacity)
+		{
+			throw new IllegalArgumentException("packet of " + bytes + " bytes does not fit in " + capacity);
+		}
+	}
+}
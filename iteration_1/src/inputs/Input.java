@@ -3,12 +3,15 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    15/11/2016                                              
-*Version:           1.1.0                                                      
+*Version:           1.2.0                                                      
 *                                                                                   
 *Purpose:           Store values associated with error-related inputs
 * 
 * 
-*Update Log:		v1.1.0
+*Update Log:		v1.2.0
+*						- direction the packet is going, any by default
+*						- ANY packet type or block number for wildcard errors
+*					v1.1.0
 *						- added new possible error modes
 *						- print method updated
 *						- numerical modes replaced with nice constants
@@ -40,6 +43,12 @@ public class Input
 	public static final int PACKET_DATA		= 3;	//DATA Packet
 	public static final int PACKET_ACK		= 4;	//ACK Packet
 	public static final int PACKET_ERR		= 5;	//ERROR Packet
+	//wildcard, for packet type or block number
+	public static final int ANY				= -1;
+	//direction
+	public static final int DIR_ANY			= 0;	//either way
+	public static final int DIR_TO_SERVER	= 1;	//client to server
+	public static final int DIR_TO_CLIENT	= 2;	//server to client
 	
 	//declaring local instance variables
 	private int blockNum;
@@ -47,18 +56,27 @@ public class Input
 	private int extraInt;
 	private int packetType;
 	private String extraStr;
+	private int direction;
 	
 	
 	
 	
-	//generic constructor
+	//generic constructor, for packets going either way
 	public Input(int mode, int packetType, int blockNum, int extraInt, String extraStr)
+	{
+		this(mode, packetType, blockNum, extraInt, extraStr, DIR_ANY);
+	}
+	
+	
+	//constructor for packets going one way
+	public Input(int mode, int packetType, int blockNum, int extraInt, String extraStr, int direction)
 	{
 		this.mode = mode;
 		this.blockNum = blockNum;
 		this.extraInt = extraInt;
 		this.packetType = packetType;
 		this.extraStr = extraStr;
+		this.direction = direction;
 	}
 	
 	
@@ -75,6 +93,10 @@ public class Input
 	{
 		return packetType;
 	}
+	public int getDirection()
+	{
+		return direction;
+	}
 	//accessors for extraInt
 	public int getDelay()
 	{
@@ -195,11 +217,22 @@ public class Input
 			case(PACKET_ERR):
 				printable = printable + "ERROR packet ";
 				break;
+			case(ANY):
+				printable = printable + "ANY packet ";
+				break;
 			default:
 				printable = printable + "!BAD PT! ";
 				break;
 		}
-		printable = printable + blockNum + " ";
+		printable = printable + (blockNum == ANY ? "*" : "" + blockNum) + " ";
+		if(direction == DIR_TO_SERVER)
+		{
+			printable = printable + "to server ";
+		}
+		else if(direction == DIR_TO_CLIENT)
+		{
+			printable = printable + "to client ";
+		}
 		switch(mode)
 		{
 			case(ERR_DELAY):
@@ -3,12 +3,26 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    15/11/2016                                              
-*Version:           2.0.0                                                      
+*Version:           2.2.0                                                      
 *                                                                                   
 *Purpose:           Sorted stack of input strings. Sorted in terms of block num
+*
+*					Inputs are also indexed by packet type, block number and direction
+*					in a hash map, so the error meant for a packet is found with
+*					take(..) in a few lookups however many are entered, without
+*					waiting for the ones before it in the stack to be used. There may
+*					be several for one packet (taken in the order entered) and inputs
+*					for ANY packet type or block number, or either direction. The most
+*					specific input for a packet is the one taken.
 * 
 * 
-*Update Log:		v2.0.0
+*Update Log:		v2.2.0
+*						- indexed by packet type, block number and direction, take(..) finds an input in O(1)
+*						- several inputs for one packet, wildcard inputs (Input.ANY, Input.DIR_ANY)
+*						- stack order worked out when it is looked at, inputs kept in the order entered
+*					v2.1.0
+*						- copy method, each proxied session works through a copy of its own
+*					v2.0.0
 *						- sorting now occurs after entire stack is created
 *						- sorting based on RRQ or WRQ
 *						- clear method
@@ -21,23 +35,33 @@
 package inputs;
 
 
-import java.util.Collections;
 //import stuff
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 
 public class InputStack 
 {
 	//Declaring local instance variables
-	private LinkedList<Input> pseudoStack;
+	private LinkedHashSet<Input> inputs;				//in the order entered, removed from in O(1)
+	private HashMap<Long,ArrayDeque<Input>> index;		//by key(packet type, block, direction)
 	private int length;
+	private boolean wrqTies;			//ACK before DATA on a block number tie
+	private int anyType, anyBlock, oneWay;	//inputs with wildcards or a direction, lookups for them are skipped when none
 	
 	
 	//generic constructor
 	public InputStack()
 	{
-		pseudoStack = new LinkedList<Input>();
+		inputs = new LinkedHashSet<Input>();
+		index = new HashMap<Long,ArrayDeque<Input>>();
 		length = 0;
+		wrqTies = false;
 	}
 	
 	
@@ -50,105 +74,203 @@ public class InputStack
 	//clear the InputStack
 	public void clear()
 	{
-		pseudoStack.clear();
+		inputs.clear();
+		index.clear();
 		length = 0;
+		anyType = 0;
+		anyBlock = 0;
+		oneWay = 0;
 	}
 	
 	
 	//sort with DATA > ACK in case of blockNum tie
 	public void sortRRQ()
 	{
-		resolveTies(false);
+		wrqTies = false;
 	}
 	
 	
 	//sort with ACK > DATA in case of blockNum tie
 	public void sortWRQ()
 	{
-		resolveTies(true);
+		wrqTies = true;
 	}
 	
 	
-	//general case for sort-with-tie
-	private void resolveTies(boolean WRQ)
+	//the inputs in stack order: by block number, DATA and ACK on a tie as last sorted, otherwise as entered
+	private List<Input> sorted()
 	{
-		//declaring local variables
-		Input inputInList = null;
-		Input nextInput = null;
-		
-		//iterate through stack except for end
-		for (int i=0; i<length-1; i++)
+		List<Input> list = new ArrayList<Input>(inputs);
+		Collections.sort(list, new Comparator<Input>()
 		{
-			//get input at index i
-			inputInList = pseudoStack.get(i);
-			nextInput = pseudoStack.get(i+1);
-
-			//check if there is a tie case between i and i+1
-			if(inputInList.getBlockNum() == nextInput.getBlockNum())
+			@Override
+			public int compare(Input a, Input b)
 			{
-				if(WRQ)
+				if(a.getBlockNum() != b.getBlockNum())
 				{
-					/*          i              i+1
-			              inputInList      nextInput
-			   		 ... ---> DATA --------> ACK --> ...
-					*/
-					if (inputInList.getPacketType() == 3 && nextInput.getPacketType() == 4)
-					{
-						Collections.swap(pseudoStack, i, i+1);
-					}
-				}
-				else
-				{
-					/*          i              i+1
-			               inputInList      nextInput
-			   		  ... ---> ACK ----------> DATA --> ...
-					*/
-					if (inputInList.getPacketType() == 4 && nextInput.getPacketType() == 3)
-					{
-						Collections.swap(pseudoStack, i, i+1);
-					}
+					return Integer.compare(a.getBlockNum(), b.getBlockNum());
 				}
+				return Integer.compare(tieRank(a), tieRank(b));
 			}
+		});
+		return list;
+	}
+	
+	
+	//DATA first for RRQ, ACK first for WRQ, anything else after them
+	private int tieRank(Input input)
+	{
+		if(input.getPacketType() == Input.PACKET_DATA)
+		{
+			return wrqTies ? 1 : 0;
+		}
+		if(input.getPacketType() == Input.PACKET_ACK)
+		{
+			return wrqTies ? 0 : 1;
 		}
+		return 2;
 	}
 	
 	
-	//push to stack with sort (tie conditions not guaranteed)
+	//push to stack, for packets going either way
 	public void push(int mode, int packetType, int blockNum, int extraInt, String extraStr)
 	{
-		//create Input
-		Input newInput = new Input(mode, packetType, blockNum, extraInt, extraStr);
-		
-		//nothing in stack, add to front
-		if (length == 0)
+		push(new Input(mode, packetType, blockNum, extraInt, extraStr));
+	}
+	
+	
+	//push to stack, direction is one of Input.DIR_*
+	public void push(int mode, int packetType, int blockNum, int extraInt, String extraStr, int direction)
+	{
+		push(new Input(mode, packetType, blockNum, extraInt, extraStr, direction));
+	}
+	
+	
+	private void push(Input newInput)
+	{
+		inputs.add(newInput);
+		Long key = key(newInput.getPacketType(), indexedBlock(newInput), newInput.getDirection());
+		ArrayDeque<Input> same = index.get(key);
+		if(same == null)
 		{
-			pseudoStack.addFirst(newInput);
-			length++;
+			same = new ArrayDeque<Input>(2);
+			index.put(key, same);
 		}
-		//something in stack, have to sort through it
-		else
+		same.addLast(newInput);
+		length++;
+		count(newInput, 1);
+	}
+	
+	
+	//the input for a packet of packetType and blockNum going in direction (not DIR_ANY), taken off the stack, null if there is none
+	//blockNum is Input.ANY if the packet is too short to have one
+	public Input take(int packetType, int blockNum, int direction)
+	{
+		if(length == 0)
 		{
-			//declaring Input to represent current Input in list
-			Input inputInList;
-			
-			//iterate through list to determine where to put it
-			for(int i=0; i<length; i++)
+			return null;
+		}
+		//a request has no block number, errors for one are indexed under any
+		if(packetType == Input.PACKET_RRQ || packetType == Input.PACKET_WRQ)
+		{
+			blockNum = Input.ANY;
+		}
+		//most specific first: exact type before any, exact block before any, one way before either way
+		for(int t=0; t<2; t++)
+		{
+			int type = t == 0 ? packetType : Input.ANY;
+			if(t == 1 && (anyType == 0 || packetType == Input.ANY))
 			{
-				//get current input at index i
-				inputInList = pseudoStack.get(i);
-				
-				//new input should come before input in list
-				if(newInput.getBlockNum() < inputInList.getBlockNum())
+				break;
+			}
+			for(int b=0; b<2; b++)
+			{
+				int block = b == 0 ? blockNum : Input.ANY;
+				if(b == 1 && (anyBlock == 0 || blockNum == Input.ANY))
 				{
-					pseudoStack.add(i, newInput);
-					length++;
-					return;
+					break;
+				}
+				if(oneWay > 0)
+				{
+					Input found = take(key(type, block, direction));
+					if(found != null)
+					{
+						return found;
+					}
+				}
+				Input found = take(key(type, block, Input.DIR_ANY));
+				if(found != null)
+				{
+					return found;
 				}
 			}
-			//add to end
-			pseudoStack.addLast(newInput);
-			length++;
 		}
+		return null;
+	}
+	
+	
+	private Input take(Long key)
+	{
+		ArrayDeque<Input> same = index.get(key);
+		if(same == null)
+		{
+			return null;
+		}
+		Input found = same.pollFirst();
+		if(same.isEmpty())
+		{
+			index.remove(key);
+		}
+		inputs.remove(found);
+		length--;
+		count(found, -1);
+		return found;
+	}
+	
+	
+	//keep track of the inputs the cheap lookups miss
+	private void count(Input input, int change)
+	{
+		if(input.getPacketType() == Input.ANY)
+		{
+			anyType += change;
+		}
+		if(indexedBlock(input) == Input.ANY)
+		{
+			anyBlock += change;
+		}
+		if(input.getDirection() != Input.DIR_ANY)
+		{
+			oneWay += change;
+		}
+	}
+	
+	
+	//requests have no block number, what was entered for one matches any
+	private static int indexedBlock(Input input)
+	{
+		int type = input.getPacketType();
+		return type == Input.PACKET_RRQ || type == Input.PACKET_WRQ ? Input.ANY : input.getBlockNum();
+	}
+	
+	
+	//type, block and direction in fields of their own, so no value of one spills into another
+	private static Long key(int packetType, int blockNum, int direction)
+	{
+		return Long.valueOf(((long)packetType << 34) | ((blockNum & 0xFFFFFFFFL) << 2) | (direction & 3));
+	}
+	
+	
+	//a stack of the same inputs in the same order, popping one does not pop the other
+	public InputStack copy()
+	{
+		InputStack copy = new InputStack();
+		for(Input input : inputs)
+		{
+			copy.push(input);
+		}
+		copy.wrqTies = wrqTies;
+		return copy;
 	}
 	
 	
@@ -157,7 +279,7 @@ public class InputStack
 	{
 		if (length != 0)
 		{
-			return pseudoStack.getFirst();
+			return sorted().get(0);
 		}
 		else
 		{
@@ -171,8 +293,17 @@ public class InputStack
 	{
 		if (length != 0)
 		{
+			Input top = sorted().get(0);
+			ArrayDeque<Input> same = index.get(key(top.getPacketType(), indexedBlock(top), top.getDirection()));
+			same.remove(top);
+			if(same.isEmpty())
+			{
+				index.remove(key(top.getPacketType(), indexedBlock(top), top.getDirection()));
+			}
+			inputs.remove(top);
 			length--;
-			return pseudoStack.removeFirst();
+			count(top, -1);
+			return top;
 		}
 		else
 		{
@@ -195,9 +326,10 @@ public class InputStack
 		}
 		else
 		{
+			List<Input> list = sorted();
 			for(int i=0; i<length; i++)
 			{
-				printable = printable + "ITEM: " + i + " --> " + pseudoStack.get(i).toString() + "\n";
+				printable = printable + "ITEM: " + i + " --> " + list.get(i).toString() + "\n";
 			}
 		}
 		
@@ -218,9 +350,10 @@ public class InputStack
 		}
 		else
 		{
+			List<Input> list = sorted();
 			for(int i=0; i<length; i++)
 			{
-				printable = printable + "ITEM: " + i + " --> " + pseudoStack.get(i).toFancyString() + "\n" + "    ";
+				printable = printable + "ITEM: " + i + " --> " + list.get(i).toFancyString() + "\n" + "    ";
 			}
 		}
 		
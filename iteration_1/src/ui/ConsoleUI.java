@@ -3,12 +3,19 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    16/11/2016                                              
-*Version:           1.2.1                                                      
+*Version:           1.3.1                                                      
 *                                                                                   
 *Purpose:           Generic console for basic output/inputs
 * 
 * 
-*Update Log:		v1.2.1
+*Update Log:		v1.3.1
+*						- printByteArray(..) formats with HexDump, one buffer pass instead of a
+*						  String.format and a new String per byte
+*					v1.3.0
+*						- printing no longer locks or touches Swing: lines go into a LogRing and
+*						  are appended to the output area in one batch per frame on the EDT
+*						- a full ring drops new lines or overwrites old ones (LogRing.Policy)
+*					v1.2.1
 *						- console can run in either dark or light mode
 *						- really just a vanity update
 *						- standard operand error method added
@@ -82,6 +89,10 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 {
 	//declaring local class constants
 	private static final int BUFFER_SIZE = 25;
+	private static final int FRAME = 16;				//ms between appends of the printed lines, ~60 fps
+	private static final int MAX_FRAME_LINES = 4096;	//lines appended per frame, the rest wait for the next
+	private static final String CLEAR = new String("CLEAR");	//queued by clear(), told apart by identity
+	private static final String BYTES_PREFIX = "               Cntn:    ";	//as printIndent(..) would indent it
 	
 	//declaring local instance variables
 	private String ID;
@@ -90,6 +101,8 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 	private String input;
 	private CappedBuffer inputBuffer;
 	private boolean inputReady;
+	private final LogRing output = new LogRing();	//printed lines not yet shown
+	private final StringBuilder frame = new StringBuilder();
 	
 	
 	//generic constructor
@@ -124,6 +137,7 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
         c.weightx = 5.0;
         c.weighty = 5.0;
         add(inputLine, c);
+        startFrames();
 	}
 	
 	
@@ -158,6 +172,7 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
         c.weightx = 5.0;
         c.weighty = 5.0;
         add(inputLine, c);
+        startFrames();
 	}
 	
 	
@@ -307,12 +322,9 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 	
 	
 	@Override
-	public synchronized void print(String printable) 
+	public void print(String printable) 
 	{
-        outputArea.append("    ".concat(printable + "\n"));
-        
-        //magic code to make sure stuff appears
-        outputArea.setCaretPosition(outputArea.getDocument().getLength());
+		output.put("    ".concat(printable));
 	}
 	
 	
@@ -351,30 +363,37 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 	
 	
 	@Override
-	public synchronized void clear()
+	public void clear()
 	{
-		outputArea.setText(null);
+		output.put(CLEAR);
 	}
 	
 	
-	public synchronized void println()
+	public void println()
 	{
-		outputArea.append("".concat("\n"));
-        
-        //magic code to make sure stuff appears
-        outputArea.setCaretPosition(outputArea.getDocument().getLength());
+		output.put("");
 	}
 	
 	
-	public synchronized void printByteArray(byte[] b, int size)
+	//lines lost because printing outran the window
+	@Override
+	public long getDropped()
 	{
-		String printable = "Cntn:    ";
-		for(int i = 0; i < size; i++)
-		{
-			printable = printable + (String.format("%02x", b[i])).toUpperCase() + " ";
-			//printable = (printable + Integer.toHexString(b[i] & 0xFF) + " ");
-		}
-		printIndent(printable);
+		return output.getLost();
+	}
+	
+	
+	//what to do with lines printed while the ring is full
+	@Override
+	public void setOverflowPolicy(LogRing.Policy policy)
+	{
+		output.setPolicy(policy);
+	}
+	
+	
+	public void printByteArray(byte[] b, int size)
+	{
+		output.put(HexDump.hex(BYTES_PREFIX, b, 0, size));
 	}
 
 
@@ -387,10 +406,8 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 		inputLine.setText("");
 		inputBuffer.push(input);
 		
-		//print input in proper format
-		outputArea.append(" >" + input + "\n");
-		//magic code to make sure stuff appears
-		outputArea.setCaretPosition(outputArea.getDocument().getLength());
+		//print input in proper format, in order with what was printed before it
+		output.put(" >" + input);
 		
 		//set inputReady to true, notify anybody waiting on input
 		inputReady = true;
@@ -398,6 +415,50 @@ public class ConsoleUI extends JPanel implements UIFramework, ActionListener, Ke
 	}
 	
 	
+	//append the lines printed since the last frame, on the EDT, once per frame
+	private void startFrames()
+	{
+		Timer frames = new Timer(FRAME, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				showPrinted();
+			}
+		});
+		frames.setCoalesce(true);
+		frames.start();
+	}
+	
+	
+	//move what is in the ring to the output area in one append
+	private void showPrinted()
+	{
+		if(output.isEmpty())
+		{
+			return;
+		}
+		frame.setLength(0);
+		String line;
+		for(int n = 0; n < MAX_FRAME_LINES && (line = output.take()) != null; n++)
+		{
+			if(line == CLEAR)
+			{
+				outputArea.setText(null);
+				frame.setLength(0);
+				continue;
+			}
+			frame.append(line).append('\n');
+		}
+		if(frame.length() > 0)
+		{
+			outputArea.append(frame.toString());
+			//magic code to make sure stuff appears
+			outputArea.setCaretPosition(outputArea.getDocument().getLength());
+		}
+	}
+	
+	
 	@Override
 	//up or down key pressed
 	public synchronized void keyPressed(KeyEvent e) 
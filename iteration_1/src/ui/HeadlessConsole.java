@@ -0,0 +1,246 @@
+/**
+*Class:             HeadlessConsole.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.1.1
+*
+*Purpose:           Console for running without a display. Lines printed to it are
+*					queued and written to a stream (standard out or a log file) by
+*					a writer thread of its own, so a transfer printing a packet
+*					never waits on the stream, a window or another transfer. The
+*					queue is a LogRing, printing takes no lock; if the writer falls
+*					behind, lines are dropped (or overwrite older ones) and counted
+*					rather than holding anyone up. Nothing in here uses AWT or Swing.
+*
+*					Input is handed in by whoever reads commands (see submit(..)).
+*
+*
+*Update Log:		v1.1.1
+*						- printByteArray(..) formats with HexDump
+*					v1.1.0
+*						- lines queued in a lock-free LogRing, written in batches once per frame
+*					v1.0.0
+*						- null
+*/
+package ui;
+
+
+//import external libraries
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+public class HeadlessConsole implements UIFramework
+{
+	//declaring local class constants
+	public static final int DEFAULT_CAPACITY = LogRing.DEFAULT_CAPACITY;	//lines queued before the overflow policy applies
+	private static final String BYTES_PREFIX = "               Cntn:    ";	//as printIndent(..) would indent it
+	private static final long FRAME = TimeUnit.MILLISECONDS.toNanos(16);	//writer sleeps this long when there is nothing to write
+	private static final int MAX_BATCH_LINES = 4096;	//lines written at once, the rest wait for the next batch
+
+	//declaring local instance variables
+	private final String ID;
+	private final PrintStream out;
+	private final LogRing lines;
+	private final StringBuilder batch = new StringBuilder();
+	private final Thread writer;
+	private volatile boolean closed = false;
+	private String input = null;
+
+
+	//generic constructor, writes to standard out
+	public HeadlessConsole(String name)
+	{
+		this(name, System.out, DEFAULT_CAPACITY, LogRing.DEFAULT_POLICY);
+	}
+
+
+	//constructor, writes to out, holding at most capacity lines not yet written
+	public HeadlessConsole(String name, PrintStream out, int capacity, LogRing.Policy policy)
+	{
+		ID = name;
+		this.out = out;
+		lines = new LogRing(capacity, policy);
+		writer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		}, name + " log writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+
+	@Override
+	public void print(String printable)
+	{
+		offer("    ".concat(printable));
+	}
+
+
+	@Override
+	public void printIndent(String printable)
+	{
+		print("           ".concat(printable));
+	}
+
+
+	@Override
+	public void println()
+	{
+		offer("");
+	}
+
+
+	@Override
+	public void printByteArray(byte[] b, int size)
+	{
+		offer(HexDump.hex(BYTES_PREFIX, b, 0, size));
+	}
+
+
+	@Override
+	public void printError(String errorMsg)
+	{
+		print("ERROR:  " + errorMsg);
+	}
+
+
+	@Override
+	public void printOperandError(String errorMsg)
+	{
+		print("OPERAND ERROR:  " + errorMsg);
+	}
+
+
+	//no colors without a window
+	@Override
+	public boolean colorScheme(String scheme)
+	{
+		return false;
+	}
+
+
+	//nothing to clear on a stream
+	@Override
+	public void clear() {}
+
+
+	//hand in a line of input, as if typed into a window
+	public synchronized void submit(String line)
+	{
+		input = line;
+		notifyAll();
+	}
+
+
+	@Override
+	public synchronized String getInput(boolean wait)
+	{
+		while(wait && input == null)
+		{
+			try
+			{
+				wait();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		String ret = input;
+		input = null;
+		return ret;
+	}
+
+
+	@Override
+	public String[] getParsedInput(boolean wait)
+	{
+		String in = getInput(wait);
+		return in == null ? null : in.trim().split(" +");
+	}
+
+
+	//lines dropped because the writer had fallen behind
+	@Override
+	public long getDropped()
+	{
+		return lines.getLost();
+	}
+
+
+	@Override
+	public void setOverflowPolicy(LogRing.Policy policy)
+	{
+		lines.setPolicy(policy);
+	}
+
+
+	//write what is queued and stop, lines printed after this are dropped
+	public void close()
+	{
+		closed = true;
+		LockSupport.unpark(writer);
+		try
+		{
+			writer.join(1000);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	//queue a line without waiting, the ring counts it if there is no room
+	private void offer(String line)
+	{
+		if(!closed)
+		{
+			lines.put(line);
+		}
+	}
+
+
+	//the writer thread, writes what is queued a batch at a time, then sleeps a frame if that was nothing
+	private void drain()
+	{
+		long reported = 0;
+		while(true)
+		{
+			batch.setLength(0);
+			String line;
+			for(int n = 0; n < MAX_BATCH_LINES && (line = lines.take()) != null; n++)
+			{
+				batch.append(line).append(System.lineSeparator());
+			}
+			long lost = lines.getLost();
+			if(lost != reported)
+			{
+				out.println("    " + ID + ": " + (lost - reported) + " line(s) dropped");
+				reported = lost;
+			}
+			if(batch.length() > 0)
+			{
+				out.print(batch);
+				out.flush();
+			}
+			else if(closed)
+			{
+				break;
+			}
+			else
+			{
+				LockSupport.parkNanos(this, FRAME);
+			}
+		}
+		out.flush();
+	}
+}
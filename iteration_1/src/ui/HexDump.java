@@ -0,0 +1,188 @@
+/**
+*Class:             HexDump.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Turns the bytes of a packet into the hex and text lines verbose
+*					mode prints. Each byte is looked up in a table made once (two
+*					hex digits, or one printable character), and the line is built
+*					in a char buffer each thread keeps and reuses, so dumping a
+*					packet costs one String however big it is.
+*
+*					How much of each packet is dumped is set for the whole program:
+*						ALL			every byte (default)
+*						HEADER		the opcode and block number only (4 bytes)
+*						N			the first N bytes
+*					Anything cut off is noted at the end of the line. The starting
+*					limit comes from -Dtftp.dump.bytes (all, header or N).
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+package ui;
+
+
+public final class HexDump
+{
+	//declaring local class constants
+	public static final int ALL = -1;		//dump every byte
+	public static final int HEADER = 4;		//opcode and block number
+	private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+	private static final char[] HEX = new char[512];	//the two digits of byte b at 2b, 2b+1
+	private static final char[] TEXT = new char[256];	//byte b as text, '.' if not printable
+	private static final int NOTE = 32;					//room kept for the note on what was cut off
+	static
+	{
+		for(int b = 0; b < 256; b++)
+		{
+			HEX[2*b] = DIGITS[b >>> 4];
+			HEX[2*b+1] = DIGITS[b & 0x0F];
+			TEXT[b] = (b >= 0x20 && b < 0x7F) ? (char)b : '.';
+		}
+	}
+
+	//declaring local class variables
+	private static volatile int limit = parseLimit(System.getProperty("tftp.dump.bytes", "all"), ALL);
+	private static final ThreadLocal<char[]> scratch = new ThreadLocal<char[]>()
+	{
+		@Override
+		protected char[] initialValue()
+		{
+			return new char[1024];
+		}
+	};
+
+
+	//not to be made
+	private HexDump() {}
+
+
+	//prefix, then len bytes of b from off as hex digits, each followed by a space
+	public static String hex(String prefix, byte[] b, int off, int len)
+	{
+		int shown = shown(len);
+		char[] line = line(prefix.length() + shown*3 + NOTE);
+		int n = prefix.length();
+		prefix.getChars(0, n, line, 0);
+		for(int i = off, end = off + shown; i < end; i++)
+		{
+			int v = (b[i] & 0xFF) << 1;
+			line[n++] = HEX[v];
+			line[n++] = HEX[v+1];
+			line[n++] = ' ';
+		}
+		n = note(line, n, len - shown);
+		return new String(line, 0, n);
+	}
+
+
+	//prefix, then len bytes of b from off as text, '.' for anything not printable
+	public static String text(String prefix, byte[] b, int off, int len)
+	{
+		int shown = shown(len);
+		char[] line = line(prefix.length() + shown + NOTE);
+		int n = prefix.length();
+		prefix.getChars(0, n, line, 0);
+		for(int i = off, end = off + shown; i < end; i++)
+		{
+			line[n++] = TEXT[b[i] & 0xFF];
+		}
+		n = note(line, n, len - shown);
+		return new String(line, 0, n);
+	}
+
+
+	//bytes dumped per packet, ALL for every byte
+	public static int getLimit()
+	{
+		return limit;
+	}
+
+
+	//ALL, HEADER or a number of bytes (0 or more)
+	public static void setLimit(int bytes)
+	{
+		limit = bytes < 0 ? ALL : bytes;
+	}
+
+
+	//'all', 'header' or a number of bytes, false (and nothing changed) if it is none of them
+	public static boolean setLimit(String bytes)
+	{
+		int parsed = parseLimit(bytes, Integer.MIN_VALUE);
+		if(parsed == Integer.MIN_VALUE)
+		{
+			return false;
+		}
+		limit = parsed;
+		return true;
+	}
+
+
+	//the limit as it would be typed
+	public static String describeLimit()
+	{
+		int l = limit;
+		return l == ALL ? "all" : (l == HEADER ? "header" : l + " bytes");
+	}
+
+
+	//'all', 'header' or N as a limit, otherwise
+	private static int parseLimit(String bytes, int otherwise)
+	{
+		if(bytes.equalsIgnoreCase("all"))
+		{
+			return ALL;
+		}
+		if(bytes.equalsIgnoreCase("header"))
+		{
+			return HEADER;
+		}
+		try
+		{
+			int n = Integer.parseInt(bytes);
+			return n < 0 ? otherwise : n;
+		}
+		catch (NumberFormatException e)
+		{
+			return otherwise;
+		}
+	}
+
+
+	//how many of len bytes are dumped
+	private static int shown(int len)
+	{
+		int l = limit;
+		return (l == ALL || len <= l) ? len : l;
+	}
+
+
+	//this thread's buffer, grown to hold at least size chars
+	private static char[] line(int size)
+	{
+		char[] line = scratch.get();
+		if(line.length < size)
+		{
+			line = new char[Math.max(size, line.length*2)];
+			scratch.set(line);
+		}
+		return line;
+	}
+
+
+	//write "... N more byte(s)" at n if anything was cut off, the new end of the line
+	private static int note(char[] line, int n, int cut)
+	{
+		if(cut <= 0)
+		{
+			return n;
+		}
+		String note = "... " + cut + " more byte(s)";
+		note.getChars(0, note.length(), line, n);
+		return n + note.length();
+	}
+}
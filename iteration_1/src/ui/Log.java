@@ -0,0 +1,203 @@
+/**
+*Class:             Log.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Prints to a console only what its level lets through, so a
+*					statement that is switched off costs a compare and nothing
+*					else. Messages that have to be put together (a number, a
+*					packet, anything with a +) are only put together once they
+*					are known to be printed: give the pieces (debug("...", port))
+*					or a Supplier that makes the message.
+*
+*					Levels, each printing everything above it too:
+*						ERROR		something went wrong
+*						INFO		a transfer started, ended, timed out (verbose off)
+*						DEBUG		each packet sent or received, one line
+*						TRACE		each packet's contents (verbose on)
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+package ui;
+
+
+//import external libraries
+import java.net.DatagramPacket;
+import java.util.function.Supplier;
+
+
+public class Log
+{
+	//how much is printed
+	public static enum Level { ERROR, INFO, DEBUG, TRACE }
+
+	//declaring local instance variables
+	private final UIFramework console;
+	private volatile Level level;
+
+
+	//generic constructor
+	public Log(UIFramework console, Level level)
+	{
+		this.console = console;
+		this.level = level;
+	}
+
+
+	//the level the verbose command stands for
+	public static Level level(boolean verbose)
+	{
+		return verbose ? Level.TRACE : Level.INFO;
+	}
+
+
+	//a level by name (any case), null if there is no such level
+	public static Level parseLevel(String name)
+	{
+		for(Level l : Level.values())
+		{
+			if(l.name().equalsIgnoreCase(name))
+			{
+				return l;
+			}
+		}
+		return null;
+	}
+
+
+	public Level getLevel()
+	{
+		return level;
+	}
+
+
+	public void setLevel(Level level)
+	{
+		this.level = level;
+	}
+
+
+	//what the verbose command sets, TRACE when on and INFO when off
+	public void setVerbose(boolean verbose)
+	{
+		level = level(verbose);
+	}
+
+
+	//true if a message at l would be printed
+	public boolean isOn(Level l)
+	{
+		return l.compareTo(level) <= 0;
+	}
+
+
+	public void error(String msg)
+	{
+		console.printError(msg);
+	}
+
+
+	public void info(String msg)
+	{
+		print(Level.INFO, msg);
+	}
+
+
+	public void debug(String msg)
+	{
+		print(Level.DEBUG, msg);
+	}
+
+
+	public void trace(String msg)
+	{
+		print(Level.TRACE, msg);
+	}
+
+
+	//msg followed by value, put together only if it is printed
+	public void info(String msg, long value)
+	{
+		if(isOn(Level.INFO))
+		{
+			console.print(msg + value);
+		}
+	}
+
+
+	//msg followed by value, put together only if it is printed
+	public void debug(String msg, long value)
+	{
+		if(isOn(Level.DEBUG))
+		{
+			console.print(msg + value);
+		}
+	}
+
+
+	//msg followed by value, put together only if it is printed
+	public void debug(String msg, Object value)
+	{
+		if(isOn(Level.DEBUG))
+		{
+			console.print(msg + value);
+		}
+	}
+
+
+	//the message msg makes, made only if it is printed
+	public void log(Level l, Supplier<String> msg)
+	{
+		if(isOn(l))
+		{
+			console.print(msg.get());
+		}
+	}
+
+
+	public void debug(Supplier<String> msg)
+	{
+		log(Level.DEBUG, msg);
+	}
+
+
+	public void trace(Supplier<String> msg)
+	{
+		log(Level.TRACE, msg);
+	}
+
+
+	//heading at DEBUG, then at TRACE where packet came from or went to and its contents
+	public void packet(String heading, DatagramPacket packet)
+	{
+		if(!isOn(Level.DEBUG))
+		{
+			return;
+		}
+		console.print(heading);
+		if(isOn(Level.TRACE))
+		{
+			byte[] data = packet.getData();
+			int packetSize = packet.getLength();
+			console.printIndent("Source: " + packet.getAddress());
+			console.printIndent("Port:      " + packet.getPort());
+			console.printIndent("Bytes:   " + packetSize);
+			console.printByteArray(data, packetSize);
+			console.printIndent(HexDump.text("Cntn:  ", data, 0, packetSize));
+		}
+	}
+
+
+	//msg at l
+	private void print(Level l, String msg)
+	{
+		if(isOn(l))
+		{
+			console.print(msg);
+		}
+	}
+}
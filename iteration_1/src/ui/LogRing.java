@@ -0,0 +1,173 @@
+/**
+*Class:             LogRing.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    18/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Lines printed to a console, waiting to be shown. Any number of
+*					threads put lines in and the console takes them out, none of
+*					them ever lock or wait: each slot carries a sequence number
+*					saying whether it is free to write or ready to read, and the
+*					two ends move forward by compare-and-set. The ring holds a
+*					fixed number of lines (a power of two); what happens to a line
+*					that does not fit is the policy's choice:
+*						DROP_NEWEST			the new line is thrown away
+*						OVERWRITE_OLDEST	the oldest waiting line is thrown away for it
+*					Either way the lost line is counted.
+*
+*					The default policy and size come from -Dtftp.console.overflow
+*					(drop or overwrite) and -Dtftp.console.capacity (lines).
+*
+*
+*Update Log:		v1.0.0
+*						- null
+*/
+package ui;
+
+
+//import external libraries
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class LogRing
+{
+	//what to do with a line when the ring is full
+	public static enum Policy { DROP_NEWEST, OVERWRITE_OLDEST }
+
+	//declaring local class constants
+	public static final int DEFAULT_CAPACITY = Integer.getInteger("tftp.console.capacity", 8192);
+	public static final Policy DEFAULT_POLICY =
+			"overwrite".equalsIgnoreCase(System.getProperty("tftp.console.overflow")) ? Policy.OVERWRITE_OLDEST : Policy.DROP_NEWEST;
+
+	//declaring local instance variables
+	private final AtomicReferenceArray<String> lines;
+	private final AtomicLongArray sequence;		//slot i is free for put number n when n, ready for take number n when n+1
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();		//number of the next line to take
+	private final AtomicLong tail = new AtomicLong();		//number of the next line to put
+	private final LongAdder lost = new LongAdder();
+	private volatile Policy policy;
+
+
+	//generic constructor
+	public LogRing()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_POLICY);
+	}
+
+
+	//constructor, holds at least capacity lines
+	public LogRing(int capacity, Policy policy)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		lines = new AtomicReferenceArray<String>(size);
+		sequence = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++)
+		{
+			sequence.set(i, i);
+		}
+		mask = size - 1;
+		this.policy = policy;
+	}
+
+
+	//add a line, never waits, false if it (or with OVERWRITE_OLDEST, an older line) was lost
+	public boolean put(String line)
+	{
+		boolean kept = true;
+		while(true)
+		{
+			long t = tail.get();
+			int i = (int)t & mask;
+			long free = sequence.get(i) - t;
+			if(free == 0)
+			{
+				if(tail.compareAndSet(t, t + 1))
+				{
+					lines.lazySet(i, line);
+					sequence.lazySet(i, t + 1);		//publishes the line to take()
+					return kept;
+				}
+			}
+			else if(free < 0)
+			{
+				//full, the slot still holds a line from one lap ago
+				if(policy == Policy.DROP_NEWEST)
+				{
+					lost.increment();
+					return false;
+				}
+				if(take() != null)
+				{
+					lost.increment();
+					kept = false;
+				}
+			}
+			//else another thread took this slot first, try the next one
+		}
+	}
+
+
+	//the oldest line, null if there are none
+	public String take()
+	{
+		while(true)
+		{
+			long h = head.get();
+			int i = (int)h & mask;
+			long ready = sequence.get(i) - (h + 1);
+			if(ready == 0)
+			{
+				if(head.compareAndSet(h, h + 1))
+				{
+					String line = lines.get(i);
+					lines.lazySet(i, null);
+					sequence.lazySet(i, h + mask + 1);		//free for the put one lap on
+					return line;
+				}
+			}
+			else if(ready < 0)
+			{
+				return null;
+			}
+			//else another thread took this line first, try the next one
+		}
+	}
+
+
+	//true if no lines are waiting
+	public boolean isEmpty()
+	{
+		return head.get() >= tail.get();
+	}
+
+
+	//lines thrown away because the ring was full
+	public long getLost()
+	{
+		return lost.sum();
+	}
+
+
+	public Policy getPolicy()
+	{
+		return policy;
+	}
+
+
+	public void setPolicy(Policy policy)
+	{
+		this.policy = policy;
+	}
+
+
+	//lines the ring can hold
+	public int capacity()
+	{
+		return mask + 1;
+	}
+}
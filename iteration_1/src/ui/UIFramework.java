@@ -3,14 +3,20 @@
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
 *Date of Update:    12/010/2016                                              
-*Version:           2.0.0                                                   
+*Version:           2.2.0                                                   
 *                                                                                   
 *Purpose:           Basic framework outlining how any UI implemented will function.
 *					Allows for easy modification later if a replacement or subsisted
 *					UI is made.
 * 
 * 
-*Update Log:		v2.0.0
+*Update Log:		v2.2.0
+*						- printing must not block the caller, getDropped() and setOverflowPolicy(..)
+*						  for lines lost when output falls behind
+*					v2.1.0
+*						- public, so the server can be given a console without a window (HeadlessConsole)
+*						- printOperandError(..) and colorScheme(..) added
+*					v2.0.0
 *						- framework updated to reflect the more advanced needs of ConsoleUI.java
 *					v1.0.0
 *						- framework methods altered slightly
@@ -19,7 +25,7 @@ package ui;
 
 
 
-interface UIFramework 
+public interface UIFramework 
 {	
 	//generic method to print to screen
 	public abstract void print(String printable);
@@ -35,6 +41,12 @@ interface UIFramework
 	
 	//print error to screen
 	public abstract void printError(String printable);
+	
+	//print a bad operand to a command
+	public abstract void printOperandError(String errorMsg);
+	
+	//change colors, return true if the scheme is known
+	public abstract boolean colorScheme(String scheme);
 
 	//generic method to take in user input
 	public abstract String getInput(boolean wait);
@@ -44,4 +56,10 @@ interface UIFramework
 	
 	//generic method to clear screen
 	public abstract void clear();
+	
+	//lines lost because printing outran the screen
+	public abstract long getDropped();
+	
+	//what to do with lines printed while output is behind
+	public abstract void setOverflowPolicy(LogRing.Policy policy);
 }